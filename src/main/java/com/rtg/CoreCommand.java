@@ -73,6 +73,7 @@ import com.rtg.variant.bayes.multisample.cancer.SomaticCli;
 import com.rtg.variant.bayes.multisample.cancer.TumorOnlyCli;
 import com.rtg.variant.bayes.multisample.family.FamilyCli;
 import com.rtg.variant.bayes.multisample.lineage.LineageCli;
+import com.rtg.variant.bayes.multisample.population.AlleleCountsCompileCli;
 import com.rtg.variant.bayes.multisample.population.PopulationCli;
 import com.rtg.variant.bayes.multisample.singleton.SingletonCli;
 import com.rtg.variant.cnv.CnvCli;
@@ -160,6 +161,9 @@ public final class CoreCommand {
   /** Runs the mondo population/pedigree variant caller. */
   static final Command MULTI_POPULATION = new LicensedCommand(new PopulationCli(), CommandCategory.VARIANT, ReleaseLevel.GA);
 
+  /** Compiles population priors into a binary allele counts store. */
+  static final Command POPCOMPILE = new LicensedCommand(new AlleleCountsCompileCli(), CommandCategory.VARIANT, ReleaseLevel.ALPHA);
+
   /** Runs the lineage/single parent pedigree variant caller. */
   static final Command MULTI_LINEAGE = new LicensedCommand(new LineageCli(), CommandCategory.VARIANT, ReleaseLevel.BETA);
 
@@ -305,7 +309,7 @@ public final class CoreCommand {
 
     // Variant calling
     SINGLETON, MULTI_FAMILY, MULTI_SOMATIC, MULTI_POPULATION, TUMOR_ONLY,
-    MULTI_LINEAGE,
+    MULTI_LINEAGE, POPCOMPILE,
     AVRBUILD, AVRPREDICT,
     SVPREP, DISCORD, SV, FUSIONFILTER,
     CNV, SEGMENT, CNVSUMMARY, CNVPANELBUILD,
@@ -29,17 +29,27 @@
  */
 package com.rtg.blacklist;
 
+import java.util.Arrays;
+
 import com.rtg.util.MathUtils;
+import com.rtg.util.diagnostic.NoTalkbackSlimException;
 import com.rtg.util.array.atomic.AtomicIndex;
 import com.rtg.util.array.atomic.AtomicIntChunks;
 import com.rtg.util.array.atomic.AtomicLongChunks;
 
 
 /**
- * Lock free thread safe (for increment method only!) hash counter
+ * Lock free thread safe (for increment methods only!) hash counter.
+ * Keys which cannot be placed within the bounce limit are spilled to a much smaller
+ * overflow counter, which is created on demand (and may itself overflow into another),
+ * so a full table degrades gracefully rather than failing.
  */
 public class HashCounter {
 
+  private static final int MIN_OVERFLOW_LENGTH = 1 << 16;
+  // Only a small fraction of keys are expected to spill, larger volumes chain further overflows
+  private static final int OVERFLOW_FRACTION = 16;
+
   private static final int BOUNCE_LIMIT = 126;
   private static final int BOUNCE_BITS = MathUtils.ceilPowerOf2Bits(BOUNCE_LIMIT);
   private static final int[] BOUNCE = new int[BOUNCE_LIMIT];
@@ -60,11 +70,15 @@ public class HashCounter {
   private final BinaryMatrix mReverseMatrix; //reverses the shuffle
   private final int mCountBits; //number of bits for the counter
   private final long mCountMask; //mask for the counter
+  private final int mKeyBits;
+  private final int mMaxRepeat;
+  private volatile HashCounter mOverflow; //keys which could not be placed in this table
 
   //iterator
   private long mCurrentIndex = -1;
   private long mCurrentKey;
   private long mCurrentCount;
+  private boolean mInOverflow;
 
 
   /**
@@ -74,6 +88,8 @@ public class HashCounter {
    * @param maxRepeat maximum number required to be stored in count field
    */
   public HashCounter(long length, int keyBits, int maxRepeat) {
+    mKeyBits = keyBits;
+    mMaxRepeat = maxRepeat;
     mHashes = minMemFor(length, keyBits, maxRepeat);
     mLength = mHashes.length();
     mPositionMask = mLength - 1;
@@ -115,10 +131,46 @@ public class HashCounter {
   /**
    * increments the count for given key (this method is thread safe).
    * @param key the key
-   * @throws TooManyCollisionsException if the key bounces too many times whilst looking for a location
    */
-  public void increment(long key) throws TooManyCollisionsException {
-    final long hash = mMatrix.times(key);
+  public void increment(long key) {
+    incrementHash(mMatrix.times(key), 1);
+  }
+
+  /**
+   * Increments the count for given key by an amount (this method is thread safe).
+   * @param key the key
+   * @param amount the amount to add to the count
+   */
+  public void increment(long key, long amount) {
+    incrementHash(mMatrix.times(key), amount);
+  }
+
+  /**
+   * Increments the counts for a batch of keys (this method is thread safe). Duplicate
+   * keys are merged before touching the shared table, and the remaining keys are
+   * applied in table order to improve locality.
+   * @param keys the keys, contents are destroyed
+   * @param length number of keys in the array to use
+   */
+  public void increment(long[] keys, int length) {
+    // Rotating the shuffled key puts the position bits at the top, so sorting orders by position
+    for (int i = 0; i < length; ++i) {
+      keys[i] = Long.rotateRight(mMatrix.times(keys[i]), mMaskBits);
+    }
+    Arrays.sort(keys, 0, length);
+    int i = 0;
+    while (i < length) {
+      final long rotated = keys[i];
+      int j = i + 1;
+      while (j < length && keys[j] == rotated) {
+        ++j;
+      }
+      incrementHash(Long.rotateLeft(rotated, mMaskBits), j - i);
+      i = j;
+    }
+  }
+
+  private void incrementHash(long hash, long amount) {
     final long hashUpperBits = (hash >>> mMaskBits) & mKeyMask;
     final long originalPos = hash & mPositionMask;
     long bounces = 0;
@@ -154,7 +206,10 @@ public class HashCounter {
       }
     }
     if (bounces >= BOUNCE_LIMIT) {
-      throw new TooManyCollisionsException("Exceed maximum number of bounces in hash table");
+      // Positions are never released, so every later increment of this key also ends up here.
+      // The overflow has the same key size and hence the same shuffle.
+      overflow().incrementHash(hash, amount);
+      return;
     }
     //pos should now have position of hash and getVal has current value at pos
     do {
@@ -162,7 +217,8 @@ public class HashCounter {
       if (count == mCountMask) {
         break; //maximum value
       }
-      if (mHashes.compareAndSet(pos, getVal, getVal + 1)) {
+      final long setVal = getVal - count + Math.min(mCountMask, count + amount);
+      if (mHashes.compareAndSet(pos, getVal, setVal)) {
         //incremented
         break;
       }
@@ -171,6 +227,34 @@ public class HashCounter {
     } while (true);
   }
 
+  private HashCounter overflow() {
+    HashCounter overflow = mOverflow;
+    if (overflow == null) {
+      synchronized (this) {
+        overflow = mOverflow;
+        if (overflow == null) {
+          // No point being longer than the number of possible keys
+          final long length = Math.max(MIN_OVERFLOW_LENGTH, mLength / OVERFLOW_FRACTION);
+          try {
+            overflow = new HashCounter(mKeyBits < 62 ? Math.min((1L << mKeyBits) - 1, length) : length, mKeyBits, mMaxRepeat);
+          } catch (final OutOfMemoryError e) {
+            throw new NoTalkbackSlimException("Too many collisions in hashmap, try increasing the hashmap size factor");
+          }
+          mOverflow = overflow;
+        }
+      }
+    }
+    return overflow;
+  }
+
+  /**
+   * @return the number of hash entries in overflow counters, 0 if there has been no overflow
+   */
+  long overflowLength() {
+    final HashCounter overflow = mOverflow;
+    return overflow == null ? 0 : overflow.mLength + overflow.overflowLength();
+  }
+
   private long posToKey(long pos, long upperBits, long bounce) {
     return (upperBits << mMaskBits) | ((pos - BOUNCE[(int) bounce]) & mPositionMask);
   }
@@ -181,6 +265,9 @@ public class HashCounter {
    * @return true if there is another value
    */
   public boolean next() {
+    if (mInOverflow) {
+      return mOverflow.next();
+    }
     while (mCurrentIndex + 1 < mLength) {
       ++mCurrentIndex;
       final long currentVal = mHashes.get(mCurrentIndex);
@@ -193,6 +280,10 @@ public class HashCounter {
         return true;
       }
     }
+    if (mOverflow != null) {
+      mInOverflow = true;
+      return mOverflow.next();
+    }
     return false;
   }
 
@@ -201,6 +292,9 @@ public class HashCounter {
    * @return the key
    */
   public long getKey() {
+    if (mInOverflow) {
+      return mOverflow.getKey();
+    }
     return mReverseMatrix.times(mCurrentKey);
   }
 
@@ -209,19 +303,10 @@ public class HashCounter {
    * @return the count
    */
   public long getCount() {
-    return mCurrentCount;
-  }
-
-  /**
-   * Indicates that the hash map failed too many times for a single lookup
-   */
-  public static class TooManyCollisionsException extends Exception {
-    /**
-     * @param message  see {@link Exception}
-     */
-    public TooManyCollisionsException(String message) {
-      super(message);
+    if (mInOverflow) {
+      return mOverflow.getCount();
     }
+    return mCurrentCount;
   }
 
 }
@@ -50,6 +50,7 @@ import com.rtg.mode.DNA;
 import com.rtg.usage.UsageMetric;
 import com.rtg.util.SimpleThreadPool;
 import com.rtg.util.StringUtils;
+import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.diagnostic.NoTalkbackSlimException;
 import com.rtg.util.diagnostic.OneShotTimer;
 
@@ -60,6 +61,9 @@ public class HashDist extends ParamsTask<HashDistParams, NoStatistics> {
 
   private static final String BLACKLIST_FILENAME = "blacklist";
 
+  /** Number of hashes collected by each thread before they are merged into the shared counter. */
+  private static final int BATCH_SIZE = 1 << 16;
+
   /**
    * @param params parameters
    * @param reportStream unused
@@ -84,20 +88,79 @@ public class HashDist extends ParamsTask<HashDistParams, NoStatistics> {
     final int hashBits = CreateParams.calculateHashBits(params.buildParams().sequences().mode().codeType().bits(), params.buildParams().windowSize());
     final long counterSizeBase = params.buildParams().sequences().reader().totalLength();
     final long counterSize = counterSizeBase + (long) ((params.hashMapSizeFactor() - 1.0) * counterSizeBase);
-    final HashCounter sparseIndex = new HashCounter(counterSize, hashBits, params.threshold());
+    try (final BufferedWriter blacklistWriter = createBlacklistStream(params);
+         final BufferedWriter histogramWriter = createHistogramStream(params)
+    ) {
+      final TreeMap<Long, Long> histMap = new TreeMap<>();
+      if (params.partitions() > 1) {
+        final HashPartitions partitions = new HashPartitions(params.directory(), params.partitions());
+        try {
+          try {
+            hashSequences(params, null, partitions);
+          } finally {
+            partitions.close();
+          }
+          // Each hash occurs in only one partition, so the partitions can be counted in turn
+          final long partitionSize = counterSize / partitions.length() + 1;
+          for (int i = 0; i < partitions.length(); ++i) {
+            Diagnostic.progress("Counting partition " + (i + 1) + "/" + partitions.length());
+            final HashCounter sparseIndex = new HashCounter(partitionSize, hashBits, params.threshold());
+            partitions.count(i, sparseIndex, params.numberThreads());
+            writeCounts(params, sparseIndex, blacklistWriter, histMap);
+          }
+        } finally {
+          partitions.delete();
+        }
+      } else {
+        final HashCounter sparseIndex = new HashCounter(counterSize, hashBits, params.threshold());
+        hashSequences(params, sparseIndex, null);
+        writeCounts(params, sparseIndex, blacklistWriter, histMap);
+      }
+      for (Map.Entry<Long, Long> entry : histMap.entrySet()) {
+        histogramWriter.append(entry.getKey().toString()).append(" ").append(entry.getValue().toString()).append(StringUtils.LS);
+      }
+    }
+    if (params.installBlacklist()) {
+      HashBlacklist.installBlacklist(params.file(BLACKLIST_FILENAME), refDir, wordSize);
+    }
+  }
+
+  /**
+   * Hash every sequence, sending the hashes either directly to a counter or to partition files.
+   */
+  private static void hashSequences(final HashDistParams params, final HashCounter sparseIndex, final HashPartitions partitions) throws IOException {
     final SimpleThreadPool stp = new SimpleThreadPool(params.numberThreads(), "HashToolsThread", true);
     for (int i = 0; i < params.buildParams().sequences().numberSequences(); ++i) {
       final ExactHashFunction exf = new ExactHashFunction(params.buildParams());
       final BuildParams bp = params.buildParams().subSequence(new HashingRegion(i, i + 1));
+      final int batchSize = (int) Math.max(1, Math.min(BATCH_SIZE, params.buildParams().sequences().reader().length(i)));
       final HashLoop subjectHashLoop = new IncrementalHashLoop(params.buildParams().stepSize(), exf, false) {
+        // Hashes are collected locally so that repeats are merged before updating the shared counter
+        private final long[] mBatch = new long[batchSize];
+        private final long[] mScratch = partitions == null ? null : new long[batchSize];
+        private int mBatchLength = 0;
+
         @Override
-        public void hashCall(final long hash, final int internalId, final int stepPosition) {
+        public void hashCall(final long hash, final int internalId, final int stepPosition) throws IOException {
           //System.err.println("build hashCall hash=" + hash + " id=" + internalId);
-          try {
-            sparseIndex.increment(hash);
-          } catch (HashCounter.TooManyCollisionsException e) {
-            throw new NoTalkbackSlimException("Too many collisions in hashmap, try increasing the hashmap size factor");
+          if (mBatchLength == mBatch.length) {
+            flush();
           }
+          mBatch[mBatchLength++] = hash;
+        }
+
+        @Override
+        public void endAll() throws IOException {
+          flush();
+        }
+
+        private void flush() throws IOException {
+          if (partitions == null) {
+            sparseIndex.increment(mBatch, mBatchLength);
+          } else {
+            partitions.write(mBatch, mBatchLength, mScratch);
+          }
+          mBatchLength = 0;
         }
 
         @Override
@@ -108,31 +171,25 @@ public class HashDist extends ParamsTask<HashDistParams, NoStatistics> {
       executeLoop(stp, bp, subjectHashLoop);
     }
     stp.terminate();
+  }
 
-    try (final BufferedWriter blacklistWriter = createBlacklistStream(params);
-         final BufferedWriter histogramWriter = createHistogramStream(params)
-    ) {
-      final TreeMap<Long, Long> histMap = new TreeMap<>();
-      while (sparseIndex.next()) {
-        final long hash = sparseIndex.getKey();
-        final long count = sparseIndex.getCount();
-        if (params.makeBlacklist()) {
-          if (count >= params.blacklistThreshold()) {
-            blacklistWriter.write(reverseHash(hash, params.buildParams().windowSize(), params.buildParams().sequences().mode().codeType().bits()));
-            blacklistWriter.write("\t");
-            blacklistWriter.write(Long.toString(count));
-            blacklistWriter.newLine();
-          }
+  private static void writeCounts(final HashDistParams params, final HashCounter sparseIndex, final BufferedWriter blacklistWriter, final TreeMap<Long, Long> histMap) throws IOException {
+    if (sparseIndex.overflowLength() > 0) {
+      Diagnostic.userLog("Hash counter overflowed into " + sparseIndex.overflowLength() + " additional entries, consider increasing the hashmap size factor");
+    }
+    while (sparseIndex.next()) {
+      final long hash = sparseIndex.getKey();
+      final long count = sparseIndex.getCount();
+      if (params.makeBlacklist()) {
+        if (count >= params.blacklistThreshold()) {
+          blacklistWriter.write(reverseHash(hash, params.buildParams().windowSize(), params.buildParams().sequences().mode().codeType().bits()));
+          blacklistWriter.write("\t");
+          blacklistWriter.write(Long.toString(count));
+          blacklistWriter.newLine();
         }
-        final long prevVal = histMap.containsKey(count) ? histMap.get(count) : 0;
-        histMap.put(count, prevVal + 1);
-      }
-      for (Map.Entry<Long, Long> entry : histMap.entrySet()) {
-        histogramWriter.append(entry.getKey().toString()).append(" ").append(entry.getValue().toString()).append(StringUtils.LS);
       }
-    }
-    if (params.installBlacklist()) {
-      HashBlacklist.installBlacklist(params.file(BLACKLIST_FILENAME), refDir, wordSize);
+      final long prevVal = histMap.containsKey(count) ? histMap.get(count) : 0;
+      histMap.put(count, prevVal + 1);
     }
   }
 
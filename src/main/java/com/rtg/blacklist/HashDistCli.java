@@ -58,6 +58,9 @@ public class HashDistCli extends ParamsCli<HashDistParams> {
   private static final String BLACKLIST_THRESHOLD_FLAG = "blacklist-threshold";
   private static final String INSTALL_BLACKLIST = "install-blacklist";
   private static final String HASHMAP_SIZE_FACTOR = "hashmap-size-factor";
+  private static final String PARTITIONS_FLAG = "partitions";
+  // Every partition file is open during hashing, so keep well below common open file limits
+  private static final int MAX_PARTITIONS = 256;
 
   @Override
   protected IORunnable task(HashDistParams params, OutputStream out) {
@@ -82,6 +85,7 @@ public class HashDistCli extends ParamsCli<HashDistParams> {
       .buildParams(buildParams)
       .installBlacklist(mFlags.isSet(INSTALL_BLACKLIST))
       .hashMapSizeFactor((Double) mFlags.getValue(HASHMAP_SIZE_FACTOR))
+      .partitions((Integer) mFlags.getValue(PARTITIONS_FLAG))
       .blacklistThreshold((Integer) mFlags.getValue(BLACKLIST_THRESHOLD_FLAG))
       .makeBlacklist(mFlags.isSet(BLACKLIST_THRESHOLD_FLAG))
       .numberThreads(CommonFlags.parseThreads((Integer) mFlags.getValue(CommonFlags.THREADS_FLAG)))
@@ -111,6 +115,7 @@ public class HashDistCli extends ParamsCli<HashDistParams> {
     flags.registerOptional(MAX_COUNT_FLAG, Integer.class, CommonFlags.INT, "soft minimum for hash count (i.e. will record exact counts of at least this value)", 500).setCategory(CommonFlagCategories.SENSITIVITY_TUNING);
     flags.registerOptional(BLACKLIST_THRESHOLD_FLAG, Integer.class, CommonFlags.INT, "if set, output a blacklist containing all k-mer hashes with counts exceeding this value").setCategory(CommonFlagCategories.SENSITIVITY_TUNING);
     flags.registerOptional(HASHMAP_SIZE_FACTOR, Double.class, CommonFlags.FLOAT, "multiplier for the minimum size of the hash map", 1.0).setCategory(CommonFlagCategories.SENSITIVITY_TUNING);
+    flags.registerOptional(PARTITIONS_FLAG, Integer.class, CommonFlags.INT, "number of partitions to split k-mers into on disk, each of which is counted separately to reduce memory usage", 1).setCategory(CommonFlagCategories.UTILITY);
     flags.registerOptional(INSTALL_BLACKLIST, "install the blacklist into the SDF for use during mapping").setCategory(CommonFlagCategories.UTILITY);
     flags.setValidator(new HashToolsCliValidator());
   }
@@ -135,6 +140,9 @@ public class HashDistCli extends ParamsCli<HashDistParams> {
       if (!flags.checkInRange(HASHMAP_SIZE_FACTOR, 0.0, 5.0)) {
         return false;
       }
+      if (!flags.checkInRange(PARTITIONS_FLAG, 1, MAX_PARTITIONS)) {
+        return false;
+      }
       if (!CommonFlags.validateSDF((File) flags.getAnonymousValue(0))) {
         return false;
       }
@@ -49,6 +49,7 @@ public class HashDistParams extends ModuleParams {
   private final File mDirectory;
   private final int mNumberThreads;
   private final double mHashMapSizeFactor;
+  private final int mPartitions;
 
   /**
    * @param builder the builder
@@ -63,6 +64,7 @@ public class HashDistParams extends ModuleParams {
     mNumberThreads = builder.mNumberThreads;
     mInstallBlacklist = builder.mInstallBlacklist;
     mHashMapSizeFactor = builder.mHashMapSizeFactor;
+    mPartitions = builder.mPartitions;
   }
 
   /**
@@ -93,6 +95,13 @@ public class HashDistParams extends ModuleParams {
     return mHashMapSizeFactor;
   }
 
+  /**
+   * @return number of disk partitions to count separately, 1 to count everything in memory at once
+   */
+  public int partitions() {
+    return mPartitions;
+  }
+
   /**
    * @return the minimum hash count maximum. (i.e. the hash counter should be able to store counts at leas this large)
    */
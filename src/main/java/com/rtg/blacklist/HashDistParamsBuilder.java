@@ -48,6 +48,7 @@ public class HashDistParamsBuilder {
   int mNumberThreads;
   boolean mInstallBlacklist;
   double mHashMapSizeFactor = 1.0;
+  int mPartitions = 1;
 
 
   /**
@@ -123,6 +124,15 @@ public class HashDistParamsBuilder {
     return this;
   }
 
+  /**
+   * @param val number of disk partitions to count separately, 1 to count everything in memory at once
+   * @return this builder for chaining purposes
+   */
+  public HashDistParamsBuilder partitions(int val) {
+    mPartitions = val;
+    return this;
+  }
+
 
   /**
    * construct the final params object from this builder
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.blacklist;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.rtg.util.SimpleThreadPool;
+
+/**
+ * Temporary files holding hashes split into partitions by a prefix of the shuffled hash,
+ * so that each partition can be counted in memory separately. Every occurrence of a hash
+ * goes to the same partition. Each batch written has its duplicate hashes merged, and is
+ * stored as pairs of hash and count. Writing is thread safe.
+ */
+class HashPartitions implements Closeable {
+
+  private static final int RECORD_BYTES = 8 + 4;
+
+  private final File[] mFiles;
+  private final DataOutputStream[] mOutputs;
+
+  /**
+   * @param directory directory in which to create the partition files
+   * @param partitions number of partitions
+   * @throws IOException if the files cannot be created
+   */
+  HashPartitions(File directory, int partitions) throws IOException {
+    mFiles = new File[partitions];
+    mOutputs = new DataOutputStream[partitions];
+    for (int i = 0; i < partitions; ++i) {
+      mFiles[i] = new File(directory, "hashes." + i + ".tmp");
+      mOutputs[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mFiles[i])));
+    }
+  }
+
+  /**
+   * @return the number of partitions
+   */
+  int length() {
+    return mFiles.length;
+  }
+
+  /**
+   * @param hash the hash
+   * @return the partition the hash belongs to
+   */
+  int partition(long hash) {
+    // Multiplicative shuffle, then use the top bits to select the partition
+    return (int) ((((hash * 0x9E3779B97F4A7C15L) >>> 32) * mFiles.length) >>> 32);
+  }
+
+  /**
+   * Append a batch of hashes to their partitions.
+   * @param hashes the hashes, contents are destroyed
+   * @param length number of hashes in the array to use
+   * @param scratch working space at least <code>length</code> long
+   * @throws IOException if an I/O error occurs
+   */
+  void write(long[] hashes, int length, long[] scratch) throws IOException {
+    // Counting sort by partition so each partition is written in a single block
+    final int[] starts = new int[mFiles.length + 1];
+    for (int i = 0; i < length; ++i) {
+      ++starts[partition(hashes[i]) + 1];
+    }
+    for (int p = 0; p < mFiles.length; ++p) {
+      starts[p + 1] += starts[p];
+    }
+    final int[] next = new int[mFiles.length];
+    System.arraycopy(starts, 0, next, 0, mFiles.length);
+    for (int i = 0; i < length; ++i) {
+      scratch[next[partition(hashes[i])]++] = hashes[i];
+    }
+    for (int p = 0; p < mFiles.length; ++p) {
+      if (starts[p] < starts[p + 1]) {
+        // Merge duplicates within the partition, reusing the hashes array for the counts
+        Arrays.sort(scratch, starts[p], starts[p + 1]);
+        int distinct = starts[p];
+        int i = starts[p];
+        while (i < starts[p + 1]) {
+          int j = i + 1;
+          while (j < starts[p + 1] && scratch[j] == scratch[i]) {
+            ++j;
+          }
+          scratch[distinct] = scratch[i];
+          hashes[distinct] = j - i;
+          ++distinct;
+          i = j;
+        }
+        final DataOutputStream out = mOutputs[p];
+        synchronized (out) {
+          for (int k = starts[p]; k < distinct; ++k) {
+            out.writeLong(scratch[k]);
+            out.writeInt((int) hashes[k]);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Count the hashes of one partition. The partition file is deleted afterwards.
+   * All writing must be finished and this object closed before calling this.
+   * @param partition the partition
+   * @param counter counter to add the hashes to
+   * @param threads number of threads to count with
+   * @throws IOException if an I/O error occurs
+   */
+  void count(int partition, HashCounter counter, int threads) throws IOException {
+    final File file = mFiles[partition];
+    final long records = file.length() / RECORD_BYTES;
+    final long perThread = (records + threads - 1) / threads;
+    final SimpleThreadPool stp = new SimpleThreadPool(threads, "HashPartitionThread", true);
+    for (long start = 0; start < records; start += perThread) {
+      final long first = start;
+      final long last = Math.min(records, start + perThread);
+      stp.execute(() -> count(file, first, last, counter));
+    }
+    stp.terminate();
+    if (!file.delete()) {
+      throw new IOException("Could not delete temporary file: " + file.getPath());
+    }
+  }
+
+  private static void count(File file, long first, long last, HashCounter counter) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      long toSkip = first * RECORD_BYTES;
+      while (toSkip > 0) {
+        final long skipped = in.skip(toSkip);
+        if (skipped <= 0) {
+          throw new IOException("Unexpected end of temporary file: " + file.getPath());
+        }
+        toSkip -= skipped;
+      }
+      for (long i = first; i < last; ++i) {
+        final long hash = in.readLong();
+        counter.increment(hash, in.readInt());
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (final DataOutputStream out : mOutputs) {
+      out.close();
+    }
+  }
+
+  /**
+   * Remove any partition files which remain.
+   */
+  void delete() {
+    for (final File file : mFiles) {
+      if (file.exists() && !file.delete()) {
+        file.deleteOnExit();
+      }
+    }
+  }
+}
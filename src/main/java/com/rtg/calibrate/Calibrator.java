@@ -32,8 +32,6 @@ package com.rtg.calibrate;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
@@ -471,11 +469,12 @@ public class Calibrator {
   }
 
   /**
-   * Accumulate the results of another compatible calibrator into this calibrator.
+   * Accumulate the statistics, histograms and sequence lengths of another compatible calibrator
+   * into this calibrator, without going through the text format.
+   * Not thread safe (due to <code>getOrCreateHistogram</code> calls)
    * @param cal other calibrator
-   * @throws IOException if read or input format errors occur.
    */
-  public void accumulate(Calibrator cal) throws IOException {
+  public void accumulate(Calibrator cal) {
     // Check covariates match
     if (mCovariates.length != cal.mCovariates.length) {
       throw new RuntimeException("Missing covariates");
@@ -485,10 +484,45 @@ public class Calibrator {
         throw new RuntimeException("Covariates mismatch");
       }
     }
-    final ByteArrayOutputStream bo = new ByteArrayOutputStream();
-    cal.writeToStream(bo);
-    try (final ByteArrayInputStream bi = new ByteArrayInputStream(bo.toByteArray())) {
-      accumulate(bi, "<internal>");
+    mSequenceLengths.putAll(cal.mSequenceLengths);
+    for (final Map.Entry<String, Histogram> e : cal.mDistributions.entrySet()) {
+      getOrCreateHistogram(e.getKey()).addHistogram(e.getValue());
+    }
+    // Covariate values (such as read groups) may be numbered differently in the other
+    // calibrator, so translate each value once and then add the statistics by index
+    final int[][] translate = new int[mCovariates.length][];
+    for (int i = 0; i < mCovariates.length; ++i) {
+      translate[i] = new int[cal.mCovariates[i].newSize()];
+      Arrays.fill(translate[i], -1);
+    }
+    boolean mustResize = false;
+    for (final CalibrationStats stats : cal.mStats) {
+      if (stats != null) {
+        for (int i = 0; i < mCovariates.length; ++i) {
+          final int v = stats.getCovariateValue(i);
+          if (translate[i][v] < 0) {
+            translate[i][v] = mCovariates[i].parse(cal.mCovariates[i].valueString(v));
+            mustResize |= mCovariates[i].sizeChanged();
+          }
+        }
+      }
+    }
+    if (mustResize) {
+      expandStats();
+    }
+    for (final CalibrationStats stats : cal.mStats) {
+      if (stats != null) {
+        int pos = 0;
+        final int[] values = new int[mCovariates.length];
+        for (int i = 0; i < mCovariates.length; ++i) {
+          values[i] = translate[i][stats.getCovariateValue(i)];
+          pos = pos * mCovariates[i].newSize() + values[i];
+        }
+        if (mStats[pos] == null) {
+          mStats[pos] = new CalibrationStats(values);
+        }
+        mStats[pos].accumulate(stats);
+      }
     }
   }
 
@@ -35,19 +35,25 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.reeltwo.jumble.annotations.TestClass;
 import com.rtg.reader.SdfId;
 import com.rtg.reader.SequencesReader;
+import com.rtg.sam.BamIndexer;
 import com.rtg.sam.ReferenceSequenceRequiredException;
 import com.rtg.sam.SamFilterParams;
 import com.rtg.sam.SamOutput;
 import com.rtg.sam.SamReadingContext;
+import com.rtg.sam.SamRegionRestriction;
 import com.rtg.sam.SamUtils;
 import com.rtg.sam.ThreadedMultifileIterator;
+import com.rtg.tabix.TabixIndexer;
 import com.rtg.util.ProgramState;
 import com.rtg.util.SimpleThreadPool;
+import com.rtg.util.SingletonPopulatorFactory;
 import com.rtg.util.diagnostic.NoTalkbackSlimException;
 import com.rtg.util.intervals.ReferenceRegions;
 import com.rtg.util.io.AsynchInputStream;
@@ -56,6 +62,7 @@ import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileWriter;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.SamReader;
 
 /**
@@ -81,10 +88,111 @@ public class Recalibrate implements Closeable {
 
   void doRecalibrate(List<File> samFiles, List<CovariateEnum> covs, int threads, boolean force) throws IOException {
     final SimpleThreadPool tp = new SimpleThreadPool(threads, "Calibrate", false);
+    final List<SplitCalibration> splits = new ArrayList<>();
     for (final File f : samFiles) {
-      tp.execute(() -> doRecalibrate(f, covs, force));
+      if (samFiles.size() < threads && isIndexed(f)) {
+        // Not enough files to keep the threads busy, calibrate each sequence of this file separately
+        final SplitCalibration split = new SplitCalibration(f);
+        splits.add(split);
+        for (final List<String> sequences : split.groups(threads)) {
+          tp.execute(() -> split.add(doRecalibrate(f, split.mHeader, sequences, covs)));
+        }
+      } else {
+        tp.execute(() -> doRecalibrate(f, covs, force));
+      }
     }
     tp.terminate();
+    for (final SplitCalibration split : splits) {
+      writeCalibration(split.merge(covs), split.mFile, force);
+    }
+  }
+
+  private static boolean isIndexed(File samFile) {
+    return TabixIndexer.indexFileName(samFile).exists() || BamIndexer.indexFileName(samFile).exists() || BamIndexer.secondaryIndexFileName(samFile).exists();
+  }
+
+  /**
+   * Holds the partial calibrations for a file whose sequences are calibrated separately.
+   */
+  private final class SplitCalibration {
+    private final File mFile;
+    private final SAMFileHeader mHeader;
+    private final List<Calibrator> mPartials = new ArrayList<>();
+
+    SplitCalibration(File samFile) throws IOException {
+      mFile = samFile;
+      mHeader = SamUtils.getSingleHeader(samFile);
+      SamUtils.checkReferenceGuid(mHeader, mTemplateSdfId);
+    }
+
+    // Sequence names divided into at most the given number of groups of similar total length
+    List<List<String>> groups(int numGroups) {
+      final List<SAMSequenceRecord> sequences = new ArrayList<>(mHeader.getSequenceDictionary().getSequences());
+      sequences.sort((a, b) -> Integer.compare(b.getSequenceLength(), a.getSequenceLength()));
+      final List<List<String>> groups = new ArrayList<>();
+      final long[] lengths = new long[Math.min(numGroups, sequences.size())];
+      for (int i = 0; i < lengths.length; ++i) {
+        groups.add(new ArrayList<>());
+      }
+      for (final SAMSequenceRecord seq : sequences) {
+        int min = 0;
+        for (int i = 1; i < lengths.length; ++i) {
+          if (lengths[i] < lengths[min]) {
+            min = i;
+          }
+        }
+        groups.get(min).add(seq.getSequenceName());
+        lengths[min] += seq.getSequenceLength();
+      }
+      return groups;
+    }
+
+    synchronized void add(Calibrator c) {
+      mPartials.add(c);
+    }
+
+    Calibrator merge(List<CovariateEnum> covs) throws IOException {
+      final Calibrator merged = new Calibrator(CovariateEnum.getCovariates(covs, mHeader), mRegions);
+      if (mRegions != null) {
+        merged.setSequenceLengths(Calibrator.getSequenceLengthMap(mTemplate, mRegions));
+      }
+      for (final Calibrator c : mPartials) {
+        merged.accumulate(c);
+      }
+      return merged;
+    }
+  }
+
+  private Calibrator doRecalibrate(File samFile, SAMFileHeader header, List<String> sequences, List<CovariateEnum> covs) throws IOException {
+    try (SequencesReader r = mTemplate.copy()) {
+      final Calibrator c = new Calibrator(CovariateEnum.getCovariates(covs, header), mRegions);
+      final CalibratingSamRecordPopulator p = new CalibratingSamRecordPopulator(c, r, false);
+      for (final String sequence : sequences) {
+        final SamFilterParams filterParams = SamFilterParams.builder().restriction(new SamRegionRestriction(sequence)).create();
+        final SamReadingContext context = new SamReadingContext(Collections.singletonList(samFile), 1, filterParams, header, r);
+        try (final ThreadedMultifileIterator<SAMRecord> it = new ThreadedMultifileIterator<>(context, new SingletonPopulatorFactory<>(p))) {
+          int rCount = 0;
+          while (it.hasNext()) {
+            it.next();
+            if (++rCount > 1000000) {
+              ProgramState.checkAbort();
+              rCount = 0;
+            }
+          }
+        }
+      }
+      return c;
+    } catch (final ReferenceSequenceRequiredException e) {
+      throw new NoTalkbackSlimException("Template SDF must be supplied when using legacy cigars");
+    }
+  }
+
+  private static void writeCalibration(Calibrator c, File samFile, boolean force) throws IOException {
+    final File calibrationFile = new File(samFile.getParent(), samFile.getName() + RECALIBRATE_EXTENSION);
+    if (!force && calibrationFile.exists()) {
+      throw new NoTalkbackSlimException("Calibration file already exists: " + calibrationFile);
+    }
+    c.writeToFile(calibrationFile);
   }
 
   private void doRecalibrate(File samFile, List<CovariateEnum> covs, boolean force) throws IOException {
@@ -92,11 +200,7 @@ public class Recalibrate implements Closeable {
       try (SamReader reader = SamUtils.makeSamReader(new AsynchInputStream(new FileInputStream(samFile)), mTemplate)) {
         SamUtils.checkReferenceGuid(reader.getFileHeader(), mTemplateSdfId);
         final Calibrator c = doRecalibrate(reader, CovariateEnum.getCovariates(covs, reader.getFileHeader()));
-        final File calibrationFile = new File(samFile.getParent(), samFile.getName() + RECALIBRATE_EXTENSION);
-        if (!force && calibrationFile.exists()) {
-          throw new NoTalkbackSlimException("Calibration file already exists: " + calibrationFile);
-        }
-        c.writeToFile(calibrationFile);
+        writeCalibration(c, samFile, force);
       }
     } catch (final ReferenceSequenceRequiredException e) {
       throw new NoTalkbackSlimException("Template SDF must be supplied when using legacy cigars");
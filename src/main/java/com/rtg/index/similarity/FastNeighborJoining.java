@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.index.similarity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.rtg.util.QuickSort;
+import com.rtg.util.diagnostic.Diagnostic;
+import com.rtg.util.diagnostic.NoTalkbackSlimException;
+
+/**
+ * Neighbor-joining using the search heuristic of RapidNJ (Simonsen, Mailund and Pedersen).
+ * Distances are held in a primitive lower triangular array indexed by slot, with each joined
+ * node reusing the slot of one of its children. Each node also keeps the ids of older nodes
+ * sorted by distance, so a scan for the minimum Q value of a row can stop as soon as its
+ * distances are too large to beat the best value found so far. Rows may be scanned by several
+ * threads.
+ *
+ * Joins are the same as for <code>NeighborJoining</code> except that ties are broken
+ * deterministically rather than at random, and row sums are updated incrementally rather than
+ * being recomputed.
+ */
+public class FastNeighborJoining {
+
+  // Below this many active nodes rows are scanned on the calling thread
+  private static final int PARALLEL_MIN_NODES = 512;
+
+  private final int mThreads;
+
+  private double[] mDistances; // lower triangular by slot
+  private double[] mSums; // row sums by slot
+  private double[] mKeys; // scratch distances to a node, by slot
+  private int[] mSlot; // slot by node id
+  private boolean[] mAlive; // by node id
+  private int[][] mRows; // ids of older nodes ordered by distance, by node id
+  private int[] mRowLength; // by node id
+  private int[] mActive; // ids of active nodes
+  private int mNumActive;
+
+  /**
+   * Creates a new Neighbor Joining object using a single thread.
+   */
+  public FastNeighborJoining() {
+    this(1);
+  }
+
+  /**
+   * Creates a new Neighbor Joining object.
+   * @param threads number of threads to use for scanning rows
+   */
+  public FastNeighborJoining(final int threads) {
+    mThreads = Math.max(1, threads);
+  }
+
+  /**
+   * Perform the neighbor-joining algorithm.  Given a list of node names and a
+   * matrix of distances between sequences, infer a binary tree
+   * using the neighbor-joining algorithm.
+   *
+   * @param nodeNames the list of node names for translating back from the matrix.
+   * @param matrix count of number of hashes in common between pairs of sequences.
+   * @return the resulting tree
+   */
+  public BinaryTree neighborJoin(final List<String> nodeNames, final SimilarityMatrix matrix) {
+    return neighborJoin(nodeNames, makeArray(matrix));
+  }
+
+  private static long index(final int a, final int b) {
+    return a > b ? (long) a * (a - 1) / 2 + b : (long) b * (b - 1) / 2 + a;
+  }
+
+  private double distance(final int slotA, final int slotB) {
+    return mDistances[(int) index(slotA, slotB)];
+  }
+
+  /**
+   * Produce a lower triangular array, row by row without the diagonal, of normalized and inverted
+   * similarity scores. The values are the same as those of <code>NeighborJoining.makeArray</code>.
+   * @param matrix with the original counts.
+   * @return the lower triangular array.
+   */
+  static double[] makeArray(final SimilarityMatrix matrix) {
+    final int length = matrix.length();
+    if (index(length, 0) > Integer.MAX_VALUE - 8) {
+      throw new NoTalkbackSlimException("Too many sequences for neighbor joining: " + length);
+    }
+    final double[] norm = new double[length];
+    for (int i = 0; i < length; ++i) {
+      //be careful to deal with 0's on diagonal
+      final double n = matrix.get(i, i);
+      assert n >= 0;
+      norm[i] = Math.sqrt(n == 0 ? 1 : n);
+    }
+    final double[] d = new double[(int) index(length, 0)];
+    int k = 0;
+    for (int i = 0; i < length; ++i) {
+      for (int j = 0; j < i; ++j) {
+        final double v = matrix.get(i, j) / (norm[i] * norm[j]);
+        assert v >= 0.0 && Double.isFinite(v) : v;
+        d[k++] = 1.0 / (1.0 + v);
+      }
+    }
+    return d;
+  }
+
+  /**
+   * Perform the neighbor-joining algorithm.
+   * @param nodeNames the node names
+   * @param d lower triangular distance array, row by row without the diagonal
+   * @return the resulting tree
+   */
+  BinaryTree neighborJoin(final List<String> nodeNames, final double[] d) {
+    final int n = nodeNames.size();
+    assert d.length == index(n, 0);
+    init(n, d);
+    final BinaryTree[] trees = new BinaryTree[Math.max(1, 2 * n - 1)];
+    for (int i = 0; i < n; ++i) {
+      trees[i] = new BinaryTree(null, null, 0, 0, nodeNames.get(i));
+    }
+    final ExecutorService executor = mThreads > 1 && n >= PARALLEL_MIN_NODES ? Executors.newFixedThreadPool(mThreads) : null;
+    try {
+      int compactAt = n / 2;
+      for (int id = n; mNumActive > 1; ++id) {
+        final Candidate best = executor != null && mNumActive >= PARALLEL_MIN_NODES ? bestParallel(executor) : bestSerial();
+        final int f = best.mF;
+        final int g = best.mG;
+        final double[] lengths = join(f, g, id);
+        trees[id] = new BinaryTree(trees[f], trees[g], lengths[0], lengths[1], String.valueOf(mNumActive + 1));
+        Diagnostic.userLog("NeighborJoining: " + trees[f].getLabel() + " + " + trees[g].getLabel() + " -> " + trees[id].getLabel());
+        trees[f] = null;
+        trees[g] = null;
+        if (mNumActive <= compactAt) {
+          compact();
+          compactAt = mNumActive / 2;
+        }
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+    final BinaryTree root = trees[mNumActive == 0 ? 0 : mActive[0]];
+    mDistances = null;
+    mRows = null;
+    return root;
+  }
+
+  private void init(final int n, final double[] d) {
+    mDistances = d;
+    final int ids = Math.max(1, 2 * n - 1);
+    mSums = new double[n];
+    mKeys = new double[n];
+    mSlot = new int[ids];
+    mAlive = new boolean[ids];
+    mRows = new int[ids][];
+    mRowLength = new int[ids];
+    mActive = new int[n];
+    mNumActive = n;
+    final double[] keys = mKeys;
+    for (int i = 0; i < n; ++i) {
+      mSlot[i] = i;
+      mAlive[i] = true;
+      mActive[i] = i;
+      final int[] row = new int[i];
+      for (int j = 0; j < i; ++j) {
+        final double v = distance(i, j);
+        mSums[i] += v;
+        mSums[j] += v;
+        keys[j] = v;
+        row[j] = j;
+      }
+      QuickSort.sort(new IdSortProxy(row, i, keys, mSlot));
+      mRows[i] = row;
+      mRowLength[i] = i;
+    }
+  }
+
+  /** A pair of nodes to join and their Q value. */
+  private static final class Candidate {
+    double mQ = Double.POSITIVE_INFINITY;
+    int mF = -1;
+    int mG = -1;
+
+    // Ties are broken towards the smallest ids so that results do not depend on scan order
+    boolean isBetter(final double q, final int f, final int g) {
+      return q < mQ || (q == mQ && (f < mF || (f == mF && g < mG)));
+    }
+
+    void offer(final double q, final int f, final int g) {
+      if (isBetter(q, f, g)) {
+        mQ = q;
+        mF = f;
+        mG = g;
+      }
+    }
+
+    void offer(final Candidate other) {
+      if (other.mF >= 0) {
+        offer(other.mQ, other.mF, other.mG);
+      }
+    }
+  }
+
+  // Seed the search with the closest live neighbour of each row, giving a good initial bound
+  private Candidate initialCandidate(final int r) {
+    final Candidate best = new Candidate();
+    for (int a = 0; a < mNumActive; ++a) {
+      final int i = mActive[a];
+      final int[] row = mRows[i];
+      final int si = mSlot[i];
+      for (int k = 0; k < mRowLength[i]; ++k) {
+        final int j = row[k];
+        if (mAlive[j]) {
+          best.offer(r * distance(si, mSlot[j]) - mSums[si] - mSums[mSlot[j]], i, j);
+          break;
+        }
+      }
+    }
+    return best;
+  }
+
+  private double maxSum() {
+    double max = Double.NEGATIVE_INFINITY;
+    for (int a = 0; a < mNumActive; ++a) {
+      max = Math.max(max, mSums[mSlot[mActive[a]]]);
+    }
+    return max;
+  }
+
+  // Scan rows of active nodes from start (inclusive) to end (exclusive) for the minimum Q value
+  private void scan(final Candidate best, final int r, final double maxSum, final int start, final int end) {
+    for (int a = start; a < end; ++a) {
+      final int i = mActive[a];
+      final int[] row = mRows[i];
+      final int len = mRowLength[i];
+      final int si = mSlot[i];
+      final double sumI = mSums[si];
+      for (int k = 0; k < len; ++k) {
+        final int j = row[k];
+        if (!mAlive[j]) {
+          continue;
+        }
+        final double rd = r * distance(si, mSlot[j]) - sumI;
+        if (rd - maxSum > best.mQ) {
+          break; // no later entry in this row can do better
+        }
+        best.offer(rd - mSums[mSlot[j]], i, j);
+      }
+    }
+  }
+
+  private Candidate bestSerial() {
+    final int r = mNumActive - 2;
+    final Candidate best = initialCandidate(r);
+    scan(best, r, maxSum(), 0, mNumActive);
+    return best;
+  }
+
+  private Candidate bestParallel(final ExecutorService executor) {
+    final int r = mNumActive - 2;
+    final Candidate initial = initialCandidate(r);
+    final double maxSum = maxSum();
+    // More chunks than threads as the cost of rows varies considerably
+    final int chunks = 4 * mThreads;
+    final List<Callable<Candidate>> tasks = new ArrayList<>(chunks);
+    for (int c = 0; c < chunks; ++c) {
+      final int start = (int) ((long) mNumActive * c / chunks);
+      final int end = (int) ((long) mNumActive * (c + 1) / chunks);
+      tasks.add(() -> {
+        final Candidate best = new Candidate();
+        best.offer(initial);
+        scan(best, r, maxSum, start, end);
+        return best;
+      });
+    }
+    final Candidate best = new Candidate();
+    try {
+      for (final Future<Candidate> f : executor.invokeAll(tasks)) {
+        best.offer(f.get());
+      }
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    } catch (final InterruptedException e) {
+      throw new NoTalkbackSlimException("Interrupted while building tree.");
+    }
+    return best;
+  }
+
+  // Join nodes f and g into a new node with given id, returning the branch lengths to f and g
+  private double[] join(final int f, final int g, final int id) {
+    final int sf = mSlot[f];
+    final int sg = mSlot[g];
+    final int m = mNumActive;
+    final double dfg = 0.5 * distance(sf, sg);
+    final double dfu;
+    final double dgu;
+    if (m > 2) {
+      dfu = dfg + 0.5 * (mSums[sf] - mSums[sg]) / (m - 2);
+      dgu = dfg + 0.5 * (mSums[sg] - mSums[sf]) / (m - 2);
+    } else {
+      assert Math.abs(mSums[sf] - mSums[sg]) < 0.0000000001;
+      dfu = dfg;
+      dgu = dfg;
+    }
+    mAlive[f] = false;
+    mAlive[g] = false;
+    int k = 0;
+    for (int a = 0; a < m; ++a) {
+      final int x = mActive[a];
+      if (x != f && x != g) {
+        mActive[k++] = x;
+      }
+    }
+    mNumActive = k;
+
+    // Distance of the merged node to all other nodes, stored by slot
+    final double[] keys = mKeys;
+    final int[] row = new int[k];
+    double sum = 0;
+    for (int a = 0; a < k; ++a) {
+      final int x = mActive[a];
+      final int sx = mSlot[x];
+      final double dfx = distance(sf, sx);
+      final double dgx = distance(sg, sx);
+      final double dx = 0.5 * (dfx - dfu + dgx - dgu);
+      mSums[sx] = mSums[sx] - dfx - dgx + dx;
+      sum += dx;
+      keys[sx] = dx;
+      row[a] = x;
+    }
+    for (int a = 0; a < k; ++a) {
+      final int sx = mSlot[mActive[a]];
+      mDistances[(int) index(sf, sx)] = keys[sx];
+    }
+    mSlot[id] = sf;
+    mSums[sf] = sum;
+    mAlive[id] = true;
+    QuickSort.sort(new IdSortProxy(row, k, keys, mSlot));
+    mRows[id] = row;
+    mRowLength[id] = k;
+    mRows[f] = null;
+    mRows[g] = null;
+    mActive[mNumActive++] = id;
+    return new double[] {dfu, dgu};
+  }
+
+  // Remove references to nodes that have been joined from all rows
+  private void compact() {
+    for (int a = 0; a < mNumActive; ++a) {
+      final int i = mActive[a];
+      final int[] row = mRows[i];
+      int k = 0;
+      for (int j = 0; j < mRowLength[i]; ++j) {
+        if (mAlive[row[j]]) {
+          row[k++] = row[j];
+        }
+      }
+      mRowLength[i] = k;
+    }
+  }
+
+  private static final class IdSortProxy implements QuickSort.SortProxy {
+    private final int[] mIds;
+    private final int mLength;
+    private final double[] mKeys;
+    private final int[] mSlots;
+
+    IdSortProxy(int[] ids, int length, double[] keys, int[] slots) {
+      mIds = ids;
+      mLength = length;
+      mKeys = keys;
+      mSlots = slots;
+    }
+
+    @Override
+    public int compare(long index1, long index2) {
+      final int id1 = mIds[(int) index1];
+      final int id2 = mIds[(int) index2];
+      final int c = Double.compare(mKeys[mSlots[id1]], mKeys[mSlots[id2]]);
+      return c != 0 ? c : Integer.compare(id1, id2);
+    }
+
+    @Override
+    public long length() {
+      return mLength;
+    }
+
+    @Override
+    public void swap(long index1, long index2) {
+      final int t = mIds[(int) index1];
+      mIds[(int) index1] = mIds[(int) index2];
+      mIds[(int) index2] = t;
+    }
+  }
+}
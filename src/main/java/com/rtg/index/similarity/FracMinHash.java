@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.index.similarity;
+
+/**
+ * Scaled MinHash (FracMinHash) sketching of hashes. A hash is retained when its
+ * mixed value falls in the bottom <code>1/scale</code> of the 64-bit range, so the
+ * same words are kept for every sample and the number of shared retained words
+ * multiplied by the scale estimates the number of shared words. The size of each
+ * sketch is proportional to the number of distinct words in the sample.
+ */
+public final class FracMinHash {
+
+  private final long mScale;
+
+  private final long mThreshold;
+
+  /**
+   * @param scale one in <code>scale</code> hashes is retained on average, 1 retains every hash.
+   */
+  public FracMinHash(final long scale) {
+    if (scale < 1) {
+      throw new IllegalArgumentException("Invalid scale: " + scale);
+    }
+    mScale = scale;
+    // Unsigned value of 2^64 / scale, with a scale of one retaining everything
+    mThreshold = scale == 1 ? -1L : Long.divideUnsigned(-1L, scale);
+  }
+
+  /**
+   * @return the scale factor of this sketch.
+   */
+  public long scale() {
+    return mScale;
+  }
+
+  /**
+   * Test if a hash belongs to the sketch.
+   * @param hash the hash (for example a packed word).
+   * @return true if the hash should be retained.
+   */
+  public boolean keep(final long hash) {
+    return mScale == 1 || Long.compareUnsigned(mix(hash), mThreshold) <= 0;
+  }
+
+  /**
+   * Convert counts of shared retained hashes into estimates of the shared counts
+   * of the original sets.
+   * @param matrix matrix of counts from the retained hashes, updated in place.
+   */
+  public void estimate(final SimilarityMatrix matrix) {
+    if (mScale != 1) {
+      matrix.multiply(mScale);
+    }
+  }
+
+  /**
+   * Bijective 64-bit mixing function (the MurmurHash3 finalizer), used because packed
+   * words are far from uniformly distributed.
+   * @param hash value to be mixed.
+   * @return the mixed value.
+   */
+  static long mix(final long hash) {
+    long h = hash;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
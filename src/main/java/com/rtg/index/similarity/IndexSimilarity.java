@@ -29,10 +29,14 @@
  */
 package com.rtg.index.similarity;
 
+import java.io.IOException;
+
 import com.rtg.index.Finder;
 import com.rtg.index.IndexCompressed;
 import com.rtg.index.IndexFilterMethod;
 import com.rtg.index.params.CreateParams;
+import com.rtg.util.SimpleThreadPool;
+import com.rtg.util.diagnostic.Diagnostic;
 
 /**
  */
@@ -69,39 +73,105 @@ public final class IndexSimilarity extends IndexCompressed {
    * @throws IllegalStateException if index has not been frozen.
    */
   public SimilarityMatrix similarity(long numSequences) {
+    return similarity(numSequences, 1);
+  }
+
+  /**
+   * Create a self-similarity matrix for the sequences in the index. When more than one thread is used,
+   * the buckets of the index are partitioned into ranges containing similar numbers of values, each
+   * thread accumulates a partial matrix for its range, and the partial matrices are summed.
+   * @param numSequences total number of sequences
+   * @param threads maximum number of threads to use
+   * @return the similarity matrix.
+   * @throws IllegalStateException if index has not been frozen.
+   */
+  public SimilarityMatrix similarity(long numSequences, int threads) {
     if (mState != IndexState.FROZEN) {
       throw new IllegalStateException();
     }
-    if (mSimilaritySorter == null) {
-      mSimilaritySorter = new SimilaritySorter(maxHashCount(), mSingleton);
+    final long buckets = mInitialPositionLength - 2;
+    final int numThreads = (int) Math.min(Math.min(threads, maxPartialMatrices(numSequences)), Math.max(1, buckets));
+    if (numThreads <= 1) {
+      if (mSimilaritySorter == null) {
+        mSimilaritySorter = new SimilaritySorter(maxHashCount(), mSingleton);
+      }
+      final SimilarityMatrix matrix = new SimilarityMatrix(numSequences);
+      similarity(mSimilaritySorter, matrix, 0, buckets);
+      return matrix;
+    }
+    Diagnostic.userLog("Computing similarity using " + numThreads + " threads");
+    final SimilarityMatrix[] matrices = new SimilarityMatrix[numThreads];
+    final SimpleThreadPool sp = new SimpleThreadPool(numThreads, "Similarity", true);
+    long start = 0;
+    for (int t = 0; t < numThreads; ++t) {
+      final long end = t == numThreads - 1 ? buckets : Math.max(start, bucketContaining(mNumValues * (t + 1) / numThreads));
+      final long lo = start;
+      final int part = t;
+      sp.execute(() -> {
+        final SimilarityMatrix matrix = new SimilarityMatrix(numSequences);
+        similarity(new SimilaritySorter(maxHashCount(), mSingleton), matrix, lo, end);
+        matrices[part] = matrix;
+      });
+      start = end;
+    }
+    try {
+      sp.terminate();
+    } catch (final IOException e) {
+      throw new IllegalStateException("Similarity computation should not throw IOException", e);
     }
-    final SimilarityMatrix matrix = new SimilarityMatrix(numSequences);
+    for (int t = 1; t < numThreads; ++t) {
+      matrices[0].add(matrices[t]);
+      matrices[t] = null;
+    }
+    return matrices[0];
+  }
+
+  // Each partial matrix is a full triangular matrix, so limit the number in use to half the available memory
+  private static long maxPartialMatrices(long numSequences) {
+    final Runtime rt = Runtime.getRuntime();
+    final long available = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+    final long matrixBytes = Math.max(1, numSequences * (numSequences + 1) / 2 * 8);
+    return Math.max(1, available / 2 / matrixBytes);
+  }
+
+  // Smallest bucket whose values start at or after the given value position
+  private long bucketContaining(long valuePosition) {
     long lo = 0;
-    for (long p = 0; p < mInitialPositionLength - 2; ++p) {
+    long hi = mInitialPositionLength - 2;
+    while (lo < hi) {
+      final long mid = (lo + hi) >>> 1;
+      if (mInitialPosition.get(mid) < valuePosition) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  // Accumulate similarity for all hashes in buckets from start (inclusive) to end (exclusive)
+  private void similarity(final SimilaritySorter sorter, final SimilarityMatrix matrix, final long start, final long end) {
+    long lo = start == 0 ? 0 : mInitialPosition.get(start);
+    for (long p = start; p < end; ++p) {
       final long hi = mInitialPosition.get(p + 1);
       for (long i = lo; i < hi;) {
-      final long hash = mHash.get(i);
-      final int seq = (int) mValue.get(i);
-      //System.err.println(" i=" + i + " seq=" + seq + " hash=" + hash);
-      mSimilaritySorter.add(seq);
-      ++i;
-      if (i >= mNumValues) {
-        mSimilaritySorter.similarity(matrix);
-        //System.err.println(mSimilaritySorter.toString());
-        mSimilaritySorter.reset();
-        break;
+        final long hash = mHash.get(i);
+        final int seq = (int) mValue.get(i);
+        sorter.add(seq);
+        ++i;
+        if (i >= mNumValues) {
+          sorter.similarity(matrix);
+          sorter.reset();
+          break;
+        }
+        if (hash != mHash.get(i)) {
+          sorter.similarity(matrix);
+          sorter.reset();
+        }
       }
-      if (hash != mHash.get(i)) {
-        mSimilaritySorter.similarity(matrix);
-        //System.err.println(mSimilaritySorter.toString());
-        mSimilaritySorter.reset();
-      }
-    }
-      mSimilaritySorter.similarity(matrix);
-      //System.err.println(mSimilaritySorter.toString());
-      mSimilaritySorter.reset();
+      sorter.similarity(matrix);
+      sorter.reset();
       lo = hi;
     }
-    return matrix;
   }
 }
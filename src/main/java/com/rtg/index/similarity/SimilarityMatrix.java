@@ -100,6 +100,38 @@ public class SimilarityMatrix extends IntegralAbstract {
     }
   }
 
+  /**
+   * Add all the counts from another matrix of the same size to this matrix.
+   * @param other matrix whose counts are added.
+   */
+  public void add(final SimilarityMatrix other) {
+    if (other.mLength != mLength) {
+      throw new IllegalArgumentException("Matrix sizes differ: " + mLength + " " + other.mLength);
+    }
+    for (int i = 0; i < mLength; ++i) {
+      final double[] row = mCounts[i];
+      final double[] otherRow = other.mCounts[i];
+      for (int j = 0; j < row.length; ++j) {
+        row[j] += otherRow[j];
+      }
+    }
+  }
+
+  /**
+   * Multiply all the counts in this matrix by a constant.
+   * @param factor the multiplier (&gt;= 0).
+   */
+  public void multiply(final double factor) {
+    if (factor < 0) {
+      throw new IllegalArgumentException("Invalid factor: " + factor);
+    }
+    for (final double[] row : mCounts) {
+      for (int j = 0; j < row.length; ++j) {
+        row[j] *= factor;
+      }
+    }
+  }
+
   /**
    * Get count taking into account commutativity of matrix.
    * @param a first index.
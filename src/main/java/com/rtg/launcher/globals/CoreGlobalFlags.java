@@ -84,6 +84,10 @@ public class CoreGlobalFlags extends GlobalFlagsInitializer {
   public static final String VARIANT_POPULATION_PRIORS_MIN_AF = "com.rtg.variant.bayes.multisample.population-priors-min-af";
   /** The maximum number of hypotheses that can comfortably be handled by the complex caller */
   public static final String COMPLEX_CALLER_MAX_HYPOTH_FLAG = "com.rtg.variant.bayes.multisample.ComplexCaller.max-hypoth";
+  /** The maximum number of read versus hypothesis scores cached by the complex caller within a chunk, 0 to disable */
+  public static final String COMPLEX_CALLER_SCORE_CACHE_SIZE = "com.rtg.variant.bayes.multisample.ComplexCaller.score-cache-size";
+  /** If true, complex evidence scoring reuses all-paths rows across hypotheses that share a prefix */
+  public static final String COMPLEX_CALLER_SHARED_PREFIX = "com.rtg.variant.bayes.EvidenceComplex.shared-prefix";
   /** Complex region extraction include indel lengths in interesting separation */
   public static final String COMPLEX_REGION_INDEL_EXTENSION = "com.rtg.variant.region-indel-extension";
   /** Complex region extraction maximum unit size looked for by <code>SimpleRepeatMeasurer</code>, e.g. 3-mer repeats */
@@ -112,6 +116,16 @@ public class CoreGlobalFlags extends GlobalFlagsInitializer {
   public static final String FAMILY_CALLER_FALLBACK_FLAG = "com.rtg.variant.bayes.multisample.FamilyCaller.fb-fallback";
   /** If true perform early exit of family caller when enough precision is reached */
   public static final String FAMILY_CALLER_SORTED_HYPOTHESES = "com.rtg.variant.bayes.multisample.FamilyPosterior.sorted-hypotheses";
+  /** If true compute family posteriors using precomputed Mendelian transmission tables */
+  public static final String FAMILY_CALLER_TABULATED = "com.rtg.variant.bayes.multisample.FamilyPosterior.tabulated";
+  /** If true evaluate pedigree forward backward over blocks of positions using primitive message arrays rather than generic factors */
+  public static final String FAMILY_CALLER_BATCH_FORWARD_BACKWARD = "com.rtg.variant.bayes.multisample.forwardbackward.batch-forward-backward";
+  /** If true evaluate lineage forward backward using primitive per-position message arrays rather than generic factors */
+  public static final String LINEAGE_BATCH_FORWARD_BACKWARD = "com.rtg.variant.bayes.multisample.lineage.batch-forward-backward";
+  /** If true population EM starts from the allele frequencies of the calls at the previous compatible site of the same chunk */
+  public static final String POPULATION_EM_WARM_START = "com.rtg.variant.bayes.multisample.population.EmAlgorithm.warm-start";
+  /** If true population EM stops once the summed call posterior stops changing, even if some calls are still changing */
+  public static final String POPULATION_EM_EARLY_EXIT = "com.rtg.variant.bayes.multisample.population.EmAlgorithm.early-exit";
   /** Treat bases with phred below the minimum base quality as quality 2*/
   public static final String MIN_BASE_QUALITY_AS_TWO = "com.rtg.variant.VariantAlignmentRecord.min-bq-2";
   /** Minimum count required in a calibration covariate set before it will be used */
@@ -182,7 +196,9 @@ public class CoreGlobalFlags extends GlobalFlagsInitializer {
     registerFlag(VARIANT_POPULATION_PRIORS_MIN_AF, Double.class, 0.01);
 
     // Complex caller
-    registerFlag(COMPLEX_CALLER_MAX_HYPOTH_FLAG, Integer.class, 20);
+    registerFlag(COMPLEX_CALLER_MAX_HYPOTH_FLAG, Integer.class, 40);
+    registerFlag(COMPLEX_CALLER_SCORE_CACHE_SIZE, Integer.class, 20000);
+    registerFlag(COMPLEX_CALLER_SHARED_PREFIX, Boolean.class, Boolean.TRUE);
     registerFlag(COMPLEX_REGION_INDEL_EXTENSION);
     registerFlag(COMPLEX_REGION_SIMPLE_REPEAT_LIMIT, Integer.class, 30);
     registerFlag(COMPLEX_REGION_SIMPLE_REPEAT_IMPL, String.class, "default");
@@ -199,6 +215,11 @@ public class CoreGlobalFlags extends GlobalFlagsInitializer {
     registerFlag(CALLER_N_MIN_DEPTH, Integer.class, 5);
     registerFlag(FAMILY_CALLER_FALLBACK_FLAG, Boolean.class, Boolean.FALSE);
     registerFlag(FAMILY_CALLER_SORTED_HYPOTHESES, Boolean.class, Boolean.TRUE);
+    registerFlag(FAMILY_CALLER_TABULATED, Boolean.class, Boolean.TRUE);
+    registerFlag(FAMILY_CALLER_BATCH_FORWARD_BACKWARD, Boolean.class, Boolean.TRUE);
+    registerFlag(LINEAGE_BATCH_FORWARD_BACKWARD, Boolean.class, Boolean.TRUE);
+    registerFlag(POPULATION_EM_WARM_START, Boolean.class, Boolean.FALSE);
+    registerFlag(POPULATION_EM_EARLY_EXIT, Boolean.class, Boolean.FALSE);
     registerFlag(MIN_BASE_QUALITY_AS_TWO, Boolean.class, Boolean.FALSE);
     registerFlag(QUALITY_CALIBRATION_MIN_EVIDENCE, Integer.class, 10);
     registerFlag(QUALITY_CALIBRATION_COVARIATE_INTERSECTION, Boolean.class, Boolean.FALSE);
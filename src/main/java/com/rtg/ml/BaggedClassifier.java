@@ -81,6 +81,10 @@ final class BaggedClassifier implements PredictClassifier {
     }
   }
 
+  PredictClassifier[] getClassifiers() {
+    return mClassifiers;
+  }
+
   @Override
   public double predict(double[] instance) {
     double prob = 0;
@@ -180,6 +180,34 @@ public final class BinarySplitter {
     return split(instance[mAttributeIndex]);
   }
 
+  /**
+   * @return the index of the attribute considered by this splitter
+   */
+  int getAttributeIndex() {
+    return mAttributeIndex;
+  }
+
+  /**
+   * @return the encoded value at which the split occurs
+   */
+  double getSplitValue() {
+    return mSplitValue;
+  }
+
+  /**
+   * @return true if the split is an ordered comparison against the split value
+   */
+  boolean isNumeric() {
+    return mNumeric;
+  }
+
+  /**
+   * @return true if the split separates missing values from present values
+   */
+  boolean isSplitMissing() {
+    return mSplitMissing;
+  }
+
   Direction split(double splitValue) {
     if (mSplitMissing) {
       return Attribute.isMissingValue(splitValue) ? Direction.LEFT : Direction.RIGHT;
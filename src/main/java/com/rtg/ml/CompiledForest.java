@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.ml;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Inference-only form of binary trees and bags of binary trees. All tree nodes are packed
+ * into parallel primitive arrays laid out in pre-order, so that the left child of a node
+ * immediately follows it. Predictions are identical to those of the source classifier,
+ * which is retained for saving and display.
+ */
+public final class CompiledForest implements PredictClassifier {
+
+  private static final byte LEAF = 0;
+  private static final byte NUMERIC = 1;
+  private static final byte NOMINAL = 2;
+  private static final byte SPLIT_MISSING = 3;
+
+  /**
+   * Compile the supplied classifier if it consists only of binary trees, or a single bag of them.
+   * @param classifier the classifier to compile
+   * @return the compiled classifier, or the original classifier if it cannot be compiled
+   */
+  public static PredictClassifier compile(PredictClassifier classifier) {
+    if (classifier instanceof CompiledForest) {
+      return classifier;
+    }
+    final boolean bagged = classifier instanceof BaggedClassifier;
+    final PredictClassifier[] trees = bagged ? ((BaggedClassifier) classifier).getClassifiers() : new PredictClassifier[] {classifier};
+    if (trees.length == 0) {
+      return classifier;
+    }
+    int size = 0;
+    for (final PredictClassifier tree : trees) {
+      final int treeSize = countNodes(tree);
+      if (treeSize < 0) {
+        return classifier;
+      }
+      size += treeSize;
+    }
+    return new CompiledForest(classifier, trees, size, bagged);
+  }
+
+  private static int countNodes(PredictClassifier classifier) {
+    if (classifier instanceof ZeroRBuilder.ZeroRClassifier) {
+      return 1;
+    } else if (classifier instanceof BinaryTreeClassifier) {
+      final BinaryTreeClassifier tree = (BinaryTreeClassifier) classifier;
+      final int left = countNodes(tree.mLeft);
+      final int right = countNodes(tree.mRight);
+      return left < 0 || right < 0 ? -1 : 1 + left + right;
+    }
+    return -1;
+  }
+
+  private final PredictClassifier mSource;
+  private final boolean mAverage;
+  private final int[] mRoots;
+  private final byte[] mType;
+  private final int[] mAttribute;
+  private final double[] mValue; // split value for internal nodes, probability for leaves
+  private final int[] mRight;
+  private final double[] mLeftFraction;
+  private final double[] mRightFraction;
+  private int mSize = 0;
+
+  private CompiledForest(PredictClassifier source, PredictClassifier[] trees, int size, boolean average) {
+    mSource = source;
+    mAverage = average;
+    mRoots = new int[trees.length];
+    mType = new byte[size];
+    mAttribute = new int[size];
+    mValue = new double[size];
+    mRight = new int[size];
+    mLeftFraction = new double[size];
+    mRightFraction = new double[size];
+    for (int i = 0; i < trees.length; ++i) {
+      mRoots[i] = add(trees[i]);
+    }
+    assert mSize == size;
+  }
+
+  private int add(PredictClassifier classifier) {
+    final int node = mSize++;
+    if (classifier instanceof ZeroRBuilder.ZeroRClassifier) {
+      mType[node] = LEAF;
+      mValue[node] = ((ZeroRBuilder.ZeroRClassifier) classifier).getProbability();
+    } else {
+      final BinaryTreeClassifier tree = (BinaryTreeClassifier) classifier;
+      final BinarySplitter director = tree.mDirector;
+      mType[node] = director.isSplitMissing() ? SPLIT_MISSING : director.isNumeric() ? NUMERIC : NOMINAL;
+      mAttribute[node] = director.getAttributeIndex();
+      mValue[node] = director.getSplitValue();
+      mLeftFraction[node] = tree.mLeftFraction;
+      mRightFraction[node] = tree.mRightFraction;
+      add(tree.mLeft);
+      mRight[node] = add(tree.mRight);
+    }
+    return node;
+  }
+
+  /**
+   * @return the total number of nodes over all trees
+   */
+  int size() {
+    return mSize;
+  }
+
+  private double predict(int root, double[] instance) {
+    int node = root;
+    while (true) {
+      final byte type = mType[node];
+      if (type == LEAF) {
+        return mValue[node];
+      }
+      final double value = instance[mAttribute[node]];
+      if (type == SPLIT_MISSING) {
+        node = Attribute.isMissingValue(value) ? node + 1 : mRight[node];
+      } else if (Attribute.isMissingValue(value)) {
+        return mLeftFraction[node] * predict(node + 1, instance) + mRightFraction[node] * predict(mRight[node], instance);
+      } else if (type == NUMERIC) {
+        node = Double.compare(mValue[node], value) >= 0 ? node + 1 : mRight[node];
+      } else {
+        node = value == mValue[node] ? node + 1 : mRight[node];
+      }
+    }
+  }
+
+  @Override
+  public double predict(double[] instance) {
+    double prob = 0;
+    for (final int root : mRoots) {
+      prob += predict(root, instance);
+    }
+    return mAverage ? prob / mRoots.length : prob;
+  }
+
+  @Override
+  public void predict(double[][] instances, int count, double[] dest) {
+    // Tree-major order keeps each tree's nodes in cache across the batch, the per-instance
+    // summation order is the same as for single instance prediction
+    Arrays.fill(dest, 0, count, 0);
+    for (final int root : mRoots) {
+      for (int i = 0; i < count; ++i) {
+        dest[i] += predict(root, instances[i]);
+      }
+    }
+    if (mAverage) {
+      for (int i = 0; i < count; ++i) {
+        dest[i] /= mRoots.length;
+      }
+    }
+  }
+
+  @Override
+  public void save(DataOutputStream dos, Dataset data) throws IOException {
+    mSource.save(dos, data);
+  }
+
+  @Override
+  public StringBuilder toString(StringBuilder out, String indent, Dataset data) {
+    return mSource.toString(out, indent, data);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof CompiledForest && mSource.equals(((CompiledForest) obj).mSource);
+  }
+
+  @Override
+  public int hashCode() {
+    return mSource.hashCode();
+  }
+}
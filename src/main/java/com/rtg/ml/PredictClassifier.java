@@ -53,6 +53,18 @@ public interface PredictClassifier {
    */
   double predict(double[] instance);
 
+  /**
+   * Compute the probability of positive for each of a batch of instances.
+   * @param instances the instances, only the first <code>count</code> of which are used
+   * @param count number of instances to predict
+   * @param dest destination for the predictions
+   */
+  default void predict(double[][] instances, int count, double[] dest) {
+    for (int i = 0; i < count; ++i) {
+      dest[i] = predict(instances[i]);
+    }
+  }
+
   /**
    * Get a human readable representation of the classifier
    * @param out where to send the output
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.ml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.rtg.util.PortableRandom;
+import com.rtg.util.QuickSort;
+
+/**
+ * Training instances held as primitive columns for tree building. The non-missing values of
+ * each numeric attribute are sorted once, and each node of the tree under construction holds
+ * arrays of row indexes in both the original instance order and the sorted order of each numeric
+ * attribute. Splitting a node filters these arrays into its children preserving their order,
+ * so no node needs to sort its instances.
+ */
+final class PresortedDataset {
+
+  /**
+   * The rows reaching one node of a tree.
+   */
+  static final class Node {
+    private final int[] mRows;
+    private final int[][] mSorted;
+    private final double mPositiveWeight;
+    private final double mNegativeWeight;
+
+    private Node(int[] rows, int[][] sorted, double positiveWeight, double negativeWeight) {
+      mRows = rows;
+      mSorted = sorted;
+      mPositiveWeight = positiveWeight;
+      mNegativeWeight = negativeWeight;
+    }
+
+    /** @return the rows in this node, in original instance order */
+    int[] rows() {
+      return mRows;
+    }
+
+    /**
+     * @param attribute index of a numeric attribute
+     * @return the rows in this node having a value for the attribute, in ascending order of that value
+     */
+    int[] sorted(int attribute) {
+      return mSorted[attribute];
+    }
+
+    /** @return the total weight of positive rows */
+    double totalPositiveWeight() {
+      return mPositiveWeight;
+    }
+
+    /** @return the total weight of negative rows */
+    double totalNegativeWeight() {
+      return mNegativeWeight;
+    }
+
+    /** @return the total weight of all rows */
+    double totalWeight() {
+      return mNegativeWeight + mPositiveWeight;
+    }
+  }
+
+  private final Attribute[] mAttributes;
+  private final double[][] mColumns; // Attribute values, indexed by attribute then instance
+  private final boolean[] mPositive; // Indexed by instance
+  // A row is an instance with a weight. Rows are duplicated when sent down both branches of a split
+  private int[] mInstance;
+  private double[] mWeight;
+  private int mNumRows;
+  // Destination rows in the left and right children of the node being split, or -1
+  private int[] mLeft;
+  private int[] mRight;
+
+  /**
+   * Convert a dataset into columns, sorting each numeric attribute.
+   * @param dataset the training instances
+   */
+  PresortedDataset(Dataset dataset) {
+    mAttributes = dataset.getAttributes();
+    final ArrayList<Instance> instances = dataset.getInstances();
+    final int size = instances.size();
+    mColumns = new double[mAttributes.length][size];
+    mPositive = new boolean[size];
+    mInstance = new int[size];
+    mWeight = new double[size];
+    mLeft = new int[size];
+    mRight = new int[size];
+    for (int i = 0; i < size; ++i) {
+      final Instance inst = instances.get(i);
+      final double[] values = inst.instance();
+      for (int a = 0; a < mAttributes.length; ++a) {
+        mColumns[a][i] = values[a];
+      }
+      mPositive[i] = inst.isPositive();
+      mInstance[i] = i;
+      mWeight[i] = inst.weight();
+    }
+    mNumRows = size;
+  }
+
+  /**
+   * @param dataset the dataset these columns were created from
+   * @return the node containing every instance
+   */
+  Node root(Dataset dataset) {
+    final int[] rows = new int[mNumRows];
+    for (int i = 0; i < rows.length; ++i) {
+      rows[i] = i;
+    }
+    final int[][] sorted = new int[mAttributes.length][];
+    for (int a = 0; a < mAttributes.length; ++a) {
+      if (mAttributes[a].getDataType().isNumeric()) {
+        final double[] column = mColumns[a];
+        int n = 0;
+        final int[] present = new int[rows.length];
+        for (final int row : rows) {
+          if (!Attribute.isMissingValue(column[row])) {
+            present[n++] = row;
+          }
+        }
+        sorted[a] = Arrays.copyOf(present, n);
+        QuickSort.sort(new RowSortProxy(sorted[a], column));
+      }
+    }
+    return new Node(rows, sorted, dataset.totalPositiveWeight(), dataset.totalNegativeWeight());
+  }
+
+  /** @return the attributes of the dataset */
+  Attribute[] attributes() {
+    return mAttributes;
+  }
+
+  /**
+   * @param attribute attribute index
+   * @param row row index
+   * @return the value of the attribute for the row
+   */
+  double value(int attribute, int row) {
+    return mColumns[attribute][mInstance[row]];
+  }
+
+  /**
+   * @param row row index
+   * @return true if the row is a positive example
+   */
+  boolean isPositive(int row) {
+    return mPositive[mInstance[row]];
+  }
+
+  /**
+   * @param row row index
+   * @return the weight of the row
+   */
+  double weight(int row) {
+    return mWeight[row];
+  }
+
+  /**
+   * Split the rows of a node into two children. Rows that cannot be directed are
+   * either dropped, assigned to a randomly selected child, or sent to both children
+   * with weights in proportion to the fraction of rows going left.
+   * @param node the node to split
+   * @param director how to choose
+   * @param leftFraction fraction of missing value rows to assign to the left child
+   * @param random if non-null, use stochastic selection of child for missing values
+   * @param both true if missing value rows should be sent to both children
+   * @param children receives the left and right children
+   * @return weight of the smaller child
+   */
+  double split(Node node, BinarySplitter director, double leftFraction, PortableRandom random, boolean both, Node[] children) {
+    double leftWeight = 0;
+    double rightWeight = 0;
+    int leftSize = 0;
+    int rightSize = 0;
+    final int attribute = director.getAttributeIndex();
+    for (final int row : node.mRows) {
+      BinarySplitter.Direction d = director.split(value(attribute, row));
+      if (d == BinarySplitter.Direction.MISSING && random != null) {
+        if (Double.isNaN(leftFraction)) {
+          throw new IllegalStateException("leftFraction should be set");
+        }
+        d = random.nextDouble() <= leftFraction ? BinarySplitter.Direction.LEFT : BinarySplitter.Direction.RIGHT;
+      }
+      final double w = mWeight[row];
+      switch (d) {
+        case LEFT:
+          leftWeight += w;
+          mLeft[row] = row;
+          mRight[row] = -1;
+          ++leftSize;
+          break;
+        case RIGHT:
+          rightWeight += w;
+          mLeft[row] = -1;
+          mRight[row] = row;
+          ++rightSize;
+          break;
+        case MISSING:
+        default:
+          if (both) {
+            assert !Double.isNaN(leftFraction);
+            final double lWeight = leftFraction * w;
+            final double rWeight = (1.0 - leftFraction) * w;
+            leftWeight += lWeight;
+            rightWeight += rWeight;
+            final int copy = addRow(mInstance[row], rWeight);
+            mWeight[row] = lWeight;
+            mLeft[row] = row;
+            mRight[row] = copy;
+            ++leftSize;
+            ++rightSize;
+          } else {
+            mLeft[row] = -1;
+            mRight[row] = -1;
+          }
+          break;
+      }
+    }
+    children[0] = child(node, mLeft, leftSize);
+    children[1] = child(node, mRight, rightSize);
+    return Math.min(leftWeight, rightWeight);
+  }
+
+  private int addRow(int instance, double weight) {
+    if (mNumRows == mInstance.length) {
+      final int capacity = mNumRows + (mNumRows >> 1) + 1;
+      mInstance = Arrays.copyOf(mInstance, capacity);
+      mWeight = Arrays.copyOf(mWeight, capacity);
+      mLeft = Arrays.copyOf(mLeft, capacity);
+      mRight = Arrays.copyOf(mRight, capacity);
+    }
+    mInstance[mNumRows] = instance;
+    mWeight[mNumRows] = weight;
+    return mNumRows++;
+  }
+
+  private Node child(Node parent, int[] destination, int size) {
+    final int[] rows = filter(parent.mRows, destination, size);
+    double pos = 0;
+    double neg = 0;
+    for (final int row : rows) {
+      if (isPositive(row)) {
+        pos += mWeight[row];
+      } else {
+        neg += mWeight[row];
+      }
+    }
+    final int[][] sorted = new int[mAttributes.length][];
+    for (int a = 0; a < sorted.length; ++a) {
+      if (parent.mSorted[a] != null) {
+        sorted[a] = filter(parent.mSorted[a], destination, -1);
+      }
+    }
+    return new Node(rows, sorted, pos, neg);
+  }
+
+  // Map rows to their destination, dropping those without one
+  private static int[] filter(int[] rows, int[] destination, int size) {
+    final int[] res = new int[size >= 0 ? size : rows.length];
+    int n = 0;
+    for (final int row : rows) {
+      final int dest = destination[row];
+      if (dest >= 0) {
+        res[n++] = dest;
+      }
+    }
+    return n == res.length ? res : Arrays.copyOf(res, n);
+  }
+
+  // Orders rows by attribute value, ties broken by row index to keep the original instance order
+  private static final class RowSortProxy implements QuickSort.SortProxy {
+    private final int[] mRows;
+    private final double[] mColumn;
+
+    RowSortProxy(int[] rows, double[] column) {
+      mRows = rows;
+      mColumn = column;
+    }
+
+    @Override
+    public int compare(long index1, long index2) {
+      final int r1 = mRows[(int) index1];
+      final int r2 = mRows[(int) index2];
+      final double a1 = mColumn[r1];
+      final double a2 = mColumn[r2];
+      if (a1 != a2) {
+        return Double.compare(a1, a2);
+      }
+      return Integer.compare(r1, r2);
+    }
+
+    @Override
+    public long length() {
+      return mRows.length;
+    }
+
+    @Override
+    public void swap(long index1, long index2) {
+      final int t = mRows[(int) index1];
+      mRows[(int) index1] = mRows[(int) index2];
+      mRows[(int) index2] = t;
+    }
+  }
+}
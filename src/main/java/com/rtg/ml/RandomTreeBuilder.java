@@ -67,6 +67,8 @@ public class RandomTreeBuilder implements BuildClassifier, Seedable {
   public static final String PROP_SPLIT_MISSING = PROP_PREFIX + "split-missing";
   /** Property to set the random number seed */
   public static final String PROP_SEED = PROP_PREFIX + "seed";
+  /** Property to set whether to build from attribute columns sorted once up front, rather than sorting at every node */
+  public static final String PROP_PRESORTED = PROP_PREFIX + "presorted";
 
   private enum PropagateMissingType {
     /**Don't send missing value instances into sub-trees */
@@ -94,6 +96,8 @@ public class RandomTreeBuilder implements BuildClassifier, Seedable {
   private boolean mEntropyMissing = false;
   /** Consider a missing vs non-missing split */
   private boolean mSplitMissing = false;
+  /** Build from presorted attribute columns. Produces the same tree as sorting at each node */
+  private boolean mPresorted = true;
 
   
   private PredictClassifier mClassifier = null;
@@ -104,7 +108,12 @@ public class RandomTreeBuilder implements BuildClassifier, Seedable {
     final PortableRandom random = new PortableRandom(mSeed);
     mActualNumAttributes = (mNumAttributes == 0) ? (int) (Math.log(dataset.getAttributes().length) / Math.log(2) + 1) : mNumAttributes;
     Diagnostic.userLog(toString());
-    mClassifier = buildSubtree(random, dataset, 0);
+    if (mPresorted) {
+      final PresortedDataset columns = new PresortedDataset(dataset);
+      mClassifier = buildSubtree(random, columns, columns.root(dataset), 0);
+    } else {
+      mClassifier = buildSubtree(random, dataset, 0);
+    }
   }
 
   private static final int POS = 0;
@@ -263,6 +272,136 @@ public class RandomTreeBuilder implements BuildClassifier, Seedable {
     }
   }
 
+  // Equivalent to buildSubtree over instances, but working from columns sorted once for the whole tree.
+  // Weights are accumulated in the same order, so the resulting tree is identical.
+  private PredictClassifier buildSubtree(PortableRandom random, PresortedDataset data, PresortedDataset.Node node, int currentDepth) {
+
+    if ((node.totalWeight() < mMinInstances)
+        || (mMaxDepth > 0 && currentDepth >= mMaxDepth)
+        || (node.totalPositiveWeight() == 0)
+        || (node.totalNegativeWeight() == 0)) {
+      return new ZeroRBuilder.ZeroRClassifier(node.totalPositiveWeight(), node.totalNegativeWeight());
+    }
+
+    final Attribute[] attributes = data.attributes();
+    BinarySplitter bestDirector = null;
+    double bestFrac = Double.NaN;
+    final double[][] priorDist = new double[2][2];
+    priorDist[OUT][POS] = node.totalPositiveWeight();
+    priorDist[OUT][NEG] = node.totalNegativeWeight();
+    double bestEntropy = entropy(priorDist) - mSplitCost;
+    for (int attribute : getAttributes(random, attributes.length, mActualNumAttributes)) {
+      final Attribute att = attributes[attribute];
+      final MlDataType dataType = att.getDataType();
+      if (dataType.isNumeric()) {
+
+        // Initial counts over rows with non-missing attribute value
+        final double[][] dist = new double[2][2];
+        for (final int row : node.rows()) {
+          if (!Attribute.isMissingValue(data.value(attribute, row))) {
+            dist[OUT][data.isPositive(row) ? POS : NEG] += data.weight(row);
+          }
+        }
+        final double missingPos = node.totalPositiveWeight() - dist[OUT][POS];
+        final double missingNeg = node.totalNegativeWeight() - dist[OUT][NEG];
+        if (mSplitMissing) {
+          assert mEntropyMissing;
+          final double entropy = entropy(dist) + entropy(missingPos, missingNeg);
+          if (entropy < bestEntropy) {
+            bestDirector = new BinarySplitter(att.getName(), attribute, Double.NaN, dataType);
+            bestEntropy = entropy;
+          }
+        }
+
+        // Scan through and find the best numeric split point
+        double prevValue = Double.NaN;
+        for (final int row : node.sorted(attribute)) {
+          final double currentValue = data.value(attribute, row);
+          if (prevValue != currentValue && !Attribute.isMissingValue(prevValue)) {
+            final double entropy = mEntropyMissing ? entropy(dist, missingPos, missingNeg) : entropy(dist);
+            if (entropy < bestEntropy) {
+              final double splitPoint = getSplitPoint(dataType, prevValue, currentValue);
+              bestDirector = new BinarySplitter(att.getName(), attribute, splitPoint, dataType);
+              bestFrac = in(dist) / total(dist);
+              bestEntropy = entropy;
+            }
+          }
+          final double weight = data.weight(row);
+          if (data.isPositive(row)) {
+            dist[IN][POS] += weight;
+            dist[OUT][POS] -= weight;
+          } else {
+            dist[IN][NEG] += weight;
+            dist[OUT][NEG] -= weight;
+          }
+          prevValue = currentValue;
+        }
+
+      } else { // Nominal attributes
+        final DoubleMultiSet<Double> posCounts = new DoubleMultiSet<>();
+        final DoubleMultiSet<Double> negCounts = new DoubleMultiSet<>();
+        for (final int row : node.rows()) {
+          final double attValue = data.value(attribute, row);
+          if (data.isPositive(row)) {
+            posCounts.add(Attribute.isMissingValue(attValue) ? null : attValue, data.weight(row));
+          } else {
+            negCounts.add(Attribute.isMissingValue(attValue) ? null : attValue, data.weight(row));
+          }
+        }
+        final double[][] dist = new double[2][2];
+        final double missingPos = posCounts.get(null);
+        final double missingNeg = negCounts.get(null);
+        if (mSplitMissing) {
+          assert mEntropyMissing;
+          final double entropy = entropy(dist) + entropy(missingPos, missingNeg);
+          if (entropy < bestEntropy) {
+            bestDirector = new BinarySplitter(att.getName(), attribute, Double.NaN, dataType);
+            bestEntropy = entropy;
+          }
+        }
+        final double posNonMissing = node.totalPositiveWeight() - missingPos;
+        final double negNonMissing = node.totalNegativeWeight() - missingNeg;
+        final int nominalSize = att.nominalSize();
+        double bestKey = Double.NaN;
+        for (int intKey = 0; intKey < nominalSize; ++intKey) {
+          final Double key = (double) intKey;
+          final double numpos = posCounts.get(key);
+          final double numneg = negCounts.get(key);
+          dist[IN][POS] = numpos;
+          dist[IN][NEG] = numneg;
+          dist[OUT][POS] = posNonMissing - numpos;
+          dist[OUT][NEG] = negNonMissing - numneg;
+
+          final double entropy = mEntropyMissing ? entropy(dist, missingPos, missingNeg) : entropy(dist);
+          if ((entropy < bestEntropy)
+            || (entropy == bestEntropy && !Double.isNaN(bestKey) && att.compare(key, bestKey) < 0)) {
+            bestDirector = new BinarySplitter(att.getName(), attribute, key, dataType);
+            bestFrac = in(dist) / total(dist);
+            bestEntropy = entropy;
+            bestKey = key;
+          }
+        }
+      }
+    }
+
+    if (bestDirector == null) {
+      return new ZeroRBuilder.ZeroRClassifier(node.totalPositiveWeight(), node.totalNegativeWeight());
+    }
+    final long seed = random.nextLong();
+    final PresortedDataset.Node[] children = new PresortedDataset.Node[2];
+    final double minWeight = data.split(node, bestDirector, bestFrac, mPropagateMissing == PropagateMissingType.RANDOM ? new PortableRandom(seed) : null, mPropagateMissing == PropagateMissingType.BOTH, children);
+    if (minWeight <= ZeroRClassifier.MINIMUM_WEIGHT) {
+      Diagnostic.userLog("Unexpected empty branch during tree construction, using 0R instead of branching");
+      return new ZeroRBuilder.ZeroRClassifier(node.totalPositiveWeight(), node.totalNegativeWeight());
+    }
+    final double leftSize = children[0].totalWeight();
+    final double rightSize = children[1].totalWeight();
+    final PredictClassifier left = buildSubtree(random, data, children[0], currentDepth + 1);
+    children[0] = null;
+    final PredictClassifier right = buildSubtree(random, data, children[1], currentDepth + 1);
+    return new BinaryTreeClassifier(bestDirector, left, right, leftSize / (leftSize + rightSize));
+  }
+
   static double getSplitPoint(MlDataType dataType, double prevValue, double currentValue) {
     // WARNING: The treatment of integer attributes here is not type safe and
     // makes assumptions about how they are encoded as doubles.
@@ -423,6 +562,7 @@ public class RandomTreeBuilder implements BuildClassifier, Seedable {
     mEntropyMissing = Boolean.parseBoolean(props.getProperty(PROP_ENTROPY_MISSING, Boolean.TRUE.toString()));
     mPropagateMissing = PropagateMissingType.valueOf(props.getProperty(PROP_PROPAGATE_MISSING, PropagateMissingType.RANDOM.toString()).toUpperCase(Locale.ROOT));
     mSplitMissing = Boolean.parseBoolean(props.getProperty(PROP_SPLIT_MISSING, Boolean.TRUE.toString()));
+    mPresorted = Boolean.parseBoolean(props.getProperty(PROP_PRESORTED, Boolean.TRUE.toString()));
   }
 
   @Override
@@ -435,7 +575,8 @@ public class RandomTreeBuilder implements BuildClassifier, Seedable {
       + " " + PROP_SPLIT_COST + "=" + mSplitCost
       + " " + PROP_ENTROPY_MISSING + "=" + mEntropyMissing
       + " " + PROP_PROPAGATE_MISSING + "=" + mPropagateMissing.name().toLowerCase(Locale.ROOT)
-      + " " + PROP_SPLIT_MISSING + "=" + mSplitMissing;
+      + " " + PROP_SPLIT_MISSING + "=" + mSplitMissing
+      + " " + PROP_PRESORTED + "=" + mPresorted;
   }
 
   @Override
@@ -140,6 +140,10 @@ public class ZeroRBuilder implements BuildClassifier {
       return mProb;
     }
 
+    double getProbability() {
+      return mProb;
+    }
+
     @Override
     public StringBuilder toString(StringBuilder out, String indent, Dataset data) {
       out.append(indent).append("0R: ");
@@ -185,7 +185,9 @@ public abstract class AbstractMulticoreFilterConcat {
     pool.enableBasicProgress(numIntermediateFiles);
     final File[] intermediate = new File[numIntermediateFiles];
     final File[] intermediateIndexes = createIndex ? new File[numIntermediateFiles] : null;
-    final File[] intermediateCal = calibrate ? new File[numIntermediateFiles] : null;
+    // Unless merging is delayed the calibration is accumulated in memory, otherwise it goes to a file alongside each intermediate file
+    final File[] intermediateCal = calibrate && delayMerge ? new File[numIntermediateFiles] : null;
+    final Calibrator[] calibrators = calibrate && !delayMerge ? new Calibrator[numIntermediateFiles] : null;
     //    System.err.println("temp files: " + java.util.Arrays.toString(tempFiles));
     final Range[] regionRanges = groupRegions(tempFiles.length, numIntermediateFiles);
 
@@ -200,12 +202,15 @@ public abstract class AbstractMulticoreFilterConcat {
       final boolean intFilesCompress = mParams.outputParams().bam() || samGzipIntFiles;
       final OutputWrapper outWrapper = createStreams(numIntermediateFiles, intermediate, intermediateIndexes, intFilesCompress, createIndex, i);
       final OutputStream intCalStream;
-      if (calibrate) {
+      if (intermediateCal != null) {
         intermediateCal[i] = new File(intermediate[i].getParent(), intermediate[i].getName() + CommonFlags.RECALIBRATE_EXTENSION);
         intCalStream = FileUtils.createOutputStream(intermediateCal[i], false);
       } else {
         intCalStream = null;
       }
+      if (calibrators != null) {
+        calibrators[i] = AbstractSamResultsFilter.makeCalibrator(header, referenceRegions, mParams.searchParams().reader());
+      }
       final boolean writeHeader = i == 0;
       final AbstractSamResultsFilter filter = makeFilter();
 
@@ -217,7 +222,7 @@ public abstract class AbstractMulticoreFilterConcat {
       filter.setWriteBogusBamHeader(mParams.outputParams().unify() && mParams.outputParams().bam());
 
       //filter.setAddBamTerminator(mParams.outputParams().bam() && (i == numThreads - 1)); no longer required here, determined by outputstream
-      pool.execute(new SubFilter(filter, outWrapper, intCalStream, referenceRegions, mParams.searchParams().reader().copy(), subFiles, header));
+      pool.execute(new SubFilter(filter, outWrapper, intCalStream, calibrators == null ? null : calibrators[i], referenceRegions, mParams.searchParams().reader().copy(), subFiles, header));
     }
     pool.terminate();
 
@@ -241,7 +246,7 @@ public abstract class AbstractMulticoreFilterConcat {
         Diagnostic.progress(mThreadNamePrefix + "ResultsConcat: " + ++cur + "/" + tot + " Jobs Finished");
       }
       if (calibrate) {
-        mergeCalibration(outFile, referenceRegions, intermediateCal);
+        mergeCalibration(outFile, referenceRegions, calibrators);
         Diagnostic.progress(mThreadNamePrefix + "ResultsConcat: " + ++cur + "/" + tot + " Jobs Finished");
       }
     }
@@ -265,6 +270,15 @@ public abstract class AbstractMulticoreFilterConcat {
     cal.writeToFile(outCal);
   }
 
+  static void mergeCalibration(File outFile, ReferenceRegions referenceRegions, Calibrator[] calibrators) throws IOException {
+    final File outCal = new File(outFile.getPath() + CommonFlags.RECALIBRATE_EXTENSION);
+    final Calibrator cal = new Calibrator(CovariateEnum.getCovariates(CovariateEnum.DEFAULT_COVARIATES, null), referenceRegions);
+    for (final Calibrator c : calibrators) {
+      cal.accumulate(c);
+    }
+    cal.writeToFile(outCal);
+  }
+
   static void mergeIndexes(NgsParams params, File outFile, File[] intermediateIndexes, List<Long> dataFileSizes) throws IOException {
     if (params.outputParams().bam()) {
       BamIndexMerge.mergeBamIndexFiles(indexFileName(outFile, true), Arrays.asList(intermediateIndexes), dataFileSizes);
@@ -302,16 +316,18 @@ public abstract class AbstractMulticoreFilterConcat {
     private final AbstractSamResultsFilter mFilter;
     private final OutputStream mOut;
     private final OutputStream mCalOut;
+    private final Calibrator mCalibrator;
     private final SequencesReader mTemplate;
     private final File[] mFiles;
     private final SAMFileHeader mHeader;
     private final IndexingStreamCreator.IndexRunner mIndexRunner;
     private final ReferenceRegions mRegions;
 
-    SubFilter(AbstractSamResultsFilter filter, OutputWrapper out, OutputStream calOut, ReferenceRegions referenceRegions, SequencesReader template, File[] files, SAMFileHeader header) {
+    SubFilter(AbstractSamResultsFilter filter, OutputWrapper out, OutputStream calOut, Calibrator calibrator, ReferenceRegions referenceRegions, SequencesReader template, File[] files, SAMFileHeader header) {
       mFilter = filter;
       mOut = out.mOutputStream;
       mCalOut = calOut;
+      mCalibrator = calibrator;
       mTemplate = template;
       mFiles = files;
       mHeader = header;
@@ -329,7 +345,11 @@ public abstract class AbstractMulticoreFilterConcat {
         if (mIndexRunner != null) {
           indexThread.start();
         }
-        mFilter.filterConcat(mHeader, out, calOut, mRegions, template, true, mFiles);
+        if (mCalibrator != null) {
+          mFilter.filterConcat(mHeader, out, mCalibrator, template, true, mFiles);
+        } else {
+          mFilter.filterConcat(mHeader, out, calOut, mRegions, template, true, mFiles);
+        }
       } finally {
         if (mIndexRunner != null) {
           try {
@@ -161,21 +161,50 @@ public abstract class AbstractSamResultsFilter {
    * @throws IOException if any IO errors occur
    */
   public void filterConcat(SAMFileHeader header, OutputStream destination, OutputStream calibrationDest, ReferenceRegions referenceRegions, SequencesReader template, boolean deleteTempFiles, File... inputFiles) throws IOException {
+    final Calibrator cal = template != null && calibrationDest != null ? makeCalibrator(header, referenceRegions, template) : null;
+    filterConcat(header, destination, cal, template, deleteTempFiles, inputFiles);
+    if (cal != null) {
+      cal.writeToStream(calibrationDest);
+    }
+  }
+
+  /**
+   * Create a calibrator suitable for accumulating the statistics of filtered records.
+   * @param header the sam file header
+   * @param referenceRegions restrict calibration to these regions
+   * @param template sequences reader for the template
+   * @return the calibrator
+   * @throws IOException if an error occurs reading sequence lengths from the template
+   */
+  public static Calibrator makeCalibrator(SAMFileHeader header, ReferenceRegions referenceRegions, SequencesReader template) throws IOException {
+    final Calibrator cal = new Calibrator(CovariateEnum.getCovariates(CovariateEnum.DEFAULT_COVARIATES, header), referenceRegions);
+    if (referenceRegions != null) {
+      cal.setSequenceLengths(Calibrator.getSequenceLengthMap(template, referenceRegions));
+    }
+    return cal;
+  }
+
+  /**
+   * Concatenate and filter <code>inputFiles</code>, writing the output
+   * into <code>destination</code> and accumulating calibration statistics
+   * of the output records into the supplied calibrator.
+   * It is the callers responsibility to close <code>destination</code>.
+   *
+   * @param header the sam file header
+   * @param destination output stream
+   * @param calibrator calibrator to accumulate into, may be null
+   * @param template sequences reader for the template
+   * @param deleteTempFiles delete temporary files after we are done with them
+   * @param inputFiles input files
+   * @throws IOException if any IO errors occur
+   */
+  public void filterConcat(SAMFileHeader header, OutputStream destination, Calibrator calibrator, SequencesReader template, boolean deleteTempFiles, File... inputFiles) throws IOException {
     try (SAMFileWriter samWriter = getSAMFileWriter(header, destination)) {
       if (mStatsCalculator != null) {
         mStatsCalculator.setupReadGroups(header);
       }
 
-      final CalibratingSamRecordPopulator cp;
-      if (template != null && calibrationDest != null) {
-        final Calibrator cal = new Calibrator(CovariateEnum.getCovariates(CovariateEnum.DEFAULT_COVARIATES, header), referenceRegions);
-        if (referenceRegions != null) {
-          cal.setSequenceLengths(Calibrator.getSequenceLengthMap(template, referenceRegions));
-        }
-        cp = new CalibratingSamRecordPopulator(cal, template, false);
-      } else {
-        cp = null;
-      }
+      final CalibratingSamRecordPopulator cp = template != null && calibrator != null ? new CalibratingSamRecordPopulator(calibrator, template, false) : null;
 
       int inputRecords = 0;
       int outputRecords = 0;
@@ -217,9 +246,6 @@ public abstract class AbstractSamResultsFilter {
         }
       } //for
       // timer.stopLog();
-      if (cp != null) {
-        cp.calibrator().writeToStream(calibrationDest);
-      }
 
       Diagnostic.userLog(getName() + " SAM filter outputs " + outputRecords + "/" + inputRecords + " records");
     }
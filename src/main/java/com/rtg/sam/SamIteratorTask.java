@@ -43,6 +43,7 @@ import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.diagnostic.ErrorType;
 import com.rtg.util.diagnostic.NoTalkbackSlimException;
 import com.rtg.util.diagnostic.WarningType;
+import com.rtg.util.intervals.ReferenceRanges;
 
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
@@ -66,11 +67,27 @@ public abstract class SamIteratorTask<P extends SingleMappedParams, S extends St
   protected final SequencesReader mGenomeSequences;
   protected final Map<String, Long> mTemplateNameMap;
   protected final SamFilterParams mFilterParams;
+  private final ReferenceRanges<String> mReferenceRanges;
 
   protected SamIteratorTask(final P params, final OutputStream defaultOutput, final S stats, SamFilterParams filteringParams) {
+    this(params, defaultOutput, stats, filteringParams, params.genome() == null ? null : params.genome().reader(), null);
+  }
+
+  /**
+   * Constructor for a task that reads only part of the mapped inputs, such as one
+   * sequence of a larger run that is being processed concurrently.
+   * @param params the parameters
+   * @param defaultOutput where standard output goes
+   * @param stats the statistics
+   * @param filteringParams the SAM filtering parameters
+   * @param genome reader for the template, closed when the task completes
+   * @param ranges if non-null, the explicit ranges to read from indexed inputs
+   */
+  protected SamIteratorTask(final P params, final OutputStream defaultOutput, final S stats, SamFilterParams filteringParams, SequencesReader genome, ReferenceRanges<String> ranges) {
     super(params, defaultOutput, stats, null);
-    if (params.genome() != null) {
-      mGenomeSequences = params.genome().reader();
+    mReferenceRanges = ranges;
+    if (genome != null) {
+      mGenomeSequences = genome;
 
       try {
         mTemplateNameMap = ReaderUtils.getSequenceNameMap(mGenomeSequences);
@@ -145,10 +162,10 @@ public abstract class SamIteratorTask<P extends SingleMappedParams, S extends St
       // mParam.thread returns T - 1 threads
       final SAMFileHeader header = SamUtils.getUberHeader(mGenomeSequences, mParams.mapped());
       if (mParams.ioThreads() < 1) {
-        iterator = new MultifileIterator(new SamReadingContext(mParams.mapped(), 1, mFilterParams, header, mGenomeSequences));
+        iterator = new MultifileIterator(readingContext(1, header));
       } else {
         final SingletonPopulatorFactory<SAMRecord> pf = new SingletonPopulatorFactory<>(new SamRecordPopulator());
-        final SamReadingContext context = new SamReadingContext(mParams.mapped(), mParams.ioThreads(), mFilterParams, header, mGenomeSequences);
+        final SamReadingContext context = readingContext(mParams.ioThreads(), header);
         iterator = new ThreadedMultifileIterator<>(context, pf);
       }
       try {
@@ -285,6 +302,13 @@ public abstract class SamIteratorTask<P extends SingleMappedParams, S extends St
     }
   }
 
+  private SamReadingContext readingContext(int threads, SAMFileHeader header) throws IOException {
+    if (mReferenceRanges == null) {
+      return new SamReadingContext(mParams.mapped(), threads, mFilterParams, header, mGenomeSequences);
+    }
+    return new SamReadingContext(mParams.mapped(), threads, mFilterParams, header, mGenomeSequences, mReferenceRanges);
+  }
+
   /**
    * @param genomeSequences the sequence reader
    * @param templateNameMap the template name map
@@ -78,6 +78,12 @@ public class BuildSearchParams extends ModuleParams implements Integrity {
 
     protected boolean mUniqueWords;
 
+    protected int mNumberThreads = 1;
+
+    protected boolean mFastNeighborJoining;
+
+    protected long mSketchScale = 1;
+
     /**
      * Sets the program mode.
      * @param mode program mode.
@@ -98,6 +104,36 @@ public class BuildSearchParams extends ModuleParams implements Integrity {
       return this;
     }
 
+    /**
+     * Sets the number of threads to use.
+     * @param numberThreads number of threads.
+     * @return this builder, so calls can be chained.
+     */
+    public BuildSearchParamsBuilder numberThreads(int numberThreads) {
+      mNumberThreads = numberThreads;
+      return this;
+    }
+
+    /**
+     * Use the sorted row neighbor joining implementation when building trees.
+     * @param fast true to use the faster implementation
+     * @return this builder, so calls can be chained.
+     */
+    public BuildSearchParamsBuilder fastNeighborJoining(boolean fast) {
+      mFastNeighborJoining = fast;
+      return this;
+    }
+
+    /**
+     * Sets the sketch scale, so that only one in this many words is retained.
+     * @param scale the scale factor, 1 retains all words.
+     * @return this builder, so calls can be chained.
+     */
+    public BuildSearchParamsBuilder sketchScale(long scale) {
+      mSketchScale = scale;
+      return this;
+    }
+
     /**
      * Sets the parameters for doing build.
      * @param build the build parameters.
@@ -170,6 +206,12 @@ public class BuildSearchParams extends ModuleParams implements Integrity {
 
   private final boolean mUniqueWords;
 
+  private final int mNumberThreads;
+
+  private final boolean mFastNeighborJoining;
+
+  private final long mSketchScale;
+
   /**
    * Create a set of parameters to use from the builder.
    * @param builder the builder object.
@@ -181,6 +223,9 @@ public class BuildSearchParams extends ModuleParams implements Integrity {
     mSequenceParams = builder.mSequenceParams;
     mCountParams = builder.mCountParams;
     mUniqueWords = builder.mUniqueWords;
+    mNumberThreads = builder.mNumberThreads;
+    mFastNeighborJoining = builder.mFastNeighborJoining;
+    mSketchScale = builder.mSketchScale;
     mIndexParams = builder.mIndexParams;
   }
 
@@ -282,6 +327,7 @@ public class BuildSearchParams extends ModuleParams implements Integrity {
     Exam.assertTrue(mProgramMode != null);
     Exam.assertNotNull(mBuildParams);
     Exam.assertNotNull(mCountParams);
+    Exam.assertTrue(mSketchScale >= 1);
     if (mProgramMode != null) {
       Exam.assertEquals(mProgramMode.subjectMode(), mBuildParams.sequences().mode());
     }
@@ -324,5 +370,26 @@ public class BuildSearchParams extends ModuleParams implements Integrity {
     return mUniqueWords;
   }
 
+  /**
+   * @return the number of threads to use.
+   */
+  public int numberThreads() {
+    return mNumberThreads;
+  }
+
+  /**
+   * @return true if trees should be built with the sorted row neighbor joining implementation
+   */
+  public boolean fastNeighborJoining() {
+    return mFastNeighborJoining;
+  }
+
+  /**
+   * @return the sketch scale factor, where only one in this many words is retained.
+   */
+  public long sketchScale() {
+    return mSketchScale;
+  }
+
 }
 
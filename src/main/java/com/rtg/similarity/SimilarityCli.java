@@ -42,6 +42,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,6 +58,8 @@ import com.rtg.index.params.CountParams;
 import com.rtg.index.params.CreateParams;
 import com.rtg.index.params.ParamsUtils;
 import com.rtg.index.similarity.BinaryTree;
+import com.rtg.index.similarity.FastNeighborJoining;
+import com.rtg.index.similarity.FracMinHash;
 import com.rtg.index.similarity.IndexSimilarity;
 import com.rtg.index.similarity.NeighborJoining;
 import com.rtg.index.similarity.SimilarityMatrix;
@@ -119,6 +122,8 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
   private static final String INPUT_FLAG = "input";
 
   private static final String MAX_READS_FLAG = "max-reads";
+  private static final String SKETCH_SCALE_FLAG = "sketch-scale";
+  private static final String X_FAST_NEIGHBOR_JOINING = "Xfast-neighbor-joining";
 
   static final int DEFAULT_WORD_SIZE = 20;
   static final int DEFAULT_STEP_SIZE = 1;
@@ -174,6 +179,12 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
       if (!MapFlags.validateStepAndWordSize(flags)) {
         return false;
       }
+      if (!flags.checkInRange(SKETCH_SCALE_FLAG, 1, Integer.MAX_VALUE)) {
+        return false;
+      }
+      if (!CommonFlags.validateThreads(flags)) {
+        return false;
+      }
       return true;
     }
   }
@@ -208,7 +219,10 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
     MapFlags.initWordSize(flags, "word size (Default is " + DEFAULT_WORD_SIZE + ")");
     MapFlags.initStepSize(flags, "step size (Default is " + DEFAULT_STEP_SIZE + ")");
     flags.registerOptional(UNIQUE_WORDS, "count only unique words").setCategory(CommonFlagCategories.SENSITIVITY_TUNING);
+    flags.registerOptional(SKETCH_SCALE_FLAG, Integer.class, CommonFlags.INT, "only use a hash selected sample of one in this many words, reducing memory and time at the cost of accuracy. Similarities are then estimates of the shared word counts, being the shared retained counts multiplied by this value", 1).setCategory(CommonFlagCategories.SENSITIVITY_TUNING);
     flags.registerOptional(MAX_READS_FLAG, Integer.class, CommonFlags.INT, "maximum number of reads to use from each input SDF").setCategory(CommonFlagCategories.UTILITY);
+    CommonFlags.initThreadsFlag(flags);
+    flags.registerOptional(X_FAST_NEIGHBOR_JOINING, "build the tree using sorted row neighbor joining, which is faster for many sequences").setCategory(CommonFlagCategories.UTILITY);
     flags.addRequiredSet(inFlag);
     flags.addRequiredSet(listFlag);
   }
@@ -307,6 +321,10 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
       Diagnostic.userLog("Estimated usage of memory" + StringUtils.LS + memToString(params, bufferLength));
 
       // Make all the components we need
+      final FracMinHash sketch = new FracMinHash(params.sketchScale());
+      if (sketch.scale() > 1) {
+        Diagnostic.userLog("Sketching one in " + sketch.scale() + " words");
+      }
       final IndexSimilarity index = new IndexSimilarity(params.index(), new UnfilteredFilterMethod(), params.uniqueWords(), 1);
 
       // Search the queries and write hits
@@ -317,7 +335,7 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
         Diagnostic.progress("Input for index starting");
         try (final SequencesReader reader = params.build().sequences().reader()) {
           final Pair<long[], List<String>> sdfToSimId = sdfToSimIdViaTaxId(reader);
-          final HashLoop buildLoop = makeBuild(index, params.build(), -1, sdfToSimId == null ? null : sdfToSimId.getA());
+          final HashLoop buildLoop = makeBuild(index, params.build(), -1, sdfToSimId == null ? null : sdfToSimId.getA(), sketch);
           buildLoop.execLoop(params.build().sequences(), buffer);
           index.freeze();
           Diagnostic.progress("Input for post-freeze index starting");
@@ -337,7 +355,7 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
           for (int j = 0; j < pair.getB().size(); ++j) {
             Diagnostic.progress("Input for index label \"" + pair.getA() +  "\" starting directory (" + (j + 1) + "/" + pair.getB().size() + ")");
             final ISequenceParams seqParams = pair.getB().get(j);
-            makeBuild(index, params.build(), i, null).execLoop(seqParams, buffer);
+            makeBuild(index, params.build(), i, null, sketch).execLoop(seqParams, buffer);
             seqParams.close();
           }
         }
@@ -348,7 +366,7 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
           for (int j = 0; j < pair.getB().size(); ++j) {
             Diagnostic.progress("Input for post-freeze index label \"" + pair.getA() +  "\" starting directory (" + (j + 1) + "/" + pair.getB().size() + ")");
             final ISequenceParams seqParams = pair.getB().get(j);
-            makeBuild(index, params.build(), i, null).execLoop(seqParams, buffer);
+            makeBuild(index, params.build(), i, null, sketch).execLoop(seqParams, buffer);
             seqParams.close();
           }
         }
@@ -381,6 +399,10 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
   }
 
   protected static HashLoop makeBuild(final Index index, final BuildParams buildParams, final int labelIndex, final long[] sdfIdToTaxonId) {
+    return makeBuild(index, buildParams, labelIndex, sdfIdToTaxonId, new FracMinHash(1));
+  }
+
+  protected static HashLoop makeBuild(final Index index, final BuildParams buildParams, final int labelIndex, final long[] sdfIdToTaxonId, final FracMinHash sketch) {
     final HashLoop subjectHashLoop;
     final boolean dualMode = true;
     if (buildParams.windowSize() > 32) {
@@ -396,10 +418,9 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
 
           @Override
           public void hashCallBidirectional(final long hashForward, final long hashReverse, final int stepPosition, final int internalId) {
-            if (hashForward < hashReverse) {
-              index.add(hashForward, sdfIdToTaxonId[internalId]);
-            } else {
-              index.add(hashReverse, sdfIdToTaxonId[internalId]);
+            final long hash = hashForward < hashReverse ? hashForward : hashReverse;
+            if (sketch.keep(hash)) {
+              index.add(hash, sdfIdToTaxonId[internalId]);
             }
           }
 
@@ -414,10 +435,9 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
           @Override
           public void hashCallBidirectional(final long hashForward, final long hashReverse, final int stepPosition, final int internalId) {
             //System.err.println("hashF=" + hashForward + " hashR=" + hashReverse + " id=" + internalId);
-            if (hashForward < hashReverse) {
-              index.add(hashForward, internalId);
-            } else {
-              index.add(hashReverse, internalId);
+            final long hash = hashForward < hashReverse ? hashForward : hashReverse;
+            if (sketch.keep(hash)) {
+              index.add(hash, internalId);
             }
           }
         };
@@ -431,10 +451,9 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
           @Override
           public void hashCallBidirectional(final long hashForward, final long hashReverse, final int stepPosition, final int internalId) {
             //System.err.println("hashF=" + hashForward + " hashR=" + hashReverse + " id=" + internalId + " labelIndex=" + labelIndex);
-            if (hashForward < hashReverse) {
-              index.add(hashForward, labelIndex);
-            } else {
-              index.add(hashReverse, labelIndex);
+            final long hash = hashForward < hashReverse ? hashForward : hashReverse;
+            if (sketch.keep(hash)) {
+              index.add(hash, labelIndex);
             }
           }
 
@@ -444,6 +463,43 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
     return subjectHashLoop;
   }
 
+  /**
+   * Count the words that a sketch retains from some sequences. Every occurrence of a
+   * retained word is added to the index, and repeated words are either all retained or
+   * all dropped, so this is not well predicted from the total number of words.
+   * @param buildParams parameters giving the word and step sizes
+   * @param sequences the sequences to be indexed
+   * @param sketch the sketch selecting words
+   * @return the number of words that will be added to the index
+   * @throws IOException if an I/O error occurs
+   */
+  static long retainedWords(final BuildParams buildParams, final List<? extends ISequenceParams> sequences, final FracMinHash sketch) throws IOException {
+    final long[] retained = new long[1];
+    final HashLoop loop = new IncrementalHashLoop(buildParams.stepSize(), new ExactHashFunction(buildParams, true), true) {
+      @Override
+      public void hashCall(final long hash, final int internalId, final int stepPosition) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void hashCallBidirectional(final long hashForward, final long hashReverse, final int stepPosition, final int internalId) {
+        if (sketch.keep(hashForward < hashReverse ? hashForward : hashReverse)) {
+          ++retained[0];
+        }
+      }
+    };
+    long maxLength = 0;
+    for (final ISequenceParams seqParams : sequences) {
+      maxLength = Math.max(maxLength, seqParams.maxLength());
+    }
+    final byte[] buffer = makeBuffer(maxLength);
+    for (final ISequenceParams seqParams : sequences) {
+      loop.execLoop(seqParams, buffer);
+    }
+    Diagnostic.userLog("Sketch retains " + retained[0] + " words");
+    return retained[0];
+  }
+
   /** Make a buffer long enough to be used for both build and search. */
   private static byte[] makeBuffer(final long maxSequence) {
     if (maxSequence > Integer.MAX_VALUE) {
@@ -455,13 +511,12 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
   static void similarity(final IndexSimilarity index, final long numSequences, List<String> presetNames, final BuildSearchParams params, final String outDir, final Appendable simiOut, final Appendable pcaOut, final Appendable treeOut, final Appendable xmlOut) throws IOException {
     final List<String> names;
     final OneShotTimer matrixTimer = new OneShotTimer("Ph_similarity_matrix");
-    final SimilarityMatrix matrix = index.similarity(numSequences);
+    final SimilarityMatrix matrix = index.similarity(numSequences, params.numberThreads());
+    new FracMinHash(params.sketchScale()).estimate(matrix);
     //System.err.println(matrix);
     matrixTimer.stopLog();
 
     final OneShotTimer neighTimer = new OneShotTimer("Ph_similarity_neighbor");
-    // 42 so reproduces the old versions behavior for regression
-    final NeighborJoining neigh = new NeighborJoining(42);
     final BinaryTree tree;
     if (presetNames == null) {
       if (params.build().sequences().directory() != null) {
@@ -476,7 +531,12 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
     } else {
       names = presetNames;
     }
-    tree = neigh.neighborJoin(names, matrix);
+    if (params.fastNeighborJoining()) {
+      tree = new FastNeighborJoining(params.numberThreads()).neighborJoin(names, matrix);
+    } else {
+      // 42 so reproduces the old versions behavior for regression
+      tree = new NeighborJoining(42).neighborJoin(names, matrix);
+    }
     neighTimer.stopLog();
 
     try {
@@ -564,9 +624,14 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
     }
 
     final CountParams countParams = new CountParams(output, 1/*topn*/, 1/*min*/, false);
+    final int sketchScale = (Integer) mFlags.getValue(SKETCH_SCALE_FLAG);
+    final FracMinHash sketch = new FracMinHash(sketchScale);
 
     final BuildSearchParamsBuilder builder = BuildSearchParams.builder()
-        .mode(pm).count(countParams).uniqueWords(mFlags.isSet(UNIQUE_WORDS));
+        .mode(pm).count(countParams).uniqueWords(mFlags.isSet(UNIQUE_WORDS))
+        .numberThreads(CommonFlags.parseThreads((Integer) mFlags.getValue(CommonFlags.THREADS_FLAG)))
+        .fastNeighborJoining(mFlags.isSet(X_FAST_NEIGHBOR_JOINING))
+        .sketchScale(sketchScale);
 
     if (mFlags.isSet(INPUT_FLAG)) {
       final File subject = (File) mFlags.getValue(INPUT_FLAG);
@@ -575,12 +640,14 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
       Diagnostic.developerLog("idBits=" + idBits + " subjectParams.numberSequences=" + subjectParams.numberSequences());
       final long totalLength = subjectParams.reader().totalLength();
       mUsageMetric.setMetric(totalLength);
-      final long size = BuildParams.size(totalLength, subjectParams.numberSequences(), nwindow, nstep, 1, pm.subjectMode().codeIncrement());
       final BuildParams buildParams = BuildParams.builder()
           .windowSize(nwindow)
           .stepSize(nstep)
           .sequences(subjectParams)
           .create();
+      final long size = sketch.scale() == 1
+        ? BuildParams.size(totalLength, subjectParams.numberSequences(), nwindow, nstep, 1, pm.subjectMode().codeIncrement())
+        : retainedWords(buildParams, Collections.singletonList(subjectParams), sketch);
       final CreateParams indexParams = CreateParams.fromBuildParams(buildParams)
           .compressHashes(true)
           .valueBits(idBits)
@@ -668,7 +735,6 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
         }
         builder.sequences(subjects);
         final SequenceParams dummySubjectParams = SequenceParams.builder().region(new HashingRegion(0, subjects.size())).mode(pm.subjectMode()).create();
-        final long size = BuildParams.size(length, numSeqs, nwindow, nstep, 1, pm.subjectMode().codeIncrement());
         final int idBits = MathUtils.ceilPowerOf2Bits(orderedLabels.size());
         Diagnostic.developerLog("idBits=" + idBits + " orderedLabels.size=" + orderedLabels.size());
         final BuildParams buildParams = BuildParams.builder()
@@ -676,6 +742,16 @@ public final class SimilarityCli extends ParamsCli<BuildSearchParams> {
           .stepSize(nstep)
           .sequences(dummySubjectParams)
           .create();
+        final long size;
+        if (sketch.scale() == 1) {
+          size = BuildParams.size(length, numSeqs, nwindow, nstep, 1, pm.subjectMode().codeIncrement());
+        } else {
+          final List<SequenceParams> all = new ArrayList<>();
+          for (final Pair<String, List<SequenceParams>> subject : subjects) {
+            all.addAll(subject.getB());
+          }
+          size = retainedWords(buildParams, all, sketch);
+        }
         final int hashBits = CreateParams.calculateHashBits(pm.subjectMode().codeType().bits(), nwindow);
         final CreateParams indexParams = new CreateParams.CreateParamsBuilder()
           .hashBits(hashBits)
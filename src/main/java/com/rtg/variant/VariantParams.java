@@ -82,6 +82,8 @@ public final class VariantParams extends SingleMappedParams implements VariantOu
   private final boolean mIgnoreReadQualities;
   private final List<String> mImputedSamples;
   private final Collection<File> mCalibrations;
+  private final Collection<File> mSampleModels;
+  private final boolean mSampleModelsOutput;
   private final VariantOutputLevel mCallLevel;
   private final boolean mOutputNonSnps;
   private final GenomePriorParams mGenomePriors;
@@ -146,6 +148,8 @@ public final class VariantParams extends SingleMappedParams implements VariantOu
     mIgnoreReadQualities = builder.mIgnoreReadQualities;
     mImputedSamples = builder.mImputedSamples;
     mCalibrations = builder.mCalibrations;
+    mSampleModels = builder.mSampleModels;
+    mSampleModelsOutput = builder.mSampleModelsOutput;
     mCallLevel = builder.mCallLevel;
     mOutputNonSnps = builder.mOutputNonSnps;
     mGenomePriors = builder.mGenomePriors;
@@ -338,6 +342,20 @@ public final class VariantParams extends SingleMappedParams implements VariantOu
     return mNoComplexCalls;
   }
 
+  /**
+   * @return sample models files to be joint called instead of alignments, empty if alignments are being called
+   */
+  public Collection<File> sampleModels() {
+    return mSampleModels;
+  }
+
+  /**
+   * @return true if the frozen models of each sample should be written for later joint calling
+   */
+  public boolean sampleModelsOutput() {
+    return mSampleModelsOutput;
+  }
+
   /**
    * Return the maximum coverage for filtering output.
    * @return maximum read coverage
@@ -710,6 +728,8 @@ public final class VariantParams extends SingleMappedParams implements VariantOu
     .filterParams(filterParams())
     .imputedSamples(mImputedSamples)
     .calibrations(mCalibrations)
+    .sampleModels(mSampleModels)
+    .sampleModelsOutput(mSampleModelsOutput)
     .ignoreReadQuality(mIgnoreReadQualities)
     .outputParams(outputParams())
     .defaultQuality(mQDefault)
@@ -782,6 +802,8 @@ public final class VariantParams extends SingleMappedParams implements VariantOu
       .append(" call_level=").append(mCallLevel)
       .append(" indels=").append(mOutputNonSnps)
       .append(" no_complex_calls=").append(mNoComplexCalls).append(LS)
+      .append(" sample_models=").append(mSampleModels)
+      .append(" sample_models_output=").append(mSampleModelsOutput).append(LS)
       .append(" interesting_threshold=").append(Utils.realFormat(mInterestingThreshold, 4)).append(LS)
       .append(" interesting_separation=").append(mInterestingSeparation).append(LS)
       .append(" indel_trigger_fraction=").append(mIndelTriggerFraction).append(LS)
@@ -63,6 +63,8 @@ public final class VariantParamsBuilder extends SingleMappedParamsBuilder<Varian
 
   List<String> mImputedSamples = new ArrayList<>();
   Collection<File> mCalibrations = new ArrayList<>();
+  Collection<File> mSampleModels = new ArrayList<>();
+  boolean mSampleModelsOutput = false;
   int mQDefault = 20;
   int mMatedReadDefault = 20;
   int mUnmatedReadDefault = 20;
@@ -366,6 +368,24 @@ public final class VariantParamsBuilder extends SingleMappedParamsBuilder<Varian
     return self();
   }
 
+  /**
+   * @param sampleModels sample models files to be joint called instead of alignments
+   * @return this builder, so calls can be chained.
+   */
+  public VariantParamsBuilder sampleModels(final Collection<File> sampleModels) {
+    mSampleModels = sampleModels;
+    return self();
+  }
+
+  /**
+   * @param val true if the frozen models of each sample should be written for later joint calling
+   * @return this builder, so calls can be chained.
+   */
+  public VariantParamsBuilder sampleModelsOutput(final boolean val) {
+    mSampleModelsOutput = val;
+    return self();
+  }
+
   /**
    * Whether to attempt calls in complex regions. If true then no such calls
    * are attempted but a single complex (type x) line is output.
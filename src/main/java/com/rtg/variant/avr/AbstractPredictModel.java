@@ -39,7 +39,8 @@ import com.rtg.vcf.header.VcfHeader;
 
 /**
  *
- * Implementations of this abstract class should be thread safe and should not do any internal threading.
+ * Implementations of this abstract class should be thread safe (or provide independent instances via
+ * <code>threadView</code>) and should not do any internal threading.
  *
  */
 public abstract class AbstractPredictModel implements VcfAnnotator {
@@ -83,6 +84,16 @@ public abstract class AbstractPredictModel implements VcfAnnotator {
    */
   public abstract void save(OutputStream os) throws IOException;
 
+  /**
+   * Returns a model for scoring records on one thread, concurrently with other views of this model.
+   * Predictions made by a view are included in the summary of this model. Views should be obtained
+   * after the header has been updated and the field set.
+   * @return a model for use on a single thread
+   */
+  public AbstractPredictModel threadView() {
+    return this;
+  }
+
   /**
    * Return the field name to store score in.
    * @return field name.
@@ -166,8 +166,18 @@ public class AttributeExtractor {
    * @return array of attribute values
    */
   public double[] getInstance(VcfRecord record, int sampleNumber) {
-    final double[] res = new double[mAnnotations.length];
-    for (int i = 0; i < res.length; ++i) {
+    return getInstance(record, sampleNumber, new double[mAnnotations.length]);
+  }
+
+  /**
+   * Fill an existing array with the attribute values extracted from a record.
+   * @param record the VCF record to extract values from.
+   * @param sampleNumber the sample to extract value from.
+   * @param res destination array, at least as long as the number of attributes
+   * @return the destination array
+   */
+  public double[] getInstance(VcfRecord record, int sampleNumber, double[] res) {
+    for (int i = 0; i < mAnnotations.length; ++i) {
       try {
         res[i] = mAttributes[i].encodeValue(mAnnotations[i].getValue(record, sampleNumber));
       } catch (final NumberFormatException e) {
@@ -177,6 +187,10 @@ public class AttributeExtractor {
     return res;
   }
 
+  int numAttributes() {
+    return mAnnotations.length;
+  }
+
   double[] getMissingValuesInstance() {
     final double[] nullInstance = new double[mAnnotations.length];
     Arrays.fill(nullInstance, Double.NaN);
@@ -35,9 +35,12 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.rtg.launcher.globals.GlobalFlags;
 import com.rtg.launcher.globals.CoreGlobalFlags;
+import com.rtg.ml.CompiledForest;
 import com.rtg.ml.MlPredictLoader;
 import com.rtg.ml.PredictClassifier;
 import com.rtg.util.StringUtils;
@@ -52,7 +55,8 @@ import com.rtg.vcf.header.VcfHeader;
 import com.rtg.vcf.header.VcfNumber;
 
 /**
- * Machine learning predict model.
+ * Machine learning predict model. Instances reuse buffers between records, so concurrent scoring
+ * should be done with separate instances obtained from <code>threadView</code>.
  */
 public class MlAvrPredictModel extends AbstractPredictModel {
 
@@ -67,6 +71,10 @@ public class MlAvrPredictModel extends AbstractPredictModel {
   private String mFilterName;
   final double mPredictionThreshold;
 
+  // Reused per record to avoid allocating instances and predictions for every sample
+  private double[][] mInstances = new double[0][];
+  private double[] mPredictions = new double[0];
+  private final List<MlAvrPredictModel> mViews = new ArrayList<>();
 
   /**
    * Create a new predict model from the contents of the given input stream.
@@ -88,7 +96,7 @@ public class MlAvrPredictModel extends AbstractPredictModel {
     mCurrentVersion = dis.readInt();
     if (mCurrentVersion == 1) {
       mAttributeExtractor = AttributeExtractor.load(is);
-      mClassifier = MlPredictLoader.loadPredictClassifier(is, mAttributeExtractor.getDataset());
+      mClassifier = CompiledForest.compile(MlPredictLoader.loadPredictClassifier(is, mAttributeExtractor.getDataset()));
     } else {
       throw new IOException("Unsupported model version: " + mCurrentVersion);
     }
@@ -103,19 +111,53 @@ public class MlAvrPredictModel extends AbstractPredictModel {
     if (classifier == null) {
       throw new NullPointerException();
     }
-    mClassifier = classifier;
+    mClassifier = CompiledForest.compile(classifier);
     mPredictionThreshold = 0;
   }
 
+  private MlAvrPredictModel(MlAvrPredictModel parent) {
+    mAttributeExtractor = parent.mAttributeExtractor;
+    mClassifier = parent.mClassifier;
+    mCurrentVersion = parent.mCurrentVersion;
+    mFilterName = parent.mFilterName;
+    mPredictionThreshold = parent.mPredictionThreshold;
+    setField(parent.getField());
+  }
+
+  @Override
+  public AbstractPredictModel threadView() {
+    final MlAvrPredictModel view = new MlAvrPredictModel(this);
+    synchronized (mViews) {
+      mViews.add(view);
+    }
+    return view;
+  }
+
   void setAttributeExtractor(AttributeExtractor ae) {
     mAttributeExtractor = ae;
   }
 
+  private void ensureCapacity(int samples) {
+    if (mInstances.length < samples) {
+      final int numAttributes = mAttributeExtractor.numAttributes();
+      mInstances = new double[samples][numAttributes];
+      mPredictions = new double[samples];
+    }
+  }
+
   @Override
   public void annotate(VcfRecord record) {
+    // extract all samples first so the classifier can score them as a single batch
+    final int samples = record.getNumberOfSamples();
+    ensureCapacity(samples);
+    for (int s = 0; s < samples; ++s) {
+      mAttributeExtractor.getInstance(record, s, mInstances[s]);
+    }
+    mClassifier.predict(mInstances, samples, mPredictions);
     boolean aboveThreshold = false;
-    for (int s = 0; s < record.getNumberOfSamples(); ++s) {
-      final double prediction = annotateSampleNoPadding(record, s);
+    for (int s = 0; s < samples; ++s) {
+      final double prediction = mPredictions[s];
+      setPrediction(record, s, prediction);
       if (prediction >= mPredictionThreshold) {
         aboveThreshold = true;
       }
@@ -127,17 +169,16 @@ public class MlAvrPredictModel extends AbstractPredictModel {
 
   @Override
   public void annotateSample(VcfRecord record, int sampleNumber) {
-    annotateSampleNoPadding(record, sampleNumber);
+    ensureCapacity(1);
+    // extract fields from record to build instance object array
+    final double[] instance = mAttributeExtractor.getInstance(record, sampleNumber, mInstances[0]);
+    setPrediction(record, sampleNumber, mClassifier.predict(instance));
     record.padFormatAndSample(getField());
   }
 
-  private double annotateSampleNoPadding(VcfRecord record, int sampleNumber) {
-    // extract fields from record to build instance object array
-    final double[] instance = mAttributeExtractor.getInstance(record, sampleNumber);
-    final double prediction = mClassifier.predict(instance);
+  private void setPrediction(VcfRecord record, int sampleNumber, double prediction) {
     record.setFormatAndSample(getField(), Utils.realFormat(prediction, 4), sampleNumber);
     incrementScore(prediction);
-    return prediction;
   }
 
 
@@ -180,6 +221,14 @@ public class MlAvrPredictModel extends AbstractPredictModel {
 
   @Override
   public String getSummary() {
+    final long[] bins = mScoreBins.clone();
+    synchronized (mViews) {
+      for (final MlAvrPredictModel view : mViews) {
+        for (int i = 0; i < bins.length; ++i) {
+          bins[i] += view.mScoreBins[i];
+        }
+      }
+    }
     final StringBuilder sb = new StringBuilder();
     for (int i = 0; i < NUM_BINS; ++i) {
       sb.append("[")
@@ -187,11 +236,11 @@ public class MlAvrPredictModel extends AbstractPredictModel {
       .append("..")
       .append(Utils.realFormat((double) (i + 1) / NUM_BINS, 2))
       .append(")\t")
-      .append(mScoreBins[i])
+      .append(bins[i])
       .append(StringUtils.LS);
     }
     sb.append("1\t")
-    .append(mScoreBins[NUM_BINS])
+    .append(bins[NUM_BINS])
     .append(StringUtils.LS);
     return sb.toString();
   }
@@ -31,6 +31,7 @@ package com.rtg.variant.avr;
 
 import static com.rtg.launcher.CommonFlags.FILE;
 import static com.rtg.launcher.CommonFlags.FILTER_AVR_FLAG;
+import static com.rtg.launcher.CommonFlags.INT;
 import static com.rtg.launcher.CommonFlags.NO_GZIP;
 import static com.rtg.launcher.CommonFlags.STRING;
 
@@ -38,13 +39,26 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.rtg.launcher.AbstractCli;
 import com.rtg.launcher.CommonFlags;
 import com.rtg.util.cli.CommonFlagCategories;
 import com.rtg.util.cli.Flag;
+import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.diagnostic.NoTalkbackSlimException;
+import com.rtg.util.io.IOUtils;
 import com.rtg.vcf.VcfReader;
 import com.rtg.vcf.VcfRecord;
 import com.rtg.vcf.VcfUtils;
@@ -60,6 +74,9 @@ public class PredictCli extends AbstractCli {
   protected static final String OUTPUT_FLAG = "output";
   protected static final String SAMPLE_FLAG = "sample";
   protected static final String FIELD_FLAG = "vcf-score-field";
+  private static final String X_BLOCK_SIZE_FLAG = "Xblock-size";
+
+  private static final Future<List<VcfRecord>> END_OF_RECORDS = CompletableFuture.completedFuture(Collections.emptyList());
 
   @Override
   public String moduleName() {
@@ -89,9 +106,13 @@ public class PredictCli extends AbstractCli {
 
     mFlags.registerOptional('s', SAMPLE_FLAG, String.class, STRING, "if set, only re-score the specified samples (Default is to re-score all samples)").setCategory(CommonFlagCategories.REPORTING).setMaxCount(Integer.MAX_VALUE);
     mFlags.registerOptional('f', FIELD_FLAG, String.class, STRING, "the name of the VCF FORMAT field in which to store the computed score", AbstractPredictModel.AVR).setCategory(CommonFlagCategories.REPORTING);
+    CommonFlags.initThreadsFlag(mFlags);
+    mFlags.registerOptional(X_BLOCK_SIZE_FLAG, Integer.class, INT, "number of records scored per block when using multiple threads", 1000).setCategory(CommonFlagCategories.UTILITY);
     mFlags.setValidator(flags ->
       CommonFlags.validateInputFile(flags, INPUT_FLAG)
         && CommonFlags.validateOutputFile(flags, VcfUtils.getZippedVcfFileName(!flags.isSet(NO_GZIP), (File) flags.getValue(OUTPUT_FLAG)))
+        && CommonFlags.validateThreads(flags)
+        && flags.checkInRange(X_BLOCK_SIZE_FLAG, 1, Integer.MAX_VALUE)
     );
   }
 
@@ -124,21 +145,115 @@ public class PredictCli extends AbstractCli {
       final File o = (File) mFlags.getValue(OUTPUT_FLAG);
       final boolean gzip = !mFlags.isSet(NO_GZIP);
       final File vcfFile = VcfUtils.getZippedVcfFileName(gzip, o);
+      // Scoring is usually cheap relative to VCF I/O, so only use a pool when explicitly requested
+      final int threads = mFlags.isSet(CommonFlags.THREADS_FLAG) ? CommonFlags.parseThreads((Integer) mFlags.getValue(CommonFlags.THREADS_FLAG)) : 1;
       try (final VcfWriter writer = new VcfWriterFactory(mFlags).addRunInfo(true).make(header, vcfFile)) {
-        while (posReader.hasNext()) {
-          final VcfRecord current = posReader.next();
-          if (samples.length > 0) {
-            for (final int s : samples) {
-              model.annotateSample(current, s);
-            }
-          } else {
-            model.annotate(current);
+        if (threads > 1) {
+          annotateParallel(posReader, writer, model, samples, threads, (Integer) mFlags.getValue(X_BLOCK_SIZE_FLAG));
+        } else {
+          while (posReader.hasNext()) {
+            final VcfRecord current = posReader.next();
+            annotate(model, current, samples);
+            writer.write(current);
           }
-          writer.write(current);
         }
       }
     }
 
     return 0;
   }
+
+  private static void annotate(AbstractPredictModel model, VcfRecord record, int[] samples) {
+    if (samples.length > 0) {
+      for (final int s : samples) {
+        model.annotateSample(record, s);
+      }
+    } else {
+      model.annotate(record);
+    }
+  }
+
+  // A reader thread submits blocks of records to a pool of scoring threads, each with its own view of the
+  // model, and the calling thread writes the scored blocks in input order. The queue of pending blocks is
+  // bounded so that memory use does not depend on the size of the input. On failure the reader is told to
+  // stop (rather than interrupted) and waited for, so that it is no longer using the reader when it is closed.
+  static void annotateParallel(VcfReader reader, VcfWriter writer, AbstractPredictModel model, int[] samples, int threads, int blockSize) throws IOException {
+    Diagnostic.userLog("Scoring records using " + threads + " threads in blocks of " + blockSize);
+    final ThreadLocal<AbstractPredictModel> views = ThreadLocal.withInitial(model::threadView);
+    final BlockingQueue<Future<List<VcfRecord>>> pending = new ArrayBlockingQueue<>(2 * threads);
+    final AtomicBoolean cancelled = new AtomicBoolean(false);
+    final ExecutorService scorers = Executors.newFixedThreadPool(threads);
+    final ExecutorService readerThread = Executors.newSingleThreadExecutor();
+    try {
+      final Future<?> reading = readerThread.submit(() -> {
+        try {
+          while (!cancelled.get() && reader.hasNext()) {
+            final List<VcfRecord> block = new ArrayList<>(blockSize);
+            while (block.size() < blockSize && reader.hasNext()) {
+              block.add(reader.next());
+            }
+            final Future<List<VcfRecord>> scored = scorers.submit(() -> {
+              final AbstractPredictModel view = views.get();
+              for (final VcfRecord record : block) {
+                annotate(view, record, samples);
+              }
+              return block;
+            });
+            if (!offer(pending, scored, cancelled)) {
+              return null;
+            }
+          }
+        } finally {
+          offer(pending, END_OF_RECORDS, cancelled);
+        }
+        return null;
+      });
+      Future<List<VcfRecord>> next;
+      while ((next = poll(pending, reading)) != END_OF_RECORDS) {
+        for (final VcfRecord record : next.get()) {
+          writer.write(record);
+        }
+      }
+      reading.get();
+    } catch (final ExecutionException e) {
+      IOUtils.rethrow(e.getCause());
+    } catch (final InterruptedException e) {
+      throw new NoTalkbackSlimException("Interrupted while scoring records.");
+    } finally {
+      cancelled.set(true);
+      scorers.shutdownNow();
+      readerThread.shutdown();
+      try {
+        while (!readerThread.awaitTermination(1, TimeUnit.SECONDS)) {
+          Diagnostic.developerLog("Waiting for VCF reading thread to finish");
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  // Add to the queue, giving up if processing has been cancelled
+  private static boolean offer(BlockingQueue<Future<List<VcfRecord>>> pending, Future<List<VcfRecord>> block, AtomicBoolean cancelled) throws InterruptedException {
+    while (!cancelled.get()) {
+      if (pending.offer(block, 100, TimeUnit.MILLISECONDS)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Take from the queue, failing if the reader has finished without supplying the end marker
+  private static Future<List<VcfRecord>> poll(BlockingQueue<Future<List<VcfRecord>>> pending, Future<?> reading) throws InterruptedException, ExecutionException {
+    while (true) {
+      final Future<List<VcfRecord>> next = pending.poll(100, TimeUnit.MILLISECONDS);
+      if (next != null) {
+        return next;
+      }
+      if (reading.isDone() && pending.isEmpty()) {
+        reading.get();
+        return END_OF_RECORDS;
+      }
+    }
+  }
 }
@@ -29,6 +29,10 @@
  */
 package com.rtg.variant.bayes;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import com.reeltwo.jumble.annotations.TestClass;
 import com.rtg.util.MathUtils;
 import com.rtg.util.Utils;
@@ -193,4 +197,18 @@ public abstract class AlleleStatistics<T extends AlleleStatistics<T>> {
    * @return T new AlleleStatistics instance with remapped entries
    */
   public abstract T remap(Description newDescription, int[] mapping);
+
+  /**
+   * Write the counts so they can later be restored with <code>load</code>.
+   * @param out destination for the counts
+   * @throws IOException if an I/O error occurs
+   */
+  public abstract void save(DataOutput out) throws IOException;
+
+  /**
+   * Replace the counts with those previously written by <code>save</code>.
+   * @param in source of the counts
+   * @throws IOException if an I/O error occurs
+   */
+  public abstract void load(DataInput in) throws IOException;
 }
@@ -29,6 +29,10 @@
  */
 package com.rtg.variant.bayes;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import com.rtg.util.MathUtils;
 
 /**
@@ -174,4 +178,32 @@ public class AlleleStatisticsDouble extends AlleleStatistics<AlleleStatisticsDou
     }
     return newCounts;
   }
+
+  @Override
+  public void save(final DataOutput out) throws IOException {
+    for (int i = 0; i < mErrors.length; ++i) {
+      out.writeDouble(mCountsForwards1[i]);
+      out.writeDouble(mCountsForwards2[i]);
+      out.writeDouble(mCountsBackwards1[i]);
+      out.writeDouble(mCountsBackwards2[i]);
+      out.writeDouble(mCountsMated[i]);
+      out.writeDouble(mCountsUnmated[i]);
+      out.writeDouble(mErrors[i]);
+      out.writeDouble(mQualityProduct[i]);
+    }
+  }
+
+  @Override
+  public void load(final DataInput in) throws IOException {
+    for (int i = 0; i < mErrors.length; ++i) {
+      mCountsForwards1[i] = in.readDouble();
+      mCountsForwards2[i] = in.readDouble();
+      mCountsBackwards1[i] = in.readDouble();
+      mCountsBackwards2[i] = in.readDouble();
+      mCountsMated[i] = in.readDouble();
+      mCountsUnmated[i] = in.readDouble();
+      mErrors[i] = in.readDouble();
+      mQualityProduct[i] = in.readDouble();
+    }
+  }
 }
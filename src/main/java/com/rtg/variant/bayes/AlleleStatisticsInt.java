@@ -29,6 +29,10 @@
  */
 package com.rtg.variant.bayes;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import com.rtg.util.MathUtils;
 
 /**
@@ -173,6 +177,34 @@ public class AlleleStatisticsInt extends AlleleStatistics<AlleleStatisticsInt> {
     return newCounts;
   }
 
+  @Override
+  public void save(final DataOutput out) throws IOException {
+    for (int i = 0; i < mErrors.length; ++i) {
+      out.writeInt(mCountsForwards1[i]);
+      out.writeInt(mCountsForwards2[i]);
+      out.writeInt(mCountsBackwards1[i]);
+      out.writeInt(mCountsBackwards2[i]);
+      out.writeInt(mCountsMated[i]);
+      out.writeInt(mCountsUnmated[i]);
+      out.writeDouble(mErrors[i]);
+      out.writeDouble(mQualityProduct[i]);
+    }
+  }
+
+  @Override
+  public void load(final DataInput in) throws IOException {
+    for (int i = 0; i < mErrors.length; ++i) {
+      mCountsForwards1[i] = in.readInt();
+      mCountsForwards2[i] = in.readInt();
+      mCountsBackwards1[i] = in.readInt();
+      mCountsBackwards2[i] = in.readInt();
+      mCountsMated[i] = in.readInt();
+      mCountsUnmated[i] = in.readInt();
+      mErrors[i] = in.readDouble();
+      mQualityProduct[i] = in.readDouble();
+    }
+  }
+
 //  String debug() {
 //    final StringBuilder sb = new StringBuilder();
 //    sb.append("f|b|n!");
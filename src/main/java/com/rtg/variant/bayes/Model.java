@@ -31,6 +31,9 @@
 package com.rtg.variant.bayes;
 
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
 
 import com.rtg.util.StringUtils;
@@ -197,6 +200,40 @@ public class Model<D extends Description> extends IntegralAbstract implements Mo
     }
   }
 
+  /**
+   * Write the posteriors and statistics of this frozen model so that they can later be restored with <code>load</code>.
+   * Posteriors are written exactly, in the possibility arithmetic of this model.
+   * @param out destination for the model
+   * @throws IOException if an I/O error occurs
+   */
+  public void save(final DataOutput out) throws IOException {
+    assert mFrozen : "You should freeze the model before saving it";
+    out.writeShort(mPosteriors.length);
+    for (final double posterior : mPosteriors) {
+      out.writeDouble(posterior);
+    }
+    mStatistics.save(out);
+  }
+
+  /**
+   * Replace the posteriors and statistics of this model with those previously written by <code>save</code>.
+   * The model is frozen afterwards.
+   * @param in source of the model
+   * @throws IOException if an I/O error occurs or the stored model has a different number of hypotheses
+   */
+  public void load(final DataInput in) throws IOException {
+    assert !mFrozen : "Should only load into an unfrozen model";
+    final int size = in.readUnsignedShort();
+    if (size != mPosteriors.length) {
+      throw new IOException("Stored model has " + size + " hypotheses but " + mPosteriors.length + " were expected");
+    }
+    for (int hyp = 0; hyp < size; ++hyp) {
+      mPosteriors[hyp] = in.readDouble();
+    }
+    mStatistics.load(in);
+    mFrozen = true;
+  }
+
   protected void incrementStatistics(EvidenceInterface distribution) {
     mStatistics.increment(distribution, mHypotheses.reference());
   }
@@ -30,6 +30,9 @@
 
 package com.rtg.variant.bayes;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
 
 import com.reeltwo.jumble.annotations.TestClass;
@@ -253,6 +256,38 @@ public abstract class Statistics<T extends AlleleStatistics<T>> implements Clone
 
   protected abstract double unmatedProbability();
 
+  /**
+   * Write the accumulated statistics so that they can later be restored with <code>load</code>.
+   * @param out destination for the statistics
+   * @throws IOException if an I/O error occurs
+   */
+  public final void save(final DataOutput out) throws IOException {
+    out.writeDouble(mNonRefCount);
+    out.writeInt(mCountLeft);
+    out.writeInt(mCountRight);
+    out.writeInt(mCountUnmapped);
+    saveTotals(out);
+    mCounts.save(out);
+  }
+
+  /**
+   * Replace the accumulated statistics with those previously written by <code>save</code>.
+   * @param in source of the statistics
+   * @throws IOException if an I/O error occurs
+   */
+  public final void load(final DataInput in) throws IOException {
+    mNonRefCount = in.readDouble();
+    mCountLeft = in.readInt();
+    mCountRight = in.readInt();
+    mCountUnmapped = in.readInt();
+    loadTotals(in);
+    mCounts.load(in);
+  }
+
+  protected abstract void saveTotals(DataOutput out) throws IOException;
+
+  protected abstract void loadTotals(DataInput in) throws IOException;
+
   protected Double readPositionBias() {
     final int trials = mCountLeft + mCountRight;
     final int observed = mCountLeft;
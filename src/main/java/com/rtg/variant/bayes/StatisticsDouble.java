@@ -29,6 +29,10 @@
  */
 package com.rtg.variant.bayes;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import com.rtg.util.MathUtils;
 import com.rtg.util.StringUtils;
 
@@ -131,6 +135,24 @@ public class StatisticsDouble extends Statistics<AlleleStatisticsDouble> {
     return mTotalError;
   }
 
+  @Override
+  protected void saveTotals(final DataOutput out) throws IOException {
+    out.writeDouble(mAmbiguous);
+    out.writeDouble(mTotalCoverage);
+    out.writeDouble(mTotalError);
+    out.writeDouble(mMatedCount);
+    out.writeDouble(mUnmatedCount);
+  }
+
+  @Override
+  protected void loadTotals(final DataInput in) throws IOException {
+    mAmbiguous = in.readDouble();
+    mTotalCoverage = in.readDouble();
+    mTotalError = in.readDouble();
+    mMatedCount = in.readDouble();
+    mUnmatedCount = in.readDouble();
+  }
+
   @Override
   public String toString() {
     // only used for debugging
@@ -30,6 +30,10 @@
 
 package com.rtg.variant.bayes;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import com.reeltwo.jumble.annotations.TestClass;
 import com.rtg.util.StringUtils;
 
@@ -112,6 +116,24 @@ public class StatisticsInt extends Statistics<AlleleStatisticsInt> {
     return mTotalError;
   }
 
+  @Override
+  protected void saveTotals(final DataOutput out) throws IOException {
+    out.writeInt(mAmbiguous);
+    out.writeInt(mTotalCoverage);
+    out.writeDouble(mTotalError);
+    out.writeInt(mMatedCount);
+    out.writeInt(mUnmatedCount);
+  }
+
+  @Override
+  protected void loadTotals(final DataInput in) throws IOException {
+    mAmbiguous = in.readInt();
+    mTotalCoverage = in.readInt();
+    mTotalError = in.readDouble();
+    mMatedCount = in.readInt();
+    mUnmatedCount = in.readInt();
+  }
+
   @Override
   public String toString() {
     // only used for debugging
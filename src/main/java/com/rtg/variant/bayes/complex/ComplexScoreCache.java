@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.rtg.variant.bayes.complex;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.rtg.variant.realign.AlignmentEnvironment;
+import com.rtg.variant.realign.RealignParams;
+
+/**
+ * Bounded least recently used cache of the unnormalized all-paths scores of reads against
+ * complex hypotheses. Scores are keyed on the content seen by the alignment (the read bases and
+ * qualities, and the substituted template around the read) rather than on record or region
+ * identity, so that a score is reused for duplicate reads, and when a read is scored again
+ * against the same template by an overlapping region.
+ * Not thread safe, each chunk should have its own instance.
+ */
+public final class ComplexScoreCache {
+
+  // Extra template positions either side of the all-paths band included in keys
+  private static final int TEMPLATE_PAD = 2;
+
+  /**
+   * Content of a read as seen by the all-paths alignment, shared by the keys for all the
+   * hypotheses the read is scored against.
+   */
+  static final class Read {
+    private final byte[] mBases;
+    private final double[] mQualities;
+    private final int mHash;
+
+    /**
+     * @param env the read environment.
+     */
+    Read(AlignmentEnvironment env) {
+      final int length = env.subsequenceLength();
+      mBases = new byte[length];
+      mQualities = new double[length];
+      for (int i = 0; i < length; ++i) {
+        mBases[i] = env.base(i);
+        mQualities[i] = env.quality(i);
+      }
+      mHash = 31 * Arrays.hashCode(mBases) + Arrays.hashCode(mQualities);
+    }
+
+    int length() {
+      return mBases.length;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Read)) {
+        return false;
+      }
+      final Read that = (Read) obj;
+      return mHash == that.mHash && Arrays.equals(mBases, that.mBases) && Arrays.equals(mQualities, that.mQualities);
+    }
+
+    @Override
+    public int hashCode() {
+      return mHash;
+    }
+  }
+
+  // Only reads without CG gaps or homopolymer handling are cached, so the gap parameters need not be compared
+  private static int paramsHash(RealignParams params) {
+    int h = Double.hashCode(params.insertOpenLn());
+    h = 31 * h + Double.hashCode(params.insertExtendLn());
+    h = 31 * h + Double.hashCode(params.deleteOpenLn());
+    h = 31 * h + Double.hashCode(params.deleteExtendLn());
+    h = 31 * h + Double.hashCode(params.matchLn());
+    h = 31 * h + Double.hashCode(params.misMatchLn());
+    return 31 * h + (params.machineType() == null ? 0 : params.machineType().hashCode());
+  }
+
+  private static boolean sameParams(RealignParams a, RealignParams b) {
+    return a == b
+      || Double.compare(a.insertOpenLn(), b.insertOpenLn()) == 0
+      && Double.compare(a.insertExtendLn(), b.insertExtendLn()) == 0
+      && Double.compare(a.deleteOpenLn(), b.deleteOpenLn()) == 0
+      && Double.compare(a.deleteExtendLn(), b.deleteExtendLn()) == 0
+      && Double.compare(a.matchLn(), b.matchLn()) == 0
+      && Double.compare(a.misMatchLn(), b.misMatchLn()) == 0
+      && a.machineType() == b.machineType();
+  }
+
+  /**
+   * Identifies a single all-paths alignment by its content. Realignment parameters are compared
+   * by value, since read groups with the same error rates have separate instances.
+   */
+  static final class Key {
+    private final Read mRead;
+    private final RealignParams mParams;
+    private final int mReadStart;
+    private final int mTemplateStart;
+    private final int mMaxShift;
+    private final byte[] mTemplate;
+    private final int mHash;
+
+    /**
+     * @param read the read being aligned.
+     * @param params the realignment parameters used for the read.
+     * @param readStart start position of the read on the template.
+     * @param templateStart start position of the substituted template environment.
+     * @param maxShift maximum shift permitted in the all-paths alignment.
+     * @param template the substituted template environment.
+     */
+    Key(Read read, RealignParams params, int readStart, int templateStart, int maxShift, AlignmentEnvironment template) {
+      mRead = read;
+      mParams = params;
+      mReadStart = readStart;
+      mTemplateStart = templateStart;
+      mMaxShift = maxShift;
+      // All-paths only visits template positions within maxShift of the diagonal
+      final int lo = -maxShift - TEMPLATE_PAD;
+      mTemplate = new byte[read.length() + 2 * (maxShift + TEMPLATE_PAD)];
+      for (int i = 0; i < mTemplate.length; ++i) {
+        mTemplate[i] = template.base(lo + i);
+      }
+      int h = read.hashCode();
+      h = 31 * h + paramsHash(params);
+      h = 31 * h + readStart;
+      h = 31 * h + templateStart;
+      h = 31 * h + maxShift;
+      h = 31 * h + Arrays.hashCode(mTemplate);
+      mHash = h;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      final Key that = (Key) obj;
+      return mHash == that.mHash
+        && sameParams(mParams, that.mParams)
+        && mReadStart == that.mReadStart
+        && mTemplateStart == that.mTemplateStart
+        && mMaxShift == that.mMaxShift
+        && mRead.equals(that.mRead)
+        && Arrays.equals(mTemplate, that.mTemplate);
+    }
+
+    @Override
+    public int hashCode() {
+      return mHash;
+    }
+  }
+
+  private final Map<Key, Double> mScores;
+  private long mHits = 0;
+  private long mMisses = 0;
+
+  /**
+   * @param maxSize maximum number of scores retained, once exceeded the least recently used scores are discarded.
+   */
+  public ComplexScoreCache(final int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+    }
+    mScores = new LinkedHashMap<Key, Double>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * @param key identifies the alignment.
+   * @return the cached natural log score, or null if the score is not present.
+   */
+  Double get(final Key key) {
+    final Double score = mScores.get(key);
+    if (score == null) {
+      ++mMisses;
+    } else {
+      ++mHits;
+    }
+    return score;
+  }
+
+  /**
+   * @param key identifies the alignment.
+   * @param scoreLn the natural log score.
+   */
+  void put(final Key key, final double scoreLn) {
+    mScores.put(key, scoreLn);
+  }
+
+  /**
+   * @return number of scores currently held.
+   */
+  public int size() {
+    return mScores.size();
+  }
+
+  /**
+   * @return number of lookups that found a previously computed score.
+   */
+  public long hits() {
+    return mHits;
+  }
+
+  /**
+   * @return number of lookups that required the score to be computed.
+   */
+  public long misses() {
+    return mMisses;
+  }
+}
@@ -32,8 +32,10 @@ package com.rtg.variant.bayes.complex;
 
 import java.util.List;
 
+import com.rtg.mode.DNA;
 import com.rtg.variant.bayes.Description;
 import com.rtg.variant.match.Match;
+import com.rtg.variant.realign.treealign.HypothesisTrie;
 
 /**
  * Class containing static description for all the hypothesis
@@ -46,6 +48,8 @@ public class DescriptionComplex extends Description {
 
   private final int mMaxLength;
 
+  private final HypothesisTrie mTrie;
+
   /**
    * Make one.
    * @param matches corresponding to each hypothesis.
@@ -61,6 +65,11 @@ public class DescriptionComplex extends Description {
     }
     mMinLength = min;
     mMaxLength = max;
+    final byte[][] hypotheses = new byte[matches.size()][];
+    for (int i = 0; i < hypotheses.length; ++i) {
+      hypotheses[i] = DNA.stringDNAtoByte(name(i));
+    }
+    mTrie = new HypothesisTrie(hypotheses);
   }
 
   /**
@@ -92,6 +101,13 @@ public class DescriptionComplex extends Description {
     return mMaxLength;
   }
 
+  /**
+   * @return trie of the hypotheses, giving an order in which to visit them that maximizes shared prefixes.
+   */
+  public HypothesisTrie trie() {
+    return mTrie;
+  }
+
   @Override
   public String toString() {
     return mNames.toString();
@@ -37,7 +37,6 @@ import com.rtg.util.MaxShiftUtils;
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.machine.MachineType;
 import com.rtg.variant.MachineErrorChooserInterface;
-import com.rtg.variant.ThreadingEnvironment;
 import com.rtg.variant.VariantAlignmentRecord;
 import com.rtg.variant.VariantParams;
 import com.rtg.variant.bayes.Evidence;
@@ -54,8 +53,7 @@ import com.rtg.variant.realign.Environment;
 import com.rtg.variant.realign.EnvironmentCombined;
 import com.rtg.variant.realign.InvertCgTemplateEnvironment;
 import com.rtg.variant.realign.RealignParams;
-import com.rtg.variant.realign.ScoreFastUnderflow;
-import com.rtg.variant.realign.ScoreFastUnderflowCG;
+import com.rtg.variant.realign.treealign.HypothesisTrie;
 import com.rtg.variant.util.arithmetic.PossibilityArithmetic;
 
 /**
@@ -72,15 +70,11 @@ public final class EvidenceComplex extends Evidence {
   // If true, CG allpaths realignment should use the full reconstructed read, otherwise use the flattened representation
   static final boolean CG_ALLPATHS = GlobalFlags.getBooleanValue(CoreGlobalFlags.COMPLEX_CALLER_UNROLL_CG_FLAG);
 
-  static {
-    SCORE_INTERFACE_MEMO = new ScoreInterfaceMemo();
-  }
+  // If true, reuse the all-paths rows covering the template prefix shared by successive hypotheses
+  private static final boolean SHARED_PREFIX = GlobalFlags.getBooleanValue(CoreGlobalFlags.COMPLEX_CALLER_SHARED_PREFIX);
 
-  private static AllPaths getAllPaths(final RealignParams params) {
-    if (CG_ALLPATHS && params.machineType() != null && params.machineType().isCG()) {
-      return new ScoreFastUnderflowCG(params);
-    }
-    return new ScoreFastUnderflow(params);
+  static {
+    SCORE_INTERFACE_MEMO = new ThreadLocalScoreInterfaceMemo();
   }
 
   private final int mReference;
@@ -128,6 +122,18 @@ public final class EvidenceComplex extends Evidence {
    * @param chooser machine error chooser
    */
   public EvidenceComplex(HypothesesPrior<DescriptionComplex> hypotheses, AlignmentMatch match, ComplexTemplate reference, VariantParams params, MachineErrorChooserInterface chooser) {
+    this(hypotheses, match, reference, params, chooser, null);
+  }
+
+  /**
+   * @param hypotheses description of the underlying hypotheses.
+   * @param match Match object to get distribution for
+   * @param reference complex reference
+   * @param params variant params
+   * @param chooser machine error chooser
+   * @param cache cache of previously computed read scores, may be null
+   */
+  public EvidenceComplex(HypothesesPrior<DescriptionComplex> hypotheses, AlignmentMatch match, ComplexTemplate reference, VariantParams params, MachineErrorChooserInterface chooser, ComplexScoreCache cache) {
     super(hypotheses.description(), match.mapError());
     mHypotheses = hypotheses;
     mReference = hypotheses.reference();
@@ -141,12 +147,7 @@ public final class EvidenceComplex extends Evidence {
     final VariantAlignmentRecord alignmentRecord = match.alignmentRecord();
     final RealignParams me = chooser.realignParams(alignmentRecord.getReadGroup(), alignmentRecord.isReadPaired());
     final boolean cg = me.machineType() != null && me.machineType().isCG();
-    final AllPaths sm;
-    if (params.threadingEnvironment() == ThreadingEnvironment.PARALLEL) {
-      sm = getAllPaths(me);
-    } else {
-      sm = SCORE_INTERFACE_MEMO.getScoreInterface(me);
-    }
+    final AllPaths sm = SCORE_INTERFACE_MEMO.getScoreInterface(me);
 
     final AlignmentEnvironment se;
     if (cg) {
@@ -187,11 +188,30 @@ public final class EvidenceComplex extends Evidence {
 
     final int maxShift = maxShift0 + adjust;
     final double[] logScore = new double[size];
-    double sum = mArithmetic.zero();
-    for (int i = 0; i < size; ++i) {
-      //TODO put in fast delta scoring for non-CG case.
+    final int templateStart = se.start() - softClipStartOffset;
+    // Hypotheses are visited in trie order so that all-paths can retain the rows covering any prefix shared with the previously scored hypothesis
+    final HypothesisTrie trie = hypotheses.description().trie();
+    final boolean sharedPrefix = SHARED_PREFIX && !cg;
+    // Homopolymer and CG environments look beyond the all-paths band, so are not cached
+    final ComplexScoreCache.Read cacheRead = cache != null && !cg && me.machineType() != MachineType.IONTORRENT ? new ComplexScoreCache.Read(se) : null;
+    int shared = Integer.MIN_VALUE;
+    for (int k = 0; k < size; ++k) {
+      final int i = trie.hypothesis(k);
+      // Relative template index at which this hypothesis may first differ from the last one scored
+      shared = Math.min(shared, reference.getStart() - templateStart + trie.sharedPrefix(k));
       final String replace = description().name(i);
-      final AlignmentEnvironment temEnv = new AlignmentEnvironmentGenomeSubstitution(se.start() - softClipStartOffset, 0 /* doesn't matter */, reference, DNA.stringDNAtoByte(replace));
+      final AlignmentEnvironment temEnv = new AlignmentEnvironmentGenomeSubstitution(templateStart, 0 /* doesn't matter */, reference, DNA.stringDNAtoByte(replace));
+      final ComplexScoreCache.Key key;
+      if (cacheRead != null) {
+        key = new ComplexScoreCache.Key(cacheRead, me, newStart - softClipStartOffset, templateStart, maxShift, temEnv);
+        final Double cached = cache.get(key);
+        if (cached != null) {
+          logScore[i] = mArithmetic.ln2Poss(cached);
+          continue;
+        }
+      } else {
+        key = null;
+      }
       final EnvironmentCombined envTmp = new EnvironmentCombined(se, newStart - softClipStartOffset, maxShift, temEnv);
       final Environment env;
       if (cg && se.isInverted()) {
@@ -199,11 +219,18 @@ public final class EvidenceComplex extends Evidence {
       } else {
         env = envTmp;
       }
-      sm.setEnv(env);
-      final double poss = mArithmetic.ln2Poss(sm.totalScoreLn());
-      //System.err.println("Read match=" + match.readString() + " Hyp i=" + i + " name=" + hypotheses.description().name(i) + " : unnorm score=" + mArithmetic.poss2Ln(poss) + " scorematrix=\n" + sm.toString());
-      logScore[i] = poss;
-      sum = mArithmetic.add(sum, poss);
+      sm.setEnv(env, sharedPrefix ? shared : Integer.MIN_VALUE);
+      shared = Integer.MAX_VALUE;
+      final double scoreLn = sm.totalScoreLn();
+      if (key != null) {
+        cache.put(key, scoreLn);
+      }
+      //System.err.println("Read match=" + match.readString() + " Hyp i=" + i + " name=" + hypotheses.description().name(i) + " : unnorm score=" + scoreLn + " scorematrix=\n" + sm.toString());
+      logScore[i] = mArithmetic.ln2Poss(scoreLn);
+    }
+    double sum = mArithmetic.zero();
+    for (int i = 0; i < size; ++i) {
+      sum = mArithmetic.add(sum, logScore[i]);
     }
 
     // Normalize, and determine readHyp
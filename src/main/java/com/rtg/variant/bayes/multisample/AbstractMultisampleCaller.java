@@ -81,8 +81,23 @@ public abstract class AbstractMultisampleCaller implements MultisampleJointCalle
 
   @Override
   public <D extends Description, T extends HypothesesPrior<D>> Variant makeCall(String templateName, int position, int endPosition, byte[] ref, List<ModelInterface<?>> models, HaploidDiploidHypotheses<T> hypotheses) {
+    return makeVariant(templateName, position, endPosition, ref, models, hypotheses, makeSamples(models, hypotheses));
+  }
 
-    final ComparisonResult result = makeSamples(models, hypotheses);
+  /**
+   * Construct the variant for an evaluated set of models.
+   * @param templateName name of current reference sequence
+   * @param position zero based start position of the call
+   * @param endPosition zero based exclusive end position of the call
+   * @param ref bytes of the reference sequence
+   * @param models the models that were evaluated
+   * @param hypotheses hypotheses containing current priors
+   * @param result the result of evaluating the models, may be null
+   * @param <D> the description
+   * @param <T> the hypothesis type
+   * @return the variant, or null if no call should be made
+   */
+  protected <D extends Description, T extends HypothesesPrior<D>> Variant makeVariant(String templateName, int position, int endPosition, byte[] ref, List<ModelInterface<?>> models, HaploidDiploidHypotheses<T> hypotheses, ComparisonResult result) {
     if (result == null) {
       return null;
     }
@@ -115,6 +130,20 @@ public abstract class AbstractMultisampleCaller implements MultisampleJointCalle
    */
   protected abstract <D extends Description, T extends HypothesesPrior<D>> ComparisonResult makeSamples(List<ModelInterface<?>> models, HaploidDiploidHypotheses<T> hypotheses);
 
+  /**
+   * Test if two positions can be evaluated in the same block.
+   * @param a models at one position
+   * @param b models at another position
+   * @return true if the hypotheses of every sample have the same size at both positions
+   */
+  protected static boolean sameSizes(final List<ModelInterface<?>> a, final List<ModelInterface<?>> b) {
+    for (int k = 0; k < a.size(); ++k) {
+      if (a.get(k).hypotheses().size() != b.get(k).hypotheses().size()) {
+        return false;
+      }
+    }
+    return true;
+  }
 
   protected abstract VariantParams getParams();
 
@@ -38,6 +38,7 @@ import static com.rtg.util.cli.CommonFlagCategories.UTILITY;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashSet;
@@ -84,12 +85,14 @@ import com.rtg.variant.bayes.AlleleBalanceProbability;
 import com.rtg.variant.bayes.BinomialAlleleBalance;
 import com.rtg.variant.bayes.HoeffdingAlleleBalance;
 import com.rtg.variant.bayes.NoAlleleBalance;
+import com.rtg.variant.bayes.multisample.population.AlleleCountsStore;
 import com.rtg.variant.format.VcfFormatField;
 import com.rtg.variant.format.VcfInfoField;
 import com.rtg.vcf.VariantStatistics;
 
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SamFileHeaderMerger;
 
 /**
  * Common stuff for multi-genome SNP caller.
@@ -153,6 +156,7 @@ public abstract class AbstractMultisampleCli extends ParamsCli<VariantParams> {
   private static final String X_EXPAND_COMPLEX_READ_QUERIES = "Xexpand-complex-read-queries";
   private static final String X_COMPLEX_USE_SOFT_CLIP = "Xcomplex-use-soft-clip";
   private static final String X_FORCE_COMPLEX_REGION = "Xforce-complex-region";
+  private static final String X_SAMPLE_MODELS_OUTPUT = "Xsample-models-output";
   private static final double LOW_COVERAGE_WARNING_THRESHOLD = 2.0;
 
   /**
@@ -312,7 +316,7 @@ public abstract class AbstractMultisampleCli extends ParamsCli<VariantParams> {
     flags.registerOptional('m', MACHINE_ERRORS_FLAG, String.class, CommonFlags.STRING, "if set, force sequencer machine settings. Allowed values are [default, illumina, ls454_se, ls454_pe, complete, iontorrent]").setCategory(SENSITIVITY_TUNING);
     flags.registerOptional(R_DEFAULT_FLAG, Integer.class, CommonFlags.INT, "for mated reads that have no mapping quality supplied use this as the default quality (in Phred format from 0 to 63)", 20).setCategory(SENSITIVITY_TUNING);
     flags.registerOptional(UNMATED_R_DEFAULT_FLAG, Integer.class, CommonFlags.INT, "for unmated reads that have no mapping quality supplied use this as the default quality (in Phred format from 0 to 63)", 20).setCategory(SENSITIVITY_TUNING);
-    flags.registerOptional(POPULATION_PRIORS, File.class, CommonFlags.FILE, "if set, use the VCF file to generate population based site-specific priors").setCategory(SENSITIVITY_TUNING);
+    flags.registerOptional(POPULATION_PRIORS, File.class, CommonFlags.FILE, "if set, use the VCF file (or compiled allele counts store) to generate population based site-specific priors").setCategory(SENSITIVITY_TUNING);
     flags.registerOptional(COVERAGE_BYPASS_FLAG, Integer.class, CommonFlags.INT, "skip calling in sites with per sample read depth exceeding this value", DEFAULT_COVERAGE_CUTOFF).setCategory(SENSITIVITY_TUNING);
     flags.registerOptional(COVERAGE_BYPASS_MULTIPLIER_FLAG, Double.class, CommonFlags.FLOAT, "skip calling in sites with combined depth exceeding multiplier * average combined coverage determined from calibration", defaultCoverageCutoffMultiplier()).setCategory(SENSITIVITY_TUNING); //set a coverage threshold for use with the average coverage determined by calibration files. The threshold will be the average coverage + (multiplier * square root of average coverage)
     flags.registerOptional(USE_ALLELIC_FRACTION, "if set, incorporate the expected allelic fraction in scoring").setCategory(SENSITIVITY_TUNING);
@@ -359,6 +363,7 @@ public abstract class AbstractMultisampleCli extends ParamsCli<VariantParams> {
     flags.registerOptional(X_EXPAND_COMPLEX_READ_QUERIES, Boolean.class, CommonFlags.BOOL, "expand queries for reads by one base either side of a complex region", Boolean.FALSE).setCategory(SENSITIVITY_TUNING);
     flags.registerOptional(X_COMPLEX_USE_SOFT_CLIP, Boolean.class, CommonFlags.BOOL, "use soft clipped bases in evidence for complex calls", Boolean.TRUE).setCategory(SENSITIVITY_TUNING);
     flags.registerOptional(X_FORCE_COMPLEX_REGION, String.class, CommonFlags.STRING, "force a complex region over specified range").setCategory(UTILITY);
+    flags.registerOptional(X_SAMPLE_MODELS_OUTPUT, "also output per-sample models, which can be supplied as input in place of alignments for later joint calling (supply the alignments as well to call complex regions)").setCategory(INPUT_OUTPUT);
   }
 
   protected void registerAllelicTriggers(CFlags flags) {
@@ -397,6 +402,7 @@ public abstract class AbstractMultisampleCli extends ParamsCli<VariantParams> {
     builder.ignoreReadQuality(mFlags.isSet(X_R_IGNORE_FLAG));
     builder.outputIndex(!mFlags.isSet(CommonFlags.NO_INDEX));
     builder.noComplexCalls(mFlags.isSet(X_NO_COMPLEX_CALLS_FLAG));
+    builder.sampleModelsOutput(mFlags.isSet(X_SAMPLE_MODELS_OUTPUT));
     builder.outputNonSnps(!mFlags.isSet(SNPS_ONLY_FLAG));
     builder.trimSplit((DecomposerType) mFlags.getValue(X_TRIM_SPLIT_FLAG));
     builder.vcfRp(mFlags.isSet(X_VCF_RP));
@@ -443,7 +449,9 @@ public abstract class AbstractMultisampleCli extends ParamsCli<VariantParams> {
       builder.machineErrorName((String) mFlags.getValue(MACHINE_ERRORS_FLAG));
     }
     if (mFlags.isSet(POPULATION_PRIORS)) {
-      final List<File> popPriorVcfFile = new CommandLineFiles(null, POPULATION_PRIORS, CommandLineFiles.EXISTS, CommandLineFiles.NOT_DIRECTORY, CommandLineFiles.TABIX).getFileList(mFlags);
+      final List<File> popPriorVcfFile = AlleleCountsStore.isStore((File) mFlags.getValue(POPULATION_PRIORS))
+        ? new CommandLineFiles(null, POPULATION_PRIORS, CommandLineFiles.EXISTS, CommandLineFiles.NOT_DIRECTORY).getFileList(mFlags)
+        : new CommandLineFiles(null, POPULATION_PRIORS, CommandLineFiles.EXISTS, CommandLineFiles.NOT_DIRECTORY, CommandLineFiles.TABIX).getFileList(mFlags);
       builder.populationPriors(popPriorVcfFile.get(0));
     }
     if (mFlags.isSet(MIN_VARIANT_ALLELIC_DEPTH)) {
@@ -504,11 +512,32 @@ public abstract class AbstractMultisampleCli extends ParamsCli<VariantParams> {
   private void makeInputParams(final VariantParamsBuilder builder, final SequenceParams genomeParams, SamFilterParams filterParams) throws IOException {
     final GenomeRelationships grf = grf();
     builder.genomeRelationships(grf);
+    final List<File> sampleModels = new ArrayList<>();
+    final List<File> alignmentFiles = new ArrayList<>();
+    for (final File f : new CommandLineFiles(CommonFlags.INPUT_LIST_FLAG, null, CommandLineFiles.EXISTS).getFileList(mFlags)) {
+      if (SampleModelsWriter.isSampleModels(f)) {
+        sampleModels.add(f);
+      } else {
+        alignmentFiles.add(f);
+      }
+    }
     final Collection<File> inputFiles;
-    if (mFlags.isSet(CommonFlags.RESTRICTION_FLAG) || mFlags.isSet(CommonFlags.BED_REGIONS_FLAG)) {
+    if (!sampleModels.isEmpty()) {
+      Diagnostic.userLog("Input sample models files: " + sampleModels);
+      if (mFlags.isSet(X_SAMPLE_MODELS_OUTPUT)) {
+        throw new InvalidParamsException("Can not use --" + X_SAMPLE_MODELS_OUTPUT + " when the input is sample models.");
+      }
+      builder.sampleModels(sampleModels);
+      if (alignmentFiles.isEmpty()) {
+        makeSampleModelsInputParams(builder, sampleModels, filterParams);
+        return;
+      }
+      // Alignments supplied with the sample models are only used to call complex regions
+      inputFiles = alignmentFiles;
+    } else if (mFlags.isSet(CommonFlags.RESTRICTION_FLAG) || mFlags.isSet(CommonFlags.BED_REGIONS_FLAG)) {
       inputFiles = new CommandLineFiles(CommonFlags.INPUT_LIST_FLAG, null, CommandLineFiles.EXISTS, CommandLineFiles.VARIANT_INPUT).getFileList(mFlags);
     } else {
-      inputFiles = new CommandLineFiles(CommonFlags.INPUT_LIST_FLAG, null, CommandLineFiles.EXISTS).getFileList(mFlags);
+      inputFiles = alignmentFiles;
     }
     final boolean useCalibration = !mFlags.isSet(MACHINE_ERRORS_FLAG) && !mFlags.isSet(NO_CALIBRATION);
     final SamCalibrationInputs inputs = new SamCalibrationInputs(inputFiles, useCalibration);
@@ -582,6 +611,23 @@ public abstract class AbstractMultisampleCli extends ParamsCli<VariantParams> {
     builder.calibrator(c);
   }
 
+  // Joint calling from previously output sample models alone rather than alignments
+  private void makeSampleModelsInputParams(final VariantParamsBuilder builder, final Collection<File> inputFiles, SamFilterParams filterParams) throws IOException {
+    builder.mapped(new ArrayList<>());
+    final List<SAMFileHeader> headers = new ArrayList<>();
+    for (final File f : inputFiles) {
+      try (final SampleModelsReader reader = new SampleModelsReader(f)) {
+        headers.add(reader.header());
+      }
+    }
+    final SAMFileHeader uberHeader = new SamFileHeaderMerger(SAMFileHeader.SortOrder.coordinate, headers, true).getMergedHeader();
+    builder.uberHeader(uberHeader);
+    builder.referenceRanges(SamRangeUtils.createReferenceRanges(uberHeader, filterParams));
+    if (mFlags.isSet(FILTER_DEPTH_FLAG)) {
+      builder.maxCoverageFilter(new StaticThreshold((Integer) mFlags.getValue(FILTER_DEPTH_FLAG)));
+    }
+  }
+
   private void checkLowCoverage(CalibratedPerSequenceExpectedCoverage expectedCoverages, SexMemo sexMemo) {
     boolean doWarning = false;
     for (String sample : expectedCoverages.samples()) {
@@ -652,7 +698,7 @@ public abstract class AbstractMultisampleCli extends ParamsCli<VariantParams> {
   }
 
   protected VariantStatistics getStatistics(VariantParams params) {
-    return new VariantStatistics(params.directory());
+    return new MultisampleVariantStatistics(params.directory());
   }
 
   @Override
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.rtg.variant.Variant;
+import com.rtg.variant.bayes.Description;
+import com.rtg.variant.bayes.ModelInterface;
+import com.rtg.variant.bayes.snp.HypothesesPrior;
+
+/**
+ * Collects single nucleotide positions for a block joint caller, adding the resulting
+ * calls to the output list when the block is full or is explicitly flushed.
+ */
+final class BlockCallBuffer {
+
+  private final BlockJointCaller mCaller;
+  private final String mTemplateName;
+  private final byte[] mRef;
+  private final List<Variant> mCalls;
+  private final int[] mPositions;
+  private final List<List<ModelInterface<?>>> mModels;
+  private final List<HaploidDiploidHypotheses<HypothesesPrior<Description>>> mHypotheses;
+  private int mSize = 0;
+
+  BlockCallBuffer(BlockJointCaller caller, String templateName, byte[] ref, List<Variant> calls) {
+    mCaller = caller;
+    mTemplateName = templateName;
+    mRef = ref;
+    mCalls = calls;
+    mPositions = new int[caller.blockSize()];
+    mModels = new ArrayList<>(mPositions.length);
+    mHypotheses = new ArrayList<>(mPositions.length);
+  }
+
+  /**
+   * Add a position to the block.
+   * @param position zero-based position
+   * @param models models for the position, retained by this buffer
+   * @param hypotheses hypotheses for the position
+   */
+  void add(int position, List<ModelInterface<?>> models, HaploidDiploidHypotheses<HypothesesPrior<Description>> hypotheses) {
+    mPositions[mSize++] = position;
+    mModels.add(models);
+    mHypotheses.add(hypotheses);
+    if (mSize == mPositions.length) {
+      flush();
+    }
+  }
+
+  /**
+   * Make calls for all positions in the block. Must be called before any other call is
+   * added to the output list, so that calls remain in order.
+   */
+  void flush() {
+    if (mSize == 0) {
+      return;
+    }
+    final int[] positions = mSize == mPositions.length ? mPositions : Arrays.copyOf(mPositions, mSize);
+    final Variant[] variants = mCaller.makeCalls(mTemplateName, positions, mRef, mModels, mHypotheses);
+    for (final Variant v : variants) {
+      if (v != null) {
+        mCalls.add(v);
+      }
+    }
+    mModels.clear();
+    mHypotheses.clear();
+    mSize = 0;
+  }
+}
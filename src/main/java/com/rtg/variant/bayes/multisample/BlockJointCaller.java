@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample;
+
+import java.util.List;
+
+import com.rtg.variant.Variant;
+import com.rtg.variant.bayes.Description;
+import com.rtg.variant.bayes.ModelInterface;
+import com.rtg.variant.bayes.snp.HypothesesPrior;
+
+/**
+ * A multi-sample caller that can evaluate a block of single nucleotide positions together.
+ */
+public interface BlockJointCaller extends MultisampleJointCaller {
+
+  /**
+   * @return the maximum number of positions to collect into a block, 1 if blocks should not be used
+   */
+  int blockSize();
+
+  /**
+   * Make calls at a block of single nucleotide positions.
+   * @param <D> the type of description.
+   * @param <T> the type of the haploid-diploid hypotheses.
+   *
+   * @param templateName name of template sequence.
+   * @param positions zero-based positions of the calls, in increasing order.
+   * @param ref the reference genome, 0=N, 1=A, 2=C, 3=G, 4=T.
+   * @param models for each position, individual models used to construct joint model.
+   * @param hypotheses for each position, hypotheses containing priors
+   * @return for each position, Variant object, or null if call is not to be retained
+   */
+  <D extends Description, T extends HypothesesPrior<D>> Variant[] makeCalls(String templateName, int[] positions, byte[] ref, List<List<ModelInterface<?>>> models, List<HaploidDiploidHypotheses<T>> hypotheses);
+}
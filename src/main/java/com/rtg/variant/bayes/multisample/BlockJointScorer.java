@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.rtg.variant.bayes.multisample;
+
+import java.util.List;
+
+import com.rtg.variant.bayes.Description;
+import com.rtg.variant.bayes.ModelInterface;
+import com.rtg.variant.bayes.snp.HypothesesPrior;
+
+/**
+ * A joint scorer that can score a block of positions together.
+ */
+public interface BlockJointScorer extends MultisampleJointScorer {
+
+  /**
+   * Generate best scores for multiple individuals at each of a block of positions.
+   * All positions in the block must use the same hypotheses sizes for each sample.
+   *
+   * @param <D> the type of the description
+   * @param <T> the type of the hypotheses prior
+   * @param models for each position, input models to call from
+   * @param priorContainers for each position, container for priors and <code>Bs</code>
+   * @return for each position, the scores.
+   */
+  <D extends Description, T extends HypothesesPrior<D>> HypothesisScores[] getBestScores(List<List<ModelInterface<?>>> models, List<PriorContainer<T>> priorContainers);
+}
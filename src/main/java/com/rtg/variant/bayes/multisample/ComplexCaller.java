@@ -50,6 +50,7 @@ import com.rtg.variant.VariantParams;
 import com.rtg.variant.VariantSample;
 import com.rtg.variant.bayes.ModelInterface;
 import com.rtg.variant.bayes.ModelNone;
+import com.rtg.variant.bayes.complex.ComplexScoreCache;
 import com.rtg.variant.bayes.complex.ComplexTemplate;
 import com.rtg.variant.bayes.complex.DescriptionComplex;
 import com.rtg.variant.bayes.complex.EvidenceComplex;
@@ -72,20 +73,27 @@ final class ComplexCaller {
   // Calling will bail out where this is exceeded.
   // Usually the set of hypotheses is sufficiently pruned prior to this point that
   // the cutoff only comes into play to prevent very rare pathological cases.
+  // Sharing all-paths rows across hypotheses with a common prefix allows around twice as many
+  // hypotheses as before for the same scoring work, see ComplexCallerTiming.
   private static final int MAX_HYPOTH = GlobalFlags.getIntegerValue(CoreGlobalFlags.COMPLEX_CALLER_MAX_HYPOTH_FLAG);
 
   private static final int MAX_HYPOTHESES = (int) Math.sqrt(Integer.MAX_VALUE);
 
+  // The maximum number of read versus hypothesis scores retained for reuse across the regions of a chunk.
+  private static final int SCORE_CACHE_SIZE = GlobalFlags.getIntegerValue(CoreGlobalFlags.COMPLEX_CALLER_SCORE_CACHE_SIZE);
+
   private int mExcessCoverageCount = 0;
   private int mNoHypothesesCount = 0;
   private int mExcessHypothesesCount = 0;
 
   private final VariantParams mParams;
   private final AbstractJointCallerConfiguration mConfig;
+  private final ComplexScoreCache mScoreCache;
 
   ComplexCaller(VariantParams params,  AbstractJointCallerConfiguration config) {
     mParams = params;
     mConfig = config;
+    mScoreCache = SCORE_CACHE_SIZE > 0 ? new ComplexScoreCache(SCORE_CACHE_SIZE) : null;
   }
 
   List<Variant> makeComplexCalls(Complexities complexities, ReaderWindow<VariantAlignmentRecord> tribble, byte[] template, String refName)  throws IOException {
@@ -127,7 +135,7 @@ final class ComplexCaller {
           final int genome = (numSamples == 1) ? 0 : match.alignmentRecord().getGenome();
           if (!(models.get(genome) instanceof ModelNone)) {
             final HypothesesPrior<DescriptionComplex> hypotheses = models.get(genome).haploid() ? hyp.haploid() : hyp.diploid();
-            final EvidenceComplex evidence = new EvidenceComplex(hypotheses, match, cot, mParams, mConfig.getMachineErrorChooser());
+            final EvidenceComplex evidence = new EvidenceComplex(hypotheses, match, cot, mParams, mConfig.getMachineErrorChooser(), mScoreCache);
             models.get(genome).increment(evidence);
           }
         }
@@ -298,6 +306,20 @@ final class ComplexCaller {
     return mExcessHypothesesCount;
   }
 
+  /**
+   * @return number of read versus hypothesis scores that were reused from earlier regions.
+   */
+  public long getScoreCacheHits() {
+    return mScoreCache == null ? 0 : mScoreCache.hits();
+  }
+
+  /**
+   * @return number of read versus hypothesis scores that had to be computed.
+   */
+  public long getScoreCacheMisses() {
+    return mScoreCache == null ? 0 : mScoreCache.misses();
+  }
+
   /**
    * @return number of calls that were not made due to having no hypotheses (probably due to no reads spanning region).
    */
@@ -59,6 +59,25 @@ public interface MultisampleJointCaller extends Closeable {
    */
   <D extends Description, T extends HypothesesPrior<D>> Variant makeCall(String templateName, int position, int endPosition, byte[] ref, List<ModelInterface<?>> models, HaploidDiploidHypotheses<T> hypotheses);
 
+  /**
+   * Make a call at a single nucleotide position of a chunk. Positions of a chunk are supplied in
+   * increasing order with the same context, which callers may use to carry state between positions.
+   * @param <D> the type of description.
+   * @param <T> the type of the haploid-diploid hypotheses.
+   *
+   * @param context context of the chunk containing the position.
+   * @param templateName name of template sequence.
+   * @param position zero-based position of call.
+   * @param endPosition zero-based end position of call.
+   * @param ref the reference genome, 0=N, 1=A, 2=C, 3=G, 4=T.
+   * @param models individual models used to construct joint model.
+   * @param hypotheses hypotheses containing priors
+   * @return Variant object, or null if call is not to be retained
+   */
+  default <D extends Description, T extends HypothesesPrior<D>> Variant makeCall(ChunkContext context, String templateName, int position, int endPosition, byte[] ref, List<ModelInterface<?>> models, HaploidDiploidHypotheses<T> hypotheses) {
+    return makeCall(templateName, position, endPosition, ref, models, hypotheses);
+  }
+
   /**
    * Called at the end of each input sequence.
    */
@@ -29,10 +29,13 @@
  */
 package com.rtg.variant.bayes.multisample;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -64,6 +67,7 @@ import com.rtg.scheduler.SchedulerSynchronized;
 import com.rtg.usage.UsageMetric;
 import com.rtg.util.SingletonPopulatorFactory;
 import com.rtg.util.StringUtils;
+import com.rtg.util.Utils;
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.diagnostic.ErrorType;
 import com.rtg.util.diagnostic.NoTalkbackSlimException;
@@ -72,6 +76,7 @@ import com.rtg.util.diagnostic.WarningType;
 import com.rtg.util.integrity.Exam;
 import com.rtg.util.integrity.IntegralAbstract;
 import com.rtg.util.intervals.RangeList;
+import com.rtg.util.intervals.ReferenceRanges;
 import com.rtg.util.intervals.ReferenceRegions;
 import com.rtg.util.intervals.RegionRestriction;
 import com.rtg.util.intervals.StatusInterval;
@@ -86,6 +91,7 @@ import com.rtg.variant.VariantParams;
 import com.rtg.variant.VariantParamsBuilder;
 import com.rtg.variant.avr.ModelFactory;
 import com.rtg.variant.bayes.Description;
+import com.rtg.variant.bayes.Model;
 import com.rtg.variant.bayes.ModelInterface;
 import com.rtg.variant.bayes.complex.AligningDecomposer;
 import com.rtg.variant.bayes.complex.Decomposer;
@@ -112,6 +118,7 @@ import com.rtg.vcf.VcfWriterFactory;
 import com.rtg.vcf.annotation.SimpleTandemRepeatAnnotator;
 import com.rtg.vcf.header.VcfHeader;
 
+import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.SAMSequenceRecord;
@@ -136,6 +143,8 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
   private VcfWriter mOut;
   private VariantOutputVcfFormatter mFormatter;
   private ThreadedMultifileIteratorWrapper<VariantAlignmentRecord> mWrapper;
+  private SampleModelsWriter[] mSampleModelsWriters = null;
+  private SampleModelsReader[] mSampleModelsReaders = null;
   private List<SAMSequenceRecord> mSequences;
   private ReferenceRegions mBedFilterRegions;
   private ParallelProgress mPP = null;
@@ -165,23 +174,95 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
     Diagnostic.developerLog("Genome priors:" + StringUtils.LS + VariantUtils.toGenomePriorProperties(params.genomePriors()));
   }
 
-  private Variant stepIndels(String refName, IndividualSampleProcessor<?>[] ssProcessors, int pos) {
+  private Variant stepIndels(String refName, IndividualSampleProcessor<?>[] ssProcessors, int pos, SampleModelsWriter.Chunk[] chunks) throws IOException {
     Variant v = null;
-    for (IndividualSampleProcessor<?> processor : ssProcessors) {
-      final Variant current = processor.indelOutput(refName, pos, mParams);
-      if (v == null || (current != null && current.getLocus().getLength() > v.getLocus().getLength())) {
-        v = current;
+    for (int i = 0; i < ssProcessors.length; ++i) {
+      final Variant current = ssProcessors[i].indelOutput(refName, pos, mParams);
+      if (current != null && chunks != null) {
+        chunks[i].trigger(current);
       }
+      v = longerTrigger(v, current);
     }
     return v;
   }
 
+  // The longer of two indel triggers, preferring the first when they have the same length
+  private static Variant longerTrigger(final Variant v, final Variant current) {
+    if (v == null || (current != null && current.getLocus().getLength() > v.getLocus().getLength())) {
+      return current;
+    }
+    return v;
+  }
+
+  // Complex regions of a chunk, from the single position calls and indel triggers of the chunk
+  private Complexities complexities(final List<Variant> chunkCalls, final String refName, final byte[] refNts, final int start, final int end) {
+    List<Variant> calls = chunkCalls;
+    final boolean simpleRepeats = mParams.simpleRepeatExtension() && !mParams.ionTorrent();
+    final RegionRestriction forcedComplexRegion = mParams.forceComplexRegion();
+    if (forcedComplexRegion != null) {
+      if (forcedComplexRegion.getSequenceName().equals(refName) && start <= forcedComplexRegion.getStart() && end > forcedComplexRegion.getStart()) {
+        final Variant v = new Variant(new VariantLocus(refName, forcedComplexRegion.getStart(), forcedComplexRegion.getEnd()));
+        v.setInteresting();
+        v.setIndel(1); //forces complex
+        calls = OutputUtils.merge(calls, Collections.singletonList(v));
+      }
+    }
+    return new Complexities(calls, refName, start, end, mParams.interestingSeparation(), mParams.hyperComplexLength(), refNts, simpleRepeats, mConfig.getSiteSpecificPriors());
+  }
+
+  // Calls of a chunk once its complex regions are fixed. Complex regions are called from the
+  // alignments, or only their single position calls are retained when there are no alignments.
+  private List<Variant> complexCalls(final Complexities complexRegions, final ReaderWindow<VariantAlignmentRecord> tribble, final byte[] refNts, final String refName) throws IOException {
+    assert complexRegions.isFixed();
+    final List<Variant> calls;
+    if (tribble == null || mParams.noComplexCalls()) {
+      calls = new ArrayList<>();
+      for (final Variant v : complexRegions.getOriginalCalls()) {
+        if (!v.isIndel() && !v.isSoftClip() && !v.isOverflow() && v.getLocus().getStart() >= complexRegions.startOfChunk() && v.getLocus().getStart() < complexRegions.endOfChunk()) {
+          calls.add(v);
+        }
+      }
+    } else {
+      final ComplexCaller caller = new ComplexCaller(mParams, mConfig /*, mWrapper.getCurrentRangeList() */);
+      final List<Variant> complexCalls = caller.makeComplexCalls(complexRegions, tribble, refNts, refName);
+      final List<Variant> nonComplexCalls = OutputUtils.nonShadowed(complexRegions.getOriginalCalls(), complexRegions);
+      calls = OutputUtils.merge(nonComplexCalls, complexCalls);
+      updateCounts(caller);
+    }
+    return calls;
+  }
+
+  // Release alignments of a chunk once its complex regions have been called
+  private void flushComplexities(final ReaderWindow<VariantAlignmentRecord> tribble, final Complexities last, final Complexities current, final int minimumPosition) throws IOException {
+    if (mParams.expandComplexReadQueries()) {
+      //complex calls may have are will be made +/- 1 outside of chunk boundaries
+      final int flushStart = Math.max(minimumPosition, last.startOfChunk() - 1);
+      //don't flush last base so it can be used by next complex region
+      final int flushEnd = current != null ? last.endOfChunk() - 1 : last.endOfChunk();
+      tribble.flush(flushStart, flushEnd);
+    } else {
+      tribble.flush(last.startOfChunk(), last.endOfChunk());
+    }
+  }
+
+  // Window over the alignments of a sequence, starting at the given position
+  private CircularBufferMultifileSinglePassReaderWindowSync<VariantAlignmentRecord> alignmentWindow(final String refName, final int start) {
+    String[] genomeNames = mConfig.getGenomeNames();
+    if (genomeNames.length == 1) {
+      genomeNames = new String[] {}; // Special case for singleton caller, map all records to 0
+    }
+    final int depth = mParams.maxCoverageBypass().thresholdTotal(refName);
+    final VariantAlignmentRecordPopulator pop = new VariantAlignmentRecordPopulator(MultisampleUtils.chooser(mParams), mParams.minBaseQuality(), genomeNames);
+    return new CircularBufferMultifileSinglePassReaderWindowSync<>(mWrapper, pop, mParams.uberHeader().getSequenceIndex(refName), start, depth);
+  }
+
   private static final byte OVERFLOW = 1;
   private static final byte SKIP = 2;
 
   private int processNtPositions(List<Variant> calls, MultisampleJointCaller jointCaller, ChunkInfo chunkInfo, byte[] template, ReaderWindow<VariantAlignmentRecord> tribble, int start, int end) throws IOException {
 
     int maxReadLen = 0;
+    final SampleModelsWriter.Chunk[] chunks = newChunks();
     List<RangeList.RangeView<String>> ranges = null;
     int rangeIndex = 0;
     boolean skipWholeChunk = false;
@@ -233,7 +314,13 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
           addRangeStatuses(statusInterval, ranges, rangeIndex, end);
         }
 
-        final List<ModelInterface<?>> models = new ArrayList<>(ssProcessors.length);
+        // Callers that evaluate blocks of positions get single nucleotide positions in blocks,
+        // which are flushed before any other call so that calls remain in order
+        final BlockCallBuffer block = jointCaller instanceof BlockJointCaller && ((BlockJointCaller) jointCaller).blockSize() > 1
+          ? new BlockCallBuffer((BlockJointCaller) jointCaller, refName, template, calls)
+          : null;
+        final ChunkContext context = new ChunkContext();
+        List<ModelInterface<?>> models = new ArrayList<>(ssProcessors.length);
         for (int pos = start; pos < end; ) {
           if (statusInterval.contains(pos)) {
             final byte status = statusInterval.get(pos);
@@ -250,11 +337,22 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
               final VariantLocus overflowLocus = new VariantLocus(refName, oldpos, pos);
               final Variant v = new Variant(overflowLocus);
               v.setOverflow();
+              if (block != null) {
+                block.flush();
+              }
               calls.add(v);
+              if (chunks != null) {
+                for (final SampleModelsWriter.Chunk chunk : chunks) {
+                  chunk.overflow(oldpos, pos);
+                }
+              }
             } // Otherwise status == SKIP, do nothing
           } else {
-            final Variant v = stepIndels(refName, ssProcessors, pos);
+            final Variant v = stepIndels(refName, ssProcessors, pos, chunks);
             if (v != null) {
+              if (block != null) {
+                block.flush();
+              }
               calls.add(v);
             }
             models.clear();
@@ -270,16 +368,27 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
               }
             }
             if (refHyp != Integer.MIN_VALUE) {
+              if (chunks != null) {
+                saveModels(chunks, pos, models);
+              }
               final HaploidDiploidHypotheses<HypothesesPrior<Description>> hypotheses = mConfig.getSnpHypotheses(refHyp, refName, pos);
               final Variant variant;
               final boolean onlyRefCoverage = Utils.hasOnlyRefCoverage(models);
               if (mParams.callLevel() != VariantOutputLevel.ALL && onlyRefCoverage) {
                 variant = null;
               } else {
-                for (ModelInterface<?> model : models) {
-                  model.freeze();
+                if (chunks == null) { // Already frozen when saved
+                  for (ModelInterface<?> model : models) {
+                    model.freeze();
+                  }
+                }
+                if (block != null) {
+                  block.add(pos, models, hypotheses);
+                  models = new ArrayList<>(ssProcessors.length); // Retained by the block
+                  variant = null;
+                } else {
+                  variant = jointCaller.makeCall(context, refName, pos, pos + 1, template, models, hypotheses);
                 }
-                variant = jointCaller.makeCall(refName, pos, pos + 1, template, models, hypotheses);
               }
 
               if (variant != null) {
@@ -289,12 +398,46 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
             ++pos;
           }
         }
+        if (block != null) {
+          block.flush();
+        }
+      }
+    }
+    if (chunks != null) {
+      for (int i = 0; i < chunks.length; ++i) {
+        mSampleModelsWriters[i].addChunk(start, end, chunks[i]);
       }
     }
     mPP.updateProgress(chunkInfo.percent(end));
     return maxReadLen;
   }
 
+  private SampleModelsWriter.Chunk[] newChunks() {
+    if (mSampleModelsWriters == null) {
+      return null;
+    }
+    final SampleModelsWriter.Chunk[] chunks = new SampleModelsWriter.Chunk[mSampleModelsWriters.length];
+    for (int i = 0; i < chunks.length; ++i) {
+      chunks[i] = new SampleModelsWriter.Chunk();
+    }
+    return chunks;
+  }
+
+  // Freezes the models and saves those with some evidence. Only the plain models can be
+  // saved, since other model types carry state that does not survive the round trip.
+  private static void saveModels(SampleModelsWriter.Chunk[] chunks, int pos, List<ModelInterface<?>> models) throws IOException {
+    for (int i = 0; i < chunks.length; ++i) {
+      final ModelInterface<?> model = models.get(i);
+      model.freeze();
+      if (model.statistics().coverage() > 0 || model.statistics().placedUnmappedCount() > 0) {
+        if (model.getClass() != Model.class) {
+          throw new NoTalkbackSlimException("Sample models output is not supported by this caller");
+        }
+        chunks[i].model(pos, (Model<?>) model);
+      }
+    }
+  }
+
   // Sets the status of any positions within the interval to SKIP if they are contained within a no-call range entry (one without metadata)
   private static void addRangeStatuses(StatusInterval statusInterval, List<RangeList.RangeView<String>> ranges, int startIndex, int endPos) {
     for (int rangeIndex = startIndex; rangeIndex < ranges.size(); ++rangeIndex) {
@@ -322,6 +465,8 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
     }
     synchronized (mExcessiveHypothesesLock) {
       mExcessiveHypothesesCount += caller.getExcessiveHypothesesCount();
+      mScoreCacheHits += caller.getScoreCacheHits();
+      mScoreCacheMisses += caller.getScoreCacheMisses();
     }
     synchronized (mNoHypothesesLock) {
       mNoHypothesesCount += caller.getNoHypothesesCount();
@@ -333,6 +478,8 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
   private long mExcessiveCoverageCount = 0;
   private long mExcessiveHypothesesCount = 0;
   private long mNoHypothesesCount = 0;
+  private long mScoreCacheHits = 0;
+  private long mScoreCacheMisses = 0;
 
   private final Object mExcessiveCoverageLock = new Object();
   private final Object mExcessiveHypothesesLock = new Object();
@@ -352,12 +499,6 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
 
     JobFactoryMultiSample(final ChunkInfo info, final String refName, final byte[] refNts) throws IOException {
       mInfo = info;
-      String[] genomeNames = mConfig.getGenomeNames();
-      if (genomeNames.length == 1) {
-        genomeNames = new String[] {}; // Special case for singleton caller, map all records to 0
-      }
-      final int depth = mParams.maxCoverageBypass().thresholdTotal(refName);
-      final VariantAlignmentRecordPopulator pop = new VariantAlignmentRecordPopulator(MultisampleUtils.chooser(mParams), mParams.minBaseQuality(), genomeNames);
       final RegionRestriction restriction = new RegionRestriction(refName, info.start(), info.end());
 
       if (restriction.getStart() < 0) {
@@ -365,7 +506,7 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
       } else {
         mMinimumPosition = restriction.getStart();
       }
-      mBuffer = new CircularBufferMultifileSinglePassReaderWindowSync<>(mWrapper, pop, mParams.uberHeader().getSequenceIndex(refName), restriction.getStart(), depth);
+      mBuffer = alignmentWindow(refName, restriction.getStart());
       mRefName = refName;
       mRefNts = refNts;
       mJointCaller = mConfig.getJointCaller();
@@ -445,20 +586,9 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
       public Result run() throws IOException {
         final int start = id().time() * mInfo.chunkSize() + mInfo.start();
         final int end = Math.min(start + mInfo.chunkSize(), mInfo.end());
-        List<Variant> calls = new ArrayList<>();
+        final List<Variant> calls = new ArrayList<>();
         final int maxReadLen = processNtPositions(calls, mJointCaller, mInfo, mRefNts, mBuffer, start, end);
-        final boolean simpleRepeats = mParams.simpleRepeatExtension() && !mParams.ionTorrent();
-        final RegionRestriction forcedComplexRegion = mParams.forceComplexRegion();
-        if (forcedComplexRegion != null) {
-          if (forcedComplexRegion.getSequenceName().equals(mRefName) && start <= forcedComplexRegion.getStart() && end > forcedComplexRegion.getStart()) {
-            final Variant v = new Variant(new VariantLocus(mRefName, forcedComplexRegion.getStart(), forcedComplexRegion.getEnd()));
-            v.setInteresting();
-            v.setIndel(1); //forces complex
-            calls = OutputUtils.merge(calls, Collections.singletonList(v));
-          }
-        }
-        final Complexities cx = new Complexities(calls, mRefName, start, end, mParams.interestingSeparation(), mParams.hyperComplexLength(), mRefNts, simpleRepeats, mConfig.getSiteSpecificPriors());
-        return new Result(cx, maxReadLen);
+        return new Result(complexities(calls, mRefName, mRefNts, start, end), maxReadLen);
       }
     }
 
@@ -501,23 +631,7 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
       public Result run() throws IOException {
         final Complexities complexRegions = (Complexities) mArguments[0].result(0);
         if (complexRegions != null) {
-          assert complexRegions.isFixed();
-          final List<Variant> calls;
-          if (mParams.noComplexCalls()) {
-            calls = new ArrayList<>();
-            for (final Variant v : complexRegions.getOriginalCalls()) {
-              if (!v.isIndel() && !v.isSoftClip() && !v.isOverflow() && v.getLocus().getStart() >= complexRegions.startOfChunk() && v.getLocus().getStart() < complexRegions.endOfChunk()) {
-                calls.add(v);
-              }
-            }
-          } else {
-            final ComplexCaller caller = new ComplexCaller(mParams, mConfig /*, mWrapper.getCurrentRangeList() */);
-            final List<Variant> complexCalls = caller.makeComplexCalls(complexRegions, mBuffer, mRefNts, mRefName);
-            final List<Variant> nonComplexCalls = OutputUtils.nonShadowed(complexRegions.getOriginalCalls(), complexRegions);
-            calls = OutputUtils.merge(nonComplexCalls, complexCalls);
-            updateCounts(caller);
-          }
-          return new Result(calls, complexRegions);
+          return new Result(complexCalls(complexRegions, mBuffer, mRefNts, mRefName), complexRegions);
         } else {
           return new Result(null, null);
         }
@@ -534,16 +648,8 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
         final Complexities last = mArguments[0] == null ? null : (Complexities) mArguments[0].result(0);
         //operating 1 time step behind increment job. So operating on 'last'
         if (last != null) {
-          if (mParams.expandComplexReadQueries()) {
-            final Complexities current = mArguments[1] == null ? null : (Complexities) mArguments[1].result(1);
-            //complex calls may have are will be made +/- 1 outside of chunk boundaries
-            final int flushStart = Math.max(mMinimumPosition, last.startOfChunk() - 1);
-            //don't flush last base so it can be used by next complex region
-            final int flushEnd = current != null ? last.endOfChunk() - 1 : last.endOfChunk();
-            mBuffer.flush(flushStart, flushEnd);
-          } else {
-            mBuffer.flush(last.startOfChunk(), last.endOfChunk());
-          }
+          final Complexities current = mArguments[1] == null ? null : (Complexities) mArguments[1].result(1);
+          flushComplexities(mBuffer, last, current, mMinimumPosition);
         }
         return new Result();
       }
@@ -560,17 +666,7 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
         if (initialCalls == null) {
           return new Result(null, 0);
         }
-        final List<Variant> split = trimSplit(initialCalls);
-        final List<Variant> filtered = locusAndIonTorrentFilters(split, mRefNts);
-        final List<VcfRecord> vcfRecords = new ArrayList<>(filtered.size());
-        for (final Variant v : filtered) {
-          final VcfRecord record = mFormatter.makeVcfRecord(v);
-          for (final VcfAnnotator annot : mAnnotators) {
-            annot.annotate(record);
-          }
-          vcfRecords.add(record);
-        }
-        return new Result(vcfRecords, mArguments[0].result(1));
+        return new Result(makeVcfRecords(initialCalls, mRefNts), mArguments[0].result(1));
       }
     }
 
@@ -620,6 +716,20 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
     }
   }
 
+  private List<VcfRecord> makeVcfRecords(List<Variant> initialCalls, byte[] template) {
+    final List<Variant> split = trimSplit(initialCalls);
+    final List<Variant> filtered = locusAndIonTorrentFilters(split, template);
+    final List<VcfRecord> vcfRecords = new ArrayList<>(filtered.size());
+    for (final Variant v : filtered) {
+      final VcfRecord record = mFormatter.makeVcfRecord(v);
+      for (final VcfAnnotator annot : mAnnotators) {
+        annot.annotate(record);
+      }
+      vcfRecords.add(record);
+    }
+    return vcfRecords;
+  }
+
   private List<Variant> trimSplit(List<Variant> merged) {
     final List<Variant> calls = new ArrayList<>();
     for (Variant variant : merged) {
@@ -692,13 +802,210 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
       //final Scheduler<JobIdMultisample> sched = new SchedulerSynchronized<>(depen, jobFac, eventList, System.err, mJobStatistics, mParams.threadingLookAhead());
       final String msg = "Processing " + refName;
       final Executor<JobIdMultisample> exec = createExecutor(sched, msg, mParams);
+      if (mSampleModelsWriters != null) {
+        for (final SampleModelsWriter writer : mSampleModelsWriters) {
+          writer.startSequence(refName, info.start());
+        }
+      }
       exec.run();
+      if (mSampleModelsWriters != null) {
+        for (final SampleModelsWriter writer : mSampleModelsWriters) {
+          writer.endSequence();
+        }
+      }
       sched.dumpStarvation();
       assert eventList.next(sched.lookAhead()) == null;
       assert sched.lookAhead().total() == 0;
     }
   }
 
+  // Joint call regions of a sequence from previously saved sample models. Complex regions are
+  // formed from the saved indel triggers just as when calling from alignments, and are called
+  // from the alignments when these have also been supplied.
+  private void processSampleModels(final String refName, final byte[] refNts, final List<int[]> regions) throws IOException {
+    mPP = new ParallelProgress(refName);
+    final Ploidy ploidy = mSexMemo.getRealPloidy(mParams.sex(), refName);
+    if (!mConfig.handlesPloidy(ploidy)) {
+      Diagnostic.userLog(ploidy + " sequence " + refName + " not supported in this caller");
+      return;
+    }
+    long total = 0;
+    for (final int[] region : regions) {
+      total += region[1] - region[0];
+    }
+    final MultisampleJointCaller jointCaller = mConfig.getJointCaller();
+    final CircularBufferMultifileSinglePassReaderWindowSync<VariantAlignmentRecord> tribble = mWrapper == null ? null : alignmentWindow(refName, regions.get(0)[0]);
+    try {
+      long done = 0;
+      int flushedTo = regions.get(0)[0];
+      for (final int[] region : regions) {
+        if (tribble != null && region[0] > flushedTo) {
+          // Skip the alignments between requested ranges
+          tribble.advanceBuffer(region[0]);
+          tribble.flush(flushedTo, region[0]);
+        }
+        processSampleModels(jointCaller, tribble, refName, refNts, region[0], region[1]);
+        flushedTo = region[1];
+        done += region[1] - region[0];
+        mPP.updateProgress((int) (100L * done / total));
+      }
+    } finally {
+      if (tribble != null) {
+        mOverCoverageRecords += tribble.getOverCoverageRecordsCount();
+        tribble.close();
+      }
+    }
+    jointCaller.endOfSequence();
+  }
+
+  private void processSampleModels(final MultisampleJointCaller jointCaller, final ReaderWindow<VariantAlignmentRecord> tribble, final String refName, final byte[] refNts, final int startPos, final int endPos) throws IOException {
+    final SampleModelsReader[] readers = mSampleModelsReaders;
+    boolean seen = false;
+    for (final SampleModelsReader reader : readers) {
+      if (reader != null && reader.seek(refName, startPos)) {
+        seen = true;
+      }
+    }
+    if (!seen && tribble == null) {
+      return;
+    }
+    final List<ModelInterface<?>> models = new ArrayList<>(readers.length);
+    final boolean[] loaded = new boolean[readers.length];
+    final BedComplexitiesWriter bed = new BedComplexitiesWriter(mBedOut, refName, startPos);
+    int overflowEnd = 0;
+    Complexities last = null;
+    int lastMaxReadLen = 0;
+    List<VcfRecord> lastCalls = null;
+    for (int start = startPos; start < endPos; start += mParams.chunkSize()) {
+      final int end = Math.min(start + mParams.chunkSize(), endPos);
+      final IndividualSampleProcessor<?>[] ssProcessors = mConfig.getIndividualSampleProcessors(refName, refNts, start, end);
+      final List<Variant> calls = new ArrayList<>();
+      final ChunkContext context = new ChunkContext();
+      int overflowStart = -1;
+      for (int pos = start; pos < end; ++pos) {
+        models.clear();
+        boolean anyLoaded = false;
+        Variant trigger = null;
+        for (int i = 0; i < readers.length; ++i) {
+          final ModelInterface<?> model = ssProcessors[i].step(pos);
+          ssProcessors[i].stepIndel(pos);
+          loaded[i] = false;
+          final SampleModelsReader reader = readers[i];
+          while (reader != null && reader.hasRecord() && reader.position() <= pos) {
+            if (reader.isOverflow()) {
+              overflowEnd = Math.max(overflowEnd, reader.end());
+            } else if (reader.isTrigger()) {
+              trigger = longerTrigger(trigger, reader.trigger(refName));
+            } else if (reader.position() == pos && model instanceof Model) {
+              reader.load((Model<?>) model);
+              loaded[i] = true;
+              anyLoaded = true;
+            }
+            reader.next();
+          }
+          models.add(model);
+        }
+        if (pos < overflowEnd) {
+          if (overflowStart < 0) {
+            overflowStart = pos;
+          }
+        } else {
+          if (overflowStart >= 0) {
+            calls.add(overflowCall(refName, overflowStart, pos));
+            overflowStart = -1;
+          }
+          if (trigger != null) {
+            calls.add(trigger);
+          }
+          if (anyLoaded) {
+            callSampleModels(jointCaller, context, calls, refName, refNts, pos, models, loaded);
+          }
+        }
+      }
+      if (overflowStart >= 0) {
+        calls.add(overflowCall(refName, overflowStart, end));
+      }
+      final int maxReadLen = tribble == null ? 0 : maxReadLength(tribble, start, end);
+      final Complexities cx = complexities(calls, refName, refNts, start, end);
+      Complexities.fixDangling(last, cx);
+      if (last != null) {
+        lastCalls = outputComplexities(last, cx, tribble, bed, refName, refNts, startPos, lastMaxReadLen, lastCalls);
+      }
+      last = cx;
+      lastMaxReadLen = maxReadLen;
+    }
+    if (last != null) {
+      Complexities.fixDangling(last, null);
+      lastCalls = outputComplexities(last, null, tribble, bed, refName, refNts, startPos, lastMaxReadLen, lastCalls);
+    }
+    if (lastCalls != null) {
+      for (final VcfRecord record : lastCalls) {
+        mOut.write(record);
+      }
+    }
+    bed.finish();
+  }
+
+  // Call, filter and write a chunk of calls from sample models whose complex regions are now fixed,
+  // returning the calls held back for equivalence checking against the next chunk
+  private List<VcfRecord> outputComplexities(final Complexities last, final Complexities current, final ReaderWindow<VariantAlignmentRecord> tribble, final BedComplexitiesWriter bed, final String refName, final byte[] refNts, final int minimumPosition, final int maxReadLen, final List<VcfRecord> prevLastCalls) throws IOException {
+    bed.write(last);
+    final List<Variant> calls = complexCalls(last, tribble, refNts, refName);
+    if (tribble != null) {
+      flushComplexities(tribble, last, current, minimumPosition);
+    }
+    final VcfEquivalentFilter equivFilter = new VcfEquivalentFilter(refNts, prevLastCalls);
+    for (final VcfRecord record : equivFilter.filter(makeVcfRecords(calls, refNts), maxReadLen)) {
+      mOut.write(record);
+    }
+    return equivFilter.lastCall();
+  }
+
+  // Maximum length of the alignments overlapping a chunk, reading them into the window for complex calling
+  private static int maxReadLength(final ReaderWindow<VariantAlignmentRecord> tribble, final int start, final int end) throws IOException {
+    int maxReadLen = 0;
+    int overflowEnd = 0;
+    final Iterator<VariantAlignmentRecord> it = tribble.recordsOverlap(start, end);
+    while (it.hasNext()) {
+      final VariantAlignmentRecord rec = it.next();
+      final int recEnd = rec.getStart() + rec.getLength();
+      if (rec.isOverflow()) {
+        overflowEnd = Math.max(overflowEnd, recEnd);
+      } else if (recEnd > overflowEnd) {
+        maxReadLen = Math.max(maxReadLen, rec.getLength());
+      }
+    }
+    return maxReadLen;
+  }
+
+  private static Variant overflowCall(final String refName, final int start, final int end) {
+    final Variant v = new Variant(new VariantLocus(refName, start, end));
+    v.setOverflow();
+    return v;
+  }
+
+  private void callSampleModels(final MultisampleJointCaller jointCaller, final ChunkContext context, final List<Variant> calls, final String refName, final byte[] refNts, final int pos, final List<ModelInterface<?>> models, final boolean[] loaded) {
+    int refHyp = Integer.MIN_VALUE;
+    for (ModelInterface<?> m : models) {
+      if (m.hypotheses().size() > 0) {
+        refHyp = m.reference();
+        break;
+      }
+    }
+    if (refHyp != Integer.MIN_VALUE && (mParams.callLevel() == VariantOutputLevel.ALL || !Utils.hasOnlyRefCoverage(models))) {
+      for (int i = 0; i < loaded.length; ++i) {
+        if (!loaded[i]) {
+          models.get(i).freeze();
+        }
+      }
+      final HaploidDiploidHypotheses<HypothesesPrior<Description>> hypotheses = mConfig.getSnpHypotheses(refHyp, refName, pos);
+      final Variant variant = jointCaller.makeCall(context, refName, pos, pos + 1, refNts, models, hypotheses);
+      if (variant != null) {
+        calls.add(variant);
+      }
+    }
+  }
+
   private static Executor<JobIdMultisample> createExecutor(final Scheduler<JobIdMultisample> sched, final String msg, VariantParams params) {
     final Executor<JobIdMultisample> exec;
     final String paraMsg;
@@ -785,17 +1092,33 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
     mAnnotators.add(new SimpleTandemRepeatAnnotator(mRefSequencesSource));
     mFilters.addAll(mConfig.getVcfFilters());
 
-    String[] genomeNames = mConfig.getGenomeNames();
-    if (genomeNames.length == 1) {
-      genomeNames = new String[] {}; // Special case for singleton caller, map all records to 0
+    if (!mParams.mapped().isEmpty()) {
+      String[] genomeNames = mConfig.getGenomeNames();
+      if (genomeNames.length == 1) {
+        genomeNames = new String[] {}; // Special case for singleton caller, map all records to 0
+      }
+      final SingletonPopulatorFactory<VariantAlignmentRecord> pf = new SingletonPopulatorFactory<>(new VariantAlignmentRecordPopulator(MultisampleUtils.chooser(mParams), mParams.minBaseQuality(), genomeNames));
+      mWrapper = new ThreadedMultifileIteratorWrapper<>(new SamReadingContext(mParams.mapped(), mParams.ioThreads(), mParams.filterParams(), mParams.uberHeader(), mReferenceSequences), pf);
+      final SAMSequenceDictionary dict = mWrapper.header().getSequenceDictionary();
+      mSequences = dict.getSequences();
+    } else {
+      mSequences = mParams.uberHeader().getSequenceDictionary().getSequences();
+    }
+    if (!mParams.sampleModels().isEmpty()) {
+      mSampleModelsReaders = openSampleModels(mParams.sampleModels(), mConfig.getGenomeNames());
     }
-    final SingletonPopulatorFactory<VariantAlignmentRecord> pf = new SingletonPopulatorFactory<>(new VariantAlignmentRecordPopulator(MultisampleUtils.chooser(mParams), mParams.minBaseQuality(), genomeNames));
-    mWrapper = new ThreadedMultifileIteratorWrapper<>(new SamReadingContext(mParams.mapped(), mParams.ioThreads(), mParams.filterParams(), mParams.uberHeader(), mReferenceSequences), pf);
-    final SAMSequenceDictionary dict = mWrapper.header().getSequenceDictionary();
-    mSequences = dict.getSequences();
     if (mSequences.size() < 1) {
       throw new NoTalkbackSlimException("SAM file does not contain sequence dictionary.");
     }
+    if (mParams.sampleModelsOutput()) {
+      final String[] genomeNames = mConfig.getGenomeNames();
+      mSampleModelsWriters = new SampleModelsWriter[genomeNames.length];
+      for (int i = 0; i < genomeNames.length; ++i) {
+        final File file = mParams.outputParams().outFile(genomeNames[i] + SampleModelsWriter.SUFFIX);
+        Diagnostic.userLog("Writing sample models for " + genomeNames[i] + " to " + file);
+        mSampleModelsWriters[i] = new SampleModelsWriter(file, genomeNames[i], sampleHeader(genomeNames[i]));
+      }
+    }
     mFormatter = mConfig.getOutputFormatter(mParams);
     final VcfHeader vcfHeader = mFormatter.makeHeader(mParams, mParams.uberHeader());
     for (final VcfAnnotator annot : mAnnotators) {
@@ -816,6 +1139,90 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
     Diagnostic.developerLog("Lookahead is " + mParams.threadingLookAhead());
   }
 
+  // Open the sample models files and order them by genome, genomes without a file get a null reader
+  private static SampleModelsReader[] openSampleModels(final Collection<File> files, final String[] genomeNames) throws IOException {
+    final Map<String, SampleModelsReader> bySample = new HashMap<>();
+    try {
+      for (final File f : files) {
+        final SampleModelsReader reader = new SampleModelsReader(f);
+        final SampleModelsReader prev = bySample.put(reader.sample(), reader);
+        if (prev != null) {
+          reader.close();
+          throw new NoTalkbackSlimException("Sample " + reader.sample() + " is present in more than one sample models file");
+        }
+      }
+      final SampleModelsReader[] readers = new SampleModelsReader[genomeNames.length];
+      for (int i = 0; i < genomeNames.length; ++i) {
+        readers[i] = bySample.remove(genomeNames[i]);
+        if (readers[i] == null) {
+          Diagnostic.userLog("No sample models supplied for " + genomeNames[i]);
+        }
+      }
+      for (final SampleModelsReader unused : bySample.values()) {
+        Diagnostic.warning("Sample models for " + unused.sample() + " are not used by this caller");
+        unused.close();
+      }
+      bySample.clear();
+      return readers;
+    } finally {
+      for (final SampleModelsReader reader : bySample.values()) {
+        reader.close();
+      }
+    }
+  }
+
+  // Header for the models of one sample, restricted to the read groups of that sample
+  private SAMFileHeader sampleHeader(final String sample) {
+    final SAMFileHeader header = mParams.uberHeader().clone();
+    final List<SAMReadGroupRecord> readGroups = new ArrayList<>();
+    for (final SAMReadGroupRecord rg : header.getReadGroups()) {
+      if (sample.equals(rg.getSample())) {
+        readGroups.add(rg);
+      }
+    }
+    header.setReadGroups(readGroups);
+    return header;
+  }
+
+  private void processSampleModels(final Map<String, Long> sequenceNameMap) throws IOException {
+    if (mWrapper == null) {
+      Diagnostic.warning("No alignments were supplied with the sample models, so complex regions are not called and only single position calls are made");
+    }
+    final ReferenceRanges<String> referenceRanges = mParams.referenceRanges();
+    for (final SAMSequenceRecord r : mSequences) {
+      final String sequenceName = r.getSequenceName();
+      final RangeList<String> rangeList = referenceRanges == null ? null : referenceRanges.get(sequenceName);
+      if (referenceRanges != null && rangeList == null) {
+        continue;
+      }
+      if (!sequenceNameMap.containsKey(sequenceName)) {
+        throw new NoTalkbackSlimException("Reference SDF does not contain sequence '" + sequenceName + "'");
+      }
+      final long sdfSeqId = sequenceNameMap.get(sequenceName);
+      final int sequenceLength = mReferenceSequences.length(sdfSeqId);
+      final List<int[]> regions = new ArrayList<>();
+      if (rangeList == null) {
+        regions.add(new int[] {0, sequenceLength});
+      } else {
+        // Each requested range separately, skipping the gaps between them
+        for (final RangeList.RangeView<String> range : rangeList.getRangeList()) {
+          final int endPos = Math.min(range.getEnd(), sequenceLength);
+          if (range.hasRanges() && range.getStart() < endPos) {
+            regions.add(new int[] {range.getStart(), endPos});
+          }
+        }
+      }
+      if (!regions.isEmpty()) {
+        if (mWrapper != null) {
+          mWrapper.setSequenceId(r.getSequenceIndex());
+        }
+        final byte[] sequenceNt = new byte[sequenceLength];
+        mReferenceSequences.read(sdfSeqId, sequenceNt);
+        processSampleModels(sequenceName, sequenceNt, regions);
+      }
+    }
+  }
+
   @Override
   @SuppressWarnings("try")
   protected void exec() throws IOException {
@@ -823,27 +1230,41 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
       SamUtils.checkUberHeaderAgainstReference(mReferenceSequences, mParams.uberHeader(), !mParams.ignoreIncompatibleSamHeaders());
       init();
       final Map<String, Long> sequenceNameMap = ReaderUtils.getSequenceNameMap(mReferenceSequences);
-      for (final SAMSequenceRecord r : mSequences) {
-        final String sequenceName = r.getSequenceName(); //mReferenceSequences.name(l);
-        // Only process this sequence if we are doing them all, or if it is
-        // in the restriction specified by the user
-        if (!mWrapper.context().hasRegions() || mWrapper.context().referenceRanges().containsSequence(sequenceName)) {
-          mWrapper.setSequenceId(r.getSequenceIndex());
-          if (mWrapper.hasNext()) {
-            if (!sequenceNameMap.containsKey(sequenceName)) { //this means our SDF does not have reference
-              throw new NoTalkbackSlimException("Reference SDF does not contain sequence '" + sequenceName + "'");
+      if (mSampleModelsReaders != null) {
+        processSampleModels(sequenceNameMap);
+        if (mWrapper != null) {
+          logRecordCounts();
+        }
+      } else {
+        for (final SAMSequenceRecord r : mSequences) {
+          final String sequenceName = r.getSequenceName(); //mReferenceSequences.name(l);
+          // Only process this sequence if we are doing them all, or if it is
+          // in the restriction specified by the user
+          if (!mWrapper.context().hasRegions() || mWrapper.context().referenceRanges().containsSequence(sequenceName)) {
+            mWrapper.setSequenceId(r.getSequenceIndex());
+            if (mWrapper.hasNext()) {
+              if (!sequenceNameMap.containsKey(sequenceName)) { //this means our SDF does not have reference
+                throw new NoTalkbackSlimException("Reference SDF does not contain sequence '" + sequenceName + "'");
+              }
+              final long sdfSeqId = sequenceNameMap.get(sequenceName);
+              final int sequenceLength = mReferenceSequences.length(sdfSeqId);
+              final byte[] sequenceNt = new byte[sequenceLength];
+              mReferenceSequences.read(sdfSeqId, sequenceNt);
+              processAnEntireSequence(sequenceName, sequenceNt);
             }
-            final long sdfSeqId = sequenceNameMap.get(sequenceName);
-            final int sequenceLength = mReferenceSequences.length(sdfSeqId);
-            final byte[] sequenceNt = new byte[sequenceLength];
-            mReferenceSequences.read(sdfSeqId, sequenceNt);
-            processAnEntireSequence(sequenceName, sequenceNt);
           }
         }
+        logRecordCounts();
       }
-      logRecordCounts();
       mStatistics.setExcessiveCoverageCount(mExcessiveCoverageCount);
       mStatistics.setExcessiveHypothesesCount(mExcessiveHypothesesCount);
+      final long scoreLookups = mScoreCacheHits + mScoreCacheMisses;
+      if (mStatistics instanceof MultisampleVariantStatistics) {
+        ((MultisampleVariantStatistics) mStatistics).setComplexScoreCacheCounts(mScoreCacheHits, scoreLookups);
+      }
+      if (scoreLookups > 0) {
+        Diagnostic.userLog("Complex score cache hits: " + mScoreCacheHits + " of " + scoreLookups + " lookups (" + Utils.realFormat(100.0 * mScoreCacheHits / scoreLookups, 1) + "%)");
+      }
       mStatistics.setNoHypothesesCount(mNoHypothesesCount);
 
       final long totalCalls = mStatistics.getTotalFiltered() + mStatistics.getTotalPassed();
@@ -860,6 +1281,7 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
         if (mConfig != null) {
           mConfig.close();
         }
+        closeSampleModels();
         if (mRefSequencesSource != null) {
           mRefSequencesSource.close();
         }
@@ -870,6 +1292,23 @@ public class MultisampleTask<V extends VariantStatistics> extends ParamsTask<Var
     }
   }
 
+  private void closeSampleModels() throws IOException {
+    if (mSampleModelsReaders != null) {
+      for (final SampleModelsReader reader : mSampleModelsReaders) {
+        if (reader != null) {
+          reader.close();
+        }
+      }
+    }
+    if (mSampleModelsWriters != null) {
+      for (final SampleModelsWriter writer : mSampleModelsWriters) {
+        if (writer != null) {
+          writer.close();
+        }
+      }
+    }
+  }
+
   @SuppressWarnings("unchecked")
   private static  List<VcfRecord> getVcfList(final Object o) {
     return (List<VcfRecord>) o;
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample;
+
+import java.io.File;
+
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.util.StringUtils;
+import com.rtg.util.Utils;
+import com.rtg.vcf.VariantStatistics;
+
+/**
+ * Variant statistics for the multisample callers, additionally reporting how often complex
+ * read scores were found in the score cache.
+ */
+@TestClass("com.rtg.variant.bayes.multisample.MultisampleVariantStatisticsTest")
+public class MultisampleVariantStatistics extends VariantStatistics {
+
+  // Summary lines which precede the per sample statistics
+  private static final String[] OVERALL_LABELS = {"Failed Filters", "Excessive Coverage", "Excessive Hypotheses", "No Hypotheses"};
+
+  protected long mScoreCacheHits = 0;
+  protected long mScoreCacheLookups = 0;
+
+  /**
+   * @param outputDirectory directory into which statistics are written
+   */
+  public MultisampleVariantStatistics(File outputDirectory) {
+    super(outputDirectory);
+  }
+
+  /**
+   * Set the complex score cache counts.
+   * @param hits number of lookups finding a cached score
+   * @param lookups total number of lookups
+   */
+  public void setComplexScoreCacheCounts(long hits, long lookups) {
+    mScoreCacheHits = hits;
+    mScoreCacheLookups = lookups;
+  }
+
+  /**
+   * Append the complex score cache line, if there were any lookups.
+   * @param out destination
+   */
+  protected void appendComplexScoreCache(StringBuilder out) {
+    if (mScoreCacheLookups > 0) {
+      out.append("Complex Score Cache Hits     : ").append(mScoreCacheHits).append(" of ").append(mScoreCacheLookups)
+        .append(" (").append(Utils.realFormat(100.0 * mScoreCacheHits / mScoreCacheLookups, 1)).append("%)").append(StringUtils.LS);
+    }
+  }
+
+  @Override
+  public String getStatistics() {
+    final String stats = super.getStatistics();
+    final StringBuilder cache = new StringBuilder();
+    appendComplexScoreCache(cache);
+    if (cache.length() == 0) {
+      return stats;
+    }
+    // Place with the overall counts, ahead of any per sample statistics
+    int end = 0;
+    for (final String label : OVERALL_LABELS) {
+      final int start = stats.indexOf(label);
+      if (start >= 0) {
+        final int eol = stats.indexOf(StringUtils.LS, start);
+        end = Math.max(end, eol < 0 ? stats.length() : eol + StringUtils.LS.length());
+      }
+    }
+    return stats.substring(0, end) + cache + stats.substring(end);
+  }
+}
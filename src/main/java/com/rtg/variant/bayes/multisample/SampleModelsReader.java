@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.util.diagnostic.NoTalkbackSlimException;
+import com.rtg.variant.Variant;
+import com.rtg.variant.VariantLocus;
+import com.rtg.variant.bayes.Model;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMTextHeaderCodec;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BufferedLineReader;
+
+/**
+ * Reads the frozen per-position models of a single sample written by <code>SampleModelsWriter</code>.
+ * After positioning the reader on a sequence with <code>seek</code>, records are visited in position order.
+ */
+@TestClass("com.rtg.variant.bayes.multisample.SampleModelsTest")
+public final class SampleModelsReader implements Closeable {
+
+  private final File mFile;
+  private final BlockCompressedInputStream mBgzf;
+  private final DataInputStream mIn;
+  private final String mSample;
+  private final SAMFileHeader mHeader;
+  private final Map<String, long[][]> mIndex = new HashMap<>();
+
+  private boolean mHasRecord = false;
+  private int mType;
+  private int mPosition;
+  private int mEnd;
+  private byte[] mModel = new byte[1024];
+  private int mModelLength;
+  private int mTriggerKind;
+  private int mTriggerLength;
+
+  /**
+   * @param file sample models file
+   * @throws IOException if an I/O error occurs
+   */
+  public SampleModelsReader(final File file) throws IOException {
+    mFile = file;
+    final File indexFile = SampleModelsWriter.indexFile(file);
+    if (!indexFile.exists()) {
+      throw new NoTalkbackSlimException("Index not found for sample models file " + file + ", expected " + indexFile);
+    }
+    mBgzf = new BlockCompressedInputStream(file);
+    mIn = new DataInputStream(mBgzf);
+    try {
+      if (mIn.readInt() != SampleModelsWriter.MAGIC) {
+        throw new NoTalkbackSlimException("File " + file + " is not a sample models file");
+      }
+      final int version = mIn.readInt();
+      if (version != SampleModelsWriter.VERSION) {
+        throw new NoTalkbackSlimException("Unsupported sample models version " + version + " in " + file);
+      }
+      mSample = mIn.readUTF();
+      final byte[] text = new byte[mIn.readInt()];
+      mIn.readFully(text);
+      mHeader = new SAMTextHeaderCodec().decode(BufferedLineReader.fromString(new String(text, StandardCharsets.UTF_8)), file.getPath());
+      readIndex(indexFile);
+    } catch (final IOException | RuntimeException e) {
+      mIn.close();
+      throw e;
+    }
+  }
+
+  private void readIndex(final File indexFile) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+      if (in.readInt() != SampleModelsWriter.MAGIC) {
+        throw new NoTalkbackSlimException("File " + indexFile + " is not a sample models index");
+      }
+      final int sequences = in.readInt();
+      for (int i = 0; i < sequences; ++i) {
+        final String name = in.readUTF();
+        final long[][] entries = new long[in.readInt()][];
+        for (int j = 0; j < entries.length; ++j) {
+          entries[j] = new long[] {in.readInt(), in.readLong()};
+        }
+        mIndex.put(name, entries);
+      }
+    } catch (final EOFException e) {
+      throw new NoTalkbackSlimException("Sample models index " + indexFile + " is truncated");
+    }
+  }
+
+  /**
+   * @return name of the sample
+   */
+  public String sample() {
+    return mSample;
+  }
+
+  /**
+   * @return SAM header describing the sample
+   */
+  public SAMFileHeader header() {
+    return mHeader;
+  }
+
+  /**
+   * Position the reader at the first record of a sequence that is at or after a given position.
+   * Overflow regions that span the position are included.
+   * @param sequence name of the sequence
+   * @param start zero based position
+   * @return true if there is such a record
+   * @throws IOException if an I/O error occurs
+   */
+  public boolean seek(final String sequence, final int start) throws IOException {
+    mHasRecord = false;
+    final long[][] entries = mIndex.get(sequence);
+    if (entries == null || entries.length == 0) {
+      return false;
+    }
+    // Last chunk starting at or before start, or the first chunk
+    int lo = 0;
+    int hi = entries.length - 1;
+    while (lo < hi) {
+      final int mid = (lo + hi + 1) >>> 1;
+      if (entries[mid][0] <= start) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    mBgzf.seek(entries[lo][1]);
+    while (next()) {
+      if (mEnd > start || mPosition >= start) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Advance to the next record.
+   * @return true if there is another record in the current sequence
+   * @throws IOException if an I/O error occurs
+   */
+  public boolean next() throws IOException {
+    mType = mIn.readUnsignedByte();
+    switch (mType) {
+      case SampleModelsWriter.MODEL:
+        mPosition = mIn.readInt();
+        mModelLength = mIn.readInt();
+        if (mModelLength > mModel.length) {
+          mModel = new byte[Math.max(mModelLength, 2 * mModel.length)];
+        }
+        mIn.readFully(mModel, 0, mModelLength);
+        mEnd = mPosition + 1;
+        mHasRecord = true;
+        break;
+      case SampleModelsWriter.OVERFLOW:
+        mPosition = mIn.readInt();
+        mEnd = mIn.readInt();
+        mHasRecord = true;
+        break;
+      case SampleModelsWriter.TRIGGER:
+        mPosition = mIn.readInt();
+        mEnd = mIn.readInt();
+        mTriggerKind = mIn.readUnsignedByte();
+        mTriggerLength = mIn.readInt();
+        mHasRecord = true;
+        break;
+      case SampleModelsWriter.END:
+        mHasRecord = false;
+        break;
+      default:
+        throw new NoTalkbackSlimException("Corrupt record in sample models file " + mFile);
+    }
+    return mHasRecord;
+  }
+
+  /**
+   * @return true if the reader is positioned on a record
+   */
+  public boolean hasRecord() {
+    return mHasRecord;
+  }
+
+  /**
+   * @return true if the current record is an overflow region
+   */
+  public boolean isOverflow() {
+    return mType == SampleModelsWriter.OVERFLOW;
+  }
+
+  /**
+   * @return true if the current record is an indel trigger
+   */
+  public boolean isTrigger() {
+    return mType == SampleModelsWriter.TRIGGER;
+  }
+
+  /**
+   * @return zero based position of the current model, or start of the current overflow region or indel trigger
+   */
+  public int position() {
+    return mPosition;
+  }
+
+  /**
+   * @return zero based exclusive end of the current record
+   */
+  public int end() {
+    return mEnd;
+  }
+
+  /**
+   * Restore the current model record into a model.
+   * @param model an unfrozen model with the same hypotheses and arithmetic as the model that was written
+   * @throws IOException if an I/O error occurs or the hypotheses do not match
+   */
+  public void load(final Model<?> model) throws IOException {
+    assert mHasRecord && mType == SampleModelsWriter.MODEL;
+    model.load(new DataInputStream(new ByteArrayInputStream(mModel, 0, mModelLength)));
+  }
+
+  /**
+   * Recreate the current indel trigger record as the variant that the sample produced.
+   * @param sequence name of the current sequence
+   * @return the indel or soft clip variant
+   */
+  public Variant trigger(final String sequence) {
+    assert mHasRecord && mType == SampleModelsWriter.TRIGGER;
+    final Variant v = new Variant(new VariantLocus(sequence, mPosition, mEnd));
+    v.setInteresting();
+    switch (mTriggerKind) {
+      case SampleModelsWriter.TRIGGER_INDEL:
+        v.setIndel(mTriggerLength);
+        break;
+      case SampleModelsWriter.TRIGGER_SOFT_CLIP_LEFT:
+        v.setSoftClip(mTriggerLength, Variant.SoftClipSide.LEFT);
+        break;
+      case SampleModelsWriter.TRIGGER_SOFT_CLIP_RIGHT:
+        v.setSoftClip(mTriggerLength, Variant.SoftClipSide.RIGHT);
+        break;
+      default:
+        throw new NoTalkbackSlimException("Corrupt record in sample models file " + mFile);
+    }
+    return v;
+  }
+
+  @Override
+  public void close() throws IOException {
+    mIn.close();
+  }
+}
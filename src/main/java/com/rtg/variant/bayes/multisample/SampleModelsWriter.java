@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.variant.Variant;
+import com.rtg.variant.bayes.Model;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMTextHeaderCodec;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+
+/**
+ * Writes the frozen per-position models of a single sample, so that the sample can later be
+ * joint called with other samples without reprocessing its alignments.
+ * <p>
+ * The data file is block compressed and contains a header (magic, version, sample name and
+ * SAM header text) followed by the records for each sequence, terminated by an end record.
+ * Records are either a model (position, length and the exactly saved model), an overflow region
+ * (start and end), or an indel trigger (start, end, kind and length) giving the indel or soft clip
+ * evidence that the sample contributes towards complex regions. A separate index file gives, for
+ * each sequence, the start position and virtual file offset of every non-empty chunk.
+ */
+@TestClass("com.rtg.variant.bayes.multisample.SampleModelsTest")
+public final class SampleModelsWriter implements Closeable {
+
+  /** Suffix of sample models files */
+  public static final String SUFFIX = ".models";
+  static final String INDEX_SUFFIX = ".idx";
+  static final int MAGIC = 0x52534d46; // "RSMF"
+  static final int VERSION = 3;
+  static final int MODEL = 0;
+  static final int OVERFLOW = 1;
+  static final int END = 2;
+  static final int TRIGGER = 3;
+
+  // Kinds of indel trigger
+  static final int TRIGGER_INDEL = 0;
+  static final int TRIGGER_SOFT_CLIP_LEFT = 1;
+  static final int TRIGGER_SOFT_CLIP_RIGHT = 2;
+
+  /**
+   * @param f file to check
+   * @return true if the file appears to be a sample models file
+   */
+  public static boolean isSampleModels(final File f) {
+    return f.getName().endsWith(SUFFIX);
+  }
+
+  static File indexFile(final File f) {
+    return new File(f.getPath() + INDEX_SUFFIX);
+  }
+
+  /**
+   * Accumulates the records for one chunk of positions.
+   */
+  public static final class Chunk {
+    private final ByteArrayOutputStream mBytes = new ByteArrayOutputStream();
+    private final DataOutputStream mOut = new DataOutputStream(mBytes);
+    private final ByteArrayOutputStream mModelBytes = new ByteArrayOutputStream();
+    private final DataOutputStream mModelOut = new DataOutputStream(mModelBytes);
+
+    /**
+     * Add a frozen model.
+     * @param position zero based position of the model
+     * @param model the model
+     * @throws IOException if an I/O error occurs
+     */
+    public void model(final int position, final Model<?> model) throws IOException {
+      mModelBytes.reset();
+      model.save(mModelOut);
+      mOut.writeByte(MODEL);
+      mOut.writeInt(position);
+      mOut.writeInt(mModelBytes.size());
+      mModelBytes.writeTo(mOut);
+    }
+
+    /**
+     * Add a region in which calls were suppressed due to excessive coverage.
+     * @param start zero based start of region
+     * @param end zero based exclusive end of region
+     * @throws IOException if an I/O error occurs
+     */
+    public void overflow(final int start, final int end) throws IOException {
+      mOut.writeByte(OVERFLOW);
+      mOut.writeInt(start);
+      mOut.writeInt(end);
+    }
+
+    /**
+     * Add the indel trigger of the sample at a position, as produced from its indel evidence.
+     * @param trigger an indel or soft clip variant
+     * @throws IOException if an I/O error occurs
+     */
+    public void trigger(final Variant trigger) throws IOException {
+      assert trigger.isIndel() || trigger.isSoftClip();
+      mOut.writeByte(TRIGGER);
+      mOut.writeInt(trigger.getLocus().getStart());
+      mOut.writeInt(trigger.getLocus().getEnd());
+      if (trigger.isIndel()) {
+        mOut.writeByte(TRIGGER_INDEL);
+      } else {
+        mOut.writeByte(trigger.getSoftClipSide() == Variant.SoftClipSide.LEFT ? TRIGGER_SOFT_CLIP_LEFT : TRIGGER_SOFT_CLIP_RIGHT);
+      }
+      mOut.writeInt(trigger.getIndelLength());
+    }
+
+    byte[] toByteArray() {
+      return mBytes.toByteArray();
+    }
+  }
+
+  private static final class PendingChunk {
+    private final int mEnd;
+    private final byte[] mRecords;
+    PendingChunk(final int end, final byte[] records) {
+      mEnd = end;
+      mRecords = records;
+    }
+  }
+
+  private final File mFile;
+  private final BlockCompressedOutputStream mBgzf;
+  private final DataOutputStream mOut;
+  private final Map<String, List<long[]>> mIndex = new LinkedHashMap<>();
+  private final TreeMap<Integer, PendingChunk> mPending = new TreeMap<>();
+  private List<long[]> mEntries = null;
+  private int mNext;
+
+  /**
+   * @param file destination file
+   * @param sample name of the sample
+   * @param header SAM header describing the sample
+   * @throws IOException if an I/O error occurs
+   */
+  public SampleModelsWriter(final File file, final String sample, final SAMFileHeader header) throws IOException {
+    mFile = file;
+    mBgzf = new BlockCompressedOutputStream(file);
+    mOut = new DataOutputStream(mBgzf);
+    mOut.writeInt(MAGIC);
+    mOut.writeInt(VERSION);
+    mOut.writeUTF(sample);
+    final StringWriter sw = new StringWriter();
+    new SAMTextHeaderCodec().encode(sw, header);
+    final byte[] text = sw.toString().getBytes(StandardCharsets.UTF_8);
+    mOut.writeInt(text.length);
+    mOut.write(text);
+  }
+
+  /**
+   * Start writing records for a sequence.
+   * @param name sequence name
+   * @param start position of the first chunk that will be supplied
+   */
+  public synchronized void startSequence(final String name, final int start) {
+    if (mEntries != null) {
+      throw new IllegalStateException("Sequence not finished");
+    }
+    if (mIndex.containsKey(name)) {
+      throw new IllegalArgumentException("Sequence " + name + " has already been written");
+    }
+    mEntries = new ArrayList<>();
+    mIndex.put(name, mEntries);
+    mNext = start;
+  }
+
+  /**
+   * Supply the records for a chunk of the current sequence. Chunks may be supplied in any
+   * order (for example by different threads), they are written in position order once all
+   * preceding chunks have been supplied.
+   * @param start start position of the chunk
+   * @param end end position (exclusive) of the chunk
+   * @param chunk records for the chunk
+   * @throws IOException if an I/O error occurs
+   */
+  public synchronized void addChunk(final int start, final int end, final Chunk chunk) throws IOException {
+    if (mEntries == null) {
+      throw new IllegalStateException("No current sequence");
+    }
+    mPending.put(start, new PendingChunk(end, chunk.toByteArray()));
+    PendingChunk c;
+    while ((c = mPending.remove(mNext)) != null) {
+      if (c.mRecords.length > 0) {
+        mEntries.add(new long[] {mNext, mBgzf.getFilePointer()});
+        mOut.write(c.mRecords);
+      }
+      mNext = c.mEnd;
+    }
+  }
+
+  /**
+   * Finish the current sequence.
+   * @throws IOException if an I/O error occurs
+   */
+  public synchronized void endSequence() throws IOException {
+    if (!mPending.isEmpty()) {
+      throw new IllegalStateException("Chunk starting at " + mNext + " was never supplied");
+    }
+    mOut.writeByte(END);
+    mEntries = null;
+  }
+
+  @Override
+  public void close() throws IOException {
+    mOut.close();
+    try (DataOutputStream index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile(mFile))))) {
+      index.writeInt(MAGIC);
+      index.writeInt(mIndex.size());
+      for (final Map.Entry<String, List<long[]>> e : mIndex.entrySet()) {
+        index.writeUTF(e.getKey());
+        index.writeInt(e.getValue().size());
+        for (final long[] entry : e.getValue()) {
+          index.writeInt((int) entry[0]);
+          index.writeLong(entry[1]);
+        }
+      }
+    }
+  }
+}
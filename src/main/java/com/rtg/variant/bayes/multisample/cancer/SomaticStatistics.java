@@ -38,9 +38,9 @@ import com.rtg.util.StringUtils;
 import com.rtg.util.Utils;
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.variant.VariantParams;
+import com.rtg.variant.bayes.multisample.MultisampleVariantStatistics;
 import com.rtg.variant.format.VcfFormatField;
 import com.rtg.vcf.PerSampleVariantStatistics;
-import com.rtg.vcf.VariantStatistics;
 import com.rtg.vcf.VcfRecord;
 import com.rtg.vcf.VcfUtils;
 import com.rtg.vcf.header.VcfHeader;
@@ -58,7 +58,7 @@ import com.rtg.vcf.header.VcfHeader;
  * into account.  In both cases, the same ranking field is used which is assumed to be of type double
  * (with null for missing values) and where bigger is better.
  */
-public class SomaticStatistics extends VariantStatistics {
+public class SomaticStatistics extends MultisampleVariantStatistics {
 
   private static final String GT = VcfFormatField.GT.name();
   private static final String AD = VcfFormatField.AD.name();
@@ -173,6 +173,7 @@ public class SomaticStatistics extends VariantStatistics {
     if (mExcessHypotheses > 0) {
       out.append("Excessive Hypotheses         : ").append(mExcessHypotheses).append(StringUtils.LS);
     }
+    appendComplexScoreCache(out);
     if (mNoHypotheses > 0) {
       out.append("No Hypotheses                : ").append(mNoHypotheses).append(StringUtils.LS);
     }
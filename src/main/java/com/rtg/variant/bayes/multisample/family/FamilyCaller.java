@@ -60,6 +60,8 @@ public class FamilyCaller extends AbstractMultisampleCaller implements Multisamp
   private static final boolean USE_SLOW_IMPL = false; //Boolean.valueOf(System.getProperty("rtg.family.use-slow", "false"));
   // If true, resolve disagreeing calls using the forward backward caller (currently SLOW)
   private static final boolean USE_FB_FALLBACK = GlobalFlags.getBooleanValue(CoreGlobalFlags.FAMILY_CALLER_FALLBACK_FLAG);
+  // If true, use precomputed Mendelian transmission tables when computing family posteriors
+  private static final boolean USE_TABULATED = GlobalFlags.getBooleanValue(CoreGlobalFlags.FAMILY_CALLER_TABULATED);
 
   private final VariantParams mParams;
   private final Family[] mFamilies;
@@ -103,6 +105,15 @@ public class FamilyCaller extends AbstractMultisampleCaller implements Multisamp
     }
   }
 
+  private AbstractFamilyPosterior makePosterior(Family family, List<ModelInterface<?>> models, HaploidDiploidHypotheses<?> hypotheses) {
+    if (USE_SLOW_IMPL) {
+      return new FamilyPosterior(family, mParams.genomePriors(), models, hypotheses);
+    } else if (USE_TABULATED) {
+      return new TabulatedFamilyPosterior(family, mParams.genomePriors(), models, hypotheses);
+    }
+    return new FastFamilyPosterior(family, mParams.genomePriors(), models, hypotheses);
+  }
+
   /**
    * Generate best scores for a family
    *
@@ -120,7 +131,7 @@ public class FamilyCaller extends AbstractMultisampleCaller implements Multisamp
 
     boolean agreeing = true;
     for (final Family family : mFamilies) {
-      final AbstractFamilyPosterior fp = USE_SLOW_IMPL ? new FamilyPosterior(family, mParams.genomePriors(), models, priorContainer.getHypotheses()) : new FastFamilyPosterior(family, mParams.genomePriors(), models, priorContainer.getHypotheses());
+      final AbstractFamilyPosterior fp = makePosterior(family, models, priorContainer.getHypotheses());
       final int[] ids = family.getSampleIds();
       agreeing = setScore(scores, ids[Family.FATHER_INDEX], fp.bestFather());
       agreeing &= setScore(scores, ids[Family.MOTHER_INDEX], fp.bestMother());
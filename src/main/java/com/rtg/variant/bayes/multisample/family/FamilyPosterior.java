@@ -61,7 +61,7 @@ import com.rtg.variant.util.arithmetic.LogApproximatePossibility;
 /**
  * Computation of posteriors for a family.
  */
-@TestClass(value = {"com.rtg.variant.bayes.multisample.family.FamilyPosteriorTest", "com.rtg.variant.bayes.multisample.family.FastFamilyPosteriorTest"})
+@TestClass(value = {"com.rtg.variant.bayes.multisample.family.FamilyPosteriorTest", "com.rtg.variant.bayes.multisample.family.FastFamilyPosteriorTest", "com.rtg.variant.bayes.multisample.family.TabulatedFamilyPosteriorTest"})
 public class FamilyPosterior extends AbstractFamilyPosterior {
 
   protected static final int MISSING_HYPOTHESIS = -1;
@@ -573,6 +573,11 @@ public class FamilyPosterior extends AbstractFamilyPosterior {
     return allele < counts.getDescription().size() ? counts.count(allele) : 0;
   }
 
+  /** @return true if contrary evidence adjustment can be non-zero */
+  boolean hasContraryAdjustment() {
+    return mContraryProbabilityLn < 0;
+  }
+
   protected double contraryEvidenceAdjustment(final int fatherHyp, final int motherHyp, final int childHyp) {
       // Corresponds to R(H_c | H_m, H_f, E_c, E_m, E_f) in theory document
     if (mContraryProbabilityLn < 0 && childHyp != fatherHyp && childHyp != motherHyp) { // Efficiency, no adjustment needed in case where hypotheses are the same
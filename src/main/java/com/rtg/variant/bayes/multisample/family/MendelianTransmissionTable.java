@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample.family;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.reference.Ploidy;
+import com.rtg.variant.bayes.Code;
+import com.rtg.variant.bayes.CodeDiploid;
+import com.rtg.variant.bayes.CodeHaploid;
+
+/**
+ * Dense table of the combined Mendelian and de novo transmission probabilities for
+ * one ploidy pattern. Entries are laid out so that all child hypotheses for a given
+ * pair of parent hypotheses are contiguous, allowing the child marginals to be
+ * evaluated as a straight loop over primitive arrays.
+ */
+@TestClass("com.rtg.variant.bayes.multisample.family.TabulatedFamilyPosteriorTest")
+final class MendelianTransmissionTable {
+
+  /** Tables larger than this many entries are not built, callers should evaluate the probabilities directly. */
+  static final int MAX_ENTRIES = 1 << 16;
+  private static final int MAX_CACHED_TABLES = 1000;
+
+  private static final Map<Key, MendelianTransmissionTable> CACHE = new ConcurrentHashMap<>();
+
+  private static final class Key {
+    private final Ploidy mFatherPloidy;
+    private final Ploidy mMotherPloidy;
+    private final Ploidy mChildPloidy;
+    private final Class<?> mCodeClass;
+    private final int mCodeSize;
+    private final int mFatherSize;
+    private final int mMotherSize;
+    private final int mChildSize;
+    private final int mReference;
+    private final double mLogRefDenovoPrior;
+    private final double mLogNonRefDenovoPrior;
+
+    Key(Ploidy fatherPloidy, Ploidy motherPloidy, Ploidy childPloidy, Code code, int fatherSize, int motherSize, int childSize, int reference, double logRefDenovoPrior, double logNonRefDenovoPrior) {
+      mFatherPloidy = fatherPloidy;
+      mMotherPloidy = motherPloidy;
+      mChildPloidy = childPloidy;
+      mCodeClass = code.getClass();
+      mCodeSize = code.size();
+      mFatherSize = fatherSize;
+      mMotherSize = motherSize;
+      mChildSize = childSize;
+      mReference = reference;
+      mLogRefDenovoPrior = logRefDenovoPrior;
+      mLogNonRefDenovoPrior = logNonRefDenovoPrior;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      final Key that = (Key) obj;
+      return mFatherPloidy == that.mFatherPloidy && mMotherPloidy == that.mMotherPloidy && mChildPloidy == that.mChildPloidy
+        && mCodeClass == that.mCodeClass && mCodeSize == that.mCodeSize
+        && mFatherSize == that.mFatherSize && mMotherSize == that.mMotherSize && mChildSize == that.mChildSize
+        && mReference == that.mReference
+        && Double.compare(mLogRefDenovoPrior, that.mLogRefDenovoPrior) == 0
+        && Double.compare(mLogNonRefDenovoPrior, that.mLogNonRefDenovoPrior) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(mFatherPloidy, mMotherPloidy, mChildPloidy, mCodeClass, mCodeSize, mFatherSize, mMotherSize, mChildSize, mReference, mLogRefDenovoPrior, mLogNonRefDenovoPrior);
+    }
+  }
+
+  /**
+   * Get the transmission table for the supplied ploidy pattern, building it if necessary.
+   * Tables for the standard haploid and diploid codes are shared between sites.
+   * @param fatherPloidy ploidy of the father
+   * @param motherPloidy ploidy of the mother
+   * @param childPloidy ploidy of the child
+   * @param code the maximal code used to decode hypotheses
+   * @param fatherSize number of father hypotheses, 0 if the father makes no contribution
+   * @param motherSize number of mother hypotheses, 0 if the mother makes no contribution
+   * @param childSize number of child hypotheses
+   * @param reference the reference hypothesis of the child
+   * @param logRefDenovoPrior natural log of the reference de novo prior
+   * @param logNonRefDenovoPrior natural log of the non-reference de novo prior
+   * @return the table, or null if the table would exceed <code>MAX_ENTRIES</code>
+   */
+  static MendelianTransmissionTable get(Ploidy fatherPloidy, Ploidy motherPloidy, Ploidy childPloidy, Code code, int fatherSize, int motherSize, int childSize, int reference, double logRefDenovoPrior, double logNonRefDenovoPrior) {
+    if ((long) Math.max(fatherSize, 1) * Math.max(motherSize, 1) * childSize > MAX_ENTRIES) {
+      return null;
+    }
+    final boolean shareable = code.getClass() == CodeDiploid.class || code.getClass() == CodeHaploid.class;
+    final Key key = shareable ? new Key(fatherPloidy, motherPloidy, childPloidy, code, fatherSize, motherSize, childSize, reference, logRefDenovoPrior, logNonRefDenovoPrior) : null;
+    if (key != null) {
+      final MendelianTransmissionTable table = CACHE.get(key);
+      if (table != null) {
+        return table;
+      }
+    }
+    final MendelianAlleleProbability map = MendelianAlleleProbabilityFactory.COMBINED.getMendelianAlleleProbability(fatherPloidy, motherPloidy, childPloidy, logRefDenovoPrior, logNonRefDenovoPrior, reference);
+    final MendelianTransmissionTable table = new MendelianTransmissionTable(map, code, fatherSize, motherSize, childSize);
+    if (key != null && CACHE.size() < MAX_CACHED_TABLES) {
+      CACHE.putIfAbsent(key, table);
+    }
+    return table;
+  }
+
+  private final int mMotherRows;
+  private final int mChildSize;
+  private final double[] mProbabilityLn;
+  private final boolean[] mDenovo;
+
+  MendelianTransmissionTable(MendelianAlleleProbability map, Code code, int fatherSize, int motherSize, int childSize) {
+    final int fatherRows = Math.max(fatherSize, 1);
+    mMotherRows = Math.max(motherSize, 1);
+    mChildSize = childSize;
+    mProbabilityLn = new double[fatherRows * mMotherRows * childSize];
+    mDenovo = new boolean[mProbabilityLn.length];
+    int k = 0;
+    for (int f = 0; f < fatherRows; ++f) {
+      final int father = fatherSize == 0 ? FamilyPosterior.MISSING_HYPOTHESIS : f;
+      for (int m = 0; m < mMotherRows; ++m) {
+        final int mother = motherSize == 0 ? FamilyPosterior.MISSING_HYPOTHESIS : m;
+        for (int c = 0; c < childSize; ++c, ++k) {
+          mProbabilityLn[k] = map.probabilityLn(code, father, mother, c);
+          mDenovo[k] = map.isDenovo(code, father, mother, c);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param father father hypothesis, or <code>MISSING_HYPOTHESIS</code>
+   * @param mother mother hypothesis, or <code>MISSING_HYPOTHESIS</code>
+   * @return offset of the first child hypothesis for the given parents
+   */
+  int offset(int father, int mother) {
+    final int f = father == FamilyPosterior.MISSING_HYPOTHESIS ? 0 : father;
+    final int m = mother == FamilyPosterior.MISSING_HYPOTHESIS ? 0 : mother;
+    return (f * mMotherRows + m) * mChildSize;
+  }
+
+  /** @return natural log transmission probabilities, indexed from <code>offset</code> */
+  double[] probabilityLn() {
+    return mProbabilityLn;
+  }
+
+  /** @return de novo status of each transmission, indexed from <code>offset</code> */
+  boolean[] denovo() {
+    return mDenovo;
+  }
+}
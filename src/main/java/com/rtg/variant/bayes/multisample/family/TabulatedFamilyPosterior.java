@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample.family;
+
+import java.util.List;
+
+import com.rtg.relation.Family;
+import com.rtg.variant.GenomePriorParams;
+import com.rtg.variant.bayes.Hypotheses;
+import com.rtg.variant.bayes.ModelInterface;
+import com.rtg.variant.bayes.multisample.HaploidDiploidHypotheses;
+import com.rtg.variant.util.VariantUtils;
+
+/**
+ * Posterior calculation for the family caller using precomputed Mendelian transmission
+ * tables. Produces the same marginals as <code>FastFamilyPosterior</code> but avoids
+ * constructing and querying probability objects for every parent hypothesis pair.
+ */
+public final class TabulatedFamilyPosterior extends FamilyPosterior {
+
+  // These are lazily initialized since calculateMarginals is invoked from the super constructor
+  private MendelianTransmissionTable[] mTables;
+  private MendelianAlleleProbability[] mDirect;
+  private double[][] mChildPosteriors;
+  private double[][] mRh;
+  private double[] mR;
+  private double[] mForward;
+  private double[] mReverse;
+
+  TabulatedFamilyPosterior(Family family, GenomePriorParams params, List<ModelInterface<?>> models, HaploidDiploidHypotheses<?> hypotheses) {
+    super(family, params, models, hypotheses);
+  }
+
+  private void init() {
+    final int children = mChildren.size();
+    mTables = new MendelianTransmissionTable[children];
+    mDirect = new MendelianAlleleProbability[children];
+    mChildPosteriors = new double[children][];
+    mRh = new double[children][];
+    mR = new double[children];
+    mForward = new double[children + 1];
+    mReverse = new double[children + 1];
+    for (int i = 0; i < children; ++i) {
+      final ModelInterface<?> child = mChildren.get(i);
+      final Hypotheses<?> childHyp = mHypotheses.get(child);
+      final int size = child.size();
+      mTables[i] = MendelianTransmissionTable.get(mFatherPloidy, mMotherPloidy, childHyp.ploidy(), mMaximalCode, mHypothesesFatherSize, mHypothesesMotherSize, size, childHyp.reference(), mLogDenovoRefPrior, mLogDenovoNonrefPrior);
+      if (mTables[i] == null) {
+        mDirect[i] = MendelianAlleleProbabilityFactory.COMBINED.getMendelianAlleleProbability(mFatherPloidy, mMotherPloidy, childHyp.ploidy(), mLogDenovoRefPrior, mLogDenovoNonrefPrior, childHyp.reference());
+      }
+      mChildPosteriors[i] = new double[size];
+      for (int j = 0; j < size; ++j) {
+        mChildPosteriors[i][j] = child.posteriorLn0(j);
+      }
+      mRh[i] = new double[size];
+    }
+  }
+
+  @Override
+  double calculateMarginals(double marginal, int father, int mother) {
+    if (mTables == null) {
+      init();
+    }
+    final int children = mChildren.size();
+    final boolean contrary = hasContraryAdjustment();
+    final double[] r = mR;
+    final double[][] rh = mRh;
+
+    for (int i = 0; i < children; ++i) {
+      final double[] post = mChildPosteriors[i];
+      final double[] rhi = rh[i];
+      final MendelianTransmissionTable table = mTables[i];
+      double ri = Double.NEGATIVE_INFINITY;
+      if (table != null) {
+        final double[] prob = table.probabilityLn();
+        final int offset = table.offset(father, mother);
+        for (int j = 0; j < rhi.length; ++j) {
+          rhi[j] = post[j] + prob[offset + j];
+        }
+      } else {
+        for (int j = 0; j < rhi.length; ++j) {
+          rhi[j] = post[j] + mDirect[i].probabilityLn(mMaximalCode, father, mother, j);
+        }
+      }
+      if (contrary) {
+        for (int j = 0; j < rhi.length; ++j) {
+          rhi[j] += contraryEvidenceAdjustment(father, mother, j);
+        }
+      }
+      for (final double v : rhi) {
+        ri = VariantUtils.logSumApproximation(ri, v);
+      }
+      r[i] = ri;
+    }
+
+    final double[] rForward = mForward;
+    final double[] rReverse = mReverse;
+    for (int i = 0; i < children; ++i) {
+      rForward[i + 1] = rh[i].length > 0 ? rForward[i] + r[i] : rForward[i];
+    }
+    for (int i = children - 1; i >= 0; --i) {
+      rReverse[i] = rh[i].length > 0 ? rReverse[i + 1] + r[i] : rReverse[i + 1];
+    }
+    final double parentMarginal = rForward[children] + marginal;
+    if (father != MISSING_HYPOTHESIS) {
+      mFatherMarginal[father] = VariantUtils.logSumApproximation(mFatherMarginal[father], parentMarginal);
+    }
+    if (mother != MISSING_HYPOTHESIS) {
+      mMotherMarginal[mother] = VariantUtils.logSumApproximation(mMotherMarginal[mother], parentMarginal);
+    }
+    if (!parentsNonIdentity(father, mother)) {
+      // parents are both ref so compute the probability of all children being ref and add it to the identity marginal
+      double ref = marginal;
+      for (int i = 0; i < children; ++i) {
+        if (rh[i].length > 0) {
+          ref += rh[i][mChildren.get(i).reference()];
+        }
+      }
+      final double nonIdentity = parentMarginal > ref ? VariantUtils.logSubtract(parentMarginal, ref) : Double.NEGATIVE_INFINITY;
+      mIdentity = VariantUtils.logSumApproximation(mIdentity, ref);
+      mNonIdentity = VariantUtils.logSumApproximation(mNonIdentity, nonIdentity);
+    } else {
+      // parents are non identity so the whole marginal is added to non identity marginal
+      mNonIdentity = VariantUtils.logSumApproximation(mNonIdentity, parentMarginal);
+    }
+
+    for (int child = 0; child < children; ++child) {
+      final double[] childMarginals = mChildMarginal.get(child);
+      final double[] rhc = rh[child];
+      final double base = marginal + rForward[child] + rReverse[child + 1];
+      final MendelianTransmissionTable table = mTables[child];
+      final boolean[] denovo = table == null ? null : table.denovo();
+      final int offset = table == null ? 0 : table.offset(father, mother);
+      for (int i = 0; i < childMarginals.length; ++i) {
+        final double hypMarginal = base + rhc[i];
+        childMarginals[i] = VariantUtils.logSumApproximation(childMarginals[i], hypMarginal);
+        if (mChildDenovoMarginal != null) {
+          if (denovo != null ? denovo[offset + i] : mDirect[child].isDenovo(mMaximalCode, father, mother, i)) {
+            mChildDenovoMarginal[child] = VariantUtils.logSumApproximation(mChildDenovoMarginal[child], hypMarginal);
+          } else {
+            mChildNonDenovoMarginal[child] = VariantUtils.logSumApproximation(mChildNonDenovoMarginal[child], hypMarginal);
+          }
+        }
+      }
+    }
+    return parentMarginal;
+  }
+
+}
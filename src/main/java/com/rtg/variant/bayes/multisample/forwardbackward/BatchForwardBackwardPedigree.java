@@ -0,0 +1,433 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.rtg.variant.bayes.multisample.forwardbackward;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.reference.Ploidy;
+import com.rtg.relation.Family;
+import com.rtg.util.MathUtils;
+import com.rtg.variant.GenomePriorParams;
+import com.rtg.variant.bayes.Code;
+import com.rtg.variant.bayes.Factor;
+import com.rtg.variant.bayes.ModelInterface;
+import com.rtg.variant.bayes.multisample.HaploidDiploidHypotheses;
+import com.rtg.variant.bayes.multisample.HypothesisScore;
+import com.rtg.variant.bayes.multisample.HypothesisScores;
+import com.rtg.variant.bayes.multisample.PriorContainer;
+import com.rtg.variant.bayes.multisample.family.MendelianAlleleProbability;
+import com.rtg.variant.bayes.multisample.family.MendelianAlleleProbabilityFactory;
+import com.rtg.variant.bayes.snp.HypothesesNone;
+import com.rtg.variant.bayes.snp.HypothesesPrior;
+import com.rtg.variant.util.arithmetic.PossibilityArithmetic;
+
+/**
+ * Forward backward evaluation of a pedigree over a block of positions at once.
+ * Produces the same scores as <code>FamilyCallerFB</code> evaluating each position, performing
+ * the same operations in the same arithmetic, but rather than building factors per position,
+ * messages for all positions in the block are held as arrays indexed by
+ * <code>hypothesis * positions + position</code>, so that each step of a single traversal of
+ * the pedigree processes every position in the block. Mendelian tables are computed once per
+ * reference allele rather than for every position.
+ * All positions in a block must use the same hypotheses sizes for each sample.
+ */
+@TestClass("com.rtg.variant.bayes.multisample.forwardbackward.FamilyCallerFBTest")
+final class BatchForwardBackwardPedigree {
+
+  private static final int NUMBER_ITERATIONS = 2;
+
+  private final GenomePriorParams mParams;
+  private final Family[] mFamilies;
+  private final List<List<ModelInterface<?>>> mModels;
+  private final List<? extends PriorContainer<?>> mPriorContainers;
+  private final int mPositions;
+  private final PossibilityArithmetic mArith;
+  // factor size for each sample, 1 for samples without hypotheses
+  private final int[] mSizes;
+  private final boolean[] mNone;
+  private final double[][] mS;
+  private final double[][] mPriors;
+  // bs[sample][familyId]
+  private final double[][][] mBs;
+  private final Code[] mCodes;
+  // tables[family][child][position], indexed by (father * motherSize + mother) * childSize + child
+  private final double[][][][] mCombined;
+  private final double[][][][] mMendelian;
+  private final double[][][][] mDenovo;
+
+  /**
+   * Prepare the evaluation of a pedigree over a block of positions.
+   * @param params genome priors
+   * @param families the family structures, ordered as for <code>FamilyCallerFB</code>
+   * @param models for each position, the models for all samples
+   * @param priorContainers for each position, hypotheses and <code>B</code>, the <code>B</code> values are updated by evaluation
+   */
+  BatchForwardBackwardPedigree(final GenomePriorParams params, final Family[] families, final List<List<ModelInterface<?>>> models, final List<? extends PriorContainer<?>> priorContainers) {
+    if (models.isEmpty() || models.size() != priorContainers.size()) {
+      throw new IllegalArgumentException();
+    }
+    mParams = params;
+    mFamilies = families;
+    mModels = models;
+    mPriorContainers = priorContainers;
+    mPositions = models.size();
+    final List<ModelInterface<?>> first = models.get(0);
+    final HaploidDiploidHypotheses<?> firstHypotheses = priorContainers.get(0).getHypotheses();
+    final int samples = first.size();
+    mArith = firstHypotheses.get(first.get(0)).arithmetic();
+    mSizes = new int[samples];
+    mNone = new boolean[samples];
+    mS = new double[samples][];
+    mPriors = new double[samples][];
+    mBs = new double[samples][][];
+    for (int i = 0; i < samples; ++i) {
+      final HypothesesPrior<?> prior = firstHypotheses.get(first.get(i));
+      mNone[i] = prior instanceof HypothesesNone;
+      mSizes[i] = size(prior);
+      mS[i] = new double[mSizes[i] * mPositions];
+      mPriors[i] = new double[mSizes[i] * mPositions];
+      mBs[i] = new double[priorContainers.get(0).getBs()[i].size()][mSizes[i] * mPositions];
+    }
+    for (int p = 0; p < mPositions; ++p) {
+      final List<ModelInterface<?>> m = models.get(p);
+      final HaploidDiploidHypotheses<?> hypotheses = priorContainers.get(p).getHypotheses();
+      final BContainer[] bs = priorContainers.get(p).getBs();
+      if (m.size() != samples || bs.length != samples) {
+        throw new IllegalArgumentException("Samples differ within block");
+      }
+      for (int i = 0; i < samples; ++i) {
+        final ModelInterface<?> model = m.get(i);
+        set(mS[i], i, p, model);
+        set(mPriors[i], i, p, hypotheses.get(model));
+        if (bs[i].size() != mBs[i].length) {
+          throw new IllegalArgumentException("Families differ within block for sample " + i);
+        }
+        for (int f = 0; f < mBs[i].length; ++f) {
+          set(mBs[i][f], i, p, bs[i].getB(f));
+        }
+      }
+    }
+    mCodes = new Code[families.length];
+    mCombined = new double[families.length][][][];
+    mMendelian = new double[families.length][][][];
+    mDenovo = new double[families.length][][][];
+    for (int fi = 0; fi < families.length; ++fi) {
+      final int[] ids = families[fi].getSampleIds();
+      mCodes[fi] = CommonFormulas.maxCode(firstHypotheses.get(first.get(ids[Family.FATHER_INDEX])), firstHypotheses.get(first.get(ids[Family.MOTHER_INDEX])));
+      mCombined[fi] = tables(MendelianAlleleProbabilityFactory.COMBINED, fi);
+      mMendelian[fi] = tables(MendelianAlleleProbabilityFactory.MENDELIAN, fi);
+      mDenovo[fi] = tables(MendelianAlleleProbabilityFactory.DENOVO, fi);
+    }
+  }
+
+  private static int size(final Factor<?> factor) {
+    return factor.hypotheses() instanceof HypothesesNone ? 1 : factor.size();
+  }
+
+  // Equivalent to the values of CommonFormulas.createMutableFactor
+  private void set(final double[] dest, final int sample, final int position, final Factor<?> factor) {
+    if (size(factor) != mSizes[sample]) {
+      throw new IllegalArgumentException("Hypotheses differ within block for sample " + sample);
+    }
+    if (factor.hypotheses() instanceof HypothesesNone) {
+      dest[position] = mArith.one();
+    } else {
+      for (int h = 0; h < mSizes[sample]; ++h) {
+        dest[h * mPositions + position] = factor.p(h);
+      }
+    }
+  }
+
+  private double[][][] tables(final MendelianAlleleProbabilityFactory factory, final int familyIndex) {
+    final Family family = mFamilies[familyIndex];
+    final int[] ids = family.getSampleIds();
+    final List<ModelInterface<?>> first = mModels.get(0);
+    final HaploidDiploidHypotheses<?> firstHypotheses = mPriorContainers.get(0).getHypotheses();
+    final Ploidy fatherPloidy = firstHypotheses.get(first.get(ids[Family.FATHER_INDEX])).ploidy();
+    final Ploidy motherPloidy = firstHypotheses.get(first.get(ids[Family.MOTHER_INDEX])).ploidy();
+    final int fatherSize = mSizes[ids[Family.FATHER_INDEX]];
+    final int motherSize = mSizes[ids[Family.MOTHER_INDEX]];
+    final Code code = mCodes[familyIndex];
+    final double[][][] res = new double[family.numChildren()][mPositions][];
+    for (int c = 0; c < res.length; ++c) {
+      final int child = ids[Family.FIRST_CHILD_INDEX + c];
+      final Ploidy childPloidy = first.get(child).hypotheses().ploidy();
+      final int childSize = mSizes[child];
+      // The tables only depend on the reference within a block
+      final Map<Integer, double[]> byReference = new HashMap<>();
+      for (int p = 0; p < mPositions; ++p) {
+        final int reference = mModels.get(p).get(child).reference();
+        double[] table = byReference.get(reference);
+        if (table == null) {
+          final MendelianAlleleProbability m = factory.getMendelianAlleleProbability(fatherPloidy, motherPloidy, childPloidy, mParams.logDenovoRef(), mParams.logDenovoNonRef(), reference);
+          table = new double[fatherSize * motherSize * childSize];
+          for (int j = 0; j < fatherSize; ++j) {
+            for (int k = 0; k < motherSize; ++k) {
+              for (int h = 0; h < childSize; ++h) {
+                table[(j * motherSize + k) * childSize + h] = mArith.ln2Poss(m.probabilityLn(code, j, k, h));
+              }
+            }
+          }
+          byReference.put(reference, table);
+        }
+        res[c][p] = table;
+      }
+    }
+    return res;
+  }
+
+  private double[] dot(final double[] a, final double[] b) {
+    final double[] c = new double[a.length];
+    for (int k = 0; k < a.length; ++k) {
+      c[k] = mArith.multiply(a[k], b[k]);
+    }
+    return c;
+  }
+
+  // E(u) for a parent, see CommonFormulas.forwardEGeneral
+  private double[] forwardE(final int sample, final int familyId, final double[] a) {
+    double[] e = dot(a, mS[sample]);
+    for (int f = 0; f < mBs[sample].length; ++f) {
+      if (f != familyId) {
+        e = dot(e, mBs[sample][f]);
+      }
+    }
+    return e;
+  }
+
+  // See CommonFormulas.computeD
+  private double[] computeD(final int sample) {
+    double[] d = mS[sample];
+    for (final double[] b : mBs[sample]) {
+      d = dot(d, b);
+    }
+    return d;
+  }
+
+  // C(j, k) for each child, indexed by (father * motherSize + mother) * positions + position, see CommonFormulas.backwardC
+  private double[][] backwardC(final int familyIndex) {
+    final int[] ids = mFamilies[familyIndex].getSampleIds();
+    final int fatherSize = mSizes[ids[Family.FATHER_INDEX]];
+    final int motherSize = mSizes[ids[Family.MOTHER_INDEX]];
+    final double zero = mArith.zero();
+    final double[][] res = new double[ids.length - Family.FIRST_CHILD_INDEX][];
+    for (int c = 0; c < res.length; ++c) {
+      final int child = ids[Family.FIRST_CHILD_INDEX + c];
+      final int childSize = mSizes[child];
+      final double[] d = computeD(child);
+      final double[][] tables = mCombined[familyIndex][c];
+      final double[] cv = new double[fatherSize * motherSize * mPositions];
+      for (int jk = 0; jk < fatherSize * motherSize; ++jk) {
+        final int to = jk * childSize;
+        final int co = jk * mPositions;
+        for (int p = 0; p < mPositions; ++p) {
+          final double[] table = tables[p];
+          double v = zero;
+          for (int h = 0; h < childSize; ++h) {
+            v = mArith.add(v, mArith.multiply(d[h * mPositions + p], table[to + h]));
+          }
+          cv[co + p] = v;
+        }
+      }
+      res[c] = cv;
+    }
+    return res;
+  }
+
+  // A for a child, see CommonFormulas.forwardA
+  private double[] forwardA(final double[] eu, final int usize, final double[] ev, final int vsize, final int size, final int aIndex, final double[][] c, final double[][] tables) {
+    final double[] a = new double[size * mPositions];
+    final double zero = mArith.zero();
+    for (int h = 0; h < size; ++h) {
+      final int ho = h * mPositions;
+      for (int p = 0; p < mPositions; ++p) {
+        a[ho + p] = zero;
+      }
+      for (int j = 0; j < usize; ++j) {
+        for (int k = 0; k < vsize; ++k) {
+          final int jk = j * vsize + k;
+          final int ti = jk * size + h;
+          final int co = jk * mPositions;
+          for (int p = 0; p < mPositions; ++p) {
+            final double ee = mArith.multiply(eu[j * mPositions + p], ev[k * mPositions + p]);
+            double v = mArith.multiply(ee, tables[p][ti]);
+            for (int b = 0; b < c.length; ++b) {
+              if (b != aIndex) {
+                v = mArith.multiply(v, c[b][co + p]);
+              }
+            }
+            a[ho + p] = mArith.add(a[ho + p], v);
+          }
+        }
+      }
+    }
+    return a;
+  }
+
+  // B for a parent, see CommonFormulas.backwardB
+  private double[] backwardB(final double[] eu, final int usize, final double[] ev, final int vsize, final double[][] c, final boolean father) {
+    final double[] b = new double[usize * mPositions];
+    final double zero = mArith.zero();
+    for (int j = 0; j < usize; ++j) {
+      for (int p = 0; p < mPositions; ++p) {
+        double v = zero;
+        for (int k = 0; k < vsize; ++k) {
+          double x = ev[k * mPositions + p];
+          final int co = (father ? j * vsize + k : k * usize + j) * mPositions + p;
+          for (final double[] cb : c) {
+            x = mArith.multiply(x, cb[co]);
+          }
+          v = mArith.add(v, x);
+        }
+        b[j * mPositions + p] = v;
+      }
+    }
+    return b;
+  }
+
+  private double marginalSum(final double[] q, final int size, final int position) {
+    double sum = mArith.zero();
+    for (int h = 0; h < size; ++h) {
+      sum = mArith.add(sum, q[h * mPositions + position]);
+    }
+    return mArith.poss2Ln(sum);
+  }
+
+  private Factor<?> factor(final HypothesesPrior<?> hypotheses, final double[] mendel, final double[] denovo, final int size, final int position) {
+    final MutableFactor<?> res = new MutableFactor<>(hypotheses, mArith, size);
+    for (int h = 0; h < size; ++h) {
+      final int k = h * mPositions + position;
+      res.set(h, mArith.add(mendel[k], mArith.poss2Poss(denovo[k], mArith)));
+    }
+    return res;
+  }
+
+  /**
+   * Evaluate the pedigree over the block, updating the <code>B</code> values of each position.
+   * @return for each position, the scores
+   */
+  HypothesisScores[] scores() {
+    final int samples = mSizes.length;
+    final HypothesisScore[][] scores = new HypothesisScore[mPositions][samples];
+    final boolean[] interesting = new boolean[mPositions];
+    final double[] sumNips = new double[mPositions];
+    for (int oneloop = 0; oneloop < NUMBER_ITERATIONS; ++oneloop) {
+      final double[][] as = mPriors.clone();
+      final double[][] asMendel = mPriors.clone();
+      final double[][] asDenovo = mPriors.clone();
+      for (int familyIndex = mFamilies.length - 1; familyIndex >= 0; --familyIndex) {
+        final Family family = mFamilies[familyIndex];
+        final int father = family.getSampleIds()[Family.FATHER_INDEX];
+        final int mother = family.getSampleIds()[Family.MOTHER_INDEX];
+        final double[] fatherE = forwardE(father, family.getFatherFamilyId(), as[father]);
+        final double[] motherE = forwardE(mother, family.getMotherFamilyId(), as[mother]);
+        final double[][] c = backwardC(familyIndex);
+        final double[] fatherB = mNone[father] ? mBs[father][family.getFatherFamilyId()] : backwardB(fatherE, mSizes[father], motherE, mSizes[mother], c, true);
+        final double[] motherB = mNone[mother] ? mBs[mother][family.getMotherFamilyId()] : backwardB(motherE, mSizes[mother], fatherE, mSizes[father], c, false);
+        mBs[father][family.getFatherFamilyId()] = fatherB;
+        mBs[mother][family.getMotherFamilyId()] = motherB;
+      }
+
+      for (int familyIndex = 0; familyIndex < mFamilies.length; ++familyIndex) {
+        final Family family = mFamilies[familyIndex];
+        final int[] ids = family.getSampleIds();
+        final int father = ids[Family.FATHER_INDEX];
+        final int mother = ids[Family.MOTHER_INDEX];
+        final double[] fatherE = forwardE(father, family.getFatherFamilyId(), as[father]);
+        final double[] motherE = forwardE(mother, family.getMotherFamilyId(), as[mother]);
+        final double[][] c = backwardC(familyIndex);
+        for (int k = 0; k < family.numChildren(); ++k) {
+          final int child = ids[Family.FIRST_CHILD_INDEX + k];
+          as[child] = forwardA(fatherE, mSizes[father], motherE, mSizes[mother], mSizes[child], k, c, mCombined[familyIndex][k]);
+          asMendel[child] = forwardA(fatherE, mSizes[father], motherE, mSizes[mother], mSizes[child], k, c, mMendelian[familyIndex][k]);
+          asDenovo[child] = forwardA(fatherE, mSizes[father], motherE, mSizes[mother], mSizes[child], k, c, mDenovo[familyIndex][k]);
+        }
+      }
+
+      if (oneloop + 1 >= NUMBER_ITERATIONS) {
+        for (final Family family : mFamilies) {
+          findBest(family, asMendel, asDenovo, scores, interesting, sumNips);
+        }
+      }
+    }
+    final HypothesisScores[] res = new HypothesisScores[mPositions];
+    for (int p = 0; p < mPositions; ++p) {
+      final BContainer[] bs = mPriorContainers.get(p).getBs();
+      for (int i = 0; i < samples; ++i) {
+        for (int f = 0; f < mBs[i].length; ++f) {
+          final MutableFactor<?> b = new MutableFactor<>(bs[i].getB(f).hypotheses(), mArith, mSizes[i]);
+          for (int h = 0; h < mSizes[i]; ++h) {
+            b.set(h, mBs[i][f][h * mPositions + p]);
+          }
+          bs[i].setB(f, b);
+        }
+      }
+      res[p] = new HypothesisScores(scores[p], interesting[p], MathUtils.logExpMinus1(sumNips[p]), bs);
+    }
+    return res;
+  }
+
+  // Combine the marginals of a family and make the calls at every position
+  private void findBest(final Family family, final double[][] asMendel, final double[][] asDenovo, final HypothesisScore[][] scores, final boolean[] interesting, final double[] sumNips) {
+    final int[] ids = family.getSampleIds();
+    final double[][] mendel = new double[ids.length][];
+    final double[][] denovo = new double[ids.length][];
+    for (int r = 0; r < ids.length; ++r) {
+      final double[] d = computeD(ids[r]);
+      mendel[r] = dot(asMendel[ids[r]], d);
+      denovo[r] = dot(asDenovo[ids[r]], d);
+    }
+    for (int p = 0; p < mPositions; ++p) {
+      final List<ModelInterface<?>> models = mModels.get(p);
+      final HaploidDiploidHypotheses<?> hypotheses = mPriorContainers.get(p).getHypotheses();
+      final Factor<?>[] marginals = new Factor<?>[ids.length];
+      for (int r = 0; r < ids.length; ++r) {
+        marginals[r] = factor(hypotheses.get(models.get(ids[r])), mendel[r], denovo[r], mSizes[ids[r]], p);
+      }
+      final double[] childDenovoPosteriors = new double[family.numChildren()];
+      for (int c = 0; c < childDenovoPosteriors.length; ++c) {
+        final int r = Family.FIRST_CHILD_INDEX + c;
+        childDenovoPosteriors[c] = marginalSum(denovo[r], mSizes[ids[r]], p) - marginalSum(mendel[r], mSizes[ids[r]], p);
+      }
+      final FamilyPosteriorFB fp = new FamilyPosteriorFB(family, mParams, models, hypotheses, MendelianAlleleProbabilityFactory.COMBINED);
+      fp.setMarginals(marginals);
+      fp.findBest(childDenovoPosteriors);
+      FamilyCallerFB.setScores(scores[p], family, fp, ids);
+      if (fp.isInteresting()) {
+        interesting[p] = true;
+      }
+      sumNips[p] += MathUtils.logExpPlus1(fp.getNonIdentityPosterior());
+    }
+  }
+}
@@ -40,10 +40,10 @@ import com.rtg.variant.bayes.Description;
 import com.rtg.variant.bayes.Factor;
 import com.rtg.variant.bayes.ModelInterface;
 import com.rtg.variant.bayes.multisample.AbstractMultisampleCaller;
+import com.rtg.variant.bayes.multisample.BlockJointScorer;
 import com.rtg.variant.bayes.multisample.HaploidDiploidHypotheses;
 import com.rtg.variant.bayes.multisample.HypothesisScore;
 import com.rtg.variant.bayes.multisample.HypothesisScores;
-import com.rtg.variant.bayes.multisample.MultisampleJointScorer;
 import com.rtg.variant.bayes.multisample.PriorContainer;
 import com.rtg.variant.bayes.multisample.family.MendelianAlleleProbabilityFactory;
 import com.rtg.variant.bayes.snp.HypothesesPrior;
@@ -52,7 +52,7 @@ import com.rtg.variant.bayes.snp.HypothesesPrior;
  * Generates the family comparison. Assumes the output will come in with
  * father and mother bayesians in first two array positions.
  */
-public class FamilyCallerFB extends AbstractMultisampleCaller implements MultisampleJointScorer {
+public class FamilyCallerFB extends AbstractMultisampleCaller implements BlockJointScorer {
 
   final VariantParams mParams;
   private final Family[] mFamilies;
@@ -179,7 +179,7 @@ public class FamilyCallerFB extends AbstractMultisampleCaller implements Multisa
     return new HypothesisScores(scores, isInteresting, qual, priorContainer.getBs());
   }
 
-  private void setScores(HypothesisScore[] scores, Family family, FamilyPosteriorFB fp, int[] ids) {
+  static void setScores(HypothesisScore[] scores, Family family, FamilyPosteriorFB fp, int[] ids) {
     setScore(scores, ids[Family.FATHER_INDEX], fp.bestFather());
     setScore(scores, ids[Family.MOTHER_INDEX], fp.bestMother());
     for (int i = 0; i < family.numChildren(); ++i) {
@@ -187,6 +187,22 @@ public class FamilyCallerFB extends AbstractMultisampleCaller implements Multisa
     }
   }
 
+  /**
+   * Generate best scores for a family at each of a block of positions, using a single traversal
+   * of the pedigree for the whole block. The scores are the same as those from evaluating each
+   * position individually.
+   *
+   * @param <D> the type of the description.
+   * @param <T> the type of the hypotheses prior.
+   * @param models for each position, input models to call from
+   * @param priorContainers for each position, hypotheses and <code>B</code>
+   * @return for each position, the scores.
+   */
+  @Override
+  public <D extends Description, T extends HypothesesPrior<D>> HypothesisScores[] getBestScores(List<List<ModelInterface<?>>> models, List<PriorContainer<T>> priorContainers) {
+    return new BatchForwardBackwardPedigree(mParams.genomePriors(), mFamilies, models, priorContainers).scores();
+  }
+
   @Override
   public BContainer[] makeInitialBs(List<ModelInterface<?>> models) {
     final int[] bsizes = new int[models.size()];
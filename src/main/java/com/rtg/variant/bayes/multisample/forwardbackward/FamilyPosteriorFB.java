@@ -131,6 +131,19 @@ public class FamilyPosteriorFB extends AbstractFamilyPosterior {
     }
   }
 
+  /**
+   * Set the marginals directly, rather than computing them from messages.
+   * @param marginals marginals for each family member, in family order
+   */
+  void setMarginals(Factor<?>[] marginals) {
+    mFatherMarginal = marginals[Family.FATHER_INDEX];
+    mMotherMarginal = marginals[Family.MOTHER_INDEX];
+    mChildMarginal = new Factor<?>[mChildren.size()];
+    for (int i = 0; i < mChildMarginal.length; ++i) {
+      mChildMarginal[i] = marginals[Family.FIRST_CHILD_INDEX + i];
+    }
+  }
+
   void addMarginals(FamilyPosteriorFB other) {
     mFatherMarginal = addVector(mFatherMarginal, other.mFatherMarginal);
     mMotherMarginal = addVector(mMotherMarginal, other.mMotherMarginal);
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample.lineage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.variant.bayes.Hypotheses;
+import com.rtg.variant.bayes.ModelInterface;
+import com.rtg.variant.util.VariantUtils;
+import com.rtg.variant.util.arithmetic.SimplePossibility;
+
+/**
+ * Forward backward evaluation of a cell lineage over a block of positions at once.
+ * Produces the same genotype and de novo marginals as <code>ForwardBackwardLineage</code>,
+ * but rather than building factors per position, messages for all positions in the block
+ * are held as natural log arrays indexed by <code>hypothesis * positions + position</code>,
+ * so that each step of a single traversal of the lineage processes every position in the block.
+ * All positions in a block must use the same hypotheses for each sample.
+ */
+@TestClass("com.rtg.variant.bayes.multisample.lineage.BatchForwardBackwardLineageTest")
+final class BatchForwardBackwardLineage {
+
+  private final Lineage mLineage;
+  private final int mPositions;
+  private final int[] mSizes;
+  private final int[][] mChildren;
+  private final double[][] mLikelihood;
+  // transition[node][deNovo][child * parentSize + parent], only for non-root nodes
+  private final double[][][] mTransition;
+  private final double[][] mPhi1;
+  private final double[][] mPhi2;
+  private final double[][] mTau2;
+  private final double[][][] mTau3;
+
+  /**
+   * Evaluate the lineage over a block of positions.
+   * @param lineage lineage information
+   * @param models for each position, singleton models for samples in order of the sample numbers in the lineage
+   * @param rootGenotypePriors for each position, <code>P(G)</code> for root nodes indexed by sample number
+   */
+  BatchForwardBackwardLineage(final Lineage lineage, final List<List<ModelInterface<?>>> models, final List<com.rtg.variant.bayes.Factor<?>[]> rootGenotypePriors) {
+    if (models.isEmpty() || models.size() != rootGenotypePriors.size()) {
+      throw new IllegalArgumentException();
+    }
+    if (lineage.getCoverageVariable(0) != null) {
+      // Callers evaluate positions individually with ForwardBackwardLineage in this case
+      throw new IllegalArgumentException("Copy number coverage is not supported in blocks");
+    }
+    mLineage = lineage;
+    mPositions = models.size();
+    final List<ModelInterface<?>> first = models.get(0);
+    final int nodes = first.size();
+    mSizes = new int[nodes];
+    mChildren = new int[nodes][];
+    mLikelihood = new double[nodes][];
+    mTransition = new double[nodes][][];
+    mPhi1 = new double[nodes][];
+    mPhi2 = new double[nodes][];
+    mTau2 = new double[nodes][];
+    mTau3 = new double[nodes][][];
+    for (int node = 0; node < nodes; ++node) {
+      mSizes[node] = first.get(node).hypotheses().size();
+      final List<Integer> children = new ArrayList<>(lineage.children(node));
+      mChildren[node] = new int[children.size()];
+      for (int k = 0; k < mChildren[node].length; ++k) {
+        mChildren[node][k] = children.get(k);
+      }
+    }
+    for (int node = 0; node < nodes; ++node) {
+      mLikelihood[node] = likelihood(node, models, rootGenotypePriors);
+      if (!lineage.isRoot(node)) {
+        mTransition[node] = transition(node, first.get(node).hypotheses(), first.get(lineage.parent(node)).hypotheses());
+      }
+    }
+    for (int node = 0; node < nodes; ++node) {
+      if (lineage.isRoot(node)) {
+        up(node);
+        mTau2[node] = mLikelihood[node].clone();
+        down(node);
+      }
+    }
+  }
+
+  private double[] likelihood(final int node, final List<List<ModelInterface<?>>> models, final List<com.rtg.variant.bayes.Factor<?>[]> rootGenotypePriors) {
+    final int size = mSizes[node];
+    final boolean root = mLineage.isRoot(node);
+    final double[] res = new double[size * mPositions];
+    for (int p = 0; p < mPositions; ++p) {
+      final ModelInterface<?> model = models.get(p).get(node);
+      if (model.hypotheses().size() != size) {
+        throw new IllegalArgumentException("Hypotheses differ within block for sample " + node);
+      }
+      final com.rtg.variant.bayes.Factor<?> prior = root ? rootGenotypePriors.get(p)[node] : null;
+      for (int h = 0; h < size; ++h) {
+        double v = model.arithmetic().poss2Ln(model.p(h));
+        if (prior != null) {
+          v += prior.arithmetic().poss2Ln(prior.p(h));
+        }
+        res[h * mPositions + p] = v;
+      }
+    }
+    return res;
+  }
+
+  private double[][] transition(final int node, final Hypotheses<?> hypotheses, final Hypotheses<?> hypothesesParent) {
+    final Variable g = new Variable("G" + node, hypotheses.size());
+    final Variable gp = new Variable("G" + mLineage.parent(node), hypothesesParent.size());
+    final MendelianLineageFactor f = new MendelianLineageFactor(SimplePossibility.SINGLETON, g, gp, ForwardBackwardLineage.DE_NOVO, mLineage.deNovoPrior(node), hypotheses, hypothesesParent);
+    final Map<Variable, Integer> values = new HashMap<>();
+    final double[][] res = new double[ForwardBackwardLineage.DE_NOVO.size()][hypotheses.size() * hypothesesParent.size()];
+    for (int n = 0; n < res.length; ++n) {
+      values.put(ForwardBackwardLineage.DE_NOVO, n);
+      for (int c = 0; c < hypotheses.size(); ++c) {
+        values.put(g, c);
+        for (int q = 0; q < hypothesesParent.size(); ++q) {
+          values.put(gp, q);
+          res[n][c * hypothesesParent.size() + q] = Math.log(f.p(values));
+        }
+      }
+    }
+    return res;
+  }
+
+  private double[] fill(final int size, final double v) {
+    final double[] res = new double[size * mPositions];
+    Arrays.fill(res, v);
+    return res;
+  }
+
+  private void add(final double[] acc, final double[] v) {
+    for (int k = 0; k < acc.length; ++k) {
+      acc[k] += v[k];
+    }
+  }
+
+  // Collect messages from the leaves towards the root
+  private void up(final int node) {
+    final double[] phi1 = fill(mSizes[node], 0);
+    for (final int child : mChildren[node]) {
+      up(child);
+      add(phi1, mPhi2[child]);
+    }
+    mPhi1[node] = phi1;
+    if (!mLineage.isRoot(node)) {
+      // phi2(G') = sum_G phi1(G) P(s|G) sum_N P(G|G',N)P(N)
+      final int size = mSizes[node];
+      final int parentSize = mSizes[mLineage.parent(node)];
+      final double[][] trans = mTransition[node];
+      final double[] phi2 = fill(parentSize, Double.NEGATIVE_INFINITY);
+      for (int c = 0; c < size; ++c) {
+        final int co = c * mPositions;
+        for (int q = 0; q < parentSize; ++q) {
+          final double t = VariantUtils.logSum(trans[0][c * parentSize + q], trans[1][c * parentSize + q]);
+          if (t == Double.NEGATIVE_INFINITY) {
+            continue;
+          }
+          final int qo = q * mPositions;
+          for (int p = 0; p < mPositions; ++p) {
+            phi2[qo + p] = VariantUtils.logSum(phi2[qo + p], phi1[co + p] + mLikelihood[node][co + p] + t);
+          }
+        }
+      }
+      mPhi2[node] = phi2;
+    }
+  }
+
+  // Distribute messages from the root towards the leaves
+  private void down(final int node) {
+    final int[] children = mChildren[node];
+    if (children.length == 0) {
+      return;
+    }
+    final int size = mSizes[node];
+    // Context of each child is tau2 of this node together with messages from all the siblings
+    final double[][] suffix = new double[children.length + 1][];
+    suffix[children.length] = fill(size, 0);
+    for (int k = children.length - 1; k >= 0; --k) {
+      suffix[k] = suffix[k + 1].clone();
+      add(suffix[k], mPhi2[children[k]]);
+    }
+    final double[] prefix = mTau2[node].clone();
+    for (int k = 0; k < children.length; ++k) {
+      final int child = children[k];
+      final double[] context = prefix.clone();
+      add(context, suffix[k + 1]);
+      final int childSize = mSizes[child];
+      final double[][] trans = mTransition[child];
+      final double[][] tau3 = new double[trans.length][];
+      final double[] tau2 = fill(childSize, Double.NEGATIVE_INFINITY);
+      for (int n = 0; n < trans.length; ++n) {
+        final double[] t3 = fill(childSize, Double.NEGATIVE_INFINITY);
+        for (int c = 0; c < childSize; ++c) {
+          final int co = c * mPositions;
+          for (int q = 0; q < size; ++q) {
+            final double t = trans[n][c * size + q];
+            if (t == Double.NEGATIVE_INFINITY) {
+              continue;
+            }
+            final int qo = q * mPositions;
+            for (int p = 0; p < mPositions; ++p) {
+              t3[co + p] = VariantUtils.logSum(t3[co + p], context[qo + p] + t);
+            }
+          }
+          for (int p = 0; p < mPositions; ++p) {
+            t3[co + p] += mLikelihood[child][co + p];
+            tau2[co + p] = VariantUtils.logSum(tau2[co + p], t3[co + p]);
+          }
+        }
+        tau3[n] = t3;
+      }
+      mTau3[child] = tau3;
+      mTau2[child] = tau2;
+      add(prefix, mPhi2[child]);
+      down(child);
+    }
+  }
+
+  /** @return number of positions in the block */
+  int positions() {
+    return mPositions;
+  }
+
+  /**
+   * Unnormalized genotype posterior for a sample.
+   * @param node sample number
+   * @return natural log posterior indexed by <code>hypothesis * positions + position</code>
+   */
+  double[] posteriorLn(final int node) {
+    final double[] res = mPhi1[node].clone();
+    add(res, mTau2[node]);
+    return res;
+  }
+
+  /**
+   * Unnormalized de novo marginal for a non-root sample.
+   * @param node sample number
+   * @return natural log marginal indexed by <code>deNovo * positions + position</code>
+   */
+  double[] deNovoLn(final int node) {
+    if (mLineage.isRoot(node)) {
+      throw new IllegalArgumentException("There is no denovo variable for a root");
+    }
+    final double[][] tau3 = mTau3[node];
+    final double[] phi1 = mPhi1[node];
+    final double[] res = fill(tau3.length, Double.NEGATIVE_INFINITY);
+    for (int n = 0; n < tau3.length; ++n) {
+      final int no = n * mPositions;
+      for (int k = 0; k < phi1.length; ++k) {
+        final int p = k % mPositions;
+        res[no + p] = VariantUtils.logSum(res[no + p], phi1[k] + tau3[n][k]);
+      }
+    }
+    return res;
+  }
+}
@@ -29,6 +29,7 @@
  */
 package com.rtg.variant.bayes.multisample.lineage;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -37,8 +38,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.rtg.launcher.globals.CoreGlobalFlags;
+import com.rtg.launcher.globals.GlobalFlags;
 import com.rtg.relation.LineageLookup;
 import com.rtg.util.Pair;
+import com.rtg.variant.Variant;
 import com.rtg.variant.VariantOutputLevel;
 import com.rtg.variant.VariantParams;
 import com.rtg.variant.VariantSample;
@@ -47,14 +51,16 @@ import com.rtg.variant.bayes.GenotypeMeasure;
 import com.rtg.variant.bayes.Hypotheses;
 import com.rtg.variant.bayes.ModelInterface;
 import com.rtg.variant.bayes.multisample.AbstractMultisampleCaller;
+import com.rtg.variant.bayes.multisample.BlockJointCaller;
 import com.rtg.variant.bayes.multisample.HaploidDiploidHypotheses;
 import com.rtg.variant.bayes.snp.HypothesesPrior;
+import com.rtg.variant.util.arithmetic.PossibilityArithmetic;
 
 /**
  * Tree structure for a lineage.
  *
  */
-public final class Lineage extends AbstractMultisampleCaller {
+public final class Lineage extends AbstractMultisampleCaller implements BlockJointCaller {
 
   /**
    * Constructs lineages
@@ -150,6 +156,8 @@ public final class Lineage extends AbstractMultisampleCaller {
   }
 
   private static final int MAX_COPY_NUMBER = 2;
+  private static final boolean BATCH_FORWARD_BACKWARD = GlobalFlags.getBooleanValue(CoreGlobalFlags.LINEAGE_BATCH_FORWARD_BACKWARD);
+  private static final int BLOCK_SIZE = 64;
 
   private final Map<Integer, Set<Integer>> mLineageGraph;
   //private final Variable[] mGenotypeVariables;
@@ -215,6 +223,38 @@ public final class Lineage extends AbstractMultisampleCaller {
 
   @Override
   protected <D extends Description, T extends HypothesesPrior<D>> ComparisonResult makeSamples(List<ModelInterface<?>> models, HaploidDiploidHypotheses<T> hypotheses) {
+    if (BATCH_FORWARD_BACKWARD && mCoverageVariables == null) {
+      return makeSamples(Collections.singletonList(models), Collections.singletonList(hypotheses))[0];
+    }
+    return forwardBackward(models, hypotheses);
+  }
+
+  @Override
+  public int blockSize() {
+    return BATCH_FORWARD_BACKWARD && mCoverageVariables == null ? BLOCK_SIZE : 1;
+  }
+
+  @Override
+  public <D extends Description, T extends HypothesesPrior<D>> Variant[] makeCalls(String templateName, int[] positions, byte[] ref, List<List<ModelInterface<?>>> models, List<HaploidDiploidHypotheses<T>> hypotheses) {
+    final Variant[] res = new Variant[positions.length];
+    // Evaluate runs of positions which have the same hypotheses sizes for every sample together
+    int start = 0;
+    while (start < positions.length) {
+      int end = start + 1;
+      while (end < positions.length && sameSizes(models.get(start), models.get(end))) {
+        ++end;
+      }
+      final ComparisonResult[] results = makeSamples(models.subList(start, end), hypotheses.subList(start, end));
+      for (int p = start; p < end; ++p) {
+        res[p] = makeVariant(templateName, positions[p], positions[p] + 1, ref, models.get(p), hypotheses.get(p), results[p - start]);
+      }
+      start = end;
+    }
+    return res;
+  }
+
+  // Evaluate a single position using generic factors
+  private <D extends Description, T extends HypothesesPrior<D>> ComparisonResult forwardBackward(List<ModelInterface<?>> models, HaploidDiploidHypotheses<T> hypotheses) {
     // todo Coverage
     final Factor[] rootFactors = new Factor[models.size()];
     for (int i = 0; i < models.size(); ++i) {
@@ -239,18 +279,93 @@ public final class Lineage extends AbstractMultisampleCaller {
         deNovo = bestDenovo.getA().get(ForwardBackwardLineage.DE_NOVO) == 0 ? VariantSample.DeNovoStatus.NOT_DE_NOVO : VariantSample.DeNovoStatus.IS_DE_NOVO;
         deNovoScore = marginal.arithmetic().poss2Ln(bestDenovo.getB());
       }
-      final ModelInterface<?> model = models.get(k);
-      final Hypotheses<? extends Description> sampleHyp = model.hypotheses();
       final DefaultFactor posterior = DefaultFactor.asDefault(fb.posterior(k));
       assert posterior.scope().size() == 1; // Should be over just genotype
-      final GenotypeMeasure measure = new DefaultFactor.FactorGenotypeMeasure(posterior, model.hypotheses());
-      final boolean match = measure.best() == measure.reference();
+      samples[k] = makeSample(models.get(k), posterior, deNovo, deNovoScore);
+      interesting |= !samples[k].isIdentity();
+    }
+    return makeResult(interesting, samples);
+  }
 
-      final VariantSample sample = new VariantSample(sampleHyp.ploidy(), sampleHyp.name(measure.best()), match, measure, deNovo, deNovoScore);
-      model.statistics().addCountsToSample(sample, model, mParams);
-      samples[k] = sample;
-      interesting |= !match;
+  /**
+   * Call a block of positions using a single traversal of the lineage.
+   * All positions in the block must use the same hypotheses for each sample.
+   * When copy number coverage is being modelled, positions are evaluated individually.
+   * @param <D> the type of the description
+   * @param <T> the type of the hypotheses prior
+   * @param models for each position, the models for all samples
+   * @param hypotheses for each position, the hypotheses
+   * @return the result for each position, entries are null for positions that are not interesting
+   */
+  <D extends Description, T extends HypothesesPrior<D>> ComparisonResult[] makeSamples(List<List<ModelInterface<?>>> models, List<HaploidDiploidHypotheses<T>> hypotheses) {
+    final int positions = models.size();
+    if (mCoverageVariables != null) {
+      final ComparisonResult[] res = new ComparisonResult[positions];
+      for (int p = 0; p < positions; ++p) {
+        res[p] = forwardBackward(models.get(p), hypotheses.get(p));
+      }
+      return res;
+    }
+    final List<com.rtg.variant.bayes.Factor<?>[]> rootPriors = new ArrayList<>(positions);
+    for (int p = 0; p < positions; ++p) {
+      final List<ModelInterface<?>> m = models.get(p);
+      final com.rtg.variant.bayes.Factor<?>[] priors = new com.rtg.variant.bayes.Factor<?>[m.size()];
+      for (int i = 0; i < m.size(); ++i) {
+        if (isRoot(i)) {
+          priors[i] = hypotheses.get(p).get(m.get(i));
+        }
+      }
+      rootPriors.add(priors);
+    }
+    final BatchForwardBackwardLineage fb = new BatchForwardBackwardLineage(this, models, rootPriors);
+    final int samplesCount = models.get(0).size();
+    final VariantSample[][] samples = new VariantSample[positions][samplesCount];
+    final boolean[] interesting = new boolean[positions];
+    for (int k = 0; k < samplesCount; ++k) {
+      final double[] posteriorLn = fb.posteriorLn(k);
+      final double[] deNovoLn = isRoot(k) ? null : fb.deNovoLn(k);
+      for (int p = 0; p < positions; ++p) {
+        final ModelInterface<?> model = models.get(p).get(k);
+        final Double deNovoScore;
+        final VariantSample.DeNovoStatus deNovo;
+        if (deNovoLn == null) {
+          deNovo = VariantSample.DeNovoStatus.UNSPECIFIED;
+          deNovoScore = null;
+        } else {
+          final double notDeNovoLn = deNovoLn[p];
+          final double isDeNovoLn = deNovoLn[positions + p];
+          final boolean isDeNovo = isDeNovoLn > notDeNovoLn;
+          deNovo = isDeNovo ? VariantSample.DeNovoStatus.IS_DE_NOVO : VariantSample.DeNovoStatus.NOT_DE_NOVO;
+          deNovoScore = isDeNovo ? isDeNovoLn - notDeNovoLn : notDeNovoLn - isDeNovoLn;
+        }
+        final PossibilityArithmetic arith = model.arithmetic();
+        final int size = model.hypotheses().size();
+        final double[] poss = new double[size];
+        for (int h = 0; h < size; ++h) {
+          poss[h] = arith.ln2Poss(posteriorLn[h * positions + p]);
+        }
+        final DefaultFactor posterior = new DefaultFactor(arith, Collections.singletonList(new Variable("G" + k, size)), poss);
+        samples[p][k] = makeSample(model, posterior, deNovo, deNovoScore);
+        interesting[p] |= !samples[p][k].isIdentity();
+      }
     }
+    final ComparisonResult[] res = new ComparisonResult[positions];
+    for (int p = 0; p < positions; ++p) {
+      res[p] = makeResult(interesting[p], samples[p]);
+    }
+    return res;
+  }
+
+  private VariantSample makeSample(final ModelInterface<?> model, final DefaultFactor posterior, final VariantSample.DeNovoStatus deNovo, final Double deNovoScore) {
+    final Hypotheses<? extends Description> sampleHyp = model.hypotheses();
+    final GenotypeMeasure measure = new DefaultFactor.FactorGenotypeMeasure(posterior, model.hypotheses());
+    final boolean match = measure.best() == measure.reference();
+    final VariantSample sample = new VariantSample(sampleHyp.ploidy(), sampleHyp.name(measure.best()), match, measure, deNovo, deNovoScore);
+    model.statistics().addCountsToSample(sample, model, mParams);
+    return sample;
+  }
+
+  private ComparisonResult makeResult(final boolean interesting, final VariantSample[] samples) {
     if (!interesting && mParams.callLevel() != VariantOutputLevel.ALL) {
       return null;
     }
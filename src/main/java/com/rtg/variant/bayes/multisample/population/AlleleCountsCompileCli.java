@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample.population;
+
+import static com.rtg.launcher.CommonFlags.FILE;
+import static com.rtg.launcher.CommonFlags.INPUT_FLAG;
+import static com.rtg.launcher.CommonFlags.OUTPUT_FLAG;
+import static com.rtg.util.cli.CommonFlagCategories.INPUT_OUTPUT;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import com.rtg.launcher.AbstractCli;
+import com.rtg.launcher.CommonFlags;
+import com.rtg.util.cli.CommonFlagCategories;
+import com.rtg.util.diagnostic.Diagnostic;
+
+/**
+ * Compile a population priors <code>VCF</code> into a binary allele counts store.
+ */
+public class AlleleCountsCompileCli extends AbstractCli {
+
+  @Override
+  public String moduleName() {
+    return "popcompile";
+  }
+
+  @Override
+  public String description() {
+    return "compile population priors into a binary allele counts store";
+  }
+
+  @Override
+  protected void initFlags() {
+    CommonFlagCategories.setCategories(mFlags);
+    mFlags.setDescription("Compiles a population priors VCF into a compact binary allele counts store that can be supplied to --population-priors in place of the VCF.");
+    mFlags.registerRequired('i', INPUT_FLAG, File.class, FILE, "VCF file containing population allele counts").setCategory(INPUT_OUTPUT);
+    mFlags.registerRequired('o', OUTPUT_FLAG, File.class, FILE, "output allele counts store file name").setCategory(INPUT_OUTPUT);
+    CommonFlags.initForce(mFlags);
+    mFlags.setValidator(flags -> CommonFlags.validateInputFile(flags, INPUT_FLAG)
+      && CommonFlags.validateOutputFile(flags, outputFile((File) flags.getValue(OUTPUT_FLAG))));
+  }
+
+  static File outputFile(final File output) {
+    return AlleleCountsStore.isStore(output) ? output : new File(output.getPath() + AlleleCountsStore.SUFFIX);
+  }
+
+  @Override
+  protected int mainExec(OutputStream out, PrintStream err) throws IOException {
+    final File input = (File) mFlags.getValue(INPUT_FLAG);
+    final File output = outputFile((File) mFlags.getValue(OUTPUT_FLAG));
+    final long records = AlleleCountsStore.compile(input, output);
+    Diagnostic.info("Compiled " + records + " allele count records into " + output);
+    return 0;
+  }
+}
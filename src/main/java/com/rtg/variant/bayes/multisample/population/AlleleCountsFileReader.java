@@ -52,7 +52,7 @@ import com.rtg.vcf.header.InfoField;
 import com.rtg.vcf.header.VcfHeader;
 
 /**
- * Reads either a <code>VCF</code> or an allele counts file into a string array ready for parsing
+ * Reads either a <code>VCF</code>, an allele counts file, or a compiled allele counts store into a string array ready for parsing
  * Warnings handling not thread safe.
  */
 @TestClass(value = {"com.rtg.variant.bayes.multisample.population.AlleleCountsFileReaderTest", "com.rtg.variant.bayes.multisample.population.PopulationHwHypothesesCreatorTest"})
@@ -63,6 +63,7 @@ public final class AlleleCountsFileReader implements Closeable {
 
   private final TabixLineReader mReader;
   private final VcfReader mVcfReader;
+  private final AlleleCountsStore mStore;
   private final boolean mSupportsANAC;
 
   private AlleleCounts mCurrent;
@@ -76,6 +77,17 @@ public final class AlleleCountsFileReader implements Closeable {
   private AlleleCountsFileReader(TabixLineReader reader) {
     mReader = reader;
     mVcfReader = null;
+    mStore = null;
+    mSupportsANAC = false;
+  }
+
+  /**
+   * @param store reader for a compiled allele counts store
+   */
+  private AlleleCountsFileReader(AlleleCountsStore store) {
+    mReader = null;
+    mVcfReader = null;
+    mStore = store;
     mSupportsANAC = false;
   }
 
@@ -85,6 +97,7 @@ public final class AlleleCountsFileReader implements Closeable {
   private AlleleCountsFileReader(VcfReader vcfReader) {
     mReader = null;
     mVcfReader = vcfReader;
+    mStore = null;
     mSupportsANAC = checkSupportsACandAN(mVcfReader.getHeader());
   }
 
@@ -96,7 +109,9 @@ public final class AlleleCountsFileReader implements Closeable {
    * @throws IOException if bad things occur
    */
   public static AlleleCountsFileReader openAlleleCountReader(File f, ReferenceRanges<String> ranges) throws IOException {
-    if (VcfUtils.isVcfExtension(f)) {
+    if (AlleleCountsStore.isStore(f)) {
+      return new AlleleCountsFileReader(new AlleleCountsStore(f, ranges));
+    } else if (VcfUtils.isVcfExtension(f)) {
       return new AlleleCountsFileReader(VcfReader.openVcfReader(f, ranges));
     } else {
       return new AlleleCountsFileReader(new TabixLineReader(f, TabixIndexer.indexFileName(f), ranges));
@@ -118,7 +133,13 @@ public final class AlleleCountsFileReader implements Closeable {
    * @throws IOException if bad things occur
    */
   public boolean next() throws IOException {
-    if (mVcfReader != null) { //entirely certain this vcf section can made a lot nicer but don't have time right now
+    if (mStore != null) {
+      if (mStore.next()) {
+        mCurrent = mStore.getCurrent();
+        mCurrentReference = mStore.getCurrentReference();
+        return true;
+      }
+    } else if (mVcfReader != null) { //entirely certain this vcf section can made a lot nicer but don't have time right now
       while (mVcfReader.hasNext()) {
         final VcfRecord rec = mVcfReader.next();
         mCurrent = vcfRecordToAlleleCountLine(rec);
@@ -316,6 +337,9 @@ public final class AlleleCountsFileReader implements Closeable {
     if (mReader != null) {
       mReader.close();
     }
+    if (mStore != null) {
+      mStore.close();
+    }
     if (mWarnings > 0) {
       Diagnostic.warning(mWarnings + " total warnings during allele counts reading.");
     }
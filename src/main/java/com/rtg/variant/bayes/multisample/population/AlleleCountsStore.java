@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample.population;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.util.diagnostic.Diagnostic;
+import com.rtg.util.diagnostic.NoTalkbackSlimException;
+import com.rtg.util.intervals.RangeList;
+import com.rtg.util.intervals.ReferenceRanges;
+
+/**
+ * Compact binary store of population allele counts, as an alternative to repeatedly
+ * parsing a population priors <code>VCF</code>.
+ * <p>
+ * The file consists of a header, then the records for each sequence stored contiguously
+ * in position order, followed by an index, and finally the offset of the index. Each record
+ * is stored as the zero based position, the number of alleles, and for each allele (reference
+ * allele first) its length, bases, and count. The records of each sequence are grouped into
+ * blocks, and the index gives for each sequence its offset, extent and blocks. Each block is
+ * indexed by its offset, the position of its first record, the largest end of any record in
+ * it or an earlier block, and its number of records. Region restrictions only map and decode
+ * the blocks that can overlap the regions.
+ */
+@TestClass("com.rtg.variant.bayes.multisample.population.AlleleCountsStoreTest")
+public final class AlleleCountsStore implements Closeable {
+
+  /** Suffix used for allele counts store files */
+  public static final String SUFFIX = ".acs";
+
+  private static final int MAGIC = 0x52414353; // "RACS"
+  private static final int VERSION = 2;
+  private static final int MAX_ALLELE_LENGTH = 0xFFFF;
+  static final int BLOCK_RECORDS = 4096;
+  private static final int BLOCK_BYTES = 1 << 20;
+
+  /**
+   * @param f file to check
+   * @return true if the file name indicates an allele counts store
+   */
+  public static boolean isStore(final File f) {
+    return f.getName().endsWith(SUFFIX);
+  }
+
+  private static final class Block {
+    final long mOffset;
+    final int mFirst;
+    final int mMaxEnd;
+    final int mCount;
+
+    Block(long offset, int first, int maxEnd, int count) {
+      mOffset = offset;
+      mFirst = first;
+      mMaxEnd = maxEnd;
+      mCount = count;
+    }
+  }
+
+  private static final class SequenceEntry {
+    final String mName;
+    final long mOffset;
+    final long mLength;
+    final int mCount;
+    final List<Block> mBlocks;
+
+    SequenceEntry(String name, long offset, long length, int count, List<Block> blocks) {
+      mName = name;
+      mOffset = offset;
+      mLength = length;
+      mCount = count;
+      mBlocks = blocks;
+    }
+
+    long blockEnd(final int block) {
+      return block + 1 < mBlocks.size() ? mBlocks.get(block + 1).mOffset : mOffset + mLength;
+    }
+  }
+
+  private static int end(final AlleleCounts counts) {
+    return counts.position() + Math.max(1, counts.refLength());
+  }
+
+  /**
+   * Compile allele counts from a population priors file into a store.
+   * @param input population priors <code>VCF</code> or allele counts file
+   * @param output destination store
+   * @return number of records written
+   * @throws IOException if an I/O error occurs
+   */
+  public static long compile(final File input, final File output) throws IOException {
+    return compile(input, output, BLOCK_RECORDS);
+  }
+
+  static long compile(final File input, final File output, final int blockRecords) throws IOException {
+    final List<SequenceEntry> index = new ArrayList<>();
+    final Set<String> seen = new HashSet<>();
+    long records = 0;
+    long skipped = 0;
+    try (AlleleCountsFileReader reader = AlleleCountsFileReader.openAlleleCountReader(input, null);
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      String current = null;
+      long start = out.size();
+      long offset = start;
+      int count = 0;
+      List<Block> blocks = null;
+      long blockOffset = offset;
+      int blockFirst = 0;
+      int blockCount = 0;
+      int maxEnd = 0;
+      int last = 0;
+      while (reader.next()) {
+        final String name = reader.getCurrentReference();
+        final AlleleCounts counts = reader.getCurrent();
+        if (!name.equals(current)) {
+          if (current != null) {
+            if (blockCount > 0) {
+              blocks.add(new Block(blockOffset, blockFirst, maxEnd, blockCount));
+            }
+            index.add(new SequenceEntry(current, start, offset - start, count, blocks));
+          }
+          if (!seen.add(name)) {
+            throw new NoTalkbackSlimException("Records for sequence " + name + " are not contiguous in " + input);
+          }
+          current = name;
+          start = offset;
+          count = 0;
+          blocks = new ArrayList<>();
+          blockCount = 0;
+          maxEnd = 0;
+        } else if (counts.position() < last) {
+          throw new NoTalkbackSlimException("Records for sequence " + name + " are not sorted in " + input);
+        }
+        last = counts.position();
+        final int written = writeRecord(out, counts);
+        if (written == 0) {
+          ++skipped;
+        } else {
+          if (blockCount == 0) {
+            blockOffset = offset;
+            blockFirst = counts.position();
+          }
+          offset += written;
+          ++count;
+          ++records;
+          ++blockCount;
+          maxEnd = Math.max(maxEnd, end(counts));
+          if (blockCount == blockRecords || offset - blockOffset >= BLOCK_BYTES) {
+            blocks.add(new Block(blockOffset, blockFirst, maxEnd, blockCount));
+            blockCount = 0;
+          }
+        }
+      }
+      if (current != null) {
+        if (blockCount > 0) {
+          blocks.add(new Block(blockOffset, blockFirst, maxEnd, blockCount));
+        }
+        index.add(new SequenceEntry(current, start, offset - start, count, blocks));
+      }
+      out.writeInt(index.size());
+      for (final SequenceEntry e : index) {
+        out.writeUTF(e.mName);
+        out.writeLong(e.mOffset);
+        out.writeLong(e.mLength);
+        out.writeInt(e.mCount);
+        out.writeInt(e.mBlocks.size());
+        for (final Block b : e.mBlocks) {
+          out.writeLong(b.mOffset);
+          out.writeInt(b.mFirst);
+          out.writeInt(b.mMaxEnd);
+          out.writeInt(b.mCount);
+        }
+      }
+      out.writeLong(offset);
+    }
+    if (skipped > 0) {
+      Diagnostic.warning(skipped + " records with alleles longer than " + MAX_ALLELE_LENGTH + " were not stored.");
+    }
+    return records;
+  }
+
+  // Returns number of bytes written, or 0 if the record cannot be stored
+  private static int writeRecord(final DataOutputStream out, final AlleleCounts counts) throws IOException {
+    final String ref = counts.getReferenceAllele();
+    final List<String> alleles = new ArrayList<>(counts.allelesSeen().size() + 1);
+    alleles.add(ref);
+    for (final String allele : counts.allelesSeen()) {
+      if (!allele.equals(ref)) {
+        alleles.add(allele);
+      }
+    }
+    int size = 4 + 2;
+    for (final String allele : alleles) {
+      if (allele.length() > MAX_ALLELE_LENGTH) {
+        return 0;
+      }
+      size += 2 + allele.length() + 4;
+    }
+    out.writeInt(counts.position());
+    out.writeShort(alleles.size());
+    for (final String allele : alleles) {
+      out.writeShort(allele.length());
+      out.writeBytes(allele);
+      // Reference may not have a count when it was not present in the input
+      out.writeInt(counts.count(allele));
+    }
+    return size;
+  }
+
+  private final RandomAccessFile mFile;
+  private final List<SequenceEntry> mSequences = new ArrayList<>();
+  private final ReferenceRanges<String> mRanges;
+  private int mSequence = -1;
+  private List<Block> mBlocks;
+  private int mBlock;
+  private ByteBuffer mBuffer;
+  private int mRemaining;
+  private List<RangeList.RangeView<String>> mRegions;
+  private int mRegion;
+  private AlleleCounts mCurrent;
+
+  /**
+   * Open a store for reading.
+   * @param f the store
+   * @param ranges the ranges restriction to apply, if any
+   * @throws IOException if an I/O error occurs or the file is not a valid store
+   */
+  public AlleleCountsStore(final File f, final ReferenceRanges<String> ranges) throws IOException {
+    mFile = new RandomAccessFile(f, "r");
+    mRanges = ranges;
+    try {
+      if (mFile.length() < 16 || mFile.readInt() != MAGIC) {
+        throw new NoTalkbackSlimException("File " + f + " is not an allele counts store");
+      }
+      final int version = mFile.readInt();
+      if (version != VERSION) {
+        throw new NoTalkbackSlimException("Unsupported allele counts store version " + version + " in " + f + ", recompile the store");
+      }
+      mFile.seek(mFile.length() - 8);
+      mFile.seek(mFile.readLong());
+      final int n = mFile.readInt();
+      for (int k = 0; k < n; ++k) {
+        final String name = mFile.readUTF();
+        final long offset = mFile.readLong();
+        final long length = mFile.readLong();
+        final int count = mFile.readInt();
+        final int numBlocks = mFile.readInt();
+        final List<Block> blocks = new ArrayList<>(numBlocks);
+        for (int b = 0; b < numBlocks; ++b) {
+          blocks.add(new Block(mFile.readLong(), mFile.readInt(), mFile.readInt(), mFile.readInt()));
+        }
+        final SequenceEntry e = new SequenceEntry(name, offset, length, count, blocks);
+        for (int b = 0; b < numBlocks; ++b) {
+          if (e.blockEnd(b) - blocks.get(b).mOffset > Integer.MAX_VALUE) {
+            throw new NoTalkbackSlimException("Sequence " + name + " has a block too large in " + f);
+          }
+        }
+        mSequences.add(e);
+      }
+    } catch (final IOException | RuntimeException e) {
+      mFile.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return number of records for each sequence in the store, in store order
+   */
+  public Map<String, Integer> sequenceCounts() {
+    final Map<String, Integer> res = new LinkedHashMap<>();
+    for (final SequenceEntry e : mSequences) {
+      res.put(e.mName, e.mCount);
+    }
+    return res;
+  }
+
+  private boolean nextSequence() throws IOException {
+    while (mSequence + 1 < mSequences.size()) {
+      ++mSequence;
+      final SequenceEntry e = mSequences.get(mSequence);
+      final RangeList<String> rl = mRanges == null ? null : mRanges.get(e.mName);
+      if (mRanges != null && rl == null) {
+        continue;
+      }
+      mRegions = rl == null ? null : rl.getRangeList();
+      mRegion = 0;
+      mBlocks = e.mBlocks;
+      mBlock = -1;
+      if (nextBlock()) {
+        return true;
+      }
+    }
+    mBlocks = null;
+    return false;
+  }
+
+  // Index of the first block from the current one containing a record ending after the given position
+  private int firstBlockEndingAfter(final int position) {
+    int lo = mBlock;
+    int hi = mBlocks.size();
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (mBlocks.get(mid).mMaxEnd <= position) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private boolean nextBlock() throws IOException {
+    if (mBlocks == null) {
+      return false;
+    }
+    while (++mBlock < mBlocks.size()) {
+      final Block b = mBlocks.get(mBlock);
+      if (mRegions != null) {
+        // Records in this and later blocks start no earlier than the first record of this block
+        while (mRegion < mRegions.size() && mRegions.get(mRegion).getEnd() <= b.mFirst) {
+          ++mRegion;
+        }
+        if (mRegion == mRegions.size()) {
+          break;
+        }
+        final int skip = firstBlockEndingAfter(mRegions.get(mRegion).getStart());
+        if (skip > mBlock) {
+          mBlock = skip - 1;
+          continue;
+        }
+      }
+      mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_ONLY, b.mOffset, mSequences.get(mSequence).blockEnd(mBlock) - b.mOffset);
+      mRemaining = b.mCount;
+      return true;
+    }
+    mBlock = mBlocks.size();
+    mBuffer = null;
+    mRemaining = 0;
+    return false;
+  }
+
+  private AlleleCounts readRecord() {
+    final int position = mBuffer.getInt();
+    final int n = mBuffer.getShort() & 0xFFFF;
+    final Map<String, Integer> counts = new HashMap<>(n * 2);
+    String ref = null;
+    for (int k = 0; k < n; ++k) {
+      final byte[] b = new byte[mBuffer.getShort() & 0xFFFF];
+      mBuffer.get(b);
+      final String allele = new String(b, StandardCharsets.US_ASCII);
+      final int count = mBuffer.getInt();
+      if (k == 0) {
+        ref = allele;
+      }
+      if (count >= 0) {
+        counts.put(allele, count);
+      }
+    }
+    return new AlleleCounts(position, counts, ref);
+  }
+
+  private boolean inRegion(final AlleleCounts counts) {
+    if (mRegions == null) {
+      return true;
+    }
+    final int start = counts.position();
+    final int end = end(counts);
+    while (mRegion < mRegions.size() && mRegions.get(mRegion).getEnd() <= start) {
+      ++mRegion;
+    }
+    return mRegion < mRegions.size() && mRegions.get(mRegion).getStart() < end;
+  }
+
+  /**
+   * Consume the next record if possible
+   * @return true if successful, or false in no further records available
+   * @throws IOException if an I/O error occurs
+   */
+  public boolean next() throws IOException {
+    do {
+      while (mRemaining > 0) {
+        --mRemaining;
+        final AlleleCounts counts = readRecord();
+        if (inRegion(counts)) {
+          mCurrent = counts;
+          return true;
+        }
+        if (mRegion == mRegions.size()) {
+          // Past the last region of this sequence
+          mRemaining = 0;
+          mBlock = mBlocks.size();
+        }
+      }
+    } while (nextBlock() || nextSequence());
+    mCurrent = null;
+    return false;
+  }
+
+  /** @return the current record */
+  public AlleleCounts getCurrent() {
+    return mCurrent;
+  }
+
+  /** @return the sequence name of the current record */
+  public String getCurrentReference() {
+    return mCurrent == null ? null : mSequences.get(mSequence).mName;
+  }
+
+  @Override
+  public void close() throws IOException {
+    mBuffer = null;
+    mFile.close();
+  }
+}
@@ -30,17 +30,19 @@
 
 package com.rtg.variant.bayes.multisample.population;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.reeltwo.jumble.annotations.TestClass;
 import com.rtg.util.diagnostic.Diagnostic;
-import com.rtg.util.diagnostic.SpyHistogram;
 import com.rtg.util.format.FormatInteger;
 import com.rtg.variant.bayes.Description;
 import com.rtg.variant.bayes.ModelInterface;
+import com.rtg.variant.bayes.multisample.BlockJointScorer;
+import com.rtg.variant.bayes.multisample.ChunkContext;
+import com.rtg.variant.bayes.multisample.HaploidDiploidHypotheses;
 import com.rtg.variant.bayes.multisample.HypothesisScore;
 import com.rtg.variant.bayes.multisample.HypothesisScores;
-import com.rtg.variant.bayes.multisample.MultisampleJointScorer;
 import com.rtg.variant.bayes.multisample.PriorContainer;
 import com.rtg.variant.bayes.multisample.forwardbackward.BContainer;
 import com.rtg.variant.bayes.snp.HypothesesPrior;
@@ -48,12 +50,16 @@ import com.rtg.variant.bayes.snp.HypothesesPrior;
 /**
  * Re-estimates priors using simple Laplace estimator on all hypotheses.
  * Assumes mixture of haploid and diploid models.
+ * Optionally each site can start from the allele frequencies of the calls made at the previous site of the same
+ * chunk (when the hypotheses are compatible), and iteration can stop once the summed posterior of the calls stops improving.
  */
 @TestClass({"com.rtg.variant.bayes.multisample.population.HwEstimatorTest", "com.rtg.variant.bayes.multisample.population.EmAlgorithmTest"})
-public class EmAlgorithm implements MultisampleJointScorer {
+public class EmAlgorithm implements BlockJointScorer {
 
   private static final int ITERATION_HIST_SIZE = 50;
-  private static final SpyHistogram ITERATION_HIST = new SpyHistogram("EmAlgorithm iterations", ITERATION_HIST_SIZE);
+
+  /** Used to turn the allele frequencies of a previous site into priors for a warm start */
+  private static final HwEstimator WARM_START_ESTIMATOR = new HwEstimator();
 
   private static final FormatInteger INT_FORMAT_1 = new FormatInteger(1);
   private static final FormatInteger INT_FORMAT_3 = new FormatInteger(3);
@@ -62,6 +68,9 @@ public class EmAlgorithm implements MultisampleJointScorer {
   /** Default maximum number of iterations */
   public static final int DEFAULT_MAX_ITERATIONS = 50;
 
+  /** Default per sample tolerance on the change in summed call posteriors used for early exit */
+  public static final double DEFAULT_TOLERANCE = 1e-3;
+
   static String callToString(final int size, final HypothesisScore[] calls) {
     final FormatInteger format;
     final String separator;
@@ -83,29 +92,125 @@ public class EmAlgorithm implements MultisampleJointScorer {
     return sb.toString();
   }
 
-  static synchronized void updateIterationHist(int itcount) {
-    ITERATION_HIST.increment(itcount);
+  static double score(final HypothesisScores calls) {
+    double sum = 0;
+    for (final HypothesisScore call : calls.getScores()) {
+      if (call != null && !Double.isNaN(call.posterior())) {
+        sum += call.posterior();
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Allele counts of the calls made at a site, excluding any population priors of that site.
+   */
+  private static final class AlleleCounts {
+    private final Description mDescription;
+    private final int mReference;
+    private final int[] mCounts;
+    private final int mTotal;
+
+    AlleleCounts(final HypothesesPrior<?> haploid, final int[] counts, final int total) {
+      mDescription = haploid.description();
+      mReference = haploid.reference();
+      mCounts = counts;
+      mTotal = total;
+    }
+
+    boolean compatible(final HypothesesPrior<?> haploid) {
+      return mDescription == haploid.description() && mReference == haploid.reference() && mCounts.length == haploid.size();
+    }
   }
 
   private final Estimator mEstimator;
 
   private final int mMaxIterations;
 
+  private final boolean mWarmStart;
+
+  private final double mTolerance;
+
+  private final IterationHistogram mIterationHist = new IterationHistogram("EmAlgorithm iterations", ITERATION_HIST_SIZE);
+
   /**
    * @param estimator used for estimating the new priors.
    * @param maxIterations the maximum number of iterations that EM will attempt
    */
   public EmAlgorithm(Estimator estimator, int maxIterations) {
+    this(estimator, maxIterations, false, -1);
+  }
+
+  /**
+   * @param estimator used for estimating the new priors.
+   * @param maxIterations the maximum number of iterations that EM will attempt
+   * @param warmStart if true, start from the allele frequencies of the calls at the previous site of the same chunk, when compatible
+   * @param tolerance stop iterating when the summed call posterior changes by no more than this amount per sample, negative to disable
+   */
+  public EmAlgorithm(Estimator estimator, int maxIterations, boolean warmStart, double tolerance) {
     mEstimator = estimator;
     mMaxIterations = maxIterations < 0 ? DEFAULT_MAX_ITERATIONS : maxIterations;
+    mWarmStart = warmStart;
+    mTolerance = tolerance;
     //System.err.println("emAlgo: " + mMaxIterations);
   }
 
+  /**
+   * @return description of the number of iterations performed since the last report, the counts are then cleared
+   */
+  String iterationHist() {
+    return mIterationHist.report();
+  }
+
+  private static <D extends Description, T extends HypothesesPrior<D>> PriorContainer<HypothesesPrior<D>> warmStart(PriorContainer<T> priorContainer, ChunkContext context) {
+    if (!(context.getState() instanceof AlleleCounts)) {
+      return null;
+    }
+    final AlleleCounts previous = (AlleleCounts) context.getState();
+    final HaploidDiploidHypotheses<T> current = priorContainer.getHypotheses();
+    if (!previous.compatible(current.haploid())) {
+      return null;
+    }
+    // Only the allele frequencies carry over, the priors of this site (including any population priors) are kept
+    final int[] counts = previous.mCounts.clone();
+    int total = previous.mTotal;
+    final DescriptionCounts dc = current.getDescriptionCounts();
+    if (dc != null) {
+      for (int i = 0; i < counts.length; ++i) {
+        counts[i] += dc.getCount(i);
+      }
+      total += dc.getTotalCount();
+    }
+    return new PriorContainer<>(WARM_START_ESTIMATOR.computeNewPriors(current, counts, total), priorContainer.getBs());
+  }
+
+  private static <T extends HypothesesPrior<?>> void saveWarmStart(List<ModelInterface<?>> models, HaploidDiploidHypotheses<T> hypotheses, HypothesisScores calls, ChunkContext context) {
+    final int[] counts = new int[hypotheses.haploid().size()];
+    final int total = HwEstimator.alleleCounts(models, calls, hypotheses.diploid().code(), counts);
+    context.setState(new AlleleCounts(hypotheses.haploid(), counts, total));
+  }
+
 
   @Override
   public <D extends Description, T extends HypothesesPrior<D>> HypothesisScores getBestScores(List<ModelInterface<?>> models, PriorContainer<T> priorContainer) {
+    return getBestScores(models, priorContainer, null);
+  }
+
+  /**
+   * Estimate the calls at a site, starting from the previous site of the chunk when warm start is enabled.
+   * @param <D> the type of the description.
+   * @param <T> the type of the hypotheses prior.
+   * @param models input models to call from
+   * @param priorContainer container for prior related information
+   * @param context context of the chunk containing the site, or null to start from the priors of the site
+   * @return the scores.
+   */
+  public <D extends Description, T extends HypothesesPrior<D>> HypothesisScores getBestScores(List<ModelInterface<?>> models, PriorContainer<T> priorContainer, ChunkContext context) {
+    final boolean warmStart = mWarmStart && context != null;
     int iterations = 0;
-    EmResult<HypothesesPrior<D>> last = mEstimator.estimate(models, priorContainer);
+    final PriorContainer<HypothesesPrior<D>> warm = warmStart ? warmStart(priorContainer, context) : null;
+    EmResult<HypothesesPrior<D>> last = warm == null ? mEstimator.estimate(models, priorContainer) : mEstimator.estimate(models, warm);
+    double lastScore = mTolerance >= 0 ? score(last.calls()) : 0;
     //System.err.println(callToString(mInitialDiploid.size(), last.calls()));
     //System.err.println(priorsToString(last.haploid()));
     //System.err.println(priorsToString(last.diploid()));
@@ -122,13 +227,87 @@ public class EmAlgorithm implements MultisampleJointScorer {
       if (difference == 0) {
         break;
       }
+      if (mTolerance >= 0) {
+        final double score = score(next.calls());
+        if (Math.abs(score - lastScore) <= mTolerance * models.size()) {
+          break;
+        }
+        lastScore = score;
+      }
+    }
+    if (warmStart) {
+      saveWarmStart(models, priorContainer.getHypotheses(), last.calls(), context);
+    }
+    recordIterations(iterations);
+    return last.calls();
+  }
+
+  /**
+   * Estimate the calls at each of a block of sites. At each iteration all the sites that have not yet
+   * converged are estimated together, each site takes the same iterations it would take on its own.
+   * Sites are not warm started.
+   * @param <D> the type of the description.
+   * @param <T> the type of the hypotheses prior.
+   * @param models for each site, input models to call from
+   * @param priorContainers for each site, container for prior related information
+   * @return for each site, the scores.
+   */
+  @Override
+  public <D extends Description, T extends HypothesesPrior<D>> HypothesisScores[] getBestScores(List<List<ModelInterface<?>>> models, List<PriorContainer<T>> priorContainers) {
+    final List<EmResult<HypothesesPrior<D>>> last = new ArrayList<>(mEstimator.estimate(models, priorContainers));
+    final double[] lastScore = new double[models.size()];
+    List<Integer> active = new ArrayList<>(models.size());
+    for (int p = 0; p < models.size(); ++p) {
+      if (mTolerance >= 0) {
+        lastScore[p] = score(last.get(p).calls());
+      }
+      active.add(p);
+    }
+    int iterations = 0;
+    while (iterations < mMaxIterations && !active.isEmpty()) {
+      final List<List<ModelInterface<?>>> activeModels = new ArrayList<>(active.size());
+      final List<PriorContainer<HypothesesPrior<D>>> activePriors = new ArrayList<>(active.size());
+      for (final int p : active) {
+        activeModels.add(models.get(p));
+        activePriors.add(last.get(p).getPriorContainer());
+      }
+      final List<EmResult<HypothesesPrior<D>>> next = mEstimator.estimate(activeModels, activePriors);
+      ++iterations;
+      final List<Integer> stillActive = new ArrayList<>(active.size());
+      for (int k = 0; k < active.size(); ++k) {
+        final int p = active.get(k);
+        final int difference = last.get(p).difference(next.get(k).calls());
+        last.set(p, next.get(k));
+        boolean converged = difference == 0;
+        if (!converged && mTolerance >= 0) {
+          final double score = score(next.get(k).calls());
+          converged = Math.abs(score - lastScore[p]) <= mTolerance * models.get(p).size();
+          lastScore[p] = score;
+        }
+        if (converged) {
+          recordIterations(iterations);
+        } else {
+          stillActive.add(p);
+        }
+      }
+      active = stillActive;
+    }
+    for (int k = 0; k < active.size(); ++k) {
+      recordIterations(iterations);
+    }
+    final HypothesisScores[] res = new HypothesisScores[models.size()];
+    for (int p = 0; p < res.length; ++p) {
+      res[p] = last.get(p).calls();
     }
-    updateIterationHist(iterations);
+    return res;
+  }
+
+  private void recordIterations(final int iterations) {
+    mIterationHist.increment(iterations);
     if (iterations == mMaxIterations && mMaxIterations >= ARBITRARY_LOG_TRIGGER) {
       Diagnostic.userLog("EmAlgorithm exceeded " + mMaxIterations + " iterations");
-      Diagnostic.developerLog(ITERATION_HIST.toString());
+      Diagnostic.developerLog(mIterationHist.toString());
     }
-    return last.calls();
   }
 
   @Override
@@ -30,6 +30,7 @@
 
 package com.rtg.variant.bayes.multisample.population;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.rtg.variant.bayes.Description;
@@ -49,4 +50,19 @@ public interface Estimator {
    * @return the result of one iteration of the EM algorithm.
    */
   <D extends Description, T extends HypothesesPrior<D>> EmResult<HypothesesPrior<D>> estimate(final List<ModelInterface<?>> models, PriorContainer<T> priorContainer);
+
+  /**
+   * @param <D> type of description
+   * @param <T> type of hypotheses
+   * @param models for each position of a block, models which can be interrogated for calls.
+   * @param priorContainers for each position of a block, box of prior related things
+   * @return for each position, the result of one iteration of the EM algorithm.
+   */
+  default <D extends Description, T extends HypothesesPrior<D>> List<EmResult<HypothesesPrior<D>>> estimate(final List<List<ModelInterface<?>>> models, List<PriorContainer<T>> priorContainers) {
+    final List<EmResult<HypothesesPrior<D>>> res = new ArrayList<>(models.size());
+    for (int p = 0; p < models.size(); ++p) {
+      res.add(estimate(models.get(p), priorContainers.get(p)));
+    }
+    return res;
+  }
 }
@@ -30,12 +30,14 @@
 
 package com.rtg.variant.bayes.multisample.population;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.rtg.variant.VariantSample;
 import com.rtg.variant.bayes.Code;
 import com.rtg.variant.bayes.Description;
 import com.rtg.variant.bayes.ModelInterface;
+import com.rtg.variant.bayes.multisample.BlockJointScorer;
 import com.rtg.variant.bayes.multisample.HaploidDiploidHypotheses;
 import com.rtg.variant.bayes.multisample.HypothesisScore;
 import com.rtg.variant.bayes.multisample.HypothesisScores;
@@ -70,9 +72,23 @@ public class HwEstimator implements Estimator {
 
   @Override
   public <D extends Description, T extends HypothesesPrior<D>> EmResult<HypothesesPrior<D>> estimate(List<ModelInterface<?>> models, PriorContainer<T> priorContainer) {
-    final HaploidDiploidHypotheses<T> hypotheses = priorContainer.getHypotheses();
+    return estimate(models, priorContainer.getHypotheses(), mScorer.getBestScores(models, priorContainer));
+  }
 
-    final HypothesisScores calls = mScorer.getBestScores(models, priorContainer);
+  @Override
+  public <D extends Description, T extends HypothesesPrior<D>> List<EmResult<HypothesesPrior<D>>> estimate(List<List<ModelInterface<?>>> models, List<PriorContainer<T>> priorContainers) {
+    if (!(mScorer instanceof BlockJointScorer)) {
+      return Estimator.super.estimate(models, priorContainers);
+    }
+    final HypothesisScores[] calls = ((BlockJointScorer) mScorer).getBestScores(models, priorContainers);
+    final List<EmResult<HypothesesPrior<D>>> res = new ArrayList<>(calls.length);
+    for (int p = 0; p < calls.length; ++p) {
+      res.add(estimate(models.get(p), priorContainers.get(p).getHypotheses(), calls[p]));
+    }
+    return res;
+  }
+
+  private <D extends Description, T extends HypothesesPrior<D>> EmResult<HypothesesPrior<D>> estimate(List<ModelInterface<?>> models, HaploidDiploidHypotheses<T> hypotheses, HypothesisScores calls) {
     final int[] haploidCounts = new int[hypotheses.haploid().size()];
 
     int haploidTotal = 0;
@@ -86,8 +102,22 @@ public class HwEstimator implements Estimator {
       haploidTotal += dc.getTotalCount();
     }
 
+    haploidTotal += alleleCounts(models, calls, hypotheses.diploid().code(), haploidCounts);
+    final HaploidDiploidHypotheses<HypothesesPrior<D>> newHypothesis = computeNewPriors(hypotheses, haploidCounts, haploidTotal);
+    return new EmResult<>(newHypothesis, calls, calls.getBs());
+  }
+
+  /**
+   * Add the alleles of the calls to haploid counts.
+   * @param models the models the calls were made from
+   * @param calls the calls
+   * @param code diploid code of the hypotheses
+   * @param haploidCounts counts for individual alleles, incremented by this method
+   * @return the number of alleles added
+   */
+  static int alleleCounts(List<ModelInterface<?>> models, HypothesisScores calls, Code code, int[] haploidCounts) {
+    int total = 0;
     // TODO we should probably really only include calls from founders (and possibly half-founders), e.g. in order to exclude inherited de-novos from higher in the pedigree
-    final Code code = hypotheses.diploid().code();
     for (int i = 0; i < models.size(); ++i) {
       final ModelInterface<?> model = models.get(i);
       final HypothesisScore call = calls.getScores()[i];
@@ -100,17 +130,16 @@ public class HwEstimator implements Estimator {
       final int best = call.hypothesis();
       if (model.haploid()) {
         haploidCounts[best]++;
-        ++haploidTotal;
+        ++total;
       } else {
         final int a = code.a(best);
         final int b = code.bc(best);
         haploidCounts[a]++;
         haploidCounts[b]++;
-        haploidTotal += 2;
+        total += 2;
       }
     }
-    final HaploidDiploidHypotheses<HypothesesPrior<D>> newHypothesis = computeNewPriors(hypotheses, haploidCounts, haploidTotal);
-    return new EmResult<>(newHypothesis, calls, calls.getBs());
+    return total;
   }
 
   /**
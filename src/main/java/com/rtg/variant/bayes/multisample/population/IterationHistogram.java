@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample.population;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.reeltwo.jumble.annotations.TestClass;
+
+/**
+ * Histogram of small non-negative counts which can be incremented concurrently without locking.
+ * Each thread increments its own array of counts, the arrays are only combined when the histogram
+ * is reported. Reports taken while other threads are still incrementing may lag slightly.
+ * The per-thread arrays are held only by the histogram, so they are released along with it or
+ * when the counts are cleared by a report.
+ */
+@TestClass("com.rtg.variant.bayes.multisample.population.IterationHistogramTest")
+final class IterationHistogram {
+
+  private final String mName;
+  private final int mLength;
+  private final Queue<long[]> mThreadCounts = new ConcurrentLinkedQueue<>();
+  private volatile ThreadLocal<long[]> mCounts;
+
+  /**
+   * @param name name used when reporting
+   * @param length number of buckets, larger values are counted in the last bucket
+   */
+  IterationHistogram(final String name, final int length) {
+    if (length <= 0) {
+      throw new IllegalArgumentException();
+    }
+    mName = name;
+    mLength = length;
+    mCounts = newCounts();
+  }
+
+  private ThreadLocal<long[]> newCounts() {
+    return ThreadLocal.withInitial(() -> {
+      final long[] counts = new long[mLength];
+      mThreadCounts.add(counts);
+      return counts;
+    });
+  }
+
+  /**
+   * Increment the count for a value.
+   * @param value to be counted
+   */
+  void increment(final int value) {
+    ++mCounts.get()[Math.max(0, Math.min(value, mLength - 1))];
+  }
+
+  /**
+   * @return the counts combined over all threads
+   */
+  long[] counts() {
+    final long[] res = new long[mLength];
+    for (final long[] counts : mThreadCounts) {
+      for (int i = 0; i < mLength; ++i) {
+        res[i] += counts[i];
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Describe the histogram and then clear it, releasing the arrays of all threads.
+   * @return the histogram as a string
+   */
+  String report() {
+    final String res = toString();
+    mThreadCounts.clear();
+    mCounts = newCounts();
+    return res;
+  }
+
+  @Override
+  public String toString() {
+    final long[] counts = counts();
+    int last = counts.length - 1;
+    while (last >= 0 && counts[last] == 0) {
+      --last;
+    }
+    final StringBuilder sb = new StringBuilder(mName);
+    for (int i = 0; i <= last; ++i) {
+      sb.append(' ').append(counts[i]);
+    }
+    return sb.toString();
+  }
+}
@@ -31,9 +31,14 @@
 package com.rtg.variant.bayes.multisample.population;
 
 
+import java.util.ArrayList;
 import java.util.List;
 
+import com.rtg.launcher.globals.CoreGlobalFlags;
+import com.rtg.launcher.globals.GlobalFlags;
 import com.rtg.util.MathUtils;
+import com.rtg.util.diagnostic.Diagnostic;
+import com.rtg.variant.Variant;
 import com.rtg.variant.VariantOutputLevel;
 import com.rtg.variant.VariantParams;
 import com.rtg.variant.VariantSample;
@@ -41,6 +46,9 @@ import com.rtg.variant.bayes.Description;
 import com.rtg.variant.bayes.Hypotheses;
 import com.rtg.variant.bayes.ModelInterface;
 import com.rtg.variant.bayes.multisample.AbstractMultisampleCaller;
+import com.rtg.variant.bayes.multisample.BlockJointCaller;
+import com.rtg.variant.bayes.multisample.BlockJointScorer;
+import com.rtg.variant.bayes.multisample.ChunkContext;
 import com.rtg.variant.bayes.multisample.HaploidDiploidHypotheses;
 import com.rtg.variant.bayes.multisample.HypothesisScore;
 import com.rtg.variant.bayes.multisample.HypothesisScores;
@@ -53,12 +61,18 @@ import com.rtg.variant.bayes.snp.HypothesesPrior;
  * Generates the family comparison. Assumes the output will come in with
  * father and mother bayesians in first two array positions.
  */
-public class PopulationCaller extends AbstractMultisampleCaller implements MultisampleJointScorer {
+public class PopulationCaller extends AbstractMultisampleCaller implements BlockJointScorer, BlockJointCaller {
+
+  private static final int BLOCK_SIZE = 64;
 
   private final MultisampleJointScorer mFamilyCaller;
 
   private final VariantParams mParams;
 
+  private final EmAlgorithm mEmAlgorithm;
+
+  private final int mBlockSize;
+
   /**
    * @param params variant params
    */
@@ -73,6 +87,13 @@ public class PopulationCaller extends AbstractMultisampleCaller implements Multi
   public PopulationCaller(VariantParams params, MultisampleJointScorer familyCaller) {
     mParams = params;
     mFamilyCaller = familyCaller;
+    final boolean warmStart = GlobalFlags.getBooleanValue(CoreGlobalFlags.POPULATION_EM_WARM_START);
+    mEmAlgorithm = params.maxEmIterations() != 0
+      ? new EmAlgorithm(new HwEstimator(this), params.maxEmIterations(), warmStart,
+        GlobalFlags.getBooleanValue(CoreGlobalFlags.POPULATION_EM_EARLY_EXIT) ? EmAlgorithm.DEFAULT_TOLERANCE : -1)
+      : null;
+    // Blocks only pay off for pedigrees evaluated by forward backward, and warm starts need each site in turn
+    mBlockSize = familyCaller instanceof BlockJointScorer && GlobalFlags.getBooleanValue(CoreGlobalFlags.FAMILY_CALLER_BATCH_FORWARD_BACKWARD) && (mEmAlgorithm == null || !warmStart) ? BLOCK_SIZE : 1;
   }
 
   /**
@@ -86,6 +107,40 @@ public class PopulationCaller extends AbstractMultisampleCaller implements Multi
    */
   @Override
   public <D extends Description, T extends HypothesesPrior<D>> HypothesisScores getBestScores(List<ModelInterface<?>> models, PriorContainer<T> priorContainer) {
+    return getBestScores(models, priorContainer, mFamilyCaller != null ? mFamilyCaller.getBestScores(models, priorContainer) : null);
+  }
+
+  /**
+   * Generate best scores for a population at each of a block of positions, without EM iteration.
+   * The nuclear families at all the positions are scored together when the family caller supports it.
+   *
+   * @param <D> the type of the description.
+   * @param <T> the type of the hypotheses prior.
+   * @param models for each position, input models to call from
+   * @param priorContainers for each position, container for prior related information
+   * @return for each position, the scores.
+   */
+  @Override
+  public <D extends Description, T extends HypothesesPrior<D>> HypothesisScores[] getBestScores(List<List<ModelInterface<?>>> models, List<PriorContainer<T>> priorContainers) {
+    final HypothesisScores[] familyCalls;
+    if (mFamilyCaller instanceof BlockJointScorer) {
+      familyCalls = ((BlockJointScorer) mFamilyCaller).getBestScores(models, priorContainers);
+    } else {
+      familyCalls = new HypothesisScores[models.size()];
+      if (mFamilyCaller != null) {
+        for (int p = 0; p < familyCalls.length; ++p) {
+          familyCalls[p] = mFamilyCaller.getBestScores(models.get(p), priorContainers.get(p));
+        }
+      }
+    }
+    final HypothesisScores[] res = new HypothesisScores[familyCalls.length];
+    for (int p = 0; p < res.length; ++p) {
+      res[p] = getBestScores(models.get(p), priorContainers.get(p), familyCalls[p]);
+    }
+    return res;
+  }
+
+  private <D extends Description, T extends HypothesesPrior<D>> HypothesisScores getBestScores(List<ModelInterface<?>> models, PriorContainer<T> priorContainer, HypothesisScores familyCalls) {
 
     /* Math to work out QUAL field value from non-identity posterior of each sample
      * qual = 1 - product(1 - p_i), where p_i is probability for sample i that call is non-identity
@@ -114,9 +169,7 @@ public class PopulationCaller extends AbstractMultisampleCaller implements Multi
     final HypothesisScore[] allCalls;
     boolean isInteresting = false;
     double sumNips = 0.0; // sum of non-identity posteriors
-    HypothesisScores familyCalls = null;
-    if (mFamilyCaller != null) {
-      familyCalls = mFamilyCaller.getBestScores(models, priorContainer);
+    if (familyCalls != null) {
       allCalls = familyCalls.getScores();
       isInteresting = familyCalls.isInteresting();
 
@@ -151,17 +204,75 @@ public class PopulationCaller extends AbstractMultisampleCaller implements Multi
     return new HypothesisScores(allCalls, isInteresting, MathUtils.logExpMinus1(sumNips), familyCalls != null ? familyCalls.getBs() : null);
   }
 
+  @Override
+  public <D extends Description, T extends HypothesesPrior<D>> Variant makeCall(ChunkContext context, String templateName, int position, int endPosition, byte[] ref, List<ModelInterface<?>> models, HaploidDiploidHypotheses<T> hypotheses) {
+    return makeVariant(templateName, position, endPosition, ref, models, hypotheses, makeSamples(context, models, hypotheses));
+  }
+
   @Override
   protected <D extends Description, T extends HypothesesPrior<D>> ComparisonResult makeSamples(List<ModelInterface<?>> models, HaploidDiploidHypotheses<T> hypotheses) {
+    return makeSamples(null, models, hypotheses);
+  }
+
+  private <D extends Description, T extends HypothesesPrior<D>> ComparisonResult makeSamples(ChunkContext context, List<ModelInterface<?>> models, HaploidDiploidHypotheses<T> hypotheses) {
     final BContainer[] bs = mFamilyCaller != null ? mFamilyCaller.makeInitialBs(models) : null;
     final HypothesisScores calls;
 
-    if (mParams.maxEmIterations() != 0) {
-      calls = new EmAlgorithm(new HwEstimator(this), mParams.maxEmIterations()).getBestScores(models, new PriorContainer<>(hypotheses, bs));
+    if (mEmAlgorithm != null) {
+      calls = mEmAlgorithm.getBestScores(models, new PriorContainer<>(hypotheses, bs), context);
     } else {
       calls = getBestScores(models, new PriorContainer<>(hypotheses, bs));
     }
+    return makeResult(models, calls);
+  }
+
+  @Override
+  public int blockSize() {
+    return mBlockSize;
+  }
+
+  @Override
+  public <D extends Description, T extends HypothesesPrior<D>> Variant[] makeCalls(String templateName, int[] positions, byte[] ref, List<List<ModelInterface<?>>> models, List<HaploidDiploidHypotheses<T>> hypotheses) {
+    final Variant[] res = new Variant[positions.length];
+    // Evaluate runs of positions which have the same hypotheses sizes for every sample together
+    int start = 0;
+    while (start < positions.length) {
+      int end = start + 1;
+      while (end < positions.length && sameSizes(models.get(start), models.get(end))) {
+        ++end;
+      }
+      final ComparisonResult[] results = makeSamples(models.subList(start, end), hypotheses.subList(start, end));
+      for (int p = start; p < end; ++p) {
+        res[p] = makeVariant(templateName, positions[p], positions[p] + 1, ref, models.get(p), hypotheses.get(p), results[p - start]);
+      }
+      start = end;
+    }
+    return res;
+  }
 
+  /**
+   * Evaluate a block of positions, scoring the positions together.
+   * @param <D> the type of the description
+   * @param <T> the type of the hypotheses prior
+   * @param models for each position, the models for all samples
+   * @param hypotheses for each position, the hypotheses, the hypotheses of each sample must have the same size at all positions
+   * @return the result for each position, entries are null for positions that are not interesting
+   */
+  <D extends Description, T extends HypothesesPrior<D>> ComparisonResult[] makeSamples(List<List<ModelInterface<?>>> models, List<HaploidDiploidHypotheses<T>> hypotheses) {
+    final List<PriorContainer<T>> priorContainers = new ArrayList<>(models.size());
+    for (int p = 0; p < models.size(); ++p) {
+      final BContainer[] bs = mFamilyCaller != null ? mFamilyCaller.makeInitialBs(models.get(p)) : null;
+      priorContainers.add(new PriorContainer<>(hypotheses.get(p), bs));
+    }
+    final HypothesisScores[] calls = mEmAlgorithm != null ? mEmAlgorithm.getBestScores(models, priorContainers) : getBestScores(models, priorContainers);
+    final ComparisonResult[] res = new ComparisonResult[calls.length];
+    for (int p = 0; p < res.length; ++p) {
+      res[p] = makeResult(models.get(p), calls[p]);
+    }
+    return res;
+  }
+
+  private ComparisonResult makeResult(List<ModelInterface<?>> models, HypothesisScores calls) {
     if (!calls.isInteresting() && mParams.callLevel() != VariantOutputLevel.ALL) {
       return null;
     }
@@ -185,6 +296,14 @@ public class PopulationCaller extends AbstractMultisampleCaller implements Multi
     return null;
   }
 
+  @Override
+  public void close() {
+    if (mEmAlgorithm != null) {
+      Diagnostic.developerLog(mEmAlgorithm.iterationHist());
+    }
+    super.close();
+  }
+
   @Override
   protected VariantParams getParams() {
     return mParams;
@@ -91,7 +91,7 @@ public class PopulationHwHypothesesCreator implements SiteSpecificPriors {
     mHaploid = haploidFactory;
     mDiploid = diploidFactory;
     mDescription = DescriptionSnp.SINGLETON;
-    if (!TabixIndexer.indexFileName(input).exists()) {
+    if (!AlleleCountsStore.isStore(input) && !TabixIndexer.indexFileName(input).exists()) {
       throw new IllegalArgumentException("Requires tabix indexed input file");
     }
     mMaxRefLength = load(input, ranges);
@@ -59,7 +59,7 @@ import com.rtg.variant.VariantParamsBuilder;
 import com.rtg.variant.avr.AvrUtils;
 import com.rtg.variant.bayes.multisample.AbstractMultisampleCli;
 import com.rtg.variant.bayes.multisample.MultisampleTask;
-import com.rtg.vcf.VariantStatistics;
+import com.rtg.variant.bayes.multisample.MultisampleVariantStatistics;
 
 /**
  */
@@ -156,7 +156,7 @@ public class SingletonCli extends AbstractMultisampleCli {
   @Override
   public ParamsTask<?, ?> task(final VariantParams params, final OutputStream out) throws IOException {
     final UsageMetric usageMetric = mUsageMetric == null ? new UsageMetric() : mUsageMetric; //create when null to cover some testing
-    return new MultisampleTask<>(params, new SingletonCallerConfiguration.Configurator(), out, new VariantStatistics(params.directory()), usageMetric);
+    return new MultisampleTask<>(params, new SingletonCallerConfiguration.Configurator(), out, new MultisampleVariantStatistics(params.directory()), usageMetric);
   }
 
 }
@@ -52,7 +52,7 @@ import com.rtg.variant.VariantParams;
 import com.rtg.variant.VariantParamsBuilder;
 import com.rtg.variant.bayes.multisample.AbstractMultisampleCli;
 import com.rtg.variant.bayes.multisample.MultisampleTask;
-import com.rtg.vcf.VariantStatistics;
+import com.rtg.variant.bayes.multisample.MultisampleVariantStatistics;
 
 /**
  */
@@ -134,7 +134,7 @@ public class VstatsCli extends AbstractMultisampleCli {
   @Override
   protected ParamsTask<?, ?> task(final VariantParams params, final OutputStream out) throws IOException {
     final UsageMetric usageMetric = mUsageMetric == null ? new UsageMetric() : mUsageMetric; //create when null to cover some testing
-    return new MultisampleTask<>(params, new VstatsCallerConfiguration.Configurator(), out, new VariantStatistics(params.directory()), usageMetric);
+    return new MultisampleTask<>(params, new VstatsCallerConfiguration.Configurator(), out, new MultisampleVariantStatistics(params.directory()), usageMetric);
   }
 
   /**
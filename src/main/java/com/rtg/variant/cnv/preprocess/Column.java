@@ -87,4 +87,11 @@ public abstract class Column implements Cloneable {
   abstract String toString(int i);
 
   abstract Column filter(RegionPredicate p);
+
+  /**
+   * Create a new column by gathering rows from this column. A negative source row produces an empty value.
+   * @param rows for each row of the new column, the row of this column to take the value from
+   * @return the new column
+   */
+  abstract Column select(int[] rows);
 }
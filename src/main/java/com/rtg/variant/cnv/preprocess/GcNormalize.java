@@ -29,6 +29,7 @@
  */
 package com.rtg.variant.cnv.preprocess;
 
+import com.rtg.util.MathUtils;
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.diagnostic.NoTalkbackSlimException;
 
@@ -86,27 +87,35 @@ public class GcNormalize implements DatasetProcessor {
 
     final double median = in.median();
 
-    final NumericColumn[] binned = new NumericColumn[mBins];
+    // Bin each row once, then gather the values of each bin into exactly sized primitive arrays
+    final double[] gcValues = gc.getValues();
+    final double[] values = in.getValues();
+    final int[] bins = new int[values.length];
+    final int[] counts = new int[mBins];
+    for (int i = 0; i < values.length; ++i) {
+      bins[i] = bin(gcValues[i]);
+      counts[bins[i]]++;
+    }
+    final double[][] binned = new double[mBins][];
     for (int i = 0; i < binned.length; ++i) {
-      binned[i] = new NumericColumn(in.getName());
+      binned[i] = new double[counts[i]];
     }
-    for (int i = 0; i < in.size(); ++i) {
-      binned[bin(gc.get(i))].add(in.get(i));
+    final int[] filled = new int[mBins];
+    for (int i = 0; i < values.length; ++i) {
+      binned[bins[i]][filled[bins[i]]++] = values[i];
     }
     final double[] norms = new double[binned.length];
     for (int i = 0; i < binned.length; ++i) {
-      final NumericColumn c = binned[i];
-      if (c.size() == 0) {
+      if (counts[i] == 0) {
         continue;
       }
-      final double binmedian = c.median();
+      final double binmedian = MathUtils.median(binned[i]);
       norms[i] = binmedian > 0 ? median / binmedian : 1.0;
-      Diagnostic.developerLog(String.format("GC Bin %d n=%d %%gc=%.2f median=%.4f norm=%.4f", i, c.size(), binMid(i), binmedian, norms[i]));
+      Diagnostic.developerLog(String.format("GC Bin %d n=%d %%gc=%.2f median=%.4f norm=%.4f", i, counts[i], binMid(i), binmedian, norms[i]));
     }
 
-    final double[] values = new double[dataset.size()];
     for (int i = 0; i < values.length; ++i) {
-      values[i] = in.get(i) * norms[bin(gc.get(i))];
+      values[i] *= norms[bins[i]];
     }
     out.set(values);
   }
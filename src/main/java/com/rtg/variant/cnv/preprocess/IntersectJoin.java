@@ -90,11 +90,13 @@ public class IntersectJoin extends SimpleJoin {
 
   // Filter dataset to only keep rows with regions in common
   private void filterRegions(RegionDataset d1, RegionDataset d2) {
-    // Step through both sets removing non-matching rows
+    // Sort-merge through both sets marking matching rows, then compact each dataset once
     int i1 = 0;
     int i2 = 0;
     final ObjectColumn<SequenceNameLocus> rc1 = d1.regions();
     final ObjectColumn<SequenceNameLocus> rc2 = d2.regions();
+    final boolean[] keep1 = new boolean[rc1.size()];
+    final boolean[] keep2 = new boolean[rc2.size()];
     SequenceNameLocus last1 = null;
     SequenceNameLocus last2 = null;
     while (i1 < rc1.size() && i2 < rc2.size()) {
@@ -102,12 +104,11 @@ public class IntersectJoin extends SimpleJoin {
       final SequenceNameLocus r2 = rc2.get(i2);
       if (!r1.getSequenceName().equals(r2.getSequenceName())) {
         if (r1.getSequenceName().equals(last1.getSequenceName())) {
-          d1.remove(i1);
-          continue;
+          ++i1;
         } else {
-          d2.remove(i2);
-          continue;
+          ++i2;
         }
+        continue;
       }
       if (last1 != null && last1.getSequenceName().equals(r1.getSequenceName()) && IntervalComparator.SINGLETON.compare(r1, last1) < 0) {
         throw new NoTalkbackSlimException("Dataset is not sorted: " + r1.toString() + " < " + last1.toString());
@@ -120,30 +121,22 @@ public class IntersectJoin extends SimpleJoin {
 
       final int c = IntervalComparator.SINGLETON.compare(r1, r2);
       if (c < 0) {
-        d1.remove(i1);
+        ++i1;
       } else if (c > 0) {
-        d2.remove(i2);
+        ++i2;
       } else {
-        i1++;
-        i2++;
+        keep1[i1++] = true;
+        keep2[i2++] = true;
       }
     }
-    for (int i = d1.size() - 1; i >= i1; --i) {
-      d1.remove(i);
-    }
-    for (int i = d2.size() - 1; i >= i2; --i) {
-      d2.remove(i);
-    }
+    d1.retain(row -> keep1[row]);
+    d2.retain(row -> keep2[row]);
   }
 
   // Filter dataset to only keep rows against the supplied sequence names
   private void filterSequences(RegionDataset dataset, Set<String> sequences) {
     final ObjectColumn<SequenceNameLocus> rc1 = dataset.regions();
-    for (int i = dataset.size() - 1; i >= 0; i--) {
-      if (!sequences.contains(rc1.get(i).getSequenceName())) {
-        dataset.remove(i);
-      }
-    }
+    dataset.retain(row -> sequences.contains(rc1.get(row).getSequenceName()));
   }
 
   private Set<String> getSequenceNames(RegionDataset dataset) {
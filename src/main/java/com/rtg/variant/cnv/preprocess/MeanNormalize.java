@@ -50,9 +50,9 @@ class MeanNormalize implements DatasetProcessor {
     }
     final NumericColumn in = dataset.asNumeric(mCol);
     computeMean(dataset);
-    final double[] values = new double[in.size()];
-    for (int i = 0; i < in.size(); ++i) {
-      values[i] = in.get(i) / mMean;
+    final double[] values = in.getValues();
+    for (int i = 0; i < values.length; ++i) {
+      values[i] /= mMean;
     }
     final NumericColumn out = dataset.addColumn(new NumericColumn(prefix() + "(" + dataset.columnName(mCol) + ")"));
     out.set(values);
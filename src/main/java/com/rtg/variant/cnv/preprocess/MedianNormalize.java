@@ -66,9 +66,9 @@ public class MedianNormalize implements DatasetProcessor {
     }
     final NumericColumn in = dataset.asNumeric(mCol);
     computeMedian(dataset);
-    final double[] values = new double[in.size()];
-    for (int i = 0; i < in.size(); ++i) {
-      values[i] = in.get(i) / mMedian;
+    final double[] values = in.getValues();
+    for (int i = 0; i < values.length; ++i) {
+      values[i] /= mMedian;
     }
     final NumericColumn out = dataset.addColumn(new NumericColumn(mColName == null ? prefix() + "(" + dataset.columnName(mCol) + ")" : mColName));
     out.set(values);
@@ -86,6 +86,21 @@ public class NumericColumn extends Column {
     }
   }
 
+  @Override
+  NumericColumn select(int[] rows) {
+    final double[] newData = new double[rows.length];
+    for (int i = 0; i < rows.length; ++i) {
+      newData[i] = rows[i] < 0 ? toDouble("") : mData[rows[i]];
+    }
+    try {
+      final NumericColumn result = (NumericColumn) clone();
+      result.set(newData);
+      return result;
+    } catch (CloneNotSupportedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   @Override
   void add(String strValue) {
     add(toDouble(strValue));
@@ -144,7 +159,11 @@ public class NumericColumn extends Column {
     mSize++;
   }
 
-  void set(double[] values) {
+  /**
+   * Replace the contents of this column with a copy of the supplied values.
+   * @param values the new values
+   */
+  public void set(double[] values) {
     mSize = values.length;
     mData = Arrays.copyOf(values, values.length);
   }
@@ -176,7 +195,10 @@ public class NumericColumn extends Column {
     return mData[i];
   }
 
-  double[] getValues() {
+  /**
+   * @return a copy of the values in this column
+   */
+  public double[] getValues() {
     return Arrays.copyOf(mData, mSize);
   }
 
@@ -125,4 +125,23 @@ public abstract class ObjectColumn<T> extends Column {
     }
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  ObjectColumn<T> select(int[] rows) {
+    try {
+      final ObjectColumn<T> result = (ObjectColumn<T>) clone();
+      result.mData = new ArrayList<>(rows.length);
+      for (final int row : rows) {
+        if (row < 0) {
+          result.add("");
+        } else {
+          result.add(mData.get(row));
+        }
+      }
+      return result;
+    } catch (CloneNotSupportedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
 }
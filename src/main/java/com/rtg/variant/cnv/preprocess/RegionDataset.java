@@ -33,6 +33,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -46,6 +47,7 @@ import com.rtg.util.StringUtils;
 import com.rtg.util.array.ArrayUtils;
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.intervals.SequenceNameLocus;
+import com.rtg.util.intervals.SequenceNameLocusComparator;
 import com.rtg.util.intervals.SequenceNameLocusSimple;
 
 /**
@@ -335,6 +337,54 @@ public class RegionDataset {
     }
   }
 
+  /**
+   * Removes all rows not accepted by the supplied predicate. Each column is compacted in a single
+   * pass, which is much cheaper than removing rows individually.
+   * @param p the filtering predicate, evaluated once per row against the current row numbering
+   */
+  public void retain(RegionPredicate p) {
+    final boolean[] keep = new boolean[size()];
+    for (int i = 0; i < keep.length; ++i) {
+      keep[i] = p.test(i);
+    }
+    final RegionPredicate kept = row -> keep[row];
+    mRegions = (RegionColumn) mRegions.filter(kept);
+    for (int col = 0; col < columns(); ++col) {
+      mColumns.set(col, column(col).filter(kept));
+    }
+  }
+
+  /**
+   * Expands the dataset so that it contains the supplied regions, inserting empty rows where
+   * necessary. Existing rows are matched in order against the new regions, any existing rows not
+   * matched are retained at the end.
+   * @param regions the sorted regions that the dataset should contain
+   */
+  public void expand(Collection<SequenceNameLocus> regions) {
+    final int[] rows = new int[regions.size() + size()];
+    final RegionColumn newRegions = new RegionColumn(mRegions.getName());
+    int i = 0;
+    int j = 0;
+    for (final SequenceNameLocus s : regions) {
+      if (j < size() && SequenceNameLocusComparator.SINGLETON.compare(s, mRegions.get(j)) == 0) {
+        newRegions.add(mRegions.get(j));
+        rows[i++] = j++;
+      } else {
+        newRegions.add(s);
+        rows[i++] = -1;
+      }
+    }
+    while (j < size()) {
+      newRegions.add(mRegions.get(j));
+      rows[i++] = j++;
+    }
+    final int[] selected = Arrays.copyOf(rows, i);
+    for (int col = 0; col < columns(); ++col) {
+      mColumns.set(col, column(col).select(selected));
+    }
+    mRegions = newRegions;
+  }
+
   /**
    * Computes the median of a column
    * @param col the column to operate on
@@ -359,8 +409,7 @@ public class RegionDataset {
    * @return the median
    */
   public double weightedMedian(final int col) {
-    final NumericColumn column = asNumeric(col);
-    final double[] values = column.getValues();
+    final double[] values = asNumeric(col).getValues();
     final int[] weights = new int[size()];
     double tot = 0;
     for (int i = 0; i < values.length; ++i) {
@@ -385,12 +434,12 @@ public class RegionDataset {
    * @return the mean
    */
   public double weightedMean(int col) {
-    final NumericColumn column = asNumeric(col);
+    final double[] values = asNumeric(col).getValues();
     double sum = 0;
     double sumLengths = 0;
-    for (int i = 0; i < size(); ++i) {
+    for (int i = 0; i < values.length; ++i) {
       final int length = mRegions.get(i).getLength();
-      sum += column.get(i) * length;
+      sum += values[i] * length;
       sumLengths += length;
     }
     return sum / sumLengths;
@@ -32,7 +32,6 @@ package com.rtg.variant.cnv.preprocess;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.TreeSet;
@@ -64,8 +63,8 @@ public class UnionJoin extends SimpleJoin {
   public void process(RegionDataset dataset) throws IOException {
     final RegionDataset src = mDataset.copy();
     final List<SequenceNameLocus> union = unionRegions(src, dataset);
-    expandRegions(union, src);
-    expandRegions(union, dataset);
+    src.expand(union);
+    dataset.expand(union);
     simpleJoin(src, dataset);
   }
 
@@ -111,17 +110,4 @@ public class UnionJoin extends SimpleJoin {
     chrs.forEach(c -> union.addAll(unionByChr.get(c)));
     return union;
   }
-
-  // Pass through dataset, adding rows as required to ensure regions match
-  private void expandRegions(Collection<SequenceNameLocus> regions, RegionDataset d) {
-    int i = 0;
-    for (SequenceNameLocus s : regions) {
-      final SequenceNameLocus r = i < d.size() ? d.regions().get(i) : null;
-      if (r == null || SequenceNameLocusComparator.SINGLETON.compare(s, r) != 0) {
-        //System.err.println("Inserting row at: " + s);
-        d.add(i, s);
-      }
-      i++;
-    }
-  }
 }
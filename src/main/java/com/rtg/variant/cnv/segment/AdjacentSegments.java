@@ -37,6 +37,7 @@ class AdjacentSegments {
   private final double mScore;
   private final Segment mFirst;
   private final Segment mSecond;
+  private final int mFirstIndex;
 
   /**
    * @param score the score assigned to this pairing of segments
@@ -44,9 +45,20 @@ class AdjacentSegments {
    * @param second the second of two segments. Usually the higher starting position.
    */
   AdjacentSegments(double score, Segment first, Segment second) {
+    this(score, first, second, -1);
+  }
+
+  /**
+   * @param score the score assigned to this pairing of segments
+   * @param first the first of two segments. Usually the one with lowest starting position.
+   * @param second the second of two segments. Usually the higher starting position.
+   * @param firstIndex position of the first segment within its chain
+   */
+  AdjacentSegments(double score, Segment first, Segment second, int firstIndex) {
     this.mScore = score;
     this.mFirst = first;
     this.mSecond = second;
+    this.mFirstIndex = firstIndex;
   }
 
   /** @return the score assigned to these segments */
@@ -63,4 +75,9 @@ class AdjacentSegments {
   public Segment getSecond() {
     return mSecond;
   }
+
+  /** @return position of the first segment within its chain, or -1 if not known */
+  int getFirstIndex() {
+    return mFirstIndex;
+  }
 }
@@ -188,17 +188,18 @@ public class CnvPonBuildCli extends AbstractCli {
   private void addPonMean(RegionDataset typicalSample, int first, int last) {
     final double[] sum = new double[typicalSample.size()];
     for (int i = first; i < last; i++) {
-      final NumericColumn covData = typicalSample.asNumeric(i);
+      final double[] covData = typicalSample.asNumeric(i).getValues();
       for (int k = 0; k < sum.length; ++k) {
-        sum[k] += covData.get(k);
+        sum[k] += covData[k];
       }
     }
 
     final int n = last - first;
-    final NumericColumn col = new NumericColumn(NORMALIZED_COVERAGE_COLUMN);
-    for (final double v : sum) {
-      col.add(v / n);
+    for (int k = 0; k < sum.length; ++k) {
+      sum[k] /= n;
     }
+    final NumericColumn col = new NumericColumn(NORMALIZED_COVERAGE_COLUMN);
+    col.set(sum);
     typicalSample.addColumn(col);
   }
 
@@ -207,10 +208,14 @@ public class CnvPonBuildCli extends AbstractCli {
     final NumericColumn medcol = new NumericColumn("med-" + NORMALIZED_COVERAGE_COLUMN);
     final NumericColumn iqrcol = new NumericColumn("iqr-" + NORMALIZED_COVERAGE_COLUMN);
     final NumericColumn iqrnormcol = new NumericColumn("norm-iqr-" + NORMALIZED_COVERAGE_COLUMN);
-    final double[] roi = new double[last - first];
+    final double[][] covData = new double[last - first][];
+    for (int i = first; i < last; i++) {
+      covData[i - first] = typicalSample.asNumeric(i).getValues();
+    }
+    final double[] roi = new double[covData.length];
     for (int k = 0; k < typicalSample.size(); ++k) {
-      for (int i = first; i < last; i++) {
-        roi[i - first] = typicalSample.asNumeric(i).get(k);
+      for (int i = 0; i < roi.length; i++) {
+        roi[i] = covData[i][k];
       }
       final double[] dist = MathUtils.quartiles(roi);
       final double iqr = dist[2] - dist[0];
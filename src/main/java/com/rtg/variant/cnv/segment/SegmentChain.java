@@ -30,6 +30,7 @@
 package com.rtg.variant.cnv.segment;
 
 import java.util.ArrayList;
+import java.util.Objects;
 import java.util.TreeSet;
 
 import com.rtg.util.diagnostic.Diagnostic;
@@ -68,11 +69,12 @@ public class SegmentChain extends ArrayList<Segment> {
   public boolean add(final Segment segment) {
     if (!isEmpty()) {
       // Compute score to previous block
-      final Segment prev = get(size() - 1);
+      final int prevIndex = size() - 1;
+      final Segment prev = get(prevIndex);
       // Ideally prev.getEnd() <= segment.getStart(), but following still words for overlapping segments
       assert prev.getStart() < segment.getStart();
       if (segment.getSequenceName().equals(prev.getSequenceName())) {
-        mPriority.add(new AdjacentSegments(mScorer.score(prev, segment), prev, segment));
+        mPriority.add(new AdjacentSegments(mScorer.score(prev, segment), prev, segment, prevIndex));
       }
     }
     return super.add(segment);
@@ -83,41 +85,57 @@ public class SegmentChain extends ArrayList<Segment> {
       return;
     }
     Diagnostic.progress("Processing: " + get(0).getSequenceName());
+    // During the collapse the list positions act as stable handles on the segments. Merged
+    // segments are stored at the position of their left part, and the position of the right part
+    // is cleared and unlinked from the doubly linked chain of live positions. The cleared
+    // positions are only removed from the list once all merging is complete.
+    final int n = size();
+    final int[] next = new int[n];
+    final int[] prev = new int[n];
+    for (int k = 0; k < n; ++k) {
+      next[k] = k + 1;
+      prev[k] = k - 1;
+    }
     double prevLambda = 0;
     double dE = Double.NEGATIVE_INFINITY;
     while (!mPriority.isEmpty()) {
       final AdjacentSegments mergeMe = mPriority.pollFirst();
       final Segment a = mergeMe.getFirst();
       final Segment b = mergeMe.getSecond();
-      final int pos = indexOf(a); // this could be slow for lots of bins
-      if (pos < 0 || get(pos + 1) != b) {
+      final int pos = mergeMe.getFirstIndex();
+      final int bPos = next[pos];
+      if (get(pos) != a || bPos == n || get(bPos) != b) {
         continue; // Obsolete entry in priorty queue refering to already merged segments, just ignore it
       }
       // Replace segment "a" with the merged segment and delete segement "b"
       // The priority queue might still retain references to "a" and "b", but we can discard
       // those when they are encountered.
-      assert get(pos + 1) == b;
-      remove(b);
+      set(bPos, null);
+      next[pos] = next[bPos];
+      if (next[pos] < n) {
+        prev[next[pos]] = pos;
+      }
       final double lambda = mergeMe.getScore();
       final double delta = lambda - prevLambda;
       prevLambda = lambda;
       dE = Math.max(dE, delta);
       final Segment mergedSegment = new Segment(a, b, dE);
       set(pos, mergedSegment);
-      if (pos > 0) {
-        final Segment prev = get(pos - 1);
-        if (mergedSegment.getSequenceName().equals(prev.getSequenceName())) {
-          mPriority.add(new AdjacentSegments(mScorer.score(prev, mergedSegment), prev, mergedSegment));
+      final int prevPos = prev[pos];
+      if (prevPos >= 0) {
+        final Segment prevSegment = get(prevPos);
+        if (mergedSegment.getSequenceName().equals(prevSegment.getSequenceName())) {
+          mPriority.add(new AdjacentSegments(mScorer.score(prevSegment, mergedSegment), prevSegment, mergedSegment, prevPos));
         }
       }
-      if (pos < size() - 1) {
-        final Segment next = get(pos + 1);
-        if (mergedSegment.getSequenceName().equals(next.getSequenceName())) {
-          mPriority.add(new AdjacentSegments(mScorer.score(mergedSegment, next), mergedSegment, next));
+      if (next[pos] < n) {
+        final Segment nextSegment = get(next[pos]);
+        if (mergedSegment.getSequenceName().equals(nextSegment.getSequenceName())) {
+          mPriority.add(new AdjacentSegments(mScorer.score(mergedSegment, nextSegment), mergedSegment, nextSegment, pos));
         }
       }
-      //System.out.println("[" + pos + "](" + a.bins() + ")(" + b.bins() + ")[" + (size() - 1) + "]  gain " + mScorer.score(a, b));
     }
+    removeIf(Objects::isNull);
   }
 
   @Override
@@ -66,6 +66,8 @@ public class CoverageCli extends ParamsCli<CoverageParams> {
   private static final String X_BINARIZE_BED_FLAG = "Xbinarize-bed";
   private static final String X_CALLABILITY_FLAG = "Xcallability";
   private static final String X_DISABLE_HTML_REPORT_FLAG = "Xdisable-html-report";
+  private static final String X_PARALLEL_CHUNKS_FLAG = "Xparallel-chunks";
+  private static final String X_DEPTH_ONLY_FLAG = "Xdepth-only";
 
   @Override
   public String moduleName() {
@@ -110,6 +112,8 @@ public class CoverageCli extends ParamsCli<CoverageParams> {
     mFlags.registerOptional(X_FOLD_PCT_FLAG, Integer.class, CommonFlags.INT, "target percent when computing fold penalty", 80).setCategory(REPORTING);
     mFlags.registerOptional(X_IGNORE_SAM_HEADER_INCOMPATIBILITY_FLAG, "ignore incompatible SAM headers when merging SAM results").setCategory(UTILITY);
     mFlags.registerOptional(X_DISABLE_HTML_REPORT_FLAG, "disable HTML report output").setCategory(REPORTING);
+    mFlags.registerOptional(X_DEPTH_ONLY_FLAG, "compute unweighted read depth directly from alignment positions (ignores IH weighting and only removes flagged duplicates)").setCategory(UTILITY);
+    mFlags.registerOptional(X_PARALLEL_CHUNKS_FLAG, "compute coverage for blocks of each sequence concurrently (requires indexed inputs)").setCategory(UTILITY);
     CommonFlags.initIndexFlags(mFlags);
     mFlags.addRequiredSet(inFlag);
     mFlags.addRequiredSet(listFlag);
@@ -128,6 +132,7 @@ public class CoverageCli extends ParamsCli<CoverageParams> {
       && flags.checkNand(PER_BASE_FLAG, BEDGRAPH_FLAG)
       && flags.checkNand(PER_BASE_FLAG, PER_REGION_FLAG)
       && flags.checkNand(PER_BASE_FLAG, SMOOTHING_LEVEL_FLAG)
+      && flags.checkNand(PER_BASE_FLAG, X_DEPTH_ONLY_FLAG)
       && flags.checkNand(PER_REGION_FLAG, X_BINARIZE_BED_FLAG)
       && flags.checkNand(PER_REGION_FLAG, X_CALLABILITY_FLAG)
       && flags.checkNand(PER_REGION_FLAG, SMOOTHING_LEVEL_FLAG)
@@ -152,6 +157,9 @@ public class CoverageCli extends ParamsCli<CoverageParams> {
     builder.perRegion(mFlags.isSet(PER_REGION_FLAG));
     builder.bedgraphOutput(mFlags.isSet(BEDGRAPH_FLAG));
     builder.ioThreads(CommonFlags.parseIOThreads((Integer) mFlags.getValue(CommonFlags.THREADS_FLAG)));
+    builder.execThreads(CommonFlags.parseThreads((Integer) mFlags.getValue(CommonFlags.THREADS_FLAG)));
+    builder.parallelChunks(mFlags.isSet(X_PARALLEL_CHUNKS_FLAG));
+    builder.depthOnly(mFlags.isSet(X_DEPTH_ONLY_FLAG));
     builder.outputIndex(!mFlags.isSet(CommonFlags.NO_INDEX));
     builder.ignoreIncompatibleSamHeaders(mFlags.isSet(X_IGNORE_SAM_HEADER_INCOMPATIBILITY_FLAG));
     builder.minimumCoverageThreshold((Integer) mFlags.getValue(X_COVERAGE_THRESHOLD_FLAG));
@@ -76,6 +76,8 @@ public final class CoverageParams extends SingleMappedParams {
     boolean mDisableHtmlReport = false;
     private boolean mBinarizeBed = false;
     private boolean mIncludeDeletions = false;
+    private boolean mParallelChunks = false;
+    private boolean mDepthOnly = false;
 
     @Override
     protected CoverageParamsBuilder self() {
@@ -195,6 +197,36 @@ public final class CoverageParams extends SingleMappedParams {
       return self();
     }
 
+    /**
+     * Sets the number of positions to include when dividing work into chunks.
+     * @param size chunk size
+     * @return this builder, so calls can be chained.
+     */
+    public CoverageParamsBuilder chunkSize(int size) {
+      mChunkSize = size;
+      return self();
+    }
+
+    /**
+     * Turns on concurrent computation of chunk coverage, reading each block of chunks independently from indexed inputs.
+     * @param parallel true if chunks should be processed concurrently
+     * @return this builder, so calls can be chained.
+     */
+    public CoverageParamsBuilder parallelChunks(boolean parallel) {
+      mParallelChunks = parallel;
+      return self();
+    }
+
+    /**
+     * Turns on depth-only coverage, where each alignment contributes one to the depth of each position it covers.
+     * @param depthOnly true if unweighted depth should be computed directly from alignment positions and CIGARs
+     * @return this builder, so calls can be chained.
+     */
+    public CoverageParamsBuilder depthOnly(boolean depthOnly) {
+      mDepthOnly = depthOnly;
+      return self();
+    }
+
     /**
      * Creates a CoverageParams using the current builder
      * configuration.
@@ -217,6 +249,8 @@ public final class CoverageParams extends SingleMappedParams {
   private final boolean mDisableHtmlReport;
   private final int mFoldTargetPercent;
   private final boolean mOutputIndex;
+  private final boolean mParallelChunks;
+  private final boolean mDepthOnly;
 
   /**
    * @param builder the builder object.
@@ -235,6 +269,8 @@ public final class CoverageParams extends SingleMappedParams {
     mChunkSize = builder.mChunkSize;
     mDisableHtmlReport = builder.mDisableHtmlReport;
     mFoldTargetPercent = builder.mFoldTargetPercent;
+    mParallelChunks = builder.mParallelChunks;
+    mDepthOnly = builder.mDepthOnly && !mTsvOutput; // Per-base output requires the unique/ambiguous breakdown
   }
 
   /**
@@ -344,6 +380,20 @@ public final class CoverageParams extends SingleMappedParams {
     return mChunkSize;
   }
 
+  /**
+   * @return true if chunk coverage should be computed concurrently from indexed inputs.
+   */
+  public boolean parallelChunks() {
+    return mParallelChunks;
+  }
+
+  /**
+   * @return true if unweighted depth should be computed directly from alignment positions and CIGARs.
+   */
+  public boolean depthOnly() {
+    return mDepthOnly;
+  }
+
   /** @return true if HTML report output should be disabled */
   public boolean disableHtmlReport() {
     return mDisableHtmlReport;
@@ -365,6 +415,8 @@ public final class CoverageParams extends SingleMappedParams {
       + " min coverage threshold=" + mMinimumCoverageThreshold
       + " binarize bed=" + mBinarizeBed
       + " include deletions=" + mIncludeDeletions
+      + " parallel chunks=" + mParallelChunks
+      + " depth only=" + mDepthOnly
       + LS + super.toString();
   }
 }
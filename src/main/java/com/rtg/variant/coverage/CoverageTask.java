@@ -32,20 +32,34 @@ package com.rtg.variant.coverage;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.rtg.launcher.ParamsTask;
 import com.rtg.launcher.ReaderParams;
 import com.rtg.mode.DnaUtils;
 import com.rtg.reader.ReaderUtils;
 import com.rtg.reader.SequencesReader;
+import com.rtg.sam.BamIndexer;
 import com.rtg.sam.CircularBufferMultifileSinglePassReaderWindow;
+import com.rtg.sam.RecordCounter;
+import com.rtg.sam.RecordIterator;
+import com.rtg.sam.SamRangeUtils;
 import com.rtg.sam.SamReadingContext;
+import com.rtg.sam.SamRecordPopulator;
 import com.rtg.sam.SamUtils;
 import com.rtg.sam.SimpleRecordCounter;
+import com.rtg.sam.ThreadedMultifileIterator;
 import com.rtg.sam.ThreadedMultifileIteratorWrapper;
 import com.rtg.tabix.TabixIndexer;
 import com.rtg.tabix.UnindexableDataException;
@@ -53,13 +67,18 @@ import com.rtg.util.MathUtils;
 import com.rtg.util.Populator;
 import com.rtg.util.SingletonPopulatorFactory;
 import com.rtg.util.diagnostic.Diagnostic;
+import com.rtg.util.diagnostic.NoTalkbackSlimException;
 import com.rtg.util.diagnostic.ParallelProgress;
 import com.rtg.util.diagnostic.Timer;
 import com.rtg.util.intervals.RangeList;
 import com.rtg.util.intervals.RangeList.RangeView;
 import com.rtg.util.intervals.ReferenceRanges;
+import com.rtg.util.intervals.RegionRestriction;
+import com.rtg.util.io.IOUtils;
 import com.rtg.variant.bayes.multisample.ChunkInfo;
 
+import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.CigarOperator;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMSequenceRecord;
@@ -74,13 +93,19 @@ public class CoverageTask extends ParamsTask<CoverageParams, CoverageStatistics>
   // arithmetic for the situation of interest
   private static final double SCALE = 16.0 * 9.0 * 5 * 7 * 11;
   private static final double INV_SCALE = 1.0 / SCALE;
+  // Number of chunks read together as a single block when computing chunk coverage in parallel
+  private static final int CHUNKS_PER_BLOCK = 10;
   private CoverageProxy mCoverageProxy;
   private ChunkInfo mInfo;
   private Long mReferenceSequenceIndex;
   private ParallelProgress mPP = null;
   private Map<String, Long> mReferenceNames = null;
 
+  private SamReadingContext mContext;
   private ThreadedMultifileIteratorWrapper<CoverageReaderRecord> mWrapper;
+  private ExecutorService mExecutor = null;
+  private ThreadedMultifileIterator<SAMRecord> mDepthIterator;
+  private DepthRecords mDepthRecords;
 
   /**
    * @param params parameters for coverage run
@@ -127,23 +152,34 @@ public class CoverageTask extends ParamsTask<CoverageParams, CoverageStatistics>
         // delegate output to the statistics object, it's already tracking per-region statistics
         mStatistics.setPerRegionCoverageWriter((CoverageBedWriter) coverageWriter);
       }
-      final SingletonPopulatorFactory<CoverageReaderRecord> pf = new SingletonPopulatorFactory<>(new CoverageReaderRecordPopulator(mParams.includeDeletions()));
-      final SamReadingContext context = new SamReadingContext(mParams.mapped(), mParams.ioThreads(), mParams.filterParams(), uberHeader, reference);
-      final ReferenceRanges<String> ranges = context.referenceRanges();
-      mWrapper = new ThreadedMultifileIteratorWrapper<>(context, pf);
+      mContext = new SamReadingContext(mParams.mapped(), mParams.ioThreads(), mParams.filterParams(), uberHeader, reference);
+      final ReferenceRanges<String> ranges = mContext.referenceRanges();
+      if (mParams.parallelChunks()) {
+        if (mParams.mapped().stream().allMatch(CoverageTask::isIndexed)) {
+          Diagnostic.userLog("Computing chunk coverage in parallel using " + mParams.execThreads() + " threads");
+          mExecutor = Executors.newFixedThreadPool(mParams.execThreads());
+        } else {
+          Diagnostic.warning("Not all inputs are indexed, chunk coverage will be computed serially.");
+        }
+      }
       for (final SAMSequenceRecord r : uberHeader.getSequenceDictionary().getSequences()) {
         if (r.getSequenceLength() > 0) {
           final RangeList<String> rs = ranges.get(r.getSequenceName());
           if (rs != null) {
-            mWrapper.setSequenceId(r.getSequenceIndex());
             processReference(coverageWriter, r, recCounts, rs);
           }
         }
       }
     } finally {
+      if (mExecutor != null) {
+        mExecutor.shutdownNow();
+      }
       if (mWrapper != null) {
         mWrapper.close();
       }
+      if (mDepthIterator != null) {
+        mDepthIterator.close();
+      }
     }
     recCounts.reportCounts();
     if (mParams.blockCompressed() && mParams.outputIndex()) {
@@ -184,7 +220,9 @@ public class CoverageTask extends ParamsTask<CoverageParams, CoverageStatistics>
     }
     final String sequenceName = r.getSequenceName();
     mPP = new ParallelProgress(sequenceName);
-    setReferenceSequence(r, ranges.get(0).getStart(), ranges.get(ranges.size() - 1).getEnd());
+    // Blocks are only read independently when a single range is being processed, since records
+    // reaching into the gaps between ranges must be exactly those the serial reader would see
+    setReferenceSequence(r, ranges.get(0).getStart(), ranges.get(ranges.size() - 1).getEnd(), mExecutor != null && ranges.size() == 1);
 
     try {
       final int minCoverage = mParams.minimumCoverageThreshold();
@@ -326,7 +364,7 @@ public class CoverageTask extends ParamsTask<CoverageParams, CoverageStatistics>
     }
   }
 
-  private void setReferenceSequence(SAMSequenceRecord r, int restrictionStart, int restrictionEnd) {
+  private void setReferenceSequence(SAMSequenceRecord r, int restrictionStart, int restrictionEnd, boolean parallel) throws IOException {
     if (mParams.genome() != null) {
       mReferenceSequenceIndex = mReferenceNames.get(r.getSequenceName());
     }
@@ -334,10 +372,56 @@ public class CoverageTask extends ParamsTask<CoverageParams, CoverageStatistics>
     final int chunkSize = mParams.smoothing() < (mParams.chunkSize() / 2) ? mParams.chunkSize() : (mParams.smoothing() * 2 + 2);
     mInfo = new ChunkInfo(r.getSequenceLength(), r.getSequenceName(), chunkSize, restrictionStart, restrictionEnd, mParams.execThreads(), 1000);
 
+    final ChunkSource source;
+    if (parallel) {
+      source = new IndexedChunkSource(r, mInfo);
+    } else if (mParams.depthOnly()) {
+      if (mDepthIterator == null) {
+        mDepthIterator = new ThreadedMultifileIterator<>(mContext, new SingletonPopulatorFactory<>(new SamRecordPopulator()));
+        mDepthRecords = new DepthRecords(mDepthIterator);
+      }
+      source = new DepthChunkSource(mDepthRecords, mDepthIterator, r.getSequenceIndex(), chunkSize, mParams.includeDeletions());
+    } else {
+      final CoverageReaderRecordPopulator populator = new CoverageReaderRecordPopulator(mParams.includeDeletions());
+      if (mWrapper == null) {
+        mWrapper = new ThreadedMultifileIteratorWrapper<>(mContext, new SingletonPopulatorFactory<>(populator));
+      }
+      mWrapper.setSequenceId(r.getSequenceIndex());
+      source = new BufferChunkSource(new CircularBufferMultifileSinglePassReaderWindow<>(mWrapper, populator, r.getSequenceIndex(), mInfo.start(), Integer.MAX_VALUE), chunkSize, mParams.tsvOutput());
+    }
+
+    mCoverageProxy.setReferenceSequence(mReferenceSequenceIndex, mInfo, source, mPP);
+  }
+
+  private static boolean isIndexed(File samFile) {
+    return TabixIndexer.indexFileName(samFile).exists() || BamIndexer.indexFileName(samFile).exists() || BamIndexer.secondaryIndexFileName(samFile).exists();
+  }
+
+  private CoverageBlock blockCoverage(SAMSequenceRecord r, int chunkSize, int blockStart, int blockEnd) throws IOException {
+    final ReferenceRanges<String> ranges = SamRangeUtils.createExplicitReferenceRange(new RegionRestriction(r.getSequenceName(), blockStart, blockEnd));
+    final SamReadingContext context = new SamReadingContext(mParams.mapped(), 1, mParams.filterParams(), mContext.header(), mContext.reference(), ranges);
+    if (mParams.depthOnly()) {
+      try (final ThreadedMultifileIterator<SAMRecord> it = new ThreadedMultifileIterator<>(context, new SingletonPopulatorFactory<>(new SamRecordPopulator()))) {
+        return blockCoverage(new DepthChunkSource(new DepthRecords(it), it, r.getSequenceIndex(), chunkSize, mParams.includeDeletions()), chunkSize, blockStart, blockEnd);
+      }
+    }
     final CoverageReaderRecordPopulator populator = new CoverageReaderRecordPopulator(mParams.includeDeletions());
-    final CircularBufferMultifileSinglePassReaderWindow<CoverageReaderRecord> circularBuffer = new CircularBufferMultifileSinglePassReaderWindow<>(mWrapper, populator, r.getSequenceIndex(), mInfo.start(), Integer.MAX_VALUE);
+    try (final ThreadedMultifileIteratorWrapper<CoverageReaderRecord> it = new ThreadedMultifileIteratorWrapper<>(context, new SingletonPopulatorFactory<>(populator))) {
+      it.setSequenceId(r.getSequenceIndex());
+      final CircularBufferMultifileSinglePassReaderWindow<CoverageReaderRecord> circularBuffer = new CircularBufferMultifileSinglePassReaderWindow<>(it, populator, r.getSequenceIndex(), blockStart, Integer.MAX_VALUE);
+      return blockCoverage(new BufferChunkSource(circularBuffer, chunkSize, mParams.tsvOutput()), chunkSize, blockStart, blockEnd);
+    }
+  }
 
-    mCoverageProxy.setReferenceSequence(mReferenceSequenceIndex, mInfo, circularBuffer, mPP);
+  private static CoverageBlock blockCoverage(ChunkSource source, int chunkSize, int blockStart, int blockEnd) throws IOException {
+    final List<ChunkCoverage> chunks = new ArrayList<>();
+    for (int start = blockStart; start < blockEnd; start += chunkSize) {
+      chunks.add(source.nextChunk(start, Math.min(start + chunkSize, blockEnd)));
+    }
+    source.close();
+    final BlockRecordCounter counts = new BlockRecordCounter();
+    counts.add(source.recordCounter(), 0);
+    return new CoverageBlock(chunks, counts);
   }
 
 
@@ -358,27 +442,346 @@ public class CoverageTask extends ParamsTask<CoverageParams, CoverageStatistics>
   }
 
 
-  // Processes alignment data and provides per-position access to coverage totals
+  // Coverage totals for a single chunk
+  private static final class ChunkCoverage {
+    private final int mStart;
+    private final long[] mCoverage;
+    private final int[] mIH1;
+    private final int[] mIHgt1;
+    private int mEarlierStarts = 0; // Records contributing to this chunk that start before it
+
+    ChunkCoverage(int start, int size, boolean expanded) {
+      mStart = start;
+      mCoverage = new long[size];
+      mIH1 = expanded ? new int[size] : null;
+      mIHgt1 = expanded ? new int[size] : null;
+    }
+    void add(CoverageReaderRecord crr) {
+      if (crr.getStart() < mStart) {
+        ++mEarlierStarts;
+      }
+      final BitSet coverageBitSet = crr.getCoverageBitSet();
+      final long increment = MathUtils.round(crr.getCoverageMultiplier() * SCALE);
+      for (int j = 0; j < coverageBitSet.length(); ++j) {
+        if (coverageBitSet.get(j)) {
+          final int index = crr.getStart() + j - mStart;
+          if (index >= 0 && index < mCoverage.length) {
+            mCoverage[index] += increment;
+            if (mIH1 != null) {
+              if (crr.getIH() == 1) {
+                mIH1[index]++;
+              } else {
+                mIHgt1[index]++;
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // Supplies coverage for successive chunks of the current reference sequence
+  private interface ChunkSource {
+    ChunkCoverage nextChunk(int chunkStart, int chunkEnd) throws IOException;
+    RecordCounter recordCounter();
+    void close();
+  }
+
+  // Computes chunk coverage from the records held in a single pass reader window
+  private static final class BufferChunkSource implements ChunkSource {
+    private final CircularBufferMultifileSinglePassReaderWindow<CoverageReaderRecord> mCircularBuffer;
+    private final int mChunkSize;
+    private final boolean mExpanded;
+    private int mLastStart = -1;
+    private int mLastEnd = -1;
+
+    BufferChunkSource(CircularBufferMultifileSinglePassReaderWindow<CoverageReaderRecord> circularBuffer, int chunkSize, boolean expanded) {
+      mCircularBuffer = circularBuffer;
+      mChunkSize = chunkSize;
+      mExpanded = expanded;
+    }
+    @Override
+    public ChunkCoverage nextChunk(int chunkStart, int chunkEnd) throws IOException {
+      if (mLastStart != -1) {
+        mCircularBuffer.flush(mLastStart, mLastEnd);
+      }
+      final ChunkCoverage chunk = new ChunkCoverage(chunkStart, mChunkSize, mExpanded);
+      final Iterator<CoverageReaderRecord> it = mCircularBuffer.recordsOverlap(chunkStart, chunkEnd);
+      while (it.hasNext()) {
+        chunk.add(it.next());
+      }
+      mLastStart = chunkStart;
+      mLastEnd = chunkEnd;
+      return chunk;
+    }
+    @Override
+    public RecordCounter recordCounter() {
+      return mCircularBuffer;
+    }
+    @Override
+    public void close() {
+      mCircularBuffer.close();
+    }
+  }
+
+  // Alignment records in sorted order, shared between the sequences being processed in depth-only mode
+  private static final class DepthRecords {
+    private final RecordIterator<SAMRecord> mIterator;
+    private SAMRecord mNext;
+
+    DepthRecords(RecordIterator<SAMRecord> iterator) {
+      mIterator = iterator;
+      mNext = mIterator.hasNext() ? mIterator.next() : null;
+    }
+
+    // Next record on the given sequence that starts before end, skipping any from earlier sequences
+    SAMRecord next(int sequenceIndex, int end) {
+      while (mNext != null && mNext.getReferenceIndex() < sequenceIndex) {
+        mNext = mIterator.hasNext() ? mIterator.next() : null;
+      }
+      if (mNext == null || mNext.getReferenceIndex() != sequenceIndex || mNext.getAlignmentStart() - 1 >= end) {
+        return null;
+      }
+      final SAMRecord res = mNext;
+      mNext = mIterator.hasNext() ? mIterator.next() : null;
+      return res;
+    }
+  }
+
+  // Computes unweighted depth for chunks directly from alignment positions and CIGARs. Each
+  // aligned block is added to a difference array, with the part of any block extending beyond
+  // the current chunk carried over to subsequent chunks.
+  private static final class DepthChunkSource implements ChunkSource {
+    private static final long DEPTH_INCREMENT = MathUtils.round(SCALE);
+    private final DepthRecords mRecords;
+    private final RecordCounter mCounter;
+    private final int mSequenceIndex;
+    private final int mChunkSize;
+    private final boolean mIncludeDeletions;
+    private final int[] mDiff;
+    private int[] mCarried = new int[64]; // Start and end pairs of blocks extending beyond the current chunk
+    private int mNumCarried = 0;
+    private int[] mSpare = new int[64];
+    private int mChunkStart;
+    private int mChunkEnd;
+
+    DepthChunkSource(DepthRecords records, RecordCounter counter, int sequenceIndex, int chunkSize, boolean includeDeletions) {
+      mRecords = records;
+      mCounter = counter;
+      mSequenceIndex = sequenceIndex;
+      mChunkSize = chunkSize;
+      mIncludeDeletions = includeDeletions;
+      mDiff = new int[chunkSize + 1];
+    }
+    @Override
+    public ChunkCoverage nextChunk(int chunkStart, int chunkEnd) {
+      mChunkStart = chunkStart;
+      mChunkEnd = chunkEnd;
+      Arrays.fill(mDiff, 0);
+      final int[] previous = mCarried;
+      final int numPrevious = mNumCarried;
+      mCarried = mSpare;
+      mNumCarried = 0;
+      for (int i = 0; i < numPrevious; i += 2) {
+        addBlock(previous[i], previous[i + 1]);
+      }
+      mSpare = previous;
+
+      final ChunkCoverage chunk = new ChunkCoverage(chunkStart, mChunkSize, false);
+      SAMRecord rec;
+      while ((rec = mRecords.next(mSequenceIndex, chunkEnd)) != null) {
+        int pos = rec.getAlignmentStart() - 1;
+        if (pos < chunkStart) {
+          ++chunk.mEarlierStarts;
+        }
+        for (final CigarElement e : rec.getCigar().getCigarElements()) {
+          final CigarOperator op = e.getOperator();
+          if (op.isAlignment() || (mIncludeDeletions && op == CigarOperator.DELETION)) {
+            addBlock(pos, pos + e.getLength());
+          }
+          if (op.consumesReferenceBases()) {
+            pos += e.getLength();
+          }
+        }
+      }
+
+      int depth = 0;
+      for (int i = 0; i < chunkEnd - chunkStart; ++i) {
+        depth += mDiff[i];
+        chunk.mCoverage[i] = depth * DEPTH_INCREMENT;
+      }
+      return chunk;
+    }
+    private void addBlock(int start, int end) {
+      if (end > mChunkEnd) {
+        if (mNumCarried + 2 > mCarried.length) {
+          mCarried = Arrays.copyOf(mCarried, mCarried.length * 2);
+        }
+        mCarried[mNumCarried++] = Math.max(start, mChunkEnd);
+        mCarried[mNumCarried++] = end;
+      }
+      final int s = Math.max(start, mChunkStart);
+      final int e = Math.min(end, mChunkEnd);
+      if (s < e) {
+        ++mDiff[s - mChunkStart];
+        --mDiff[e - mChunkStart];
+      }
+    }
+    @Override
+    public RecordCounter recordCounter() {
+      return mCounter;
+    }
+    @Override
+    public void close() {
+    }
+  }
+
+  // Chunk coverage for a contiguous run of chunks, along with the counts from reading them
+  private static final class CoverageBlock {
+    private final List<ChunkCoverage> mChunks;
+    private final BlockRecordCounter mCounts;
+    CoverageBlock(List<ChunkCoverage> chunks, BlockRecordCounter counts) {
+      mChunks = chunks;
+      mCounts = counts;
+    }
+  }
+
+  // Accumulates record counts over blocks. Records starting before a block were already counted
+  // by the preceding block, so they are excluded from the output and total counts. Filtered records
+  // spanning a block boundary are seen by both blocks and so may be counted more than once.
+  private static final class BlockRecordCounter implements RecordCounter {
+    private long mInvalid = 0;
+    private long mFiltered = 0;
+    private long mDuplicate = 0;
+    private long mOverCoverage = 0;
+    private long mOutput = 0;
+    private long mTotal = 0;
+
+    void add(RecordCounter counter, long alreadyCounted) {
+      mInvalid += counter.getInvalidRecordsCount();
+      mFiltered += counter.getFilteredRecordsCount();
+      mDuplicate += counter.getDuplicateRecordsCount();
+      mOverCoverage += counter.getOverCoverageRecordsCount();
+      mOutput += counter.getOutputRecordsCount() - alreadyCounted;
+      mTotal += counter.getTotalRecordsCount() - alreadyCounted;
+    }
+    @Override
+    public long getInvalidRecordsCount() {
+      return mInvalid;
+    }
+    @Override
+    public long getFilteredRecordsCount() {
+      return mFiltered;
+    }
+    @Override
+    public long getDuplicateRecordsCount() {
+      return mDuplicate;
+    }
+    @Override
+    public long getOverCoverageRecordsCount() {
+      return mOverCoverage;
+    }
+    @Override
+    public long getOutputRecordsCount() {
+      return mOutput;
+    }
+    @Override
+    public long getTotalRecordsCount() {
+      return mTotal;
+    }
+  }
+
+  // Computes chunk coverage ahead of the consumer, with each block of chunks read
+  // independently via the alignment indexes and processed on the executor
+  private final class IndexedChunkSource implements ChunkSource {
+    private final SAMSequenceRecord mSequence;
+    private final int mChunkSize;
+    private final int mBlockSize;
+    private final int mEnd;
+    private final int mMaxPending;
+    private final ArrayDeque<Future<CoverageBlock>> mPending = new ArrayDeque<>();
+    private final BlockRecordCounter mCounts = new BlockRecordCounter();
+    private Iterator<ChunkCoverage> mChunks = Collections.emptyIterator();
+    private int mNextBlockStart;
+    private boolean mFirstBlock = true;
+
+    IndexedChunkSource(SAMSequenceRecord sequence, ChunkInfo info) {
+      mSequence = sequence;
+      mChunkSize = info.chunkSize();
+      mBlockSize = (int) Math.min((long) info.chunkSize() * CHUNKS_PER_BLOCK, Integer.MAX_VALUE);
+      mEnd = info.end();
+      mNextBlockStart = info.start();
+      mMaxPending = 2 * mParams.execThreads();
+    }
+
+    private void submitBlocks() {
+      while (mPending.size() < mMaxPending && mNextBlockStart < mEnd) {
+        final int blockStart = mNextBlockStart;
+        final int blockEnd = (int) Math.min((long) blockStart + mBlockSize, mEnd);
+        mPending.add(mExecutor.submit(() -> blockCoverage(mSequence, mChunkSize, blockStart, blockEnd)));
+        mNextBlockStart = blockEnd;
+      }
+    }
+
+    @Override
+    public ChunkCoverage nextChunk(int chunkStart, int chunkEnd) throws IOException {
+      while (!mChunks.hasNext()) {
+        submitBlocks();
+        final Future<CoverageBlock> next = mPending.poll();
+        if (next == null) {
+          throw new IllegalStateException("No coverage block pending for chunk starting at " + chunkStart);
+        }
+        CoverageBlock block = null;
+        try {
+          block = next.get();
+        } catch (final ExecutionException e) {
+          IOUtils.rethrow(e.getCause());
+        } catch (final InterruptedException e) {
+          throw new NoTalkbackSlimException("Interrupted while computing coverage.");
+        }
+        assert block != null && !block.mChunks.isEmpty();
+        mCounts.add(block.mCounts, mFirstBlock ? 0 : block.mChunks.get(0).mEarlierStarts);
+        mFirstBlock = false;
+        mChunks = block.mChunks.iterator();
+      }
+      final ChunkCoverage chunk = mChunks.next();
+      assert chunk.mStart == chunkStart;
+      return chunk;
+    }
+    @Override
+    public RecordCounter recordCounter() {
+      return mCounts;
+    }
+    @Override
+    public void close() {
+      for (final Future<CoverageBlock> f : mPending) {
+        f.cancel(true);
+      }
+      mPending.clear();
+    }
+  }
+
+  // Provides per-position access to coverage totals for the current and previous chunks
   private static class CoverageProxy {
     private final SequencesReader mReader;
     private Long mReferenceSequenceIndex;
-    private CircularBufferMultifileSinglePassReaderWindow<CoverageReaderRecord> mCircularBuffer;
+    private ChunkSource mSource;
     private ParallelProgress mPP;
     private ChunkInfo mInfo;
     private int mChunkStart;
     private int mChunkEnd;
     private int mChunkNumber;
-    private long[] mCoverage;
+    private ChunkCoverage mCoverage;
     private byte[] mReferenceBytes;
-    private long[] mCoveragePrev;
+    private ChunkCoverage mCoveragePrev;
     private byte[] mReferenceBytesPrev;
 
     CoverageProxy(ReaderParams params) {
       mReader = params == null ? null : params.reader();
     }
-    public void setReferenceSequence(Long referenceSequenceIndex, ChunkInfo info, CircularBufferMultifileSinglePassReaderWindow<CoverageReaderRecord> circularBuffer, ParallelProgress pp) {
+    public void setReferenceSequence(Long referenceSequenceIndex, ChunkInfo info, ChunkSource source, ParallelProgress pp) {
       mReferenceSequenceIndex = referenceSequenceIndex;
-      mCircularBuffer = circularBuffer;
+      mSource = source;
       mPP = pp;
       mInfo = info;
       mCoverage = null;
@@ -391,10 +794,10 @@ public class CoverageTask extends ParamsTask<CoverageParams, CoverageStatistics>
       final int currChunkPos = sequencePosition - mChunkStart;
       if (currChunkPos < 0) {
         assert -currChunkPos < mInfo.chunkSize();
-        return mCoveragePrev[mCoveragePrev.length + currChunkPos]; //currChunkPos is -ve
+        return mCoveragePrev.mCoverage[mCoveragePrev.mCoverage.length + currChunkPos]; //currChunkPos is -ve
       } else {
         assert currChunkPos < mInfo.chunkSize();
-        return mCoverage[currChunkPos];
+        return mCoverage.mCoverage[currChunkPos];
       }
     }
     public byte getBaseForPosition(int sequencePosition) {
@@ -411,22 +814,22 @@ public class CoverageTask extends ParamsTask<CoverageParams, CoverageStatistics>
       }
     }
     public void incrementRecordCounts(SimpleRecordCounter recCounts) {
-      recCounts.incrementCounts(mCircularBuffer);
+      recCounts.incrementCounts(mSource.recordCounter());
     }
     public void close() {
-      if (mCircularBuffer != null) {
-        mCircularBuffer.close();
+      if (mSource != null) {
+        mSource.close();
       }
     }
-    protected int getValueForPosition(int sequencePosition, int[] arr, int[] prevArr) throws IOException {
+    protected int getValueForPosition(int sequencePosition, boolean ih1) throws IOException {
       ensurePosition(sequencePosition);
       final int currChunkPos = sequencePosition - mChunkStart;
       if (currChunkPos < 0) {
         assert -currChunkPos < mInfo.chunkSize();
-        return prevArr[mInfo.chunkSize() + currChunkPos]; //currChunkPos is -ve
+        return (ih1 ? mCoveragePrev.mIH1 : mCoveragePrev.mIHgt1)[mInfo.chunkSize() + currChunkPos]; //currChunkPos is -ve
       } else {
         assert currChunkPos < mInfo.chunkSize();
-        return arr[currChunkPos];
+        return (ih1 ? mCoverage.mIH1 : mCoverage.mIHgt1)[currChunkPos];
       }
     }
 
@@ -441,78 +844,32 @@ public class CoverageTask extends ParamsTask<CoverageParams, CoverageStatistics>
 
     private boolean loadNextChunk() throws IOException {
       if (mChunkNumber < mInfo.numberChunks()) {
-        if (mChunkNumber > 0) {
-          mCircularBuffer.flush(mChunkStart, mChunkEnd);
-        }
         mChunkStart = mChunkNumber * mInfo.chunkSize() + mInfo.start();
         mChunkEnd = Math.min(mChunkStart + mInfo.chunkSize(), mInfo.end());
-        shiftData();
         ++mChunkNumber;
-
-        final Iterator<CoverageReaderRecord> it = mCircularBuffer.recordsOverlap(mChunkStart, mChunkEnd);
-        while (it.hasNext()) {
-          final CoverageReaderRecord crr = it.next();
-          addBitSet(crr.getStart(), crr.getIH(), crr.getCoverageMultiplier(), crr.getCoverageBitSet());
+        mCoveragePrev = mCoverage;
+        mCoverage = mSource.nextChunk(mChunkStart, mChunkEnd);
+        mReferenceBytesPrev = mReferenceBytes;
+        if (mReferenceSequenceIndex != null) {
+          mReferenceBytes = new byte[mInfo.chunkSize()];
+          mReader.read(mReferenceSequenceIndex, mReferenceBytes, mChunkStart, mChunkEnd - mChunkStart);
         }
         return true;
       }
       return false;
     }
-    protected void shiftData() throws IOException {
-      mCoveragePrev = mCoverage;
-      mCoverage = new long[mInfo.chunkSize()];
-      mReferenceBytesPrev = mReferenceBytes;
-      if (mReferenceSequenceIndex != null) {
-        mReferenceBytes = new byte[mInfo.chunkSize()];
-        mReader.read(mReferenceSequenceIndex, mReferenceBytes, mChunkStart, mChunkEnd - mChunkStart);
-      }
-    }
-    private void addBitSet(int start, int ih, double multiplier, BitSet coverageBitSet) {
-      for (int j = 0; j < coverageBitSet.length(); ++j) {
-        if (coverageBitSet.get(j)) {
-          final int index = start + j - mChunkStart;
-          if (index >= 0 && index < mCoverage.length) {
-            addIndex(index, ih, multiplier);
-          }
-        }
-      }
-    }
-    protected void addIndex(int index, int ih, double multiplier) {
-      mCoverage[index] += MathUtils.round(multiplier * SCALE);
-    }
   }
 
-  // Adds accumulation of ambiguous mapping statistics
-  private class ExpandedCoverageProxy extends CoverageProxy {
-    private int[] mIH1 = null;
-    private int[] mIHgt1 = null;
-    private int[] mIH1Prev = null;
-    private int[] mIHgt1Prev = null;
+  // Adds access to ambiguous mapping statistics
+  private static final class ExpandedCoverageProxy extends CoverageProxy {
     ExpandedCoverageProxy(ReaderParams params) {
       super(params);
     }
     public int getIH1ForPosition(int sequencePosition) throws IOException {
-      return getValueForPosition(sequencePosition, mIH1, mIH1Prev);
+      return getValueForPosition(sequencePosition, true);
     }
     public int getIHgt1ForPosition(int sequencePosition) throws IOException {
-      return getValueForPosition(sequencePosition, mIHgt1, mIHgt1Prev);
-    }
-    @Override
-    protected void addIndex(int index, int ih, double multiplier) {
-      super.addIndex(index, ih, multiplier);
-      if (ih == 1) {
-        mIH1[index]++;
-      } else {
-        mIHgt1[index]++;
-      }
-    }
-    @Override
-    protected void shiftData() throws IOException {
-      super.shiftData();
-      mIH1Prev = mIH1;
-      mIH1 = new int[mInfo.chunkSize()];
-      mIHgt1Prev = mIHgt1;
-      mIHgt1 = new int[mInfo.chunkSize()];
+      return getValueForPosition(sequencePosition, false);
     }
   }
 }
@@ -49,6 +49,8 @@ public abstract class AbstractAllPathsFastUnderflow extends IntegralAbstract imp
   private AllPaths mFast = null;
   private AllPaths mSlowSure = null;
   private AllPaths mUseThis = null;
+  // true iff the slow matrix was used for the most recent environment
+  private boolean mSlowIsCurrent = false;
 
   /**
    * @param params the machine error model and related parameters.
@@ -67,18 +69,26 @@ public abstract class AbstractAllPathsFastUnderflow extends IntegralAbstract imp
 
   @Override
   public void setEnv(Environment env) {
+    setEnv(env, Integer.MIN_VALUE);
+  }
+
+  @Override
+  public void setEnv(Environment env, int templateIndex) {
     if (mFast == null) {
       mFast = makeMatrix(SimplePossibility.SINGLETON, mParams);
     }
-    mFast.setEnv(env);
+    mFast.setEnv(env, templateIndex);
     if (mFast.underflow()) {
       //System.err.println("Underflow");
       if (mSlowSure == null) {
         mSlowSure = makeMatrix(LogApproximatePossibility.SINGLETON, mParams);
       }
-      mSlowSure.setEnv(env);
+      // The slow matrix can only reuse rows if it was also used for the previous environment
+      mSlowSure.setEnv(env, mSlowIsCurrent ? templateIndex : Integer.MIN_VALUE);
+      mSlowIsCurrent = true;
       mUseThis = mSlowSure;
     } else {
+      mSlowIsCurrent = false;
       mUseThis = mFast;
     }
   }
@@ -43,6 +43,19 @@ public interface AllPaths {
    */
   void setEnv(final Environment env);
 
+  /**
+   * Change the environment, where the new environment has the same read and maximum shift as
+   * the previous environment and a template that is identical before <code>templateIndex</code>.
+   * Implementations may retain any part of the previous calculation that depends only on that
+   * shared prefix, by default everything is recalculated.
+   *
+   * @param env the new read and template information.
+   * @param templateIndex first template index (relative to the environment) that may differ from the previous environment.
+   */
+  default void setEnv(final Environment env, final int templateIndex) {
+    setEnv(env);
+  }
+
   /**
    * Get the overall probability of the read given the template.
    *
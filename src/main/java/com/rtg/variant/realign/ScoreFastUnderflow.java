@@ -45,6 +45,6 @@ public class ScoreFastUnderflow extends AbstractAllPathsFastUnderflow {
 
   @Override
   protected AllPaths makeMatrix(PossibilityArithmetic arith, RealignParams params) {
-    return new ScoreMatrix(arith, params);
+    return new ScoreMatrixPrefix(arith, params);
   }
 }
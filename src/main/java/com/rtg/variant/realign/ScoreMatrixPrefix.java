@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.rtg.variant.realign;
+
+import com.reeltwo.jumble.annotations.TestClass;
+import com.rtg.variant.util.arithmetic.PossibilityArithmetic;
+
+/**
+ * Forward all-paths matrix that can retain the leading rows of the previous calculation when
+ * successive environments share the same read and differ only in the template beyond some point.
+ * Row <code>i</code> of the matrix only examines the template up to <code>rowOffset(i) + width - 1</code>,
+ * so all rows before the first differing template position are unchanged.
+ */
+@TestClass("com.rtg.variant.realign.ScoreMatrixPrefixTest")
+public class ScoreMatrixPrefix extends ScoreMatrix {
+
+  private int mFirstRow = 1;
+
+  /**
+   * @param arith helper object that does the arithmetic so that this code can be independent of the representation.
+   * @param params the machine error model and related parameters.
+   */
+  protected ScoreMatrixPrefix(PossibilityArithmetic arith, final RealignParams params) {
+    super(arith, params);
+  }
+
+  @Override
+  public void setEnv(final Environment env, final int templateIndex) {
+    final int width = 2 * env.maxShift() + 1;
+    if (mEnv != null && env.readLength() == mLength && width == mWidth && templateIndex > env.maxShift()) {
+      // Last row whose band lies entirely before templateIndex, i.e. rowOffset(row) + width - 1 < templateIndex
+      final int retained = templateIndex - env.maxShift();
+      mFirstRow = Math.min(retained, mLength) + 1;
+    } else {
+      mFirstRow = 1;
+    }
+    try {
+      setEnv(env);
+    } finally {
+      mFirstRow = 1;
+    }
+  }
+
+  @Override
+  protected void calculateProbabilities() {
+    if (mFirstRow == 1) {
+      calculateInitialRow(0, mDeleteStartPoss, mMatchStartPoss);
+    }
+    for (int i = mFirstRow; i <= mLength; ++i) {
+      calculateRow(i);
+    }
+    calculateEnd();
+  }
+}
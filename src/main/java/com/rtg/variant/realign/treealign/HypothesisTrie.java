@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.rtg.variant.realign.treealign;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.rtg.util.integrity.Exam;
+import com.rtg.util.integrity.IntegralAbstract;
+
+/**
+ * Trie over a set of hypothesis sequences. A depth first traversal of the trie visits the
+ * hypotheses in an order where each one shares the longest possible prefix with its predecessor,
+ * which allows alignment calculations that depend only on a prefix of the sequence to be reused.
+ */
+public class HypothesisTrie extends IntegralAbstract {
+
+  private static final class Node {
+    final Node[] mChildren = new Node[5];
+    final List<Integer> mHypotheses = new ArrayList<>(1);
+  }
+
+  private final int[] mOrder;
+  private final int[] mShared;
+
+  /**
+   * @param hypotheses nucleotides of each hypothesis (0=N 1=A ... 4=T).
+   */
+  public HypothesisTrie(final byte[][] hypotheses) {
+    final Node root = new Node();
+    for (int h = 0; h < hypotheses.length; ++h) {
+      Node node = root;
+      for (final byte b : hypotheses[h]) {
+        if (node.mChildren[b] == null) {
+          node.mChildren[b] = new Node();
+        }
+        node = node.mChildren[b];
+      }
+      node.mHypotheses.add(h);
+    }
+    mOrder = new int[hypotheses.length];
+    mShared = new int[hypotheses.length];
+    final int visited = visit(root, 0, 0, 0);
+    assert visited == hypotheses.length;
+  }
+
+  // Depth first traversal, branchDepth is the depth of the deepest node shared with the previously visited hypothesis
+  private int visit(final Node node, final int depth, final int branchDepth, final int count) {
+    int c = count;
+    int shared = branchDepth;
+    for (final int h : node.mHypotheses) {
+      mOrder[c] = h;
+      mShared[c] = c == 0 ? 0 : shared;
+      shared = depth;
+      ++c;
+    }
+    for (final Node child : node.mChildren) {
+      if (child != null) {
+        c = visit(child, depth + 1, shared, c);
+        shared = depth;
+      }
+    }
+    return c;
+  }
+
+  /**
+   * @return number of hypotheses in the trie.
+   */
+  public int size() {
+    return mOrder.length;
+  }
+
+  /**
+   * @param k position in the traversal order.
+   * @return the index of the hypothesis visited at position <code>k</code>.
+   */
+  public int hypothesis(final int k) {
+    return mOrder[k];
+  }
+
+  /**
+   * @param k position in the traversal order.
+   * @return the length of the prefix shared by the hypothesis visited at position <code>k</code> and the one visited immediately before it (0 for the first).
+   */
+  public int sharedPrefix(final int k) {
+    return mShared[k];
+  }
+
+  @Override
+  public boolean integrity() {
+    Exam.assertEquals(mOrder.length, mShared.length);
+    if (mShared.length > 0) {
+      Exam.assertEquals(0, mShared[0]);
+    }
+    for (final int s : mShared) {
+      Exam.assertTrue(s >= 0);
+    }
+    return true;
+  }
+}
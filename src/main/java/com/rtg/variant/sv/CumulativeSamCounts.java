@@ -122,6 +122,16 @@ public class CumulativeSamCounts extends IntegralAbstract implements SamCounts {
     return mCounts[ex2 % mCounts.length] - mCounts[ex1 % mCounts.length];
   }
 
+  @Override
+  public void counts(int start, int length, double[] dest) {
+    // Single pass over the cumulative counts, equivalent to calling count(start + k, 0) for each position
+    double prev = mCounts[Math.min(Math.max(start, mOffset), mLastIncrement) % mCounts.length];
+    for (int k = 0; k < length; ++k) {
+      final double next = mCounts[Math.min(Math.max(start + k + 1, mOffset), mLastIncrement) % mCounts.length];
+      dest[k] = start + k < mOffset ? 0 : next - prev;
+      prev = next;
+    }
+  }
 
   @Override
   public double sumLn(int base, int index, int index2) {
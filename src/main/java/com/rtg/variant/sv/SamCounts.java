@@ -60,6 +60,18 @@ public interface SamCounts {
    */
   double count(int base, int index, int index2);
 
+  /**
+   * Get the number of records at each of a run of consecutive positions.
+   * @param start first position being fetched.
+   * @param length number of positions to fetch.
+   * @param dest receives the count at position <code>start + k</code> in <code>dest[k]</code>.
+   */
+  default void counts(int start, int length, double[] dest) {
+    for (int k = 0; k < length; ++k) {
+      dest[k] = count(start + k, 0);
+    }
+  }
+
   /**
    * Get the sum of count * log(count) between <code>index</code> and <code>index2</code> (exclusive).
    * @param base position for window.
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.sv;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.rtg.reader.SequencesReader;
+import com.rtg.sam.BamIndexer;
+import com.rtg.sam.SamRangeUtils;
+import com.rtg.sam.SamUtils;
+import com.rtg.tabix.TabixIndexer;
+import com.rtg.util.IORunnable;
+import com.rtg.util.diagnostic.Diagnostic;
+import com.rtg.util.diagnostic.NoTalkbackSlimException;
+import com.rtg.util.intervals.ReferenceRanges;
+import com.rtg.util.intervals.RegionRestriction;
+import com.rtg.util.io.IOUtils;
+
+import htsjdk.samtools.SAMSequenceRecord;
+
+/**
+ * Support for processing each reference sequence of indexed alignments as an
+ * independent shard, with per-shard output files that are concatenated in
+ * sequence order once all shards are complete.
+ */
+public final class SequenceShards {
+
+  private static final String PART_SUFFIX = ".part";
+
+  private SequenceShards() { }
+
+  /**
+   * Determine the sequences to process as independent shards.
+   * @param params the parameters of the run
+   * @param genome reader for the template
+   * @return the sequences in output order, or null if the run should be processed as a single stream
+   * @throws IOException if an I/O error occurs reading the input headers
+   */
+  public static List<SAMSequenceRecord> sequences(SvParams params, SequencesReader genome) throws IOException {
+    if (!params.parallelSequences() || params.execThreads() < 2) {
+      return null;
+    }
+    if (params.filterParams().restriction() != null) {
+      Diagnostic.userLog("Region restriction in effect, sequences will be processed serially.");
+      return null;
+    }
+    if (!params.mapped().stream().allMatch(SequenceShards::isIndexed)) {
+      Diagnostic.warning("Not all inputs are indexed, sequences will be processed serially.");
+      return null;
+    }
+    final List<SAMSequenceRecord> sequences = SamUtils.getUberHeader(genome, params.mapped()).getSequenceDictionary().getSequences();
+    return sequences.size() > 1 ? sequences : null;
+  }
+
+  private static boolean isIndexed(File samFile) {
+    return TabixIndexer.indexFileName(samFile).exists() || BamIndexer.indexFileName(samFile).exists() || BamIndexer.secondaryIndexFileName(samFile).exists();
+  }
+
+  /**
+   * @param sequence the sequence
+   * @return reference ranges covering the whole of the sequence
+   */
+  public static ReferenceRanges<String> sequenceRange(SAMSequenceRecord sequence) {
+    return SamRangeUtils.createExplicitReferenceRange(new RegionRestriction(sequence.getSequenceName(), 0, sequence.getSequenceLength()));
+  }
+
+  /**
+   * @param file the final output file
+   * @param shard index of the shard
+   * @return the file that the shard should write its portion of the output to
+   */
+  public static File partFile(File file, int shard) {
+    return new File(file.getParentFile(), file.getName() + "." + shard + PART_SUFFIX);
+  }
+
+  /**
+   * Run shard tasks, returning once they have all completed.
+   * @param shards the tasks to run
+   * @param threads the number of shards to run concurrently
+   * @throws IOException if any shard fails with an I/O error
+   */
+  public static void run(List<IORunnable> shards, int threads) throws IOException {
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Future<?>> pending = new ArrayList<>(shards.size());
+      for (final IORunnable shard : shards) {
+        pending.add(executor.submit(() -> {
+          shard.run();
+          return null;
+        }));
+      }
+      for (final Future<?> f : pending) {
+        try {
+          f.get();
+        } catch (final ExecutionException e) {
+          IOUtils.rethrow(e.getCause());
+        } catch (final InterruptedException e) {
+          throw new NoTalkbackSlimException("Interrupted while processing sequences.");
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Merge the shard outputs for an output file into the final output file.
+   * @param params the parameters of the run
+   * @param name the name of the output file
+   * @param shards the number of shards
+   * @throws IOException if an I/O error occurs
+   */
+  public static void merge(SvParams params, String name, int shards) throws IOException {
+    final File file = params.file(name);
+    final List<File> parts = new ArrayList<>(shards);
+    for (int i = 0; i < shards; ++i) {
+      parts.add(partFile(file, i));
+    }
+    try (OutputStream out = params.outStream(name)) {
+      concatenate(parts, out);
+    }
+  }
+
+  /**
+   * Append the contents of shard output files to a stream, then delete them.
+   * Leading <code>#</code> lines are treated as the header, and only the first
+   * header encountered is retained.
+   * @param parts the shard output files, in output order
+   * @param out destination stream
+   * @throws IOException if an I/O error occurs
+   */
+  public static void concatenate(List<File> parts, OutputStream out) throws IOException {
+    final byte[] buffer = new byte[65536];
+    boolean needHeader = true;
+    for (final File part : parts) {
+      try (InputStream in = new BufferedInputStream(new FileInputStream(part))) {
+        boolean hasHeader = false;
+        int c = in.read();
+        while (c == '#') {
+          hasHeader = true;
+          while (c != -1 && c != '\n') {
+            if (needHeader) {
+              out.write(c);
+            }
+            c = in.read();
+          }
+          if (c != -1) {
+            if (needHeader) {
+              out.write(c);
+            }
+            c = in.read();
+          }
+        }
+        needHeader &= !hasHeader;
+        if (c != -1) {
+          out.write(c);
+          int len;
+          while ((len = in.read(buffer)) != -1) {
+            out.write(buffer, 0, len);
+          }
+        }
+      }
+      if (!part.delete()) {
+        Diagnostic.developerLog("Could not delete " + part);
+      }
+    }
+  }
+}
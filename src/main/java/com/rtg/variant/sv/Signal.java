@@ -44,6 +44,21 @@ public interface Signal {
    */
   double value(int position);
 
+  /**
+   * Get the values of the signal at a strip of evenly spaced positions.
+   * Implementations may keep internal scratch buffers, so a signal should
+   * only be evaluated by one thread at a time.
+   * @param start first position of the strip (0 based).
+   * @param step distance between successive positions in the strip.
+   * @param length number of positions to evaluate.
+   * @param dest receives the value at position <code>start + k * step</code> in <code>dest[k]</code>.
+   */
+  default void values(int start, int step, int length, double[] dest) {
+    for (int k = 0; k < length; ++k) {
+      dest[k] = value(start + k * step);
+    }
+  }
+
   /**
    * Get the column label for the output files.
    * @return the column label for this signal.
@@ -50,6 +50,14 @@ public final class SignalDistributionLn extends IntegralAbstract implements Sign
 
   private final String mColumnName;
 
+  // Distribution values and their negative logs indexed from the low end of the window
+  private final double[] mRho;
+  private final double[] mRhoLn;
+
+  // Scratch buffers for block evaluation
+  private double[] mCountBuffer = new double[0];
+  private double[] mLnBuffer = new double[0];
+
   /**
    * @param counts SamArray used to construct the signal.
    * @param distr underlying distribution of rates.
@@ -61,9 +69,13 @@ public final class SignalDistributionLn extends IntegralAbstract implements Sign
     mWindowHi = distr.hi();
     final int diameter = mWindowHi - mWindowLo;
     final double[] ln = new double[diameter];
+    final double[] rho = new double[diameter];
     for (int i = 0; i < diameter; ++i) {
-      ln[i] = -Math.log(distr.get(i + mWindowLo));
+      rho[i] = distr.get(i + mWindowLo);
+      ln[i] = -Math.log(rho[i]);
     }
+    mRho = rho;
+    mRhoLn = ln;
     mDistribution = distr;
     mDistributionLn = new DistributionArray(mWindowLo, ln);
     mColumnName = column;
@@ -91,6 +103,43 @@ public final class SignalDistributionLn extends IntegralAbstract implements Sign
     return sum;
   }
 
+  @Override
+  public void values(int start, int step, int length, double[] dest) {
+    if (length <= 0) {
+      return;
+    }
+    // Fetch the counts under all the windows once, and take the log of each count once
+    final int diameter = mWindowHi - mWindowLo;
+    final int span = (length - 1) * step + diameter;
+    if (mCountBuffer.length < span) {
+      mCountBuffer = new double[span];
+      mLnBuffer = new double[span];
+    }
+    final double[] counts = mCountBuffer;
+    final double[] lns = mLnBuffer;
+    mCounts.counts(start + mWindowLo, span, counts);
+    for (int j = 0; j < span; ++j) {
+      lns[j] = counts[j] != 0 ? Math.log(counts[j]) : 0;
+    }
+    for (int k = 0, base = 0; k < length; ++k, base += step) {
+      double sum = 0;
+      for (int d = 0; d < diameter; ++d) {
+        final double count = counts[base + d];
+        double s = mRho[d];
+        if (count != 0) {
+          s += count * (mRhoLn[d] + lns[base + d] - 1.0);
+        }
+        if (s < 0.0 && s >= -1.0e-6) {
+          s = 0.0; //allow for rounding errors
+        }
+        assert s >= 0.0 && Double.isFinite(s) : s + ":" + count + ":" + mRhoLn[d] + ":" + mRho[d];
+        sum += s;
+      }
+      assert sum >= 0.0 && Double.isFinite(sum);
+      dest[k] = sum;
+    }
+  }
+
   @Override
   public void toString(StringBuilder sb) {
     sb.append("DistributionLn:").append(mWindowLo).append(":").append(mWindowHi);
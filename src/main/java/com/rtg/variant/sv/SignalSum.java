@@ -31,6 +31,7 @@
 package com.rtg.variant.sv;
 
 import java.io.PrintStream;
+import java.util.Arrays;
 
 import com.rtg.util.Utils;
 import com.rtg.util.integrity.Exam;
@@ -47,6 +48,8 @@ public final class SignalSum extends IntegralAbstract implements Signal {
 
   private final String mColumnName;
 
+  // Scratch buffer for block evaluation
+  private double[] mBuffer = new double[0];
 
   /**
    * @param out a <code>PrintStream</code> to which distribution contributions will be written.
@@ -91,6 +94,24 @@ public final class SignalSum extends IntegralAbstract implements Signal {
     return sum;
   }
 
+  @Override
+  public void values(int start, int step, int length, double[] dest) {
+    if (mOut != null) {
+      Signal.super.values(start, step, length, dest); // Per position contributions are written in value()
+      return;
+    }
+    if (mBuffer.length < length) {
+      mBuffer = new double[length];
+    }
+    Arrays.fill(dest, 0, length, 0.0);
+    for (final Signal signal : mSignals) {
+      signal.values(start, step, length, mBuffer);
+      for (int k = 0; k < length; ++k) {
+        dest[k] += mBuffer[k];
+      }
+    }
+  }
+
   @Override
   public void toString(StringBuilder sb) {
     sb.append("Sum:");
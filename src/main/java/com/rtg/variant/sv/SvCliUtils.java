@@ -31,6 +31,7 @@
 package com.rtg.variant.sv;
 
 import static com.rtg.util.cli.CommonFlagCategories.INPUT_OUTPUT;
+import static com.rtg.util.cli.CommonFlagCategories.UTILITY;
 
 import java.io.File;
 import java.io.IOException;
@@ -60,6 +61,7 @@ public final class SvCliUtils {
   private static final String RG_STATS_LIST_FLAG = "readgroup-stats-list-file";
   static final String RG_STATS_FILE = "readgroup-stats";
   private static final String RELABEL_FLAG = "readgroup-labels";
+  private static final String X_PARALLEL_SEQUENCES_FLAG = "Xparallel-sequences";
 
   private SvCliUtils() { }
 
@@ -97,6 +99,7 @@ public final class SvCliUtils {
     rgstats.setMaxCount(Integer.MAX_VALUE);
     final Flag<File> rgListFlag = flags.registerOptional('R', RG_STATS_LIST_FLAG, File.class, CommonFlags.FILE, "file containing list of read group stats files (1 per line)").setCategory(INPUT_OUTPUT);
     CommonFlags.initThreadsFlag(flags);
+    flags.registerOptional(X_PARALLEL_SEQUENCES_FLAG, "process each reference sequence concurrently (requires indexed inputs)").setCategory(UTILITY);
     SamFilterOptions.registerMaxASMatedFlag(flags, 'm');
     SamFilterOptions.registerMaxASUnmatedFlag(flags, 'u');
     SamFilterOptions.registerRestrictionFlag(flags);
@@ -125,6 +128,8 @@ public final class SvCliUtils {
            .genome(genomeBuilder.directory((File) flags.getValue(CommonFlags.TEMPLATE_FLAG)).create().readerParams())
            .outputParams(new OutputParams((File) flags.getValue(CommonFlags.OUTPUT_FLAG), !flags.isSet(CommonFlags.NO_GZIP)))
            .ioThreads(CommonFlags.parseIOThreads((Integer) flags.getValue(CommonFlags.THREADS_FLAG)))
+           .execThreads(CommonFlags.parseThreads((Integer) flags.getValue(CommonFlags.THREADS_FLAG)))
+           .parallelSequences(flags.isSet(X_PARALLEL_SEQUENCES_FLAG))
            .mapped(CommonFlags.getFileList(flags, CommonFlags.INPUT_LIST_FLAG, null, false))
            .filterParams(SamFilterOptions.makeFilterParamsBuilder(flags)
              .requireSetFlags(SamBamConstants.SAM_READ_IS_PAIRED)
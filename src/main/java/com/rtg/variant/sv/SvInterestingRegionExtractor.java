@@ -56,7 +56,7 @@ public class SvInterestingRegionExtractor implements Closeable {
 
   private static final byte[] TAB_BYTES = StringUtils.TAB.getBytes();
 
-  private static final String FILENAME_INTERESTING = "sv_interesting.bed";
+  static final String FILENAME_INTERESTING = "sv_interesting.bed";
 
   private int mCurrentMaxValuePos = 0;
   private int mCurrentRegionStart = 0;
@@ -47,6 +47,7 @@ public abstract class SvParams extends SingleMappedParams {
   public abstract static class SvParamsBuilder<B extends SvParamsBuilder<B>> extends SingleMappedParamsBuilder<B> {
     protected Map<String, String> mReadGroupLabels;
     protected Map<String, ReadGroupStats> mReadGroupStatistics;
+    protected boolean mParallelSequences = false;
 
     /**
      * Set the read group re-labeling map
@@ -67,10 +68,21 @@ public abstract class SvParams extends SingleMappedParams {
       mReadGroupStatistics = stats;
       return self();
     }
+
+    /**
+     * Set whether each reference sequence should be processed as an independent concurrent shard.
+     * @param parallel true if sequences should be processed concurrently
+     * @return this builder, so calls can be chained.
+     */
+    public B parallelSequences(boolean parallel) {
+      mParallelSequences = parallel;
+      return self();
+    }
   }
 
   private final Map<String, String> mReadGroupLabels;
   private final Map<String, ReadGroupStats> mReadGroupStatistics;
+  private final boolean mParallelSequences;
 
   /**
    * @param builder the builder object.
@@ -79,6 +91,7 @@ public abstract class SvParams extends SingleMappedParams {
     super(builder);
     mReadGroupLabels = builder.mReadGroupLabels == null ? null : Collections.unmodifiableMap(builder.mReadGroupLabels);
     mReadGroupStatistics = builder.mReadGroupStatistics == null ? null : Collections.unmodifiableMap(builder.mReadGroupStatistics);
+    mParallelSequences = builder.mParallelSequences;
   }
 
   /**
@@ -97,4 +110,11 @@ public abstract class SvParams extends SingleMappedParams {
     return mReadGroupLabels;
   }
 
+  /**
+   * @return true if reference sequences should be processed concurrently from indexed inputs.
+   */
+  public boolean parallelSequences() {
+    return mParallelSequences;
+  }
+
 }
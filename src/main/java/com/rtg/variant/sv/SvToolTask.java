@@ -40,21 +40,26 @@ import java.util.List;
 import java.util.Map;
 
 import com.rtg.launcher.NoStatistics;
+import com.rtg.reader.SequencesReader;
 import com.rtg.sam.ReadGroupUtils;
 import com.rtg.sam.SamIteratorTask;
 import com.rtg.util.Environment;
+import com.rtg.util.IORunnable;
 import com.rtg.util.StringUtils;
 import com.rtg.util.Utils;
 import com.rtg.util.cli.CommandLine;
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.diagnostic.ErrorType;
 import com.rtg.util.diagnostic.NoTalkbackSlimException;
+import com.rtg.util.intervals.ReferenceRanges;
+import com.rtg.util.io.FileUtils;
 import com.rtg.util.machine.MachineType;
 import com.rtg.variant.util.VariantUtils;
 
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
 
 /**
  */
@@ -64,12 +69,25 @@ public class SvToolTask extends SamIteratorTask<SvToolParams, NoStatistics> {
 
   private static final int MAX_WARNINGS = 5;
 
+  // Maximum number of positions for which signals are evaluated in one block
+  private static final int STRIP_LENGTH = 32;
+
   private final Map<String, String> mReadGroupLabels;
   private final Map<String, ReadGroupState> mReadGroupStates;
 
   private Signal[] mSimpleSignals;
   private Signal[] mPosteriorSignals;
 
+  // Signal values for a strip of positions, indexed by signal then position within the strip
+  private double[][] mSimpleStrip;
+  private double[][] mPosteriorStrip;
+  private int mStripStart = 0;
+  private int mStripStep = 1;
+  private int mStripLength = 0;
+  private double[] mSimple;
+  private double[] mPosterior;
+  private double[] mNorm;
+
   private OutputStream mSimpleOut;
   private OutputStream mBayesianOut;
   private int mWarnCount = 0;
@@ -94,8 +112,16 @@ public class SvToolTask extends SamIteratorTask<SvToolParams, NoStatistics> {
 
   private SvInterestingRegionExtractor mInterestingRegionExtractor;
 
+  // Index of the sequence this task is processing when running as one of several concurrent shards, otherwise -1
+  private final int mShard;
+
   protected SvToolTask(SvToolParams params, OutputStream defaultOutput) throws IOException {
-    super(params, defaultOutput, new NoStatistics(), params.filterParams());
+    this(params, defaultOutput, params.genome() == null ? null : params.genome().reader(), null, -1);
+  }
+
+  private SvToolTask(SvToolParams params, OutputStream defaultOutput, SequencesReader genome, ReferenceRanges<String> ranges, int shard) throws IOException {
+    super(params, defaultOutput, new NoStatistics(), params.filterParams(), genome, ranges);
+    mShard = shard;
     if (mGenomeSequences == null) {
       throw new NoTalkbackSlimException(ErrorType.READING_ERROR, mParams.genome().toString());
     }
@@ -225,6 +251,13 @@ public class SvToolTask extends SamIteratorTask<SvToolParams, NoStatistics> {
     }
 
     mPosteriorSignals = ps.toArray(new Signal[0]);
+    mPosteriorStrip = new double[mPosteriorSignals.length][STRIP_LENGTH];
+    mPosterior = new double[mPosteriorSignals.length];
+    mNorm = new double[mPosteriorSignals.length];
+    if (mSimpleSignals != null) {
+      mSimpleStrip = new double[mSimpleSignals.length][STRIP_LENGTH];
+      mSimple = new double[mSimpleSignals.length + 1]; // Add 1 for n-count
+    }
 
     if (mParams.outputSimple()) {
       writeHeader(mSimpleOut, "simple", mSimpleSignals, "n-count");
@@ -262,6 +295,7 @@ public class SvToolTask extends SamIteratorTask<SvToolParams, NoStatistics> {
       mTemplateNs.flushTo(mTemplatePos);
     }
 
+    mStripLength = 0;
     int backStepFrom = -1;
     for (int i = start; i < last; ++i) {
       while (mTemplatePos < Math.min(i + mGlobalRadius, mTemplateLength)) {
@@ -272,18 +306,18 @@ public class SvToolTask extends SamIteratorTask<SvToolParams, NoStatistics> {
       }
       if (i % mCurrentStepSize == 0) {
         final double nCount = mTemplateNs.count(i, -mGlobalRadius, mGlobalRadius);
+        final int k = stripIndex(i, last);
         final double[] simple;
         if (mParams.outputSimple()) {
-          simple = new double[mSimpleSignals.length + 1]; // Add 1 for n-count
+          simple = mSimple;
           for (int s = 0; s < mSimpleSignals.length; ++s) {
-            final Signal sig = mSimpleSignals[s];
-            simple[s] = sig.value(i);
+            simple[s] = mSimpleStrip[s][k];
           }
           simple[simple.length - 1] = nCount;
         } else {
           simple = null;
         }
-        final double[] norm = normalizedBayes(i);
+        final double[] norm = normalizedBayes(k);
         final int bestHypothesis = maxIndex(norm);
         if (bestHypothesis != mLastHypothesis) {
           if (mCurrentStepSize > mZoomedStepSize) {
@@ -321,6 +355,28 @@ public class SvToolTask extends SamIteratorTask<SvToolParams, NoStatistics> {
     return last;
   }
 
+  // Get the index of a position within the current strip of signal values, evaluating a new strip
+  // starting at the position if it is not covered. Only positions before last are evaluated, as
+  // counts for later positions may still change.
+  private int stripIndex(final int position, final int last) {
+    final int offset = position - mStripStart;
+    if (offset >= 0 && offset % mStripStep == 0 && offset / mStripStep < mStripLength) {
+      return offset / mStripStep;
+    }
+    mStripStart = position;
+    mStripStep = mCurrentStepSize;
+    mStripLength = Math.min(STRIP_LENGTH, (last - 1 - position) / mStripStep + 1);
+    for (int s = 0; s < mPosteriorSignals.length; ++s) {
+      mPosteriorSignals[s].values(mStripStart, mStripStep, mStripLength, mPosteriorStrip[s]);
+    }
+    if (mParams.outputSimple()) {
+      for (int s = 0; s < mSimpleSignals.length; ++s) {
+        mSimpleSignals[s].values(mStripStart, mStripStep, mStripLength, mSimpleStrip[s]);
+      }
+    }
+    return 0;
+  }
+
   private static int maxIndex(double[] arr) {
     double max = Double.NEGATIVE_INFINITY;
     int maxIndex = 0;
@@ -370,18 +426,22 @@ public class SvToolTask extends SamIteratorTask<SvToolParams, NoStatistics> {
     out.write(StringUtils.LS.getBytes());
   }
 
-  private double[] normalizedBayes(final int position) {
-    final double[] posterior = new double[mPosteriorSignals.length];
+  private double[] normalizedBayes(final int stripIndex) {
+    final double[] posterior = mPosterior;
     for (int i = 0; i < mPosteriorSignals.length; ++i) {
-      posterior[i] = mPosteriorSignals[i].value(position);
+      posterior[i] = mPosteriorStrip[i][stripIndex];
     }
     if (posterior.length == 1) {
       return posterior; /// Just here for debugninn
     }
-    return normalize(posterior);
+    return normalize(posterior, mNorm);
   }
 
   static double[] normalize(final double[] logValues) {
+    return normalize(logValues, new double[logValues.length]);
+  }
+
+  static double[] normalize(final double[] logValues, final double[] norm) {
     final int length = logValues.length;
     double min = Double.POSITIVE_INFINITY;
 
@@ -396,7 +456,6 @@ public class SvToolTask extends SamIteratorTask<SvToolParams, NoStatistics> {
     }
     assert mini != -1;
 
-    final double[] norm = new double[length];
     double othersum = Double.NEGATIVE_INFINITY;
     double allsum = Double.NEGATIVE_INFINITY;
     for (int i = 0; i < length; ++i) {
@@ -449,6 +508,10 @@ public class SvToolTask extends SamIteratorTask<SvToolParams, NoStatistics> {
       mTemplatePos = mTemplateMin;
       mLastWrite = mTemplateMin;
       mPreviousStart = mTemplateMin;
+      // Adaptive stepping starts afresh on each sequence, so that sequences are independent
+      mCurrentStepSize = mDefaultStepSize;
+      mLastChange = -1;
+      mLastHypothesis = 0;
       resetStates(mTemplateMin);
     } else {
       if (start < mPreviousSam) {
@@ -504,12 +567,17 @@ public class SvToolTask extends SamIteratorTask<SvToolParams, NoStatistics> {
 
   @Override
   protected void exec() throws IOException {
-    mSimpleOut = mParams.outputSimple() ? mParams.outStream(SvToolParams.NAME_SIMPLE) : null;
+    final List<SAMSequenceRecord> sequences = mShard < 0 ? SequenceShards.sequences(mParams, mGenomeSequences) : null;
+    if (sequences != null) {
+      execShards(sequences);
+      return;
+    }
+    mSimpleOut = mParams.outputSimple() ? outStream(SvToolParams.NAME_SIMPLE) : null;
     try {
-      mBayesianOut = mParams.bayesianStream();
+      mBayesianOut = mShard < 0 ? mParams.bayesianStream() : outStream(SvToolParams.NAME_BAYESIAN);
       try {
         try {
-          mInterestingRegionExtractor = new SvInterestingRegionExtractor(mParams);
+          mInterestingRegionExtractor = mShard < 0 ? new SvInterestingRegionExtractor(mParams) : new SvInterestingRegionExtractor(outStream(SvInterestingRegionExtractor.FILENAME_INTERESTING), 0);
           try {
             super.exec();
           } finally {
@@ -527,4 +595,27 @@ public class SvToolTask extends SamIteratorTask<SvToolParams, NoStatistics> {
       }
     }
   }
+
+  private OutputStream outStream(String name) throws IOException {
+    if (mShard < 0) {
+      return mParams.outStream(name);
+    }
+    return FileUtils.createOutputStream(SequenceShards.partFile(mParams.file(name), mShard));
+  }
+
+  private void execShards(List<SAMSequenceRecord> sequences) throws IOException {
+    Diagnostic.userLog("Processing " + sequences.size() + " sequences in parallel using " + mParams.execThreads() + " threads");
+    final List<IORunnable> shards = new ArrayList<>(sequences.size());
+    for (int i = 0; i < sequences.size(); ++i) {
+      final int shard = i;
+      final ReferenceRanges<String> ranges = SequenceShards.sequenceRange(sequences.get(i));
+      shards.add(() -> new SvToolTask(mParams, mReportStream, mGenomeSequences.copy(), ranges, shard).exec());
+    }
+    SequenceShards.run(shards, mParams.execThreads());
+    if (mParams.outputSimple()) {
+      SequenceShards.merge(mParams, SvToolParams.NAME_SIMPLE, sequences.size());
+    }
+    SequenceShards.merge(mParams, SvToolParams.NAME_BAYESIAN, sequences.size());
+    SequenceShards.merge(mParams, SvInterestingRegionExtractor.FILENAME_INTERESTING, sequences.size());
+  }
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.sv.discord;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import com.rtg.variant.sv.bndeval.AbstractBreakpointGeometry;
+
+/**
+ * Holds the active discordant read sets. Read sets are kept in flush position order, and are also
+ * registered in a grid over the x and y ranges of their union so that the read sets a new
+ * constraint may belong to can be found without examining every active read set.
+ */
+class DiscordantReadSetIndex implements Iterable<DiscordantReadSet> {
+
+  static final int DEFAULT_BIN_WIDTH = 1000;
+
+  // Geometries spanning more than this many grid cells are not registered in the grid
+  private static final int MAX_CELLS = 64;
+
+  private final DiscordantReadSet.FlushPositionComparator mComparator = new DiscordantReadSet.FlushPositionComparator();
+  private final SortedSet<DiscordantReadSet> mReadSets = new TreeSet<>(mComparator);
+  private final Map<String, Map<Long, List<DiscordantReadSet>>> mCells = new HashMap<>();
+  private final List<DiscordantReadSet> mWide = new ArrayList<>();
+  private int mBinWidth = DEFAULT_BIN_WIDTH;
+
+  /**
+   * Set the width of the grid cells, usually the maximum gap between a read and its mate.
+   * @param binWidth width of a grid cell along each axis
+   */
+  void setBinWidth(int binWidth) {
+    assert mReadSets.isEmpty();
+    mBinWidth = Math.max(1, binWidth);
+  }
+
+  /**
+   * @return the number of active read sets
+   */
+  int size() {
+    return mReadSets.size();
+  }
+
+  /**
+   * Add a read set. The union of the read set must not change while it is held in the index.
+   * @param drs read set to add
+   */
+  void add(DiscordantReadSet drs) {
+    if (mReadSets.add(drs)) {
+      register(drs, true);
+    }
+  }
+
+  /**
+   * Remove all read sets.
+   */
+  void clear() {
+    mReadSets.clear();
+    mCells.clear();
+    mWide.clear();
+  }
+
+  /**
+   * Remove and return all read sets that the geometry belongs to.
+   * @param bg the geometry
+   * @return the matching read sets in flush position order
+   */
+  List<DiscordantReadSet> removeOverlapping(AbstractBreakpointGeometry bg) {
+    final List<DiscordantReadSet> overlap = new ArrayList<>();
+    for (final DiscordantReadSet drs : candidates(bg)) {
+      if (drs.belongs(bg)) {
+        remove(drs);
+        overlap.add(drs);
+      }
+    }
+    return overlap;
+  }
+
+  // Read sets whose union shares a grid cell with the geometry, in flush position order
+  private SortedSet<DiscordantReadSet> candidates(AbstractBreakpointGeometry bg) {
+    final int[] bins = bins(bg);
+    if (cells(bins) > MAX_CELLS) {
+      return new TreeSet<>(mReadSets);
+    }
+    final SortedSet<DiscordantReadSet> candidates = new TreeSet<>(mComparator);
+    candidates.addAll(mWide);
+    final Map<Long, List<DiscordantReadSet>> cells = mCells.get(bg.getYName());
+    if (cells != null) {
+      for (int x = bins[0]; x <= bins[1]; ++x) {
+        for (int y = bins[2]; y <= bins[3]; ++y) {
+          final List<DiscordantReadSet> cell = cells.get(key(x, y));
+          if (cell != null) {
+            candidates.addAll(cell);
+          }
+        }
+      }
+    }
+    return candidates;
+  }
+
+  private void remove(DiscordantReadSet drs) {
+    if (mReadSets.remove(drs)) {
+      register(drs, false);
+    }
+  }
+
+  private void register(DiscordantReadSet drs, boolean add) {
+    final AbstractBreakpointGeometry union = drs.getUnion();
+    final int[] bins = bins(union);
+    if (cells(bins) > MAX_CELLS) {
+      if (add) {
+        mWide.add(drs);
+      } else {
+        mWide.remove(drs);
+      }
+      return;
+    }
+    final Map<Long, List<DiscordantReadSet>> cells = add ? mCells.computeIfAbsent(union.getYName(), k -> new HashMap<>()) : mCells.get(union.getYName());
+    for (int x = bins[0]; x <= bins[1]; ++x) {
+      for (int y = bins[2]; y <= bins[3]; ++y) {
+        final Long key = key(x, y);
+        if (add) {
+          cells.computeIfAbsent(key, k -> new ArrayList<>(2)).add(drs);
+        } else {
+          final List<DiscordantReadSet> cell = cells.get(key);
+          cell.remove(drs);
+          if (cell.isEmpty()) {
+            cells.remove(key);
+          }
+        }
+      }
+    }
+  }
+
+  // Grid cells covered by the geometry, extended by one position either side so that touching ranges share a cell
+  private int[] bins(AbstractBreakpointGeometry bg) {
+    return new int[] {
+      Math.floorDiv(Math.min(bg.getXLo(), bg.getXHi()) - 1, mBinWidth),
+      Math.floorDiv(Math.max(bg.getXLo(), bg.getXHi()) + 1, mBinWidth),
+      Math.floorDiv(Math.min(bg.getYLo(), bg.getYHi()) - 1, mBinWidth),
+      Math.floorDiv(Math.max(bg.getYLo(), bg.getYHi()) + 1, mBinWidth),
+    };
+  }
+
+  private static long cells(int[] bins) {
+    return (long) (bins[1] - bins[0] + 1) * (bins[3] - bins[2] + 1);
+  }
+
+  private static long key(int x, int y) {
+    return ((long) x << Integer.SIZE) | (y & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Iterates over the read sets in flush position order. Removal through the iterator is supported.
+   * @return the iterator
+   */
+  @Override
+  public Iterator<DiscordantReadSet> iterator() {
+    final Iterator<DiscordantReadSet> it = mReadSets.iterator();
+    return new Iterator<DiscordantReadSet>() {
+      private DiscordantReadSet mLast = null;
+
+      @Override
+      public boolean hasNext() {
+        return it.hasNext();
+      }
+
+      @Override
+      public DiscordantReadSet next() {
+        mLast = it.next();
+        return mLast;
+      }
+
+      @Override
+      public void remove() {
+        it.remove();
+        register(mLast, false);
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return mReadSets.toString();
+  }
+}
@@ -38,30 +38,32 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedSet;
 import java.util.TreeSet;
 
 import com.rtg.launcher.globals.CoreGlobalFlags;
 import com.rtg.launcher.globals.GlobalFlags;
+import com.rtg.reader.SequencesReader;
 import com.rtg.sam.BamIndexer;
 import com.rtg.sam.SamIteratorTask;
 import com.rtg.sam.SamUtils;
 import com.rtg.tabix.TabixIndexer;
 import com.rtg.tabix.UnindexableDataException;
 import com.rtg.util.CompareHelper;
+import com.rtg.util.IORunnable;
 import com.rtg.util.MathUtils;
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.diagnostic.NoTalkbackSlimException;
 import com.rtg.util.diagnostic.Timer;
+import com.rtg.util.intervals.ReferenceRanges;
 import com.rtg.util.io.FileUtils;
 import com.rtg.util.machine.MachineOrientation;
 import com.rtg.util.machine.MachineType;
 import com.rtg.variant.sv.ReadGroupStats;
+import com.rtg.variant.sv.SequenceShards;
 import com.rtg.vcf.DefaultVcfWriter;
 import com.rtg.vcf.ReorderingVcfWriter;
 import com.rtg.vcf.VcfRecord;
@@ -71,6 +73,7 @@ import htsjdk.samtools.SAMFileWriter;
 import htsjdk.samtools.SAMFileWriterFactory;
 import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
 
 /**
  * Primary task that process SAM records to identify putative structural variant breakends.
@@ -101,7 +104,7 @@ public class DiscordantTool extends SamIteratorTask<DiscordantToolParams, Discor
   private final List<DiscordantReadSet> mWritten = DEBUG_PER_RECORD ? new ArrayList<>() : null;
 
   private int mMaxGap;
-  protected final SortedSet<DiscordantReadSet> mReadSets = new TreeSet<>(new DiscordantReadSet.FlushPositionComparator());
+  protected final DiscordantReadSetIndex mReadSets = new DiscordantReadSetIndex();
 
   final Map<String, MachineOrientation> mMachineOrientations = new HashMap<>();
 
@@ -123,8 +126,21 @@ public class DiscordantTool extends SamIteratorTask<DiscordantToolParams, Discor
   private SAMFileWriter mBamWriter = null;
   private File mBamFile = null;
 
+  // Index of the sequence this task is processing when running as one of several concurrent shards, otherwise -1
+  private final int mShard;
+
   protected DiscordantTool(DiscordantToolParams params, OutputStream defaultOutput) throws IOException {
     super(params, defaultOutput, new DiscordantToolStatistics(params.directory()), params.filterParams());
+    mShard = -1;
+    mBamType = params.bamOutput();
+    mFormatter = new VcfDiscordantOutputFormatter(mGenomeSequences);
+    mBedFormatter = new BedDiscordantOutputFormatter();
+    mDebugFormatter =  new DebugDiscordantOutputFormatter();
+  }
+
+  private DiscordantTool(DiscordantToolParams params, OutputStream defaultOutput, SequencesReader genome, ReferenceRanges<String> ranges, int shard) throws IOException {
+    super(params, defaultOutput, new DiscordantToolStatistics(null), params.filterParams(), genome, ranges);
+    mShard = shard;
     mBamType = params.bamOutput();
     mFormatter = new VcfDiscordantOutputFormatter(mGenomeSequences);
     mBedFormatter = new BedDiscordantOutputFormatter();
@@ -271,11 +287,15 @@ public class DiscordantTool extends SamIteratorTask<DiscordantToolParams, Discor
         throw new NoTalkbackSlimException("Read group " + srgr.getId() + " did not have corresponding rgstats data supplied");
       }
 
-      rgs.setNumDeviations(mParams.numDeviations());
+      if (mShard < 0) {
+        rgs.setNumDeviations(mParams.numDeviations());
+      }
       final double dev = rgs.concordantDeviation();
-      Diagnostic.userLog("Read group " + srgr.getId() + " concordant deviation +/-" + MathUtils.round(dev)
-        + ", fragment (" + (int) (rgs.fragmentMean() - dev) + "," + (int) rgs.fragmentMean() + "," + (int) (rgs.fragmentMean() + dev) + ")"
-        + ", gap (" + (int) (rgs.gapMean() - dev) + "," + (int) rgs.gapMean() + "," + (int) (rgs.gapMean() + dev) + ")");
+      if (mShard <= 0) {
+        Diagnostic.userLog("Read group " + srgr.getId() + " concordant deviation +/-" + MathUtils.round(dev)
+          + ", fragment (" + (int) (rgs.fragmentMean() - dev) + "," + (int) rgs.fragmentMean() + "," + (int) (rgs.fragmentMean() + dev) + ")"
+          + ", gap (" + (int) (rgs.gapMean() - dev) + "," + (int) rgs.gapMean() + "," + (int) (rgs.gapMean() + dev) + ")");
+      }
       maxMaxGap = Math.max(maxMaxGap, rgs.gapMax());
     }
     if (!mParams.multisample() && sampleNames.size() > 1) {
@@ -283,6 +303,7 @@ public class DiscordantTool extends SamIteratorTask<DiscordantToolParams, Discor
     }
     final String vcfSample = sampleNames.size() == 1 ? sampleNames.iterator().next() : "SAMPLE";
     mMaxGap = maxMaxGap;
+    mReadSets.setBinWidth(mMaxGap);
     if (mDebugOutput != null) {
       mDebugOutput.write(mDebugFormatter.header().getBytes());
       mDebugReordering = new ReorderingDebugOutput(mDebugFormatter, mDebugOutput, 5 * mMaxGap);
@@ -352,16 +373,8 @@ public class DiscordantTool extends SamIteratorTask<DiscordantToolParams, Discor
     }
   }
 
-  static void processConstraint(final BreakpointConstraint constraint, final SortedSet<DiscordantReadSet> readSets, final String templateName, final int maxGap, SAMRecord record) {
-    final Iterator<DiscordantReadSet> it = readSets.iterator();
-    final List<DiscordantReadSet> overlap = new LinkedList<>();
-    while (it.hasNext()) {
-      final DiscordantReadSet drs = it.next();
-      if (drs.belongs(constraint)) {
-        it.remove();
-        overlap.add(drs);
-      }
-    }
+  static void processConstraint(final BreakpointConstraint constraint, final DiscordantReadSetIndex readSets, final String templateName, final int maxGap, SAMRecord record) {
+    final List<DiscordantReadSet> overlap = readSets.removeOverlapping(constraint);
     final DiscordantReadSet newDrs;
     final int size = overlap.size();
     if (size == 0) {
@@ -389,34 +402,87 @@ public class DiscordantTool extends SamIteratorTask<DiscordantToolParams, Discor
 
   @Override
   protected void exec() throws IOException {
-    try (OutputStream out = mParams.outStream(OUTPUT_FILENAME)) {
-      mOut = out;
-      try (OutputStream debugOutput = mParams.debugOutput() ? mParams.outStream(DEBUG_FILENAME) : null) {
-        mDebugOutput = debugOutput;
-        try {
-          try (OutputStream bedOutput = mParams.bedOutput() ? mParams.outStream(BED_FILENAME) : null) {
-            mBedOutput = bedOutput;
-            super.exec();
-            Diagnostic.userLog(mTotalDiscordantRecords + " discordant records.");
-          }
-        } finally {
-          if (mDebugReordering != null) {
-            mDebugReordering.close();
+    final List<SAMSequenceRecord> sequences = mShard < 0 ? shardSequences() : null;
+    if (sequences != null) {
+      execShards(sequences);
+    } else {
+      try (OutputStream out = outStream(OUTPUT_FILENAME)) {
+        mOut = out;
+        try (OutputStream debugOutput = mParams.debugOutput() ? outStream(DEBUG_FILENAME) : null) {
+          mDebugOutput = debugOutput;
+          try {
+            try (OutputStream bedOutput = mParams.bedOutput() ? outStream(BED_FILENAME) : null) {
+              mBedOutput = bedOutput;
+              super.exec();
+            }
+          } finally {
+            if (mDebugReordering != null) {
+              mDebugReordering.close();
+            }
           }
         }
       }
+      if (mShard >= 0) {
+        return;
+      }
     }
+    Diagnostic.userLog(mTotalDiscordantRecords + " discordant records.");
     if (mParams.blockCompressed() && mParams.outputTabixIndex()) {
-      if (mDebugOutput != null) {
+      if (mParams.debugOutput()) {
         indexTsv(mParams.outFile(DEBUG_FILENAME));
       }
-      if (mBedOutput != null) {
+      if (mParams.bedOutput()) {
         indexBed();
       }
       indexVcf();
     }
   }
 
+  private OutputStream outStream(String name) throws IOException {
+    if (mShard < 0) {
+      return mParams.outStream(name);
+    }
+    return FileUtils.createOutputStream(SequenceShards.partFile(mParams.file(name), mShard));
+  }
+
+  // Sequences to process as independent shards, or null if the run should be processed as a single stream
+  private List<SAMSequenceRecord> shardSequences() throws IOException {
+    if (mBamType != BamType.NONE || DEBUG_PER_RECORD) {
+      return null;
+    }
+    return SequenceShards.sequences(mParams, mGenomeSequences);
+  }
+
+  private void execShards(List<SAMSequenceRecord> sequences) throws IOException {
+    Diagnostic.userLog("Processing " + sequences.size() + " sequences in parallel using " + mParams.execThreads() + " threads");
+    for (final ReadGroupStats rgs : mParams.readGroupStatistics().values()) {
+      rgs.setNumDeviations(mParams.numDeviations());
+    }
+    final List<IORunnable> shards = new ArrayList<>(sequences.size());
+    for (int i = 0; i < sequences.size(); ++i) {
+      final int shard = i;
+      final ReferenceRanges<String> ranges = SequenceShards.sequenceRange(sequences.get(i));
+      shards.add(() -> {
+        final DiscordantTool task = new DiscordantTool(mParams, mReportStream, mGenomeSequences.copy(), ranges, shard);
+        task.exec();
+        addShard(task);
+      });
+    }
+    SequenceShards.run(shards, mParams.execThreads());
+    SequenceShards.merge(mParams, OUTPUT_FILENAME, sequences.size());
+    if (mParams.debugOutput()) {
+      SequenceShards.merge(mParams, DEBUG_FILENAME, sequences.size());
+    }
+    if (mParams.bedOutput()) {
+      SequenceShards.merge(mParams, BED_FILENAME, sequences.size());
+    }
+  }
+
+  private synchronized void addShard(DiscordantTool shard) {
+    mStatistics.merge(shard.mStatistics);
+    mTotalDiscordantRecords += shard.mTotalDiscordantRecords;
+  }
+
   private void indexTsv(File file) throws IOException {
     try {
       new TabixIndexer(file).saveIndex(new DebugDiscordantOutputFormatter.DebugIndexerFactory());
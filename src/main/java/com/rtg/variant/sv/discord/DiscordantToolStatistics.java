@@ -59,6 +59,15 @@ public class DiscordantToolStatistics extends AbstractStatistics {
     }
   }
 
+  /**
+   * Add the counts from another statistics object to this one.
+   * @param other statistics to add
+   */
+  protected void merge(DiscordantToolStatistics other) {
+    mTotalBreakEnds += other.mTotalBreakEnds;
+    mFiltered += other.mFiltered;
+  }
+
   @Override
   protected String getStatistics() {
     final TextTable table = new TextTable();
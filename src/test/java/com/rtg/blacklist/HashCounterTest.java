@@ -80,11 +80,7 @@ public class HashCounterTest extends TestCase {
           @Override
           public void run() {
             for (int j = threadNum; j < data.length; j += numThreads) {
-              try {
-                hc.increment(data[j]);
-              } catch (HashCounter.TooManyCollisionsException e) {
-                throw new RuntimeException(e);
-              }
+              hc.increment(data[j]);
             }
           }
         });
@@ -110,4 +106,66 @@ public class HashCounterTest extends TestCase {
 
     assertEquals("Seed=" + seed, 0, expected.size());
   }
+
+  public void testBatch() throws IOException {
+    final int keyBits = 24;
+    final HashCounter hc = new HashCounter(1000, keyBits, 1000);
+    final long seed = System.currentTimeMillis();
+    final Random r = new Random(seed);
+    final long[] keys = new long[200];
+    for (int i = 0; i < keys.length; ++i) {
+      keys[i] = BinaryMatrixTest.random(r, keyBits);
+    }
+    final int numThreads = 4;
+    final long[][] batches = new long[numThreads][300];
+    final HashMap<Long, Integer> expected = new HashMap<>();
+    for (final long[] batch : batches) {
+      for (int i = 0; i < batch.length; ++i) {
+        batch[i] = keys[r.nextInt(keys.length)];
+        expected.merge(batch[i], 1, Integer::sum);
+      }
+    }
+    final SimpleThreadPool stp = new SimpleThreadPool(numThreads, "HashCounterTest", false);
+    try {
+      for (final long[] batch : batches) {
+        stp.execute(() -> hc.increment(batch, batch.length));
+      }
+    } finally {
+      stp.terminate();
+    }
+    checkCounts(hc, expected, seed);
+  }
+
+  public void testOverflow() {
+    final int keyBits = 20;
+    final HashCounter hc = new HashCounter(100, keyBits, 10);
+    assertEquals(0, hc.overflowLength());
+    final long seed = System.currentTimeMillis();
+    final Random r = new Random(seed);
+    final HashMap<Long, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 1000; ++i) {
+      final long key = BinaryMatrixTest.random(r, keyBits);
+      expected.merge(key, 1, Integer::sum);
+      hc.increment(key);
+    }
+    final long[] batch = new long[100];
+    for (int i = 0; i < 10; ++i) {
+      for (int j = 0; j < batch.length; ++j) {
+        batch[j] = BinaryMatrixTest.random(r, keyBits);
+        expected.merge(batch[j], 1, Integer::sum);
+      }
+      hc.increment(batch, batch.length);
+    }
+    assertTrue(hc.overflowLength() > 0);
+    checkCounts(hc, expected, seed);
+  }
+
+  private void checkCounts(HashCounter hc, HashMap<Long, Integer> expected, long seed) {
+    while (hc.next()) {
+      final Integer exp = expected.remove(hc.getKey());
+      assertNotNull("Seed=" + seed, exp);
+      assertEquals("Seed=" + seed, (long) exp, hc.getCount());
+    }
+    assertEquals("Seed=" + seed, 0, expected.size());
+  }
 }
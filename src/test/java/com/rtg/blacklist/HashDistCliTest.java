@@ -62,4 +62,13 @@ public class HashDistCliTest extends AbstractCliTest {
       mNano.check("blacklist.txt", blacklist);
     }
   }
+
+  public void testPartitionsLimit() throws IOException {
+    try (TestDirectory dir = new TestDirectory()) {
+      final File sdfDir = ReaderTestUtils.getDNADir(REF, new File(dir, "sdf"));
+      final MainResult res = MainResult.run(getCli(), sdfDir.getPath(), "--word", "1", "--output", new File(dir, "out").getPath(), "--partitions", "257");
+      assertEquals(1, res.rc());
+      assertTrue(res.err(), res.err().contains("--partitions"));
+    }
+  }
 }
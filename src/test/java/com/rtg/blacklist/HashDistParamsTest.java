@@ -56,6 +56,7 @@ public class HashDistParamsTest extends TestCase {
     assertEquals(b, b.blacklistThreshold(22));
     assertEquals(b, b.numberThreads(2));
     assertEquals(b, b.hashMapSizeFactor(0.42));
+    assertEquals(b, b.partitions(7));
     assertEquals(b, b.directory(new File("output")));
     assertEquals(b, b.self());
     
@@ -66,6 +67,7 @@ public class HashDistParamsTest extends TestCase {
     assertEquals(22, params.blacklistThreshold());
     assertEquals(2, params.numberThreads());
     assertEquals(0.42, params.hashMapSizeFactor());
+    assertEquals(7, params.partitions());
     assertEquals(new File("output"), params.directory());
     assertEquals(new File("output", "foo"), params.file("foo"));
   }
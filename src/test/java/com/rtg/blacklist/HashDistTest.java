@@ -90,4 +90,29 @@ public class HashDistTest extends AbstractTest {
       assertTrue(FileHelper.deleteAll(dir));
     }
   }
+
+  public void testPartitions() throws IOException {
+    final File dir = FileUtils.createTempDir("duster", "test");
+    try {
+      final File f = new File(dir, "f");
+      ReaderTestUtils.getReaderDNA(">t\nacgtacgtacgtacagtcatcgatcgatca", f, null).close();
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final MemoryPrintStream err = new MemoryPrintStream();
+      final File foo = new File(dir, "foo");
+      final int code = new HashDistCli().mainInit(new String[] {f.getPath(), "-o", foo.getPath(), "-s", "1", "-w", "1", "--blacklist-threshold", "1", "--partitions", "3"}, out, err.printStream());
+      assertEquals(err.toString(), 0, code);
+      err.close();
+      assertEquals(EXP_HISTO2, FileUtils.fileToString(new File(foo, "histogram.txt")));
+      TestUtils.containsAll(FileUtils.fileToString(new File(foo, "blacklist")),
+        "A\t9" + StringUtils.LS,
+        "G\t6" + StringUtils.LS,
+        "C\t8" + StringUtils.LS,
+        "T\t7" + StringUtils.LS);
+      for (int i = 0; i < 3; ++i) {
+        assertFalse(new File(foo, "hashes." + i + ".tmp").exists());
+      }
+    } finally {
+      assertTrue(FileHelper.deleteAll(dir));
+    }
+  }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.blacklist;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import com.rtg.util.io.TestDirectory;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the corresponding class.
+ */
+public class HashPartitionsTest extends TestCase {
+
+  public void testPartition() throws IOException {
+    try (TestDirectory dir = new TestDirectory()) {
+      try (HashPartitions partitions = new HashPartitions(dir, 5)) {
+        assertEquals(5, partitions.length());
+        final int[] counts = new int[5];
+        for (long h = 0; h < 10000; ++h) {
+          final int p = partitions.partition(h);
+          assertTrue(p >= 0 && p < 5);
+          ++counts[p];
+        }
+        for (final int count : counts) {
+          assertTrue(count > 1500);
+        }
+        assertEquals(0, partitions.partition(0));
+        assertEquals(1, partitions.partition(-1));
+      }
+    }
+  }
+
+  public void testWriteCount() throws IOException {
+    try (TestDirectory dir = new TestDirectory()) {
+      final HashPartitions partitions = new HashPartitions(dir, 3);
+      try {
+        final HashMap<Long, Integer> expected = new HashMap<>();
+        final long[] batch = new long[100];
+        final long[] scratch = new long[batch.length];
+        for (int j = 0; j < 5; ++j) {
+          for (int i = 0; i < batch.length; ++i) {
+            batch[i] = (i * 7919L + j) % 250;
+            expected.merge(batch[i], 1, Integer::sum);
+          }
+          partitions.write(batch, batch.length, scratch);
+        }
+        partitions.close();
+        for (int p = 0; p < partitions.length(); ++p) {
+          final File file = new File(dir, "hashes." + p + ".tmp");
+          assertTrue(file.exists());
+          final HashCounter counter = new HashCounter(300, 16, 100);
+          partitions.count(p, counter, 2);
+          assertFalse(file.exists());
+          while (counter.next()) {
+            assertEquals(p, partitions.partition(counter.getKey()));
+            assertEquals((long) expected.remove(counter.getKey()), counter.getCount());
+          }
+        }
+        assertEquals(0, expected.size());
+      } finally {
+        partitions.delete();
+      }
+    }
+  }
+
+  public void testMergesDuplicates() throws IOException {
+    try (TestDirectory dir = new TestDirectory()) {
+      final HashPartitions partitions = new HashPartitions(dir, 2);
+      try {
+        final long[] batch = new long[100];
+        for (int i = 0; i < batch.length; ++i) {
+          batch[i] = i % 10;
+        }
+        partitions.write(batch, batch.length, new long[batch.length]);
+        partitions.close();
+        long bytes = 0;
+        for (int p = 0; p < partitions.length(); ++p) {
+          bytes += new File(dir, "hashes." + p + ".tmp").length();
+        }
+        assertEquals(10 * 12, bytes);
+        for (int p = 0; p < partitions.length(); ++p) {
+          final HashCounter counter = new HashCounter(30, 16, 100);
+          partitions.count(p, counter, 3);
+          while (counter.next()) {
+            assertEquals(10, counter.getCount());
+          }
+        }
+      } finally {
+        partitions.delete();
+      }
+    }
+  }
+}
@@ -297,6 +297,59 @@ public class CalibratorTest extends AbstractTest {
     assertEquals(expected, stripVersion(FileUtils.fileToString(tmp2)));
   }
 
+  private static void processReads(Calibrator cal, String sequence, String group, String cigar, String read, String qualities, int count) {
+    final SAMRecord sam = new SAMRecord(null);
+    sam.setReferenceName(sequence);
+    sam.setCigarString(cigar);
+    sam.setReadString(read);
+    sam.setBaseQualityString(qualities);
+    sam.setAlignmentStart(1);
+    sam.setMappingQuality(1);
+    sam.setAttribute("RG", group);
+    for (int i = 0; i < count; ++i) {
+      cal.processRead(sam);
+    }
+  }
+
+  private static Covariate[] accumulateCovariates() {
+    return new Covariate[] {new CovariateReadGroup(), new CovariateMachineCycle(1), new CovariateBaseQuality(), new CovariateSequence()};
+  }
+
+  public void testAccumulateCalibrator() throws IOException {
+    // Read groups and sequences are seen in a different order by each calibrator
+    final Calibrator first = new Calibrator(accumulateCovariates(), null);
+    processReads(first, "sequence1", "group1", "2=", "ac", "D!", 3);
+    processReads(first, "sequence1", "group2", "5=", "actga", "D!DAD", 2);
+    final Map<String, Integer> lengths = new HashMap<>();
+    lengths.put("sequence1", 20);
+    first.setSequenceLengths(lengths);
+    final Calibrator second = new Calibrator(accumulateCovariates(), null);
+    processReads(second, "sequence2", "group2", "7=", "actgact", "D!DAD!!", 2);
+    processReads(second, "sequence1", "group1", "2=", "ac", "D!", 1);
+    processReads(second, "sequence1", "group3", "1=", "a", "5", 1);
+
+    final Calibrator direct = new Calibrator(accumulateCovariates(), null);
+    direct.accumulate(first);
+    direct.accumulate(second);
+    final File directFile = new File(mDir, "direct.calibration");
+    direct.writeToFile(directFile);
+
+    final Calibrator viaFiles = new Calibrator(accumulateCovariates(), null);
+    final File firstFile = new File(mDir, "first.calibration");
+    first.writeToFile(firstFile);
+    viaFiles.accumulate(firstFile);
+    final File secondFile = new File(mDir, "second.calibration");
+    second.writeToFile(secondFile);
+    viaFiles.accumulate(secondFile);
+    final File viaFilesFile = new File(mDir, "files.calibration");
+    viaFiles.writeToFile(viaFilesFile);
+
+    final String merged = stripVersion(FileUtils.fileToString(directFile));
+    assertEquals(stripVersion(FileUtils.fileToString(viaFilesFile)), merged);
+    TestUtils.containsAll(merged, "@nh:group1\t0\t4", "@nh:group2\t0\t4", "@nh:group3\t0\t1", "@sequence\t20\tsequence1");
+    assertEquals(20, (int) direct.getSequenceLengths().get("sequence1"));
+  }
+
   public void testNotExpanding() throws IOException {
     final Covariate cov = new CovariateImpl("Dummy", 1) {
       @Override
@@ -39,6 +39,7 @@ import com.rtg.launcher.AbstractCli;
 import com.rtg.launcher.AbstractCliTest;
 import com.rtg.launcher.CommonFlags;
 import com.rtg.launcher.MainResult;
+import com.rtg.tabix.TabixIndexer;
 import com.rtg.util.StringUtils;
 import com.rtg.util.TestUtils;
 import com.rtg.util.io.FileUtils;
@@ -80,6 +81,22 @@ public class RecalibrateCliTest extends AbstractCliTest {
     }
   }
 
+  public void testIndexedSplit() throws IOException {
+    try (final TestDirectory dir = new TestDirectory("recal")) {
+      final File testFile = FileHelper.resourceToFile("com/rtg/sam/resources/tinyMappings.sam.gz", new File(dir, "test.sam.gz"));
+      new TabixIndexer(testFile, TabixIndexer.indexFileName(testFile)).saveSamIndex();
+      final File templateDwa = FileHelper.resourceToFile("com/rtg/sam/resources/tinyTemplate.dwa", new File(dir, "tinyTemplate.dwa"));
+      final File templateDir = new File(dir, "template");
+      SimpleArchive.unpackArchive(templateDwa, templateDir);
+      final MainResult r = MainResult.run(getCli(), "-t", templateDir.getPath(), testFile.getPath(), "-T", "4");
+      assertEquals(r.err(), 0, r.rc());
+      final File calibrationFile = new File(dir, "test.sam.gz.calibration");
+      final String s = StringUtils.grepMinusV(FileUtils.fileToString(calibrationFile), "^#CL");
+      final int start = s.indexOf(", calibrate ");
+      assertEquals(EXPECTED, s.substring(start));
+    }
+  }
+
   public void testPreexistCalib() throws IOException {
     final File dir = FileUtils.createTempDir("recal", "test");
     try {
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.index.similarity;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.rtg.util.PortableRandom;
+import com.rtg.util.diagnostic.Diagnostic;
+import com.rtg.util.io.MemoryPrintStream;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the corresponding class.
+ */
+public class FastNeighborJoiningTest extends TestCase {
+
+  private static final String LS = System.lineSeparator();
+
+  @Override
+  public void setUp() {
+    Diagnostic.setLogStream();
+  }
+
+  @Override
+  public void tearDown() {
+    Diagnostic.setLogStream();
+  }
+
+  private static List<String> names(final int n) {
+    final List<String> names = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      names.add("seq" + i);
+    }
+    return names;
+  }
+
+  private static SimilarityMatrix matrix(final int[][] counts) {
+    final SimilarityMatrix ma = new SimilarityMatrix(counts.length);
+    for (int i = 0; i < counts.length; ++i) {
+      for (int j = 0; j < counts[i].length; ++j) {
+        ma.set(i, j, counts[i][j]);
+      }
+    }
+    return ma;
+  }
+
+  private static SimilarityMatrix randomMatrix(final PortableRandom random, final int n) {
+    final SimilarityMatrix ma = new SimilarityMatrix(n);
+    for (int i = 0; i < n; ++i) {
+      ma.set(i, i, 1000 + 1000 * random.nextDouble());
+      for (int j = 0; j < i; ++j) {
+        ma.set(i, j, 1000 * random.nextDouble());
+      }
+    }
+    return ma;
+  }
+
+  private static String newick(final BinaryTree tree) throws IOException {
+    final StringWriter out = new StringWriter();
+    tree.newick(out);
+    return out.toString();
+  }
+
+  public void testWikiExample() throws IOException {
+    final MemoryPrintStream log = new MemoryPrintStream();
+    Diagnostic.setLogStream(log.printStream());
+    final double[] d = {7, 11, 6, 14, 9, 7};
+    final BinaryTree tree = new FastNeighborJoining().neighborJoin(Arrays.asList("A", "B", "C", "D"), d);
+    final String exp = ""
+      + "(" + LS
+      + " (" + LS
+      + "  D:5.0000," + LS
+      + "  C:2.0000" + LS
+      + " ):1.5000," + LS
+      + " (" + LS
+      + "  B:1.0000," + LS
+      + "  A:6.0000" + LS
+      + " ):1.5000" + LS
+      + ")" + LS;
+    assertEquals(exp, newick(tree));
+    assertTrue(log.toString().contains("NeighborJoining: B + A -> 4"));
+    assertTrue(log.toString().contains("NeighborJoining: D + C -> 3"));
+  }
+
+  public void testNeighborJoin1() throws IOException {
+    final SimilarityMatrix ma = matrix(new int[][] {
+      {1},
+      {0, 4},
+      {2, 2, 9},
+      {2, 4, 2, 16}
+    });
+    final String exp = ""
+      + "(" + LS
+      + " (" + LS
+      + "  (" + LS
+      + "   seq2:0.2851," + LS
+      + "   seq0:0.3149" + LS
+      + "  ):0.1851," + LS
+      + "  seq1:0.3899" + LS
+      + " ):0.1384," + LS
+      + " seq3:0.1384" + LS
+      + ")" + LS;
+    assertEquals(exp, newick(new FastNeighborJoining().neighborJoin(names(4), ma)));
+  }
+
+  public void testNeighborJoin2() throws IOException {
+    final SimilarityMatrix ma = matrix(new int[][] {
+      {0},
+      {0, 2},
+      {0, 0, 0},
+    });
+    final String exp = ""
+      + "(" + LS
+      + " (" + LS
+      + "  seq1:0.5000," + LS
+      + "  seq0:0.5000" + LS
+      + " ):0.2500," + LS
+      + " seq2:0.2500" + LS
+      + ")" + LS;
+    assertEquals(exp, newick(new FastNeighborJoining().neighborJoin(names(3), ma)));
+  }
+
+  public void testSingle() throws IOException {
+    assertEquals("seq0" + LS, newick(new FastNeighborJoining().neighborJoin(names(1), new SimilarityMatrix(1))));
+  }
+
+  public void testMakeArray() {
+    final SimilarityMatrix ma = randomMatrix(new PortableRandom(3), 7);
+    final double[] d = FastNeighborJoining.makeArray(ma);
+    int k = 0;
+    for (final List<Double> row : NeighborJoining.makeArray(ma)) {
+      for (final Double v : row) {
+        assertEquals(v, d[k++]);
+      }
+    }
+    assertEquals(d.length, k);
+  }
+
+  public void testMatchesStandard() throws IOException {
+    final PortableRandom random = new PortableRandom(42);
+    for (int n = 2; n < 40; n += 3) {
+      final SimilarityMatrix ma = randomMatrix(random, n);
+      final String exp = newick(new NeighborJoining().neighborJoin(names(n), ma));
+      assertEquals(exp, newick(new FastNeighborJoining().neighborJoin(names(n), ma)));
+    }
+  }
+
+  public void testThreads() throws IOException {
+    final SimilarityMatrix ma = randomMatrix(new PortableRandom(5), 700);
+    final String exp = newick(new FastNeighborJoining(1).neighborJoin(names(700), ma));
+    assertEquals(exp, newick(new FastNeighborJoining(4).neighborJoin(names(700), ma)));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.index.similarity;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the corresponding class.
+ */
+public class FracMinHashTest extends TestCase {
+
+  public void testBadScale() {
+    try {
+      new FracMinHash(0);
+      fail();
+    } catch (final IllegalArgumentException e) {
+      assertEquals("Invalid scale: 0", e.getMessage());
+    }
+  }
+
+  public void testScaleOne() {
+    final FracMinHash sketch = new FracMinHash(1);
+    assertEquals(1, sketch.scale());
+    for (long h = -5; h < 1000; ++h) {
+      assertTrue(sketch.keep(h));
+    }
+    assertTrue(sketch.keep(Long.MAX_VALUE));
+    assertTrue(sketch.keep(Long.MIN_VALUE));
+    final SimilarityMatrix matrix = new SimilarityMatrix(2);
+    matrix.set(0, 1, 3);
+    sketch.estimate(matrix);
+    assertEquals(3.0, matrix.get(1, 0));
+  }
+
+  public void testMix() {
+    assertEquals(0, FracMinHash.mix(0));
+    assertEquals(0xb456bcfc34c2cb2cL, FracMinHash.mix(1));
+  }
+
+  public void testKeep() {
+    final FracMinHash sketch = new FracMinHash(10);
+    assertEquals(10, sketch.scale());
+    int kept = 0;
+    for (long h = 0; h < 100000; ++h) {
+      if (sketch.keep(h)) {
+        ++kept;
+        // the same hash is always selected
+        assertTrue(sketch.keep(h));
+      }
+    }
+    assertEquals(9984, kept);
+  }
+
+  public void testEstimate() {
+    final FracMinHash sketch = new FracMinHash(50);
+    final SimilarityMatrix matrix = new SimilarityMatrix(2);
+    matrix.set(0, 0, 4);
+    matrix.set(0, 1, 2);
+    sketch.estimate(matrix);
+    assertEquals(200.0, matrix.get(0, 0));
+    assertEquals(100.0, matrix.get(1, 0));
+    assertEquals(0.0, matrix.get(1, 1));
+  }
+}
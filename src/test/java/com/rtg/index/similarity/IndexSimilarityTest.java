@@ -32,6 +32,7 @@ package com.rtg.index.similarity;
 import com.rtg.index.FixedRepeatFrequencyFilterMethod;
 import com.rtg.index.Index;
 import com.rtg.index.params.CreateParams;
+import com.rtg.util.PortableRandom;
 import com.rtg.util.StringUtils;
 import com.rtg.util.diagnostic.Diagnostic;
 
@@ -105,6 +106,29 @@ public class IndexSimilarityTest extends TestCase {
           expected);
   }
 
+  public final void testSimilarityThreads() {
+    final PortableRandom random = new PortableRandom(13);
+    final int n = 500;
+    final long[] hashes = new long[n];
+    final int[] ids = new int[n];
+    for (int i = 0; i < n; ++i) {
+      hashes[i] = random.nextInt(200) * 10000019L;
+      ids[i] = random.nextInt(10);
+    }
+    for (final boolean singleton : new boolean[] {false, true}) {
+      final CreateParams params = new CreateParams(n, 32, 32, 31, true, true, false, false);
+      final IndexSimilarity index = new IndexSimilarity(params, new FixedRepeatFrequencyFilterMethod(1000), singleton, 1);
+      add(index, hashes, ids);
+      index.freeze();
+      add(index, hashes, ids);
+      index.freeze();
+      final String expected = index.similarity(10).toString();
+      for (int threads = 2; threads <= 5; ++threads) {
+        assertEquals(expected, index.similarity(10, threads).toString());
+      }
+    }
+  }
+
   public final void testSimilarity2() {
     final CreateParams params = new CreateParams(100, 32, 32, 31, true, true, false, false);
     final IndexSimilarity index = new IndexSimilarity(params, new FixedRepeatFrequencyFilterMethod(6), false, 1);
@@ -118,6 +118,26 @@ public class SimilarityMatrixTest extends TestCase {
 
   }
 
+  public void testAdd() {
+    final SimilarityMatrix sim = new SimilarityMatrix(4);
+    sim.set(0, 0, 1);
+    sim.set(1, 3, 2);
+    final SimilarityMatrix other = new SimilarityMatrix(4);
+    other.set(3, 1, 3);
+    other.set(2, 2, 4);
+    sim.add(other);
+    assertEquals(1, sim.get(0, 0), 1.0E-8);
+    assertEquals(5, sim.get(3, 1), 1.0E-8);
+    assertEquals(4, sim.get(2, 2), 1.0E-8);
+    assertEquals(0, sim.get(2, 3), 1.0E-8);
+    try {
+      sim.add(new SimilarityMatrix(3));
+      fail();
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
+
   /**
    * Test method for {@link com.rtg.index.similarity.SimilarityMatrix}.
    */
@@ -129,4 +149,20 @@ public class SimilarityMatrixTest extends TestCase {
       assertEquals("2147483648", e.getMessage());
     }
   }
+
+  public void testMultiply() {
+    final SimilarityMatrix sim = new SimilarityMatrix(3);
+    sim.increment(0, 0, 2);
+    sim.increment(2, 1, 3);
+    sim.multiply(10);
+    assertEquals(20.0, sim.get(0, 0));
+    assertEquals(30.0, sim.get(1, 2));
+    assertEquals(0.0, sim.get(2, 2));
+    try {
+      sim.multiply(-1);
+      fail();
+    } catch (final IllegalArgumentException e) {
+      assertEquals("Invalid factor: -1.0", e.getMessage());
+    }
+  }
 }
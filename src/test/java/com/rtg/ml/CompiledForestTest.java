@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.ml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Properties;
+
+import com.rtg.util.PortableRandom;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the corresponding class.
+ */
+public class CompiledForestTest extends TestCase {
+
+  private static PredictClassifier build(Dataset data, String propagate, String splitMissing) {
+    final Properties props = new Properties();
+    props.setProperty(BaggedClassifierBuilder.PROP_NUMTREES, "7");
+    props.setProperty(BaggedClassifierBuilder.PROP_EVALUATE_IMPORTANCES, "false");
+    props.setProperty(BaggedClassifierBuilder.PROP_EVALUATE_OOB, "false");
+    props.setProperty(RandomTreeBuilder.PROP_PROPAGATE_MISSING, propagate);
+    props.setProperty(RandomTreeBuilder.PROP_SPLIT_MISSING, splitMissing);
+    final BaggedClassifierBuilder b = new BaggedClassifierBuilder();
+    b.setProperties(props);
+    b.build(data);
+    return b.getClassifier();
+  }
+
+  private static void checkSame(PredictClassifier source, Dataset data) {
+    final PredictClassifier compiled = CompiledForest.compile(source);
+    assertTrue(compiled instanceof CompiledForest);
+    final ArrayList<Instance> instances = data.getInstances();
+    final double[][] batch = new double[instances.size()][];
+    for (int i = 0; i < batch.length; ++i) {
+      batch[i] = instances.get(i).instance();
+      assertEquals(source.predict(batch[i]), compiled.predict(batch[i]));
+    }
+    final double[] predictions = new double[batch.length];
+    compiled.predict(batch, batch.length, predictions);
+    for (int i = 0; i < batch.length; ++i) {
+      assertEquals(source.predict(batch[i]), predictions[i]);
+    }
+  }
+
+  public void testBaggedMatchesSource() {
+    final Dataset data = RandomTreeBuilderTest.makeMixedDataset(new PortableRandom(5), 200);
+    for (final String propagate : new String[] {"false", "both", "random"}) {
+      for (final String splitMissing : new String[] {"false", "true"}) {
+        checkSame(build(data, propagate, splitMissing), data);
+      }
+    }
+  }
+
+  public void testSingleTree() {
+    final Dataset data = RandomTreeBuilderTest.makeMixedDataset(new PortableRandom(7), 100);
+    final RandomTreeBuilder b = new RandomTreeBuilder();
+    b.build(data);
+    final PredictClassifier tree = b.getClassifier();
+    checkSame(tree, data);
+    assertEquals(0.25, CompiledForest.compile(new ZeroRBuilder.ZeroRClassifier(1, 3)).predict(new double[0]));
+  }
+
+  public void testMissingSplit() {
+    final Attribute a = new Attribute("a", MlDataType.DOUBLE);
+    final Dataset data = new Dataset(a);
+    final BinarySplitter split = new BinarySplitter("a", 0, 1.0, MlDataType.DOUBLE);
+    final BinaryTreeClassifier tree = new BinaryTreeClassifier(split, new ZeroRBuilder.ZeroRClassifier(1, 0), new ZeroRBuilder.ZeroRClassifier(0, 1), 0.25);
+    final CompiledForest compiled = (CompiledForest) CompiledForest.compile(new BaggedClassifier(tree, new ZeroRBuilder.ZeroRClassifier(1, 1)));
+    assertEquals(4, compiled.size());
+    assertEquals(0.75, compiled.predict(new double[] {0.5}));
+    assertEquals(0.75, compiled.predict(new double[] {1.0}));
+    assertEquals(0.25, compiled.predict(new double[] {2.0}));
+    assertEquals(0.375, compiled.predict(new double[] {Double.NaN}));
+    assertEquals(compiled.toString(new StringBuilder(), "", data).toString(), new BaggedClassifier(tree, new ZeroRBuilder.ZeroRClassifier(1, 1)).toString(new StringBuilder(), "", data).toString());
+  }
+
+  public void testSaveDelegates() throws IOException {
+    final Dataset data = RandomTreeBuilderTest.makeMixedDataset(new PortableRandom(9), 50);
+    final PredictClassifier source = build(data, "both", "false");
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    source.save(new DataOutputStream(expected), data);
+    final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    CompiledForest.compile(source).save(new DataOutputStream(actual), data);
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  public void testNotCompilable() {
+    final PredictClassifier other = new PredictClassifier() {
+      @Override
+      public void save(DataOutputStream dos, Dataset data) {
+      }
+
+      @Override
+      public double predict(double[] instance) {
+        return 0.5;
+      }
+
+      @Override
+      public StringBuilder toString(StringBuilder out, String indent, Dataset data) {
+        return out;
+      }
+    };
+    assertSame(other, CompiledForest.compile(other));
+    final BaggedClassifier bag = new BaggedClassifier(other, new ZeroRBuilder.ZeroRClassifier(1, 1));
+    assertSame(bag, CompiledForest.compile(bag));
+  }
+}
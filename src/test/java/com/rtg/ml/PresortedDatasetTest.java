@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.ml;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the corresponding class.
+ */
+public class PresortedDatasetTest extends TestCase {
+
+  private static Dataset makeDataset() {
+    final Dataset d = new Dataset(new Attribute("X", MlDataType.DOUBLE), new Attribute("S", MlDataType.STRING));
+    final Attribute s = d.getAttributes()[1];
+    d.addInstance(new Instance(new double[] {3.0, s.encodeValue("a")}, true, 1.0));
+    d.addInstance(new Instance(new double[] {Double.NaN, s.encodeValue("b")}, false, 2.0));
+    d.addInstance(new Instance(new double[] {1.0, Double.NaN}, true, 3.0));
+    d.addInstance(new Instance(new double[] {3.0, s.encodeValue("a")}, false, 4.0));
+    d.addInstance(new Instance(new double[] {-0.0, s.encodeValue("b")}, true, 5.0));
+    d.addInstance(new Instance(new double[] {0.0, s.encodeValue("a")}, false, 6.0));
+    return d;
+  }
+
+  public void testRoot() {
+    final Dataset d = makeDataset();
+    final PresortedDataset data = new PresortedDataset(d);
+    final PresortedDataset.Node root = data.root(d);
+    assertEquals("[0, 1, 2, 3, 4, 5]", Arrays.toString(root.rows()));
+    // Missing values excluded, ties kept in instance order
+    assertEquals("[4, 5, 2, 0, 3]", Arrays.toString(root.sorted(0)));
+    assertNull(root.sorted(1));
+    assertEquals(9.0, root.totalPositiveWeight());
+    assertEquals(12.0, root.totalNegativeWeight());
+    assertEquals(21.0, root.totalWeight());
+    assertTrue(data.isPositive(2));
+    assertEquals(3.0, data.weight(2));
+    assertEquals(1.0, data.value(0, 2));
+  }
+
+  public void testSplitDropMissing() {
+    final Dataset d = makeDataset();
+    final PresortedDataset data = new PresortedDataset(d);
+    final PresortedDataset.Node[] children = new PresortedDataset.Node[2];
+    final double min = data.split(data.root(d), new BinarySplitter("X", 0, 2.0, MlDataType.DOUBLE), 0.5, null, false, children);
+    assertEquals(5.0, min);
+    assertEquals("[2, 4, 5]", Arrays.toString(children[0].rows()));
+    assertEquals("[4, 5, 2]", Arrays.toString(children[0].sorted(0)));
+    assertEquals("[0, 3]", Arrays.toString(children[1].rows()));
+    assertEquals("[0, 3]", Arrays.toString(children[1].sorted(0)));
+    assertEquals(8.0, children[0].totalPositiveWeight());
+    assertEquals(6.0, children[0].totalNegativeWeight());
+    assertEquals(1.0, children[1].totalPositiveWeight());
+    assertEquals(4.0, children[1].totalNegativeWeight());
+  }
+
+  public void testSplitBoth() {
+    final Dataset d = makeDataset();
+    final PresortedDataset data = new PresortedDataset(d);
+    final PresortedDataset.Node[] children = new PresortedDataset.Node[2];
+    final double min = data.split(data.root(d), new BinarySplitter("S", 1, d.getAttributes()[1].encodeValue("a"), MlDataType.STRING), 0.25, null, true, children);
+    assertEquals(2.0 + 2.25 + 5.0, min);
+    // Row 2 has a missing value, so is duplicated as row 6 for the right child
+    assertEquals("[0, 2, 3, 5]", Arrays.toString(children[0].rows()));
+    assertEquals("[5, 2, 0, 3]", Arrays.toString(children[0].sorted(0)));
+    assertEquals("[1, 6, 4]", Arrays.toString(children[1].rows()));
+    assertEquals("[4, 6]", Arrays.toString(children[1].sorted(0)));
+    assertEquals(0.75, data.weight(2));
+    assertEquals(2.25, data.weight(6));
+    assertEquals(1.0, data.value(0, 6));
+    assertTrue(data.isPositive(6));
+    assertEquals(1.0 + 0.75, children[0].totalPositiveWeight());
+    assertEquals(10.0, children[0].totalNegativeWeight());
+    assertEquals(2.25 + 5.0, children[1].totalPositiveWeight());
+    assertEquals(2.0, children[1].totalNegativeWeight());
+  }
+}
@@ -119,6 +119,58 @@ public class RandomTreeBuilderTest extends AbstractBuildClassifierTest {
     assertEquals(expect, eval.accuracy(), 0.01);
   }
 
+  static Dataset makeMixedDataset(PortableRandom random, int size) {
+    final Attribute[] attributes = {
+      new Attribute("X", MlDataType.DOUBLE),
+      new Attribute("Y", MlDataType.DOUBLE),
+      new Attribute("Z", MlDataType.INTEGER),
+      new Attribute("S", MlDataType.STRING),
+      new Attribute("B", MlDataType.BOOLEAN),
+    };
+    final Dataset circle = TrainTestSplitTest.makeCircleDataset(random, size, size);
+    final Dataset d = new Dataset(attributes);
+    final String[] labels = {"a", "b", "c", "d"};
+    for (final Instance inst : circle.getInstances()) {
+      final double x = inst.instance()[0];
+      final double y = inst.instance()[1];
+      final double[] values = {
+        Math.round(x * 8) / 8.0, // Introduce plenty of ties
+        y,
+        attributes[2].encodeValue((int) Math.round(2 * (x + y))),
+        attributes[3].encodeValue(labels[random.nextInt(labels.length)]),
+        attributes[4].encodeValue(x * y > 0),
+      };
+      d.addInstance(new Instance(values, inst.isPositive(), 0.5 + random.nextDouble()));
+    }
+    d.injectMissing(0.2, 0.1);
+    return d;
+  }
+
+  public void testPresortedMatchesSorting() {
+    final Dataset data = makeMixedDataset(new PortableRandom(17), 300);
+    final Dataset train = TrainTestSplit.sampleWithReplacement(data, 500, new PortableRandom(3)).mTrain;
+    for (final String prop : new String[] {"false", "both", "random"}) {
+      for (final String[] entSplit : new String[][] {{"false", "false"}, {"true", "false"}, {"true", "true"}}) {
+        final PredictClassifier[] trees = new PredictClassifier[2];
+        for (int k = 0; k < trees.length; ++k) {
+          final Properties props = new Properties();
+          props.setProperty(RandomTreeBuilder.PROP_ENTROPY_MISSING, entSplit[0]);
+          props.setProperty(RandomTreeBuilder.PROP_PROPAGATE_MISSING, prop);
+          props.setProperty(RandomTreeBuilder.PROP_SPLIT_MISSING, entSplit[1]);
+          props.setProperty(RandomTreeBuilder.PROP_MIN_INSTANCES, "2");
+          props.setProperty(RandomTreeBuilder.PROP_MAX_DEPTH, "0");
+          props.setProperty(RandomTreeBuilder.PROP_PRESORTED, String.valueOf(k == 1));
+          final BuildClassifier b = makeClassifier();
+          b.setProperties(props);
+          b.build(train);
+          trees[k] = b.getClassifier();
+        }
+        assertTrue(trees[0] instanceof BinaryTreeClassifier);
+        assertEquals(prop + " " + entSplit[0] + " " + entSplit[1], trees[0], trees[1]);
+      }
+    }
+  }
+
   public void testSplitPointDoubleAveraging() {
     final Double prev = 0.38999999999999996;
     assertEquals(prev, RandomTreeBuilder.getSplitPoint(MlDataType.DOUBLE, prev, 0.39));
@@ -38,6 +38,7 @@ import java.io.PrintStream;
 import java.util.zip.GZIPOutputStream;
 
 import com.rtg.bed.BedUtils;
+import com.rtg.calibrate.Calibrator;
 import com.rtg.calibrate.CalibratorTest;
 import com.rtg.mode.SequenceType;
 import com.rtg.ngs.blocking.MapQScoringReadBlocker;
@@ -389,6 +390,39 @@ public class DummySamResultsFilterTest extends TestCase {
     }
   }
 
+  public void testCalibrationAccumulation() throws IOException {
+    CommandLine.clearCommandArgs();
+    Diagnostic.setLogStream();
+    final int numReads = 100;
+    try (final TestDirectory dir = new TestDirectory()) {
+      final File in1 = File.createTempFile("sam", "_1.gz", dir);
+      final File in2 = File.createTempFile("sam", "_2.gz", dir);
+      final String templateString = ">chr20\nAGCTAGCTAGCTAGCTAGCT\n";
+      final File temp = new File(dir, "input");
+      final File outFile = File.createTempFile("out", ".gz", dir);
+      writeTempFile(in1);
+      writeTempFile(in2);
+      try (SequencesReader template = ReaderTestUtils.getReaderDNA(templateString, temp, new SdfId(0))) {
+        final SAMFileHeader header = makeHeader();
+        final Calibrator[] calibrators = new Calibrator[2];
+        final File[] inputs = {in1, in2};
+        for (int i = 0; i < inputs.length; ++i) {
+          calibrators[i] = AbstractSamResultsFilter.makeCalibrator(header, null, template);
+          try (OutputStream out = new GZIPOutputStream(new FileOutputStream(new File(dir, "out" + i + ".gz")))) {
+            final DummySamResultsFilter filter = new DummySamResultsFilter(new MapQScoringReadBlocker(numReads, 2), new StatusListener(numReads));
+            filter.filterConcat(header, out, calibrators[i], template, false, inputs[i]);
+          }
+        }
+        AbstractMulticoreFilterConcat.mergeCalibration(outFile, null, calibrators);
+      }
+      final String expected = "#CL\tnull" + StringUtils.LS
+        + "@nh:G1\t0\t10" + StringUtils.LS
+        + "@covar\treadgroup\tbasequality\tsequence\tequal\tdiff\tins\tdel" + StringUtils.LS
+        + "G1\t27\tchr20\t40\t0\t0\t0" + StringUtils.LS;
+      assertEquals(expected, CalibratorTest.stripVersion(FileUtils.fileToString(new File(outFile.getPath() + ".calibration"))));
+    }
+  }
+
   public void testCalibrationCreationWithBedRegions() throws IOException {
     CommandLine.clearCommandArgs();
     Diagnostic.setLogStream();
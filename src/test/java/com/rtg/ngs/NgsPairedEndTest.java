@@ -36,8 +36,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Collections;
+import java.util.TreeSet;
 
+import com.rtg.calibrate.CalibratingSamRecordPopulator;
+import com.rtg.calibrate.Calibrator;
 import com.rtg.launcher.AbstractNanoTest;
+import com.rtg.launcher.CommonFlags;
 import com.rtg.launcher.MainResult;
 import com.rtg.launcher.SequenceParams;
 import com.rtg.launcher.globals.CoreGlobalFlags;
@@ -46,7 +50,10 @@ import com.rtg.reader.Arm;
 import com.rtg.reader.PrereadArm;
 import com.rtg.reader.ReaderTestUtils;
 import com.rtg.reader.SdfId;
+import com.rtg.reader.SequencesReader;
+import com.rtg.reader.SequencesReaderFactory;
 import com.rtg.reference.ReferenceGenome;
+import com.rtg.sam.SamUtils;
 import com.rtg.usage.UsageMetric;
 import com.rtg.util.TestUtils;
 import com.rtg.util.Utils;
@@ -55,6 +62,9 @@ import com.rtg.util.io.FileUtils;
 import com.rtg.util.io.TestDirectory;
 import com.rtg.util.test.FileHelper;
 
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
+
 /**
  * Tests of Ngs paired end capability.
  */
@@ -254,6 +264,76 @@ public class NgsPairedEndTest extends AbstractNanoTest {
     }
   }
 
+  // Calibration accumulated in memory for separate mated and unmated output covers every output alignment
+  public void testCalibrationNoMerge() throws Exception {
+    checkCalibrationNoMerge(true, new String[] {});
+  }
+
+  public void testCalibrationNoMergeUnmatedOnly() throws Exception {
+    // No pair fits in a one base fragment, so every mapped read is unmated
+    checkCalibrationNoMerge(false, new String[] {"-M", "1"});
+  }
+
+  private void checkCalibrationNoMerge(boolean mated, String[] additionalArgs) throws IOException {
+    try (TestDirectory dir = new TestDirectory()) {
+      final File reads = new File(dir, "reads");
+      ReaderTestUtils.createPairedReaderDNA(FileHelper.resourceToString("com/rtg/ngs/resources/svprep-left.fasta")
+          , FileHelper.resourceToString("com/rtg/ngs/resources/svprep-right.fasta")
+          , reads, new SdfId());
+      final File template = new File(dir, "template");
+      final File outDir = new File(dir, "outPutDir");
+      ReaderTestUtils.getDNADir(FileHelper.resourceToString("com/rtg/ngs/resources/svprep-template.fasta"), template);
+      Diagnostic.setLogStream();
+      final MainResult r = MainResult.run(new MapCli(), Utils.append(new String[] {"-o", outDir.toString()
+        , "-i", reads.toString()
+        , "-t", template.toString()
+        , "--sam", "-Z", "--no-merge"
+        , "--sam-rg", "@RG\\tPL:ILLUMINA\\tSM:FOO\\tID:BAR"}, additionalArgs));
+      assertEquals(r.err(), 0, r.rc());
+      try (SequencesReader templateReader = SequencesReaderFactory.createDefaultSequencesReader(template)) {
+        final File matedSam = new File(outDir, NgsOutputParams.MATED_SAM_FILE_NAME);
+        if (mated) {
+          checkCalibration(matedSam, templateReader);
+        } else {
+          assertTrue(!matedSam.exists() || TestUtils.stripSAMHeader(FileUtils.fileToString(matedSam)).isEmpty());
+        }
+        checkCalibration(new File(outDir, NgsOutputParams.UNMATED_SAM_FILE_NAME), templateReader);
+      }
+    }
+  }
+
+  // Compare the calibration written by mapping with one made from every alignment in the output file
+  private static void checkCalibration(File sam, SequencesReader template) throws IOException {
+    final File calFile = new File(sam.getPath() + CommonFlags.RECALIBRATE_EXTENSION);
+    assertTrue(calFile.getPath(), calFile.exists());
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    int alignments = 0;
+    try (SamReader reader = SamUtils.makeSamReader(sam)) {
+      final Calibrator cal = AbstractSamResultsFilter.makeCalibrator(reader.getFileHeader(), null, template);
+      final CalibratingSamRecordPopulator populator = new CalibratingSamRecordPopulator(cal, template, false);
+      for (final SAMRecord rec : reader) {
+        populator.populate(rec);
+        if (!rec.getReadUnmappedFlag()) {
+          ++alignments;
+        }
+      }
+      cal.writeToStream(expected);
+    }
+    assertTrue(sam.getPath(), alignments > 0);
+    assertEquals(calibrationLines(expected.toString()), calibrationLines(FileUtils.fileToString(calFile)));
+  }
+
+  // Statistics lines of a calibration file, independent of comments and the order covariate values were seen
+  private static String calibrationLines(String calibration) {
+    final TreeSet<String> lines = new TreeSet<>();
+    for (final String line : calibration.split(LS)) {
+      if (!line.startsWith("#")) {
+        lines.add(line);
+      }
+    }
+    return lines.toString();
+  }
+
   private void checkSvPrepInternal(String id, File outDir, String[] additionalArgs, String... args) throws IOException {
     final MainResult r = MainResult.run(new MapCli(), Utils.append(args, additionalArgs));
     assertEquals(r.err(), 0, r.rc());
@@ -81,7 +81,7 @@ public class BuildSearchParamsTest extends TestCase {
       sequences.add(pair);
     }
     return BuildSearchParams.builder().mode(mode).sequences(sequences).name("SequencesBuildParams")
-                                      .uniqueWords(true).count(count).build(build).create();
+                                      .uniqueWords(true).numberThreads(3).fastNeighborJoining(true).sketchScale(50).count(count).build(build).create();
   }
 
   public void testEquals() throws IOException {
@@ -131,6 +131,9 @@ public class BuildSearchParamsTest extends TestCase {
         bsp.integrity();
         assertEquals(4, bsp.bufferLength());
         assertTrue(bsp.sequences() instanceof List);
+        assertEquals(3, bsp.numberThreads());
+        assertTrue(bsp.fastNeighborJoining());
+        assertEquals(50, bsp.sketchScale());
       }
 
       try (BuildSearchParams bsp = getParams(pm, subject, build, count, true)) {
@@ -161,6 +164,9 @@ public class BuildSearchParamsTest extends TestCase {
         assertEquals(build.toString(), bsp.build().toString());
         assertEquals(4, bsp.bufferLength());
         assertFalse(bsp.uniqueWords());
+        assertEquals(1, bsp.numberThreads());
+        assertFalse(bsp.fastNeighborJoining());
+        assertEquals(1, bsp.sketchScale());
         assertEquals(hitDir, bsp.directory());
         assertEquals(new File(hitDir, "bob"), bsp.file("bob"));
         assertEquals(""
@@ -74,6 +74,7 @@ import com.rtg.reader.SequencesWriter;
 import com.rtg.similarity.SimilarityCli.SimilarityTask;
 import com.rtg.usage.UsageMetric;
 import com.rtg.util.MockAppendable;
+import com.rtg.util.PortableRandom;
 import com.rtg.util.TestUtils;
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.diagnostic.DiagnosticEvent;
@@ -87,6 +88,7 @@ import com.rtg.util.io.FileUtils;
 import com.rtg.util.io.LogRecord;
 import com.rtg.util.io.LogStream;
 import com.rtg.util.io.MemoryPrintStream;
+import com.rtg.util.io.TestDirectory;
 import com.rtg.util.test.FileHelper;
 public class SimilarityCliTest extends AbstractCliTest {
 
@@ -199,8 +201,12 @@ public class SimilarityCliTest extends AbstractCliTest {
         "word size (Default is 20)",
         "--unique-words",
         "count only unique words",
+        "--sketch-scale=INT",
+        "only use a hash selected sample of one in this many words",
         "--max-reads=INT",
-        "maximum number of reads to use from each input SDF");
+        "maximum number of reads to use from each input SDF",
+        "-T,",
+        "--threads=INT");
   }
 
 
@@ -780,6 +786,12 @@ public class SimilarityCliTest extends AbstractCliTest {
           "-s", "26"
           );
       TestUtils.containsAll(error, "The specified flag \"--step\" has invalid value \"26\". It should be less than or equal to \"--word\".");
+      error = checkMainInitBadFlags(
+          "-i", input.getPath(),
+          "-o", output.getPath(),
+          "--sketch-scale", "0"
+          );
+      TestUtils.containsAll(error, "--sketch-scale must be at least 1");
       final File inputList = new File(tempDir, "inputList.txt");
       assertTrue(inputList.createNewFile());
       error = checkMainInitBadFlags(
@@ -876,11 +888,82 @@ public class SimilarityCliTest extends AbstractCliTest {
       final String sim2 = FileUtils.fileToString(new File(output2, "similarity.tsv"));
       assertEquals(REPEAT_EXPECTED_2, sim2);
 
+      final File output3 = new File(f, "output3");
+      final String[] args3 = {
+          "-i", input.getPath(),
+          "-w", "4",
+          "-s", "4",
+          "-o", output3.getPath(),
+          "--sketch-scale", "1"
+      };
+      assertEquals(0, p.mainInit(args3, TestUtils.getNullOutputStream(), System.err));
+      assertEquals(REPEAT_EXPECTED_1, FileUtils.fileToString(new File(output3, "similarity.tsv")));
+
     } finally {
       assertTrue(FileHelper.deleteAll(f));
     }
   }
 
+  private static final String BASES = "ACGT";
+
+  // Samples derived from a common ancestor by increasing amounts of mutation, each containing
+  // a tandem duplication so that many words occur more than once
+  private static String repetitiveSamples() {
+    final PortableRandom r = new PortableRandom(42);
+    final StringBuilder ancestor = new StringBuilder();
+    for (int k = 0; k < 20000; ++k) {
+      ancestor.append(BASES.charAt(r.nextInt(4)));
+    }
+    final StringBuilder sb = new StringBuilder();
+    for (int s = 0; s < 4; ++s) {
+      final StringBuilder sample = new StringBuilder(ancestor);
+      for (int k = 0; k < sample.length(); ++k) {
+        if (r.nextDouble() < 0.02 * s) {
+          sample.setCharAt(k, BASES.charAt(r.nextInt(4)));
+        }
+      }
+      sample.append(sample, 5000, 10000);
+      sb.append(">s").append(s).append(LS).append(sample).append(LS);
+    }
+    return sb.toString();
+  }
+
+  private static double[][] readMatrix(final File similarity) throws IOException {
+    final String[] lines = FileUtils.fileToString(similarity).split(LS);
+    final double[][] matrix = new double[lines.length - 2][];
+    for (int i = 0; i < matrix.length; ++i) {
+      final String[] fields = lines[i + 2].split("\t");
+      matrix[i] = new double[fields.length - 1];
+      for (int j = 0; j < matrix[i].length; ++j) {
+        matrix[i][j] = Double.parseDouble(fields[j + 1]);
+      }
+    }
+    return matrix;
+  }
+
+  public void testEnd2EndSketch() throws Exception {
+    try (final TestDirectory dir = new TestDirectory("similarity")) {
+      final File input = new File(dir, "samples");
+      ReaderTestUtils.getReaderDNA(repetitiveSamples(), input, null).close();
+      final File full = new File(dir, "full");
+      final File sketched = new File(dir, "sketched");
+      final SimilarityCli p = new SimilarityCli();
+      assertEquals(0, p.mainInit(new String[] {"-i", input.getPath(), "-w", "12", "-o", full.getPath()}, TestUtils.getNullOutputStream(), System.err));
+      assertEquals(0, p.mainInit(new String[] {"-i", input.getPath(), "-w", "12", "-o", sketched.getPath(), "--sketch-scale", "8"}, TestUtils.getNullOutputStream(), System.err));
+      final double[][] expected = readMatrix(new File(full, "similarity.tsv"));
+      final double[][] actual = readMatrix(new File(sketched, "similarity.tsv"));
+      assertEquals(4, expected.length);
+      assertEquals(4, actual.length);
+      for (int i = 0; i < expected.length; ++i) {
+        for (int j = 0; j < expected.length; ++j) {
+          assertTrue(expected[i][j] > 0);
+          assertEquals("(" + i + ", " + j + ")", 1.0, actual[i][j] / expected[i][j], 0.15);
+        }
+      }
+      TestUtils.containsAll(FileUtils.fileToString(new File(sketched, SimilarityCli.MODULE_NAME + ".log")), "Sketching one in 8 words", "Sketch retains ");
+    }
+  }
+
   public void testEnd2EndMultifile() throws Exception {
     final File tempDir = FileUtils.createTempDir("multiFile", "test");
     try {
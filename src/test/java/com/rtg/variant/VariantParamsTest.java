@@ -79,6 +79,7 @@ public class VariantParamsTest extends AbstractTest {
         " hypercomplex_length=21 non_identity_posterior=true" + LS,
         " machine=null vcf_rp=false output_index=true" + LS,
         " call_level=INTERESTING indels=true no_complex_calls=false" + LS,
+        " sample_models=[] sample_models_output=false" + LS,
         " interesting_threshold=1.0000" + LS,
         " interesting_separation=4" + LS,
         " max_coverage_filter=2147483647:2147483647" + LS,
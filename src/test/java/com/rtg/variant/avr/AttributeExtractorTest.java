@@ -35,6 +35,7 @@ import static com.rtg.util.StringUtils.LS;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.rtg.ml.Dataset;
@@ -45,6 +46,7 @@ import com.rtg.util.io.TestDirectory;
 import com.rtg.util.test.FileHelper;
 import com.rtg.variant.avr.AttributeExtractor.IncompatibleHeaderException;
 import com.rtg.vcf.VcfReader;
+import com.rtg.vcf.VcfRecord;
 import com.rtg.vcf.header.MetaType;
 
 import junit.framework.TestCase;
@@ -215,9 +217,13 @@ public class AttributeExtractorTest extends TestCase {
         ds.addInstance(new Instance(instance, true));
 
         reader.hasNext();
-        instance = ae.getInstance(reader.next(), 2);
+        final VcfRecord rec = reader.next();
+        instance = ae.getInstance(rec, 2);
         assertNotNull(instance);
         assertEquals(7, instance.length);
+        final double[] reused = new double[7];
+        assertSame(reused, ae.getInstance(rec, 2, reused));
+        assertTrue(Arrays.equals(instance, reused));
         assertTrue(Double.isNaN(instance[0])); // AB
 //        assertTrue(instance[1] instanceof Integer); // DP
 //        assertTrue(instance[2] instanceof String);  // GT
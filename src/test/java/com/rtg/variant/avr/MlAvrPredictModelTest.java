@@ -139,6 +139,21 @@ public class MlAvrPredictModelTest extends AbstractPredictModelTest<MlAvrPredict
     }
   }
 
+  public void testThreadView() {
+    final MlAvrPredictModel model = createTestModel();
+    model.setField("XAVR");
+    model.updateHeader(new VcfHeader());
+    final AbstractPredictModel view = model.threadView();
+    assertNotSame(model, view);
+    assertEquals("XAVR", view.getField());
+    final VcfRecord record = VcfReaderTest.vcfLineToRecord("chr5\t12041\trs55926606\tA\tT\t100\tPASS\tXRX\tGT:GQ\t0|1:12\t1|1:99");
+    view.annotate(record);
+    assertEquals("0.4444", record.getFormat("XAVR").get(1));
+    model.annotateSample(record, 0);
+    assertTrue(model.getSummary().contains("[0.40..0.45)\t3"));
+    assertTrue(view.getSummary().contains("[0.40..0.45)\t2"));
+  }
+
   private static final int MIN_VERSION = 1;
   public void testLoadVersionX() throws IOException {
     for (int i = MIN_VERSION; i <= MlAvrPredictModel.SERIAL_VERSION; ++i) {
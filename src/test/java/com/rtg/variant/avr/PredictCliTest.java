@@ -30,13 +30,20 @@
 package com.rtg.variant.avr;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.rtg.launcher.AbstractCli;
 import com.rtg.launcher.AbstractCliTest;
 import com.rtg.util.TestUtils;
+import com.rtg.util.diagnostic.NoTalkbackSlimException;
 import com.rtg.util.io.MemoryPrintStream;
 import com.rtg.util.io.TestDirectory;
 import com.rtg.util.test.FileHelper;
+import com.rtg.variant.avr.DummyPredictModelTest.DummyPredictModel;
+import com.rtg.vcf.VcfReader;
+import com.rtg.vcf.VcfRecord;
+import com.rtg.vcf.VcfWriter;
+import com.rtg.vcf.VcfWriterFactory;
 
 /**
  */
@@ -59,6 +66,46 @@ public class PredictCliTest extends AbstractCliTest {
     }
   }
 
+  public void testThreads() throws Exception {
+    try (final TestDirectory dir = new TestDirectory()) {
+      final File model = FileHelper.resourceToFile("com/rtg/variant/avr/resources/mlmodel.avr", new File(dir, "mlmodel.avr"));
+      final File vcf = FileHelper.resourceToFile("com/rtg/variant/avr/resources/multisample.vcf", new File(dir, "multisample.vcf"));
+      final String[] outputs = new String[2];
+      for (int k = 0; k < outputs.length; ++k) {
+        final File output = new File(dir, "output" + k + ".vcf.gz");
+        final MemoryPrintStream mps = new MemoryPrintStream();
+        final String threads = k == 0 ? "1" : "3";
+        final int code = new PredictCli().mainInit(new String[] {"-T", threads, "--Xblock-size", "1", "--avr-model", model.getPath(), "-i", vcf.getPath(), "-o", output.getPath()}, mps.outputStream(), mps.printStream());
+        assertEquals(mps.toString(), 0, code);
+        outputs[k] = TestUtils.sanitizeVcfHeader(FileHelper.gzFileToString(output));
+      }
+      assertEquals(outputs[0], outputs[1]);
+    }
+  }
+
+  public void testParallelFailure() throws Exception {
+    try (final TestDirectory dir = new TestDirectory()) {
+      final File vcf = FileHelper.resourceToFile("com/rtg/variant/avr/resources/multisample.vcf", new File(dir, "multisample.vcf"));
+      final AtomicInteger scored = new AtomicInteger();
+      final DummyPredictModel model = new DummyPredictModel() {
+        @Override
+        public void annotate(VcfRecord record) {
+          if (scored.incrementAndGet() > 2) {
+            throw new NoTalkbackSlimException("scoring failed");
+          }
+        }
+      };
+      // Small blocks and few threads, so the reader is blocked on a full queue when scoring fails
+      try (final VcfReader reader = VcfReader.openVcfReader(vcf);
+           final VcfWriter writer = new VcfWriterFactory().zip(false).make(reader.getHeader(), new File(dir, "out.vcf"))) {
+        PredictCli.annotateParallel(reader, writer, model, new int[0], 1, 1);
+        fail();
+      } catch (final NoTalkbackSlimException e) {
+        assertEquals("scoring failed", e.getMessage());
+      }
+    }
+  }
+
   public void testSample() throws Exception {
     try (final TestDirectory dir = new TestDirectory()) {
       final File model = FileHelper.resourceToFile("com/rtg/variant/avr/resources/mlmodel.avr", new File(dir, "mlmodel.avr"));
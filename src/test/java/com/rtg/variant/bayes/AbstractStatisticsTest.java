@@ -30,6 +30,12 @@
 
 package com.rtg.variant.bayes;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 import com.rtg.reference.Ploidy;
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.variant.StaticThreshold;
@@ -132,6 +138,30 @@ public abstract class AbstractStatisticsTest extends TestCase {
     assertEquals(coverage, v.isFiltered(VariantFilter.COVERAGE));
   }
 
+  public void testSaveLoad() throws IOException {
+    final Hypotheses<DescriptionCommon> hy = new MockHypotheses(0, false);
+    final Statistics<?> ss = getStatistics(hy.description());
+    incrementStatistics(ss, hy, di(0, 10, 0.0, true, false, false));
+    incrementStatistics(ss, hy, di(1, 20, 0.0, false, true, true));
+    incrementStatistics(ss, hy, di(2, 30, 0.1, true, true, false));
+    incrementStatistics(ss, hy, di(0, 0, 0.51, true, false, false));
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (final DataOutputStream out = new DataOutputStream(bos)) {
+      ss.save(out);
+    }
+    final Statistics<?> loaded = getStatistics(hy.description());
+    try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+      loaded.load(in);
+      assertEquals(-1, in.read());
+    }
+    assertEquals(ss.toString(), loaded.toString());
+    assertEquals(ss.coverage(), loaded.coverage());
+    assertEquals(ss.totalError(), loaded.totalError());
+    assertEquals(ss.ambiguousCount(), loaded.ambiguousCount());
+    assertEquals(ss.placedUnmappedCount(), loaded.placedUnmappedCount());
+    assertEquals(ss.nonRefCount(), loaded.nonRefCount());
+  }
+
   //empty state
   public void test0() {
     final VariantOutputOptions params = VariantParams.builder().create();
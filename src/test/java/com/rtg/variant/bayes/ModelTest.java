@@ -34,7 +34,11 @@ package com.rtg.variant.bayes;
 import static com.rtg.util.StringUtils.LS;
 import static com.rtg.util.StringUtils.TAB;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -594,6 +598,37 @@ public class ModelTest extends TestCase {
     checkQualityOutput(0.99, TAB + "2.0");
   }
 
+  public void testSaveLoad() throws IOException {
+    final double[] priors = {0.1, 0.4, 0.35, 0.15};
+    final PossibilityArithmetic arith = SimplePossibility.SINGLETON;
+    final MockHypotheses<DescriptionCommon> hypotheses = new MockHypotheses<>(DescriptionSnp.SINGLETON, arith, true, priors, 0);
+    final Model<DescriptionCommon> mo = new Model<>(hypotheses, new StatisticsSnp(hypotheses.description()), new NoAlleleBalance());
+    mo.increment(new MockEvidence(DescriptionSnp.SINGLETON, 0.0, new double[] {0.175, 0.25, 0.5, 0.075}, 0));
+    mo.increment(new MockEvidence(DescriptionSnp.SINGLETON, 0.0, new double[] {0.1, 0.1, 0.7, 0.1}, 0));
+    mo.freeze();
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (final DataOutputStream out = new DataOutputStream(bos)) {
+      mo.save(out);
+    }
+
+    final Model<DescriptionCommon> loaded = new Model<>(hypotheses, new StatisticsSnp(hypotheses.description()), new NoAlleleBalance());
+    loaded.load(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())));
+    for (int i = 0; i < 4; ++i) {
+      assertEquals(mo.posteriorLn0(i), loaded.posteriorLn0(i), 1e-12);
+    }
+    assertEquals(mo.statistics().toString(), loaded.statistics().toString());
+    assertEquals(mo.statistics().coverage(), loaded.statistics().coverage());
+
+    final MockHypotheses<DescriptionCommon> other = new MockHypotheses<>(DescriptionSnp.SINGLETON, arith, false, null, 0);
+    final Model<DescriptionCommon> wrong = new Model<>(other, new StatisticsSnp(other.description()), new NoAlleleBalance());
+    try {
+      wrong.load(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())));
+      fail();
+    } catch (final IOException e) {
+      assertEquals("Stored model has 4 hypotheses but 10 were expected", e.getMessage());
+    }
+  }
+
   public void testAmbiguityShortcut() {
     assertFalse(new EvidenceQ(DescriptionSnp.SINGLETON, 1, 0, 0, 0.3, 0.7, true, false, true, false, false).mapError() >= Model.AMBIGUITY_THRESHOLD);
     assertTrue(new EvidenceQ(DescriptionSnp.SINGLETON, 1, 0, 0, 0.51, 0.8, true, false, true, false, false).mapError() >= Model.AMBIGUITY_THRESHOLD);
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.rtg.variant.bayes.complex;
+
+import com.rtg.mode.DNA;
+import com.rtg.variant.MachineErrorParams;
+import com.rtg.variant.realign.AlignmentEnvironment;
+import com.rtg.variant.realign.AlignmentEnvironmentGenomeSubstitution;
+import com.rtg.variant.realign.RealignParams;
+import com.rtg.variant.realign.RealignParamsImplementation;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class ComplexScoreCacheTest extends TestCase {
+
+  private static AlignmentEnvironment read(final String bases, final double quality) {
+    final byte[] b = DNA.stringDNAtoByte(bases);
+    return new AlignmentEnvironment() {
+      @Override
+      public int start() {
+        return 0;
+      }
+
+      @Override
+      public double quality(int index) {
+        return quality;
+      }
+
+      @Override
+      public byte base(int index) {
+        return b[index];
+      }
+
+      @Override
+      public int subsequenceLength() {
+        return b.length;
+      }
+
+      @Override
+      public int templateLength() {
+        return b.length;
+      }
+
+      @Override
+      public boolean isInverted() {
+        return false;
+      }
+    };
+  }
+
+  public void testBadSize() {
+    try {
+      new ComplexScoreCache(0);
+      fail();
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testHitsAndMisses() {
+    final ComplexTemplate cot = new ComplexTemplate(DNA.stringDNAtoByte("CCCCCGGGGG"), "", 5, 5);
+    final AlignmentEnvironment a = new AlignmentEnvironmentGenomeSubstitution(0, 0, cot, DNA.stringDNAtoByte("A"));
+    final AlignmentEnvironment aa = new AlignmentEnvironmentGenomeSubstitution(0, 0, cot, DNA.stringDNAtoByte("AA"));
+    final AlignmentEnvironment none = new AlignmentEnvironmentGenomeSubstitution(0, 0, cot, new byte[0]);
+    final RealignParams params = new RealignParamsImplementation(MachineErrorParams.builder().create());
+    final ComplexScoreCache.Read r1 = new ComplexScoreCache.Read(read("CCCCCAGGGGG", 0.01));
+    // Distinct reads with the same content
+    final ComplexScoreCache.Read r2 = new ComplexScoreCache.Read(read("CCCCCAGGGGG", 0.01));
+    final ComplexScoreCache.Read r3 = new ComplexScoreCache.Read(read("CCCCCAGGGGG", 0.02));
+    final ComplexScoreCache.Read r4 = new ComplexScoreCache.Read(read("CCCCCTGGGGG", 0.01));
+    final ComplexScoreCache cache = new ComplexScoreCache(2);
+    assertNull(cache.get(new ComplexScoreCache.Key(r1, params, 0, 0, 7, a)));
+    cache.put(new ComplexScoreCache.Key(r1, params, 0, 0, 7, a), -1.5);
+    assertEquals(-1.5, cache.get(new ComplexScoreCache.Key(r1, params, 0, 0, 7, a)), 0.0);
+    assertEquals(-1.5, cache.get(new ComplexScoreCache.Key(r2, params, 0, 0, 7, a)), 0.0);
+    assertNull(cache.get(new ComplexScoreCache.Key(r3, params, 0, 0, 7, a)));
+    assertNull(cache.get(new ComplexScoreCache.Key(r4, params, 0, 0, 7, a)));
+    assertNull(cache.get(new ComplexScoreCache.Key(r1, params, 0, 0, 7, aa)));
+    assertNull(cache.get(new ComplexScoreCache.Key(r1, params, 0, 0, 8, a)));
+    assertNull(cache.get(new ComplexScoreCache.Key(r1, params, 1, 0, 7, a)));
+    assertEquals(2, cache.hits());
+    assertEquals(6, cache.misses());
+
+    cache.put(new ComplexScoreCache.Key(r4, params, 0, 0, 7, a), -2.5);
+    assertNotNull(cache.get(new ComplexScoreCache.Key(r1, params, 0, 0, 7, a)));
+    // Least recently used entry is r4, so it gets evicted
+    cache.put(new ComplexScoreCache.Key(r1, params, 0, 0, 7, none), -3.5);
+    assertEquals(2, cache.size());
+    assertNull(cache.get(new ComplexScoreCache.Key(r4, params, 0, 0, 7, a)));
+    assertEquals(-3.5, cache.get(new ComplexScoreCache.Key(r2, params, 0, 0, 7, none)), 0.0);
+  }
+
+  public void testParamsByValue() {
+    final ComplexTemplate cot = new ComplexTemplate(DNA.stringDNAtoByte("CCCCCGGGGG"), "", 5, 5);
+    final AlignmentEnvironment a = new AlignmentEnvironmentGenomeSubstitution(0, 0, cot, DNA.stringDNAtoByte("A"));
+    final ComplexScoreCache.Read r = new ComplexScoreCache.Read(read("CCCCCAGGGGG", 0.01));
+    final RealignParams p1 = new RealignParamsImplementation(MachineErrorParams.builder().create());
+    final RealignParams p2 = new RealignParamsImplementation(MachineErrorParams.builder().create());
+    final RealignParams p3 = new RealignParamsImplementation(MachineErrorParams.builder().errorDelEventRate(0.1).create());
+    final ComplexScoreCache cache = new ComplexScoreCache(10);
+    cache.put(new ComplexScoreCache.Key(r, p1, 0, 0, 7, a), -1.5);
+    assertEquals(-1.5, cache.get(new ComplexScoreCache.Key(r, p2, 0, 0, 7, a)), 0.0);
+    assertNull(cache.get(new ComplexScoreCache.Key(r, p3, 0, 0, 7, a)));
+  }
+}
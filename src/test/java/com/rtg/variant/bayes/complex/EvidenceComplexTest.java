@@ -171,6 +171,32 @@ public class EvidenceComplexTest extends TestCase {
         new Hyp(":A", -20.544));
   }
 
+  public void testScoreCache() {
+    final ArrayList<AlignmentMatch> ml = new ArrayList<>();
+    for (int k = 0; k < 20; ++k) {
+      ml.add(HypothesesComplexTest.match("A", 20)); // Distinct records with the same content
+    }
+    final VariantParams vp = HypothesesComplexTest.getVariantParams(0.5, 0.5, 0.1);
+    HypothesesComplexTest.COMPLEX_TEMPLATE.setComplexContext(HypothesesComplex.createComplexDescription(ml, HypothesesComplexTest.COMPLEX_TEMPLATE, null, vp.pruneHypotheses(), vp.maxComplexHypotheses()), LogPossibility.SINGLETON);
+    final HypothesesComplex hyp = HypothesesComplex.makeComplexHypotheses(HypothesesComplexTest.COMPLEX_TEMPLATE, false, vp);
+    final MachineErrorChooserInterface chooser = getChooser();
+    final ComplexScoreCache cache = new ComplexScoreCache(100);
+    final int n = hyp.description().size();
+    for (final AlignmentMatch match : ml) {
+      final EvidenceComplex expected = new EvidenceComplex(hyp, match, HypothesesComplexTest.COMPLEX_TEMPLATE, vp, chooser);
+      final EvidenceComplex actual = new EvidenceComplex(hyp, match, HypothesesComplexTest.COMPLEX_TEMPLATE, vp, chooser, cache);
+      assertEquals(expected.sumLn(), actual.sumLn(), 1e-12);
+      assertEquals(expected.read(), actual.read());
+      assertEquals(expected.pe(), actual.pe(), 1e-12);
+      for (int i = 0; i < n; ++i) {
+        assertEquals(expected.probability(i), actual.probability(i), 1e-12);
+      }
+    }
+    assertEquals(20 * n, cache.hits() + cache.misses());
+    assertEquals(cache.misses(), cache.size());
+    assertTrue(cache.hits() >= 19 * n);
+  }
+
   public void testEmptyMatches() {
     final ArrayList<AlignmentMatch> ml = new ArrayList<>();
     final VariantParams vp = HypothesesComplexTest.getVariantParams(0.5, 0.5, 0.1);
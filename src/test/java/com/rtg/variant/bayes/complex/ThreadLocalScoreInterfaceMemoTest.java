@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.rtg.variant.bayes.complex;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.rtg.variant.MachineErrorParams;
+import com.rtg.variant.realign.AllPaths;
+import com.rtg.variant.realign.RealignParams;
+import com.rtg.variant.realign.RealignParamsImplementation;
+import com.rtg.variant.realign.ScoreFastUnderflow;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class ThreadLocalScoreInterfaceMemoTest extends TestCase {
+
+  public void test() throws InterruptedException {
+    final ScoreInterfaceMemoInterface memo = new ThreadLocalScoreInterfaceMemo();
+    final RealignParams me = new RealignParamsImplementation(MachineErrorParams.builder().create());
+    final AllPaths s1 = memo.getScoreInterface(me);
+    assertTrue(s1 instanceof ScoreFastUnderflow);
+    assertTrue(s1 == memo.getScoreInterface(me));
+
+    final AtomicReference<AllPaths> other = new AtomicReference<>();
+    final Thread t = new Thread(() -> other.set(memo.getScoreInterface(me)));
+    t.start();
+    t.join();
+    assertTrue(other.get() instanceof ScoreFastUnderflow);
+    assertFalse(s1 == other.get());
+    assertTrue(s1 == memo.getScoreInterface(me));
+  }
+}
@@ -51,6 +51,7 @@ import com.rtg.sam.SamFilterParams;
 import com.rtg.sam.SamRegionRestriction;
 import com.rtg.sam.SamUtils;
 import com.rtg.util.InvalidParamsException;
+import com.rtg.util.PortableRandom;
 import com.rtg.util.Populator;
 import com.rtg.util.diagnostic.Diagnostic;
 import com.rtg.util.intervals.RegionRestriction;
@@ -330,4 +331,134 @@ public class ComplexCallerTest extends TestCase {
     trib2.close();
     it2.close();
   }
+
+  static final String MANY_TEMPLATE = "AGCATTTTTGAAATTCTCTTTTTGTAATATCTGCAAGTAGACATTTGGAGTACTTTGAGGCCTATTGTGGAAAAGGAAATATCTTCACAGAAAAACTAGATA";
+  static final int MANY_START = 47;
+  static final int MANY_END = 53;
+
+  /**
+   * Reads over a single region supporting many distinct alleles. The reference and the first
+   * allele are well supported, the remaining alleles are supported by a few reads each.
+   * @param header header for the records
+   * @param alleles number of distinct non-reference alleles
+   * @param depth number of reads supporting the reference and the first allele
+   * @param noiseDepth number of reads supporting each of the other alleles
+   * @param random source of alleles
+   * @return the records
+   */
+  static List<VariantAlignmentRecord> manyAlleleRecords(final SAMFileHeader header, final int alleles, final int depth, final int noiseDepth, final PortableRandom random) {
+    final String ref = MANY_TEMPLATE.substring(MANY_START, MANY_END);
+    final List<String> seen = new ArrayList<>();
+    seen.add(ref);
+    while (seen.size() <= alleles) {
+      final StringBuilder sb = new StringBuilder();
+      for (int i = MANY_START; i < MANY_END; ++i) {
+        sb.append("ACGT".charAt(random.nextInt(4)));
+      }
+      if (!seen.contains(sb.toString())) {
+        seen.add(sb.toString());
+      }
+    }
+    final List<VariantAlignmentRecord> records = new ArrayList<>();
+    final int start = MANY_START - 20;
+    final int end = MANY_END + 20;
+    for (int a = 0; a < seen.size(); ++a) {
+      final String allele = seen.get(a);
+      for (int d = 0; d < (a < 2 ? depth : noiseDepth); ++d) {
+        final SAMRecord rec = new SAMRecord(header);
+        rec.setReferenceIndex(0);
+        rec.setAlignmentStart(start + 1);
+        rec.setReadName("r" + records.size());
+        rec.setCigarString((end - start) + "M");
+        rec.setReadString(MANY_TEMPLATE.substring(start, MANY_START) + allele + MANY_TEMPLATE.substring(MANY_END, end));
+        rec.setMappingQuality(60);
+        records.add(new VariantAlignmentRecord(rec));
+      }
+    }
+    return records;
+  }
+
+  static VariantParams manyAlleleParams(final int maxComplexHypotheses) throws IOException, InvalidParamsException {
+    final VariantParamsBuilder builder = new VariantParamsBuilder();
+    builder.genomePriors(new GenomePriorParamsBuilder().create());
+    builder.machineErrorName("illumina");
+    builder.maxCoverageFilter(new StaticThreshold(1000));
+    builder.maxCoverageBypass(new StaticThreshold(1000));
+    builder.pruneHypotheses(true);
+    builder.maxComplexHypotheses(maxComplexHypotheses);
+    return builder
+      .uberHeader(makeHeaderWithSamples("sample"))
+      .genome(new MockReaderParams(ReaderTestUtils.getReaderDnaMemory(">chr21\n" + MANY_TEMPLATE)))
+      .create();
+  }
+
+  static final class ListReaderWindow implements ReaderWindow<VariantAlignmentRecord> {
+    private final List<VariantAlignmentRecord> mRecords;
+
+    ListReaderWindow(final List<VariantAlignmentRecord> records) {
+      mRecords = records;
+    }
+
+    @Override
+    public Iterator<VariantAlignmentRecord> recordsOverlap(int start, int end) {
+      return mRecords.iterator();
+    }
+
+    @Override
+    public void advanceBuffer(int end) {
+      // do nothing
+    }
+
+    @Override
+    public void flush(int start, int end) {
+      // do nothing
+    }
+
+    @Override
+    public int flushedTo() {
+      return 0;
+    }
+  }
+
+  static final class SingleRegionComplexities extends Complexities {
+    private final ComplexRegion mRegion;
+
+    SingleRegionComplexities(final ComplexRegion region) {
+      super(new ArrayList<>(), region.getSequenceName(), 0, MANY_TEMPLATE.length(), 5, 5, ComplexitiesTest.template(30), true, null);
+      mRegion = region;
+    }
+
+    @Override
+    public boolean isFixed() {
+      return true;
+    }
+
+    @Override
+    public Iterator<ComplexRegion> iterator() {
+      final List<ComplexRegion> regions = new ArrayList<>();
+      regions.add(mRegion);
+      return regions.iterator();
+    }
+  }
+
+  public void testMoreThanTwentyHypotheses() throws IOException, InvalidParamsException {
+    final VariantParams params = manyAlleleParams(30);
+    final SAMFileHeader header = new SAMFileHeader();
+    header.addSequence(new SAMSequenceRecord("chr21", MANY_TEMPLATE.length()));
+    // 25 alleles plus the reference give 26 haploid hypotheses after pruning
+    final List<VariantAlignmentRecord> records = manyAlleleRecords(header, 25, 15, 2, new PortableRandom(1));
+    // The well supported allele follows the reference reads
+    final String allele = DnaUtils.bytesToSequenceIncCG(records.get(15).getRead()).substring(MANY_START - records.get(15).getStart(), MANY_END - records.get(15).getStart());
+    final AbstractJointCallerConfiguration config = new SingletonCallerConfiguration.Configurator().getConfig(params, null);
+    final ComplexCaller caller = new ComplexCaller(params, config);
+    final ComplexRegion region = new ComplexRegion("chr21", MANY_START, MANY_END, RegionType.INTERESTING);
+    final List<Variant> calls = caller.makeComplexCalls(new SingleRegionComplexities(region), new ListReaderWindow(records), DnaUtils.encodeString(MANY_TEMPLATE), "chr21");
+    assertEquals(0, caller.getExcessiveHypothesesCount());
+    assertEquals(0, caller.getNoHypothesesCount());
+    assertTrue(region.type() != RegionType.TOO_MANY_HYPOTHESES);
+    assertEquals(1, calls.size());
+    assertEquals(MANY_START, calls.get(0).getLocus().getStart());
+    assertEquals(MANY_END, calls.get(0).getLocus().getEnd());
+    assertTrue(calls.get(0).getSample(0).getName(), calls.get(0).getSample(0).getName().contains(allele));
+  }
 }
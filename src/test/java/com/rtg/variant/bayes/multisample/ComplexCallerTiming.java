@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+
+import com.rtg.mode.DnaUtils;
+import com.rtg.util.InvalidParamsException;
+import com.rtg.util.PortableRandom;
+import com.rtg.util.Utils;
+import com.rtg.util.diagnostic.Diagnostic;
+import com.rtg.variant.VariantAlignmentRecord;
+import com.rtg.variant.VariantParams;
+import com.rtg.variant.bayes.multisample.ComplexRegion.RegionType;
+import com.rtg.variant.bayes.multisample.singleton.SingletonCallerConfiguration;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMSequenceRecord;
+
+/**
+ * Time complex calling of a single region against the number of haploid hypotheses, used to
+ * choose the default for <code>com.rtg.variant.bayes.multisample.ComplexCaller.max-hypoth</code>.
+ * Run with and without <code>com.rtg.variant.bayes.EvidenceComplex.shared-prefix</code>
+ * to compare the cost with and without sharing all-paths rows.
+ */
+public final class ComplexCallerTiming {
+
+  private ComplexCallerTiming() { }
+
+  private static void time(final int alleles, final int repeats, final PrintStream ps) throws IOException, InvalidParamsException {
+    final VariantParams params = ComplexCallerTest.manyAlleleParams(alleles + 1);
+    final SAMFileHeader header = new SAMFileHeader();
+    header.addSequence(new SAMSequenceRecord("chr21", ComplexCallerTest.MANY_TEMPLATE.length()));
+    final List<VariantAlignmentRecord> records = ComplexCallerTest.manyAlleleRecords(header, alleles, 15, 2, new PortableRandom(alleles));
+    final AbstractJointCallerConfiguration config = new SingletonCallerConfiguration.Configurator().getConfig(params, null);
+    final byte[] template = DnaUtils.encodeString(ComplexCallerTest.MANY_TEMPLATE);
+    final long t0 = System.nanoTime();
+    int excessive = 0;
+    for (int i = 0; i < repeats; ++i) {
+      final ComplexCaller caller = new ComplexCaller(params, config);
+      final ComplexRegion region = new ComplexRegion("chr21", ComplexCallerTest.MANY_START, ComplexCallerTest.MANY_END, RegionType.INTERESTING);
+      caller.makeComplexCalls(new ComplexCallerTest.SingleRegionComplexities(region), new ComplexCallerTest.ListReaderWindow(records), template, "chr21");
+      excessive += caller.getExcessiveHypothesesCount();
+    }
+    final long t1 = System.nanoTime();
+    ps.println((alleles + 1) + " hypotheses " + records.size() + " reads " + Utils.realFormat((t1 - t0) / 1.0e6 / repeats, 3) + "ms per region" + (excessive > 0 ? " (excessive hypotheses)" : ""));
+  }
+
+  /**
+   * @param args optional number of repeats per hypothesis count
+   * @throws IOException if an I/O error occurs
+   * @throws InvalidParamsException if the parameters are invalid
+   */
+  public static void main(String[] args) throws IOException, InvalidParamsException {
+    final int repeats = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    Diagnostic.setLogStream();
+    for (int k = 0; k < 2; ++k) {
+      for (final int alleles : new int[] {5, 10, 19, 29, 39, 59}) {
+        time(alleles, repeats, System.err);
+      }
+    }
+  }
+}
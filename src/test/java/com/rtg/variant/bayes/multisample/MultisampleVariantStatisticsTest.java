@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample;
+
+import java.io.IOException;
+
+import com.rtg.util.StringUtils;
+import com.rtg.util.io.TestDirectory;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class MultisampleVariantStatisticsTest extends TestCase {
+
+  public void testScoreCache() throws IOException {
+    try (TestDirectory dir = new TestDirectory()) {
+      final MultisampleVariantStatistics stats = new MultisampleVariantStatistics(dir);
+      assertFalse(stats.getStatistics().contains("Complex Score Cache"));
+      stats.setExcessiveHypothesesCount(3);
+      stats.setComplexScoreCacheCounts(1, 4);
+      final String s = stats.getStatistics();
+      final int excessive = s.indexOf("Excessive Hypotheses         : 3" + StringUtils.LS);
+      assertTrue(s, excessive >= 0);
+      assertTrue(s, s.indexOf("Complex Score Cache Hits     : 1 of 4 (25.0%)" + StringUtils.LS) > excessive);
+    }
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.rtg.util.diagnostic.NoTalkbackSlimException;
+import com.rtg.util.io.TestDirectory;
+import com.rtg.variant.Variant;
+import com.rtg.variant.VariantLocus;
+import com.rtg.variant.bayes.MockEvidence;
+import com.rtg.variant.bayes.MockHypotheses;
+import com.rtg.variant.bayes.Model;
+import com.rtg.variant.bayes.NoAlleleBalance;
+import com.rtg.variant.bayes.snp.DescriptionCommon;
+import com.rtg.variant.bayes.snp.DescriptionSnp;
+import com.rtg.variant.bayes.snp.StatisticsSnp;
+import com.rtg.variant.util.arithmetic.SimplePossibility;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import junit.framework.TestCase;
+
+/**
+ */
+public class SampleModelsTest extends TestCase {
+
+  private static final MockHypotheses<DescriptionCommon> HYPOTHESES = new MockHypotheses<>(DescriptionSnp.SINGLETON, SimplePossibility.SINGLETON, true, new double[] {0.1, 0.4, 0.35, 0.15}, 0);
+
+  private static Model<DescriptionCommon> model() {
+    return new Model<>(HYPOTHESES, new StatisticsSnp(HYPOTHESES.description()), new NoAlleleBalance());
+  }
+
+  private static Model<DescriptionCommon> model(final double... prob) {
+    return model(2, 1, prob);
+  }
+
+  private static Model<DescriptionCommon> model(final int read, final int coverage, final double... prob) {
+    final Model<DescriptionCommon> model = model();
+    for (int k = 0; k < coverage; ++k) {
+      model.increment(new MockEvidence(DescriptionSnp.SINGLETON, 0.0, prob, read));
+    }
+    model.freeze();
+    return model;
+  }
+
+  private static SAMFileHeader header() {
+    final SAMFileHeader header = new SAMFileHeader();
+    header.setSequenceDictionary(new SAMSequenceDictionary(Arrays.asList(new SAMSequenceRecord("chr1", 10000), new SAMSequenceRecord("chr2", 5000))));
+    final SAMReadGroupRecord rg = new SAMReadGroupRecord("rg1");
+    rg.setSample("s1");
+    rg.setPlatform("ILLUMINA");
+    header.addReadGroup(rg);
+    return header;
+  }
+
+  private static void checkModel(final Model<DescriptionCommon> expected, final SampleModelsReader reader) throws IOException {
+    final Model<DescriptionCommon> actual = model();
+    reader.load(actual);
+    for (int i = 0; i < expected.size(); ++i) {
+      assertEquals(expected.posteriorLn0(i), actual.posteriorLn0(i), 1e-12);
+    }
+    assertEquals(expected.statistics().toString(), actual.statistics().toString());
+  }
+
+  public void testRoundTrip() throws IOException {
+    try (TestDirectory dir = new TestDirectory()) {
+      final File f = new File(dir, "s1" + SampleModelsWriter.SUFFIX);
+      assertTrue(SampleModelsWriter.isSampleModels(f));
+      assertFalse(SampleModelsWriter.isSampleModels(new File(dir, "s1.bam")));
+      final Model<DescriptionCommon> m5 = model(0.175, 0.25, 0.5, 0.075);
+      final Model<DescriptionCommon> m250 = model(0.1, 0.1, 0.7, 0.1);
+      final Model<DescriptionCommon> m50 = model(0.7, 0.1, 0.1, 0.1);
+      try (SampleModelsWriter writer = new SampleModelsWriter(f, "s1", header())) {
+        writer.startSequence("chr1", 0);
+        final SampleModelsWriter.Chunk c2 = new SampleModelsWriter.Chunk();
+        c2.model(250, m250);
+        writer.addChunk(200, 300, c2); // Chunks supplied out of order
+        final SampleModelsWriter.Chunk c0 = new SampleModelsWriter.Chunk();
+        c0.model(5, m5);
+        c0.overflow(10, 20);
+        writer.addChunk(0, 100, c0);
+        writer.addChunk(100, 200, new SampleModelsWriter.Chunk());
+        writer.endSequence();
+        writer.startSequence("chr2", 0);
+        final SampleModelsWriter.Chunk c = new SampleModelsWriter.Chunk();
+        c.model(50, m50);
+        writer.addChunk(0, 100, c);
+        writer.endSequence();
+      }
+      assertTrue(SampleModelsWriter.indexFile(f).exists());
+
+      try (SampleModelsReader reader = new SampleModelsReader(f)) {
+        assertEquals("s1", reader.sample());
+        assertEquals("s1", reader.header().getReadGroup("rg1").getSample());
+        assertEquals(5000, reader.header().getSequence("chr2").getSequenceLength());
+
+        assertTrue(reader.seek("chr1", 0));
+        assertFalse(reader.isOverflow());
+        assertEquals(5, reader.position());
+        checkModel(m5, reader);
+        assertTrue(reader.next());
+        assertTrue(reader.isOverflow());
+        assertEquals(10, reader.position());
+        assertEquals(20, reader.end());
+        assertTrue(reader.next());
+        assertEquals(250, reader.position());
+        checkModel(m250, reader);
+        assertFalse(reader.next());
+        assertFalse(reader.hasRecord());
+
+        assertTrue(reader.seek("chr1", 15));
+        assertTrue(reader.isOverflow());
+        assertTrue(reader.seek("chr1", 20));
+        assertEquals(250, reader.position());
+        assertTrue(reader.seek("chr1", 250));
+        assertEquals(250, reader.position());
+        assertFalse(reader.seek("chr1", 251));
+
+        assertTrue(reader.seek("chr2", 0));
+        assertEquals(50, reader.position());
+        checkModel(m50, reader);
+        assertFalse(reader.seek("chr3", 0));
+      }
+    }
+  }
+
+  public void testReferenceModelsAndTriggers() throws IOException {
+    try (TestDirectory dir = new TestDirectory()) {
+      final File f = new File(dir, "s1" + SampleModelsWriter.SUFFIX);
+      final double[] ref = {0.97, 0.01, 0.01, 0.01};
+      final Model<DescriptionCommon> m10 = model(0, 8, ref);
+      final Model<DescriptionCommon> m11 = model(0, 9, ref);
+      final Variant insert = new Variant(new VariantLocus("chr1", 11, 11));
+      insert.setInteresting();
+      insert.setIndel(3);
+      final Variant delete = new Variant(new VariantLocus("chr1", 12, 13));
+      delete.setInteresting();
+      delete.setIndel(2);
+      final Variant clip = new Variant(new VariantLocus("chr1", 14, 14));
+      clip.setInteresting();
+      clip.setSoftClip(7, Variant.SoftClipSide.LEFT);
+      try (SampleModelsWriter writer = new SampleModelsWriter(f, "s1", header())) {
+        writer.startSequence("chr1", 0);
+        final SampleModelsWriter.Chunk c = new SampleModelsWriter.Chunk();
+        c.model(10, m10);
+        c.trigger(insert);
+        c.model(11, m11);
+        c.trigger(delete);
+        c.trigger(clip);
+        writer.addChunk(0, 100, c);
+        writer.endSequence();
+      }
+      try (SampleModelsReader reader = new SampleModelsReader(f)) {
+        // Models with only reference evidence are kept individually and exactly
+        assertTrue(reader.seek("chr1", 10));
+        assertEquals(10, reader.position());
+        assertEquals(11, reader.end());
+        final Model<DescriptionCommon> actual = model();
+        reader.load(actual);
+        for (int i = 0; i < m10.size(); ++i) {
+          assertEquals(m10.posteriorLn0(i), actual.posteriorLn0(i), 0.0);
+        }
+        assertEquals(m10.statistics().toString(), actual.statistics().toString());
+        assertTrue(reader.next());
+        assertTrue(reader.isTrigger());
+        assertFalse(reader.isOverflow());
+        checkTrigger(insert, reader.trigger("chr1"));
+        assertTrue(reader.next());
+        assertFalse(reader.isTrigger());
+        assertEquals(11, reader.position());
+        checkModel(m11, reader);
+        assertTrue(reader.next());
+        checkTrigger(delete, reader.trigger("chr1"));
+
+        // An insertion or soft clip trigger does not span any position, but is found from its own position
+        assertTrue(reader.seek("chr1", 14));
+        assertTrue(reader.isTrigger());
+        final Variant v = reader.trigger("chr1");
+        checkTrigger(clip, v);
+        assertEquals(Variant.SoftClipSide.LEFT, v.getSoftClipSide());
+        assertFalse(reader.next());
+      }
+    }
+  }
+
+  private static void checkTrigger(final Variant expected, final Variant actual) {
+    assertEquals(expected.getLocus().getSequenceName(), actual.getLocus().getSequenceName());
+    assertEquals(expected.getLocus().getStart(), actual.getLocus().getStart());
+    assertEquals(expected.getLocus().getEnd(), actual.getLocus().getEnd());
+    assertTrue(actual.isInteresting());
+    assertEquals(expected.isIndel(), actual.isIndel());
+    assertEquals(expected.isSoftClip(), actual.isSoftClip());
+    assertEquals(expected.getIndelLength(), actual.getIndelLength());
+  }
+
+  public void testUnsuppliedChunk() throws IOException {
+    try (TestDirectory dir = new TestDirectory()) {
+      try (SampleModelsWriter writer = new SampleModelsWriter(new File(dir, "s1" + SampleModelsWriter.SUFFIX), "s1", header())) {
+        writer.startSequence("chr1", 0);
+        writer.addChunk(100, 200, new SampleModelsWriter.Chunk());
+        try {
+          writer.endSequence();
+          fail();
+        } catch (final IllegalStateException e) {
+          assertEquals("Chunk starting at 0 was never supplied", e.getMessage());
+        }
+      }
+    }
+  }
+
+  public void testBadFiles() throws IOException {
+    try (TestDirectory dir = new TestDirectory()) {
+      final File f = new File(dir, "s1" + SampleModelsWriter.SUFFIX);
+      try (DataOutputStream out = new DataOutputStream(new BlockCompressedOutputStream(f))) {
+        out.writeInt(42);
+      }
+      try {
+        new SampleModelsReader(f).close();
+        fail();
+      } catch (final NoTalkbackSlimException e) {
+        assertTrue(e.getMessage(), e.getMessage().startsWith("Index not found for sample models file"));
+      }
+      try (DataOutputStream out = new DataOutputStream(new FileOutputStream(SampleModelsWriter.indexFile(f)))) {
+        out.writeInt(SampleModelsWriter.MAGIC);
+        out.writeInt(0);
+      }
+      try {
+        new SampleModelsReader(f).close();
+        fail();
+      } catch (final NoTalkbackSlimException e) {
+        assertEquals("File " + f + " is not a sample models file", e.getMessage());
+      }
+    }
+  }
+}
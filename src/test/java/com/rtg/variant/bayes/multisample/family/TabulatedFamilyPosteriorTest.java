@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample.family;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.rtg.reference.Ploidy;
+import com.rtg.relation.Family;
+import com.rtg.util.InvalidParamsException;
+import com.rtg.util.PortableRandom;
+import com.rtg.variant.GenomePriorParams;
+import com.rtg.variant.bayes.Code;
+import com.rtg.variant.bayes.CodeDiploid;
+import com.rtg.variant.bayes.CodeHaploid;
+import com.rtg.variant.bayes.Description;
+import com.rtg.variant.bayes.ModelInterface;
+import com.rtg.variant.bayes.multisample.HaploidDiploidHypotheses;
+import com.rtg.variant.bayes.multisample.HypothesisScore;
+import com.rtg.variant.bayes.snp.DescriptionSnp;
+import com.rtg.variant.bayes.snp.EvidenceQ;
+import com.rtg.variant.bayes.snp.HypothesesNone;
+import com.rtg.variant.bayes.snp.HypothesesPrior;
+
+/**
+ */
+public class TabulatedFamilyPosteriorTest extends FamilyPosteriorTest {
+
+  @Override
+  protected AbstractFamilyPosterior getFamilyPosterior(List<ModelInterface<?>> models, Family family) {
+    final List<ModelInterface<?>> list = new ArrayList<>(models);
+    for (ModelInterface<?> model : models) {
+      model.freeze();
+    }
+    return new TabulatedFamilyPosterior(family, mPriors, list, new HaploidDiploidHypotheses<>(HypothesesNone.SINGLETON, null, mHypotheses));
+  }
+
+  @Override
+  protected AbstractFamilyPosterior getFamilyPosterior(final GenomePriorParams priors, final HaploidDiploidHypotheses<HypothesesPrior<Description>> hdh, final List<ModelInterface<?>> models, final Family family) {
+    for (ModelInterface<?> model : models) {
+      model.freeze();
+    }
+    return new TabulatedFamilyPosterior(family, priors, models, hdh);
+  }
+
+  public void testTableMatchesDirect() {
+    final Code code = new CodeDiploid(4);
+    final double refPrior = Math.log(1e-8);
+    final double nonRefPrior = Math.log(1e-9);
+    final MendelianAlleleProbability map = MendelianAlleleProbabilityFactory.COMBINED.getMendelianAlleleProbability(Ploidy.DIPLOID, Ploidy.DIPLOID, Ploidy.DIPLOID, refPrior, nonRefPrior, 0);
+    final MendelianTransmissionTable table = MendelianTransmissionTable.get(Ploidy.DIPLOID, Ploidy.DIPLOID, Ploidy.DIPLOID, code, 10, 10, 10, 0, refPrior, nonRefPrior);
+    assertNotNull(table);
+    assertTrue(table == MendelianTransmissionTable.get(Ploidy.DIPLOID, Ploidy.DIPLOID, Ploidy.DIPLOID, new CodeDiploid(4), 10, 10, 10, 0, refPrior, nonRefPrior));
+    for (int f = 0; f < 10; ++f) {
+      for (int m = 0; m < 10; ++m) {
+        final int offset = table.offset(f, m);
+        for (int c = 0; c < 10; ++c) {
+          assertEquals(map.probabilityLn(code, f, m, c), table.probabilityLn()[offset + c]);
+          assertEquals(map.isDenovo(code, f, m, c), table.denovo()[offset + c]);
+        }
+      }
+    }
+  }
+
+  public void testTableMissingParent() {
+    final Code code = new CodeHaploid(4);
+    final MendelianAlleleProbability map = MendelianAlleleProbabilityFactory.COMBINED.getMendelianAlleleProbability(Ploidy.NONE, Ploidy.HAPLOID, Ploidy.HAPLOID, 0, 0, 1);
+    final MendelianTransmissionTable table = MendelianTransmissionTable.get(Ploidy.NONE, Ploidy.HAPLOID, Ploidy.HAPLOID, code, 0, 4, 4, 1, 0, 0);
+    assertNotNull(table);
+    for (int m = 0; m < 4; ++m) {
+      final int offset = table.offset(FamilyPosterior.MISSING_HYPOTHESIS, m);
+      assertEquals(m * 4, offset);
+      for (int c = 0; c < 4; ++c) {
+        assertEquals(map.probabilityLn(code, FamilyPosterior.MISSING_HYPOTHESIS, m, c), table.probabilityLn()[offset + c]);
+      }
+    }
+  }
+
+  public void testTableTooLarge() {
+    final Code code = new CodeDiploid(100);
+    assertNull(MendelianTransmissionTable.get(Ploidy.DIPLOID, Ploidy.DIPLOID, Ploidy.DIPLOID, code, code.size(), code.size(), code.size(), 0, 0, 0));
+  }
+
+  private void addEvidence(final PortableRandom r, final ModelInterface<?> model, final int a, final int b) {
+    final int count = 1 + r.nextInt(20);
+    for (int i = 0; i < count; ++i) {
+      model.increment(new EvidenceQ(DescriptionSnp.SINGLETON, r.nextBoolean() ? a : b, 0, 0, 0.1, r.nextDouble(), true, false, true, false, false));
+    }
+    model.freeze();
+  }
+
+  private void checkRandom(final PortableRandom r) throws InvalidParamsException {
+    final List<ModelInterface<?>> models = new ArrayList<>();
+    final int numChildren = 1 + r.nextInt(5);
+    final int fa = r.nextInt(4);
+    final int fb = r.nextInt(4);
+    final int ma = r.nextInt(4);
+    final int mb = r.nextInt(4);
+    final ModelInterface<?> father = getModel();
+    addEvidence(r, father, fa, fb);
+    models.add(father);
+    final ModelInterface<?> mother = getModel();
+    addEvidence(r, mother, ma, mb);
+    models.add(mother);
+    final List<String> children = new ArrayList<>();
+    for (int c = 0; c < numChildren; ++c) {
+      final ModelInterface<?> child = getModel();
+      // Occasionally throw in a de novo allele
+      addEvidence(r, child, r.nextInt(10) == 0 ? r.nextInt(4) : r.nextBoolean() ? fa : fb, r.nextBoolean() ? ma : mb);
+      models.add(child);
+      children.add("c" + c);
+    }
+
+    final GenomePriorParams priors = getGenomePriorParams();
+    final Family family = FamilyCallerTest.makeFamily("f", "m", children.toArray(new String[0]));
+    final AbstractFamilyPosterior fast = new FastFamilyPosterior(family, priors, models, new HaploidDiploidHypotheses<>(HypothesesNone.SINGLETON, null, mHypotheses));
+    final AbstractFamilyPosterior tab = new TabulatedFamilyPosterior(family, priors, models, new HaploidDiploidHypotheses<>(HypothesesNone.SINGLETON, null, mHypotheses));
+    checkScore(fast.bestFather(), tab.bestFather());
+    checkScore(fast.bestMother(), tab.bestMother());
+    for (int i = 0; i < numChildren; ++i) {
+      checkScore(fast.bestChild(i), tab.bestChild(i));
+    }
+    assertEquals(fast.getNonIdentityPosterior(), tab.getNonIdentityPosterior(), 1E-9);
+  }
+
+  private void checkScore(final HypothesisScore expected, final HypothesisScore actual) {
+    assertEquals(expected.hypothesis(), actual.hypothesis());
+    assertEquals(expected.isDeNovo(), actual.isDeNovo());
+    assertEquals(expected.genotypeMeasure().bestPosterior(), actual.genotypeMeasure().bestPosterior(), 1E-9);
+  }
+
+  public void testMatchesFast() throws Exception {
+    final PortableRandom r = new PortableRandom(42);
+    for (int k = 0; k < 20; ++k) {
+      checkRandom(r);
+    }
+  }
+}
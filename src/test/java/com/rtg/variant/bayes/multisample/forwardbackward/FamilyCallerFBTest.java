@@ -31,11 +31,13 @@ package com.rtg.variant.bayes.multisample.forwardbackward;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
 import com.rtg.relation.Family;
 import com.rtg.relation.GenomeRelationships;
+import com.rtg.relation.MultiFamilyOrdering;
 import com.rtg.relation.PedigreeException;
 import com.rtg.util.InvalidParamsException;
 import com.rtg.variant.GenomePriorParams;
@@ -242,6 +244,138 @@ public class FamilyCallerFBTest extends FamilyCallerTest {
 
   }
 
+  /*
+      Fathers left, Mothers right, E has children with two mates
+
+          A---B
+            |
+        C---D
+          |
+    I-----E-----F
+       |    | |
+       J    G H
+   */
+  public void testBlockMatchesSinglePositions() throws InvalidParamsException, PedigreeException {
+    final GenomePriorParams priors = new GenomePriorParamsBuilder().denovoRef(0.01).denovoNonRef(0.00001).create();
+    final GenomeRelationships pedigree = new GenomeRelationships();
+    for (final String male : new String[] {"A", "C", "E", "G", "J"}) {
+      pedigree.addGenome(male, GenomeRelationships.SEX_MALE);
+    }
+    for (final String female : new String[] {"B", "D", "F", "H", "I"}) {
+      pedigree.addGenome(female, GenomeRelationships.SEX_FEMALE);
+    }
+    pedigree.addParentChild("A", "D");
+    pedigree.addParentChild("B", "D");
+    pedigree.addParentChild("C", "E");
+    pedigree.addParentChild("D", "E");
+    pedigree.addParentChild("E", "G");
+    pedigree.addParentChild("F", "G");
+    pedigree.addParentChild("E", "H");
+    pedigree.addParentChild("F", "H");
+    pedigree.addParentChild("E", "J");
+    pedigree.addParentChild("I", "J");
+    final Set<Family> families = Family.getFamilies(pedigree, false, null);
+    final List<String> calledGenomes = new ArrayList<>();
+    for (Family family : families) {
+      for (String member : family.getMembers()) {
+        if (!calledGenomes.contains(member)) {
+          calledGenomes.add(member);
+        }
+      }
+    }
+    for (Family family : families) {
+      family.setSampleIds(calledGenomes);
+    }
+    final FamilyCallerFB ffb = new FamilyCallerFB(VariantParams.builder().genomePriors(priors).create(), MultiFamilyOrdering.orderFamiliesAndSetMates(families).toArray(new Family[0]));
+
+    final PossibilityArithmetic arith = LogApproximatePossibility.SINGLETON;
+    final Description desc = new DescriptionCommon("A", "C");
+    final HypothesesPrior<Description> none = new HypothesesNone<>(DescriptionNone.SINGLETON, arith, 0);
+    final HypothesesPrior<Description> haploid = new AbstractFamilyPosteriorTest.MockHyp(desc, arith, true, new double[] {0.7, 0.3});
+    final HypothesesPrior<Description> diploid = new AbstractFamilyPosteriorTest.MockHyp(desc, arith, false, new double[] {0.80, 0.10, 0.10});
+    final HaploidDiploidHypotheses<HypothesesPrior<Description>> hdh = new HaploidDiploidHypotheses<>(none, haploid, diploid, false, null);
+    final double[][] posteriors = {
+      {0.999, 0.0001, 0.0009},
+      {0.60, 0.25, 0.15},
+      {0.00005, 0.00005, 0.9999},
+      {0.1, 0.2, 0.7},
+      {0.45, 0.20, 0.35},
+    };
+    final List<List<ModelInterface<?>>> block = new ArrayList<>();
+    final List<PriorContainer<HypothesesPrior<Description>>> blockPriors = new ArrayList<>();
+    final List<HypothesisScores> single = new ArrayList<>();
+    for (int p = 0; p < posteriors.length; ++p) {
+      final List<ModelInterface<?>> models = new ArrayList<>();
+      for (int i = 0; i < calledGenomes.size(); ++i) {
+        models.add(new AbstractFamilyPosteriorTest.MockModel(diploid, posteriors[(p + i) % posteriors.length]));
+      }
+      block.add(models);
+      blockPriors.add(new PriorContainer<>(hdh, ffb.makeInitialBs(models)));
+      single.add(ffb.getBestScores(models, new PriorContainer<>(hdh, ffb.makeInitialBs(models))));
+    }
+    final HypothesisScores[] scores = ffb.getBestScores(block, blockPriors);
+    assertEquals(posteriors.length, scores.length);
+    for (int p = 0; p < scores.length; ++p) {
+      final HypothesisScores expected = single.get(p);
+      assertEquals(expected.isInteresting(), scores[p].isInteresting());
+      assertEquals(expected.getNonIdentityPosterior(), scores[p].getNonIdentityPosterior(), 1e-10);
+      for (int i = 0; i < calledGenomes.size(); ++i) {
+        final HypothesisScore e = expected.getScores()[i];
+        final HypothesisScore a = scores[p].getScores()[i];
+        final String label = "Position: " + p + " Sample: " + calledGenomes.get(i);
+        assertEquals(label, e.hypothesis(), a.hypothesis());
+        assertEquals(label, e.posterior(), a.posterior(), 1e-10);
+        assertEquals(label, e.nonIdentityPosterior(), a.nonIdentityPosterior(), 1e-10);
+        assertEquals(label, e.isDeNovo(), a.isDeNovo());
+        if (e.getDeNovoPosterior() == null) {
+          assertNull(label, a.getDeNovoPosterior());
+        } else {
+          assertEquals(label, e.getDeNovoPosterior(), a.getDeNovoPosterior(), 1e-10);
+        }
+        final BContainer eb = expected.getBs()[i];
+        final BContainer ab = scores[p].getBs()[i];
+        assertEquals(label, eb.size(), ab.size());
+        for (int f = 0; f < eb.size(); ++f) {
+          for (int h = 0; h < eb.getB(f).size(); ++h) {
+            assertEquals(label, eb.getB(f).p(h), ab.getB(f).p(h), 1e-10);
+          }
+        }
+      }
+    }
+  }
+
+  public void testBlockRejectsDifferentHypotheses() throws InvalidParamsException {
+    final GenomePriorParams priors = new GenomePriorParamsBuilder().create();
+    final PossibilityArithmetic arith = SimplePossibility.SINGLETON;
+    final Description desc = new DescriptionCommon("A", "C");
+    final HypothesesPrior<Description> none = new HypothesesNone<>(DescriptionNone.SINGLETON, arith, 0);
+    final HypothesesPrior<Description> haploid = new AbstractFamilyPosteriorTest.MockHyp(desc, arith, true, new double[] {0.7, 0.3});
+    final HypothesesPrior<Description> diploid = new AbstractFamilyPosteriorTest.MockHyp(desc, arith, false, new double[] {0.20, 0.70, 0.10});
+    final HaploidDiploidHypotheses<HypothesesPrior<Description>> hdh = new HaploidDiploidHypotheses<>(none, haploid, diploid, false, null);
+    final Family family = AbstractFamilyPosteriorTest.makeFamilySex(GenomeRelationships.SEX_MALE);
+    final FamilyCallerFB ffb = new FamilyCallerFB(VariantParams.builder().genomePriors(priors).create(), family);
+    final List<List<ModelInterface<?>>> block = new ArrayList<>();
+    final List<PriorContainer<HypothesesPrior<Description>>> blockPriors = new ArrayList<>();
+    final List<ModelInterface<?>> diploidSon = new ArrayList<>();
+    diploidSon.add(new AbstractFamilyPosteriorTest.MockModel(diploid, new double[] {0.1, 0.2, 0.7}));
+    diploidSon.add(new AbstractFamilyPosteriorTest.MockModel(diploid, new double[] {0.60, 0.25, 0.15}));
+    diploidSon.add(new AbstractFamilyPosteriorTest.MockModel(diploid, new double[] {0.65, 0.15, 0.20}));
+    final List<ModelInterface<?>> haploidSon = new ArrayList<>();
+    haploidSon.add(new AbstractFamilyPosteriorTest.MockModel(haploid, new double[] {0.4, 0.6}));
+    haploidSon.add(new AbstractFamilyPosteriorTest.MockModel(diploid, new double[] {0.60, 0.25, 0.15}));
+    haploidSon.add(new AbstractFamilyPosteriorTest.MockModel(haploid, new double[] {0.75, 0.25}));
+    for (final List<ModelInterface<?>> models : Arrays.asList(diploidSon, haploidSon)) {
+      block.add(models);
+      blockPriors.add(new PriorContainer<>(hdh, ffb.makeInitialBs(models)));
+    }
+    try {
+      ffb.getBestScores(block, blockPriors);
+      fail();
+    } catch (final IllegalArgumentException e) {
+      assertEquals("Hypotheses differ within block for sample 0", e.getMessage());
+    }
+  }
+
   // Simple NaN / Infinity check
   public static void checkScores(HypothesisScore[] scores) {
     for (HypothesisScore score : scores) {
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample.lineage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.rtg.util.PortableRandom;
+import com.rtg.variant.bayes.MockModel;
+import com.rtg.variant.bayes.ModelInterface;
+import com.rtg.variant.bayes.snp.DescriptionCommon;
+import com.rtg.variant.bayes.snp.HypothesesPrior;
+import com.rtg.variant.bayes.snp.StatisticsSnp;
+import com.rtg.variant.util.arithmetic.SimplePossibility;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class BatchForwardBackwardLineageTest extends TestCase {
+
+  private static Lineage siblings() {
+    final Lineage.LineageBuilder lb = new Lineage.LineageBuilder();
+    lb.add(0, 1);
+    lb.add(1, 2);
+    lb.add(2, 3);
+    lb.add(1, 4);
+    lb.add(1, 5);
+    lb.deNovoPriorDefault(0.001);
+    lb.deNovoPrior(4, 0.01);
+    return lb.create();
+  }
+
+  private static double[] random(final PortableRandom r, final int size) {
+    final double[] res = new double[size];
+    for (int k = 0; k < size; ++k) {
+      res[k] = r.nextDouble() < 0.2 ? 0.001 * r.nextDouble() : r.nextDouble();
+    }
+    return res;
+  }
+
+  private static double[] normalize(final double[] ln) {
+    double max = Double.NEGATIVE_INFINITY;
+    for (final double v : ln) {
+      max = Math.max(max, v);
+    }
+    double sum = 0;
+    final double[] res = new double[ln.length];
+    for (int k = 0; k < ln.length; ++k) {
+      res[k] = Math.exp(ln[k] - max);
+      sum += res[k];
+    }
+    for (int k = 0; k < ln.length; ++k) {
+      res[k] /= sum;
+    }
+    return res;
+  }
+
+  private static double[] values(final Factor f, final Variable v) {
+    final Factor normal = DefaultFactor.asNormalized(f);
+    final double[] res = new double[v.size()];
+    for (int k = 0; k < res.length; ++k) {
+      res[k] = normal.p(Collections.singletonMap(v, k));
+    }
+    return res;
+  }
+
+  private static double[] column(final double[] ln, final int size, final int positions, final int p) {
+    final double[] res = new double[size];
+    for (int k = 0; k < size; ++k) {
+      res[k] = ln[k * positions + p];
+    }
+    return normalize(res);
+  }
+
+  private void check(final HypothesesPrior<DescriptionCommon> h) {
+    final PortableRandom r = new PortableRandom(3);
+    final Lineage lineage = siblings();
+    final int positions = 4;
+    final List<List<ModelInterface<?>>> block = new ArrayList<>();
+    final List<com.rtg.variant.bayes.Factor<?>[]> priors = new ArrayList<>();
+    for (int p = 0; p < positions; ++p) {
+      final List<ModelInterface<?>> models = new ArrayList<>();
+      for (int k = 0; k < 6; ++k) {
+        models.add(new MockModel<>(h.hypotheses(), new StatisticsSnp(h.description()), random(r, h.size())));
+      }
+      block.add(models);
+      final com.rtg.variant.bayes.Factor<?>[] prior = new com.rtg.variant.bayes.Factor<?>[models.size()];
+      prior[0] = h;
+      priors.add(prior);
+    }
+    final BatchForwardBackwardLineage batch = new BatchForwardBackwardLineage(lineage, block, priors);
+    assertEquals(positions, batch.positions());
+    for (int p = 0; p < positions; ++p) {
+      final Factor[] rootGenotypePrior = new Factor[6];
+      rootGenotypePrior[0] = new ModelFactor(new Variable("G0", h.size()), h);
+      final ForwardBackwardLineage fb = new ForwardBackwardLineage(SimplePossibility.SINGLETON, lineage, rootGenotypePrior, block.get(p));
+      for (int k = 0; k < 6; ++k) {
+        final double[] expected = values(fb.posterior(k), new Variable("G" + k, h.size()));
+        final double[] actual = column(batch.posteriorLn(k), h.size(), positions, p);
+        for (int i = 0; i < expected.length; ++i) {
+          assertEquals(expected[i], actual[i], 1e-9);
+        }
+        if (k > 0) {
+          final DefaultFactor marginal = DefaultFactor.asNormalized(fb.posteriorDeNovo(k).marginal(Collections.singleton(ForwardBackwardLineage.DE_NOVO)));
+          final double[] deNovo = column(batch.deNovoLn(k), 2, positions, p);
+          final Map<Variable, Integer> values = new HashMap<>();
+          for (int n = 0; n < 2; ++n) {
+            values.put(ForwardBackwardLineage.DE_NOVO, n);
+            assertEquals(marginal.p(values), deNovo[n], 1e-9);
+          }
+        }
+      }
+    }
+  }
+
+  public void testHaploid() {
+    check(new HypothesesPrior<>(new DescriptionCommon("A", "B", "C"), SimplePossibility.SINGLETON, new double[] {0.2, 0.5, 0.3}, true, 0));
+  }
+
+  public void testDiploid() {
+    check(new HypothesesPrior<>(new DescriptionCommon("A", "B", "C"), SimplePossibility.SINGLETON, new double[] {0.1, 0.1, 0.2, 0.1, 0.4, 0.1}, false, 0));
+  }
+
+  public void testRootHasNoDeNovo() {
+    final Lineage lineage = siblings();
+    final HypothesesPrior<DescriptionCommon> h = new HypothesesPrior<>(new DescriptionCommon("A", "B"), SimplePossibility.SINGLETON, new double[] {0.6, 0.4}, true, 0);
+    final List<ModelInterface<?>> models = new ArrayList<>();
+    for (int k = 0; k < 6; ++k) {
+      models.add(new MockModel<>(h.hypotheses(), new StatisticsSnp(h.description()), new double[] {0.5, 0.5}));
+    }
+    final com.rtg.variant.bayes.Factor<?>[] prior = new com.rtg.variant.bayes.Factor<?>[models.size()];
+    prior[0] = h;
+    final BatchForwardBackwardLineage batch = new BatchForwardBackwardLineage(lineage, Collections.singletonList(models), Collections.singletonList(prior));
+    try {
+      batch.deNovoLn(0);
+      fail();
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testCoverageRejected() {
+    final Lineage lineage = new Lineage.LineageBuilder().add(0, 1).coverage(true).create();
+    final HypothesesPrior<DescriptionCommon> h = new HypothesesPrior<>(new DescriptionCommon("A", "B"), SimplePossibility.SINGLETON, new double[] {0.6, 0.4}, true, 0);
+    final List<ModelInterface<?>> models = new ArrayList<>();
+    for (int k = 0; k < 2; ++k) {
+      models.add(new MockModel<>(h.hypotheses(), new StatisticsSnp(h.description()), new double[] {0.5, 0.5}));
+    }
+    final com.rtg.variant.bayes.Factor<?>[] prior = new com.rtg.variant.bayes.Factor<?>[models.size()];
+    prior[0] = h;
+    try {
+      new BatchForwardBackwardLineage(lineage, Collections.singletonList(models), Collections.singletonList(prior));
+      fail();
+    } catch (final IllegalArgumentException e) {
+      assertEquals("Copy number coverage is not supported in blocks", e.getMessage());
+    }
+  }
+}
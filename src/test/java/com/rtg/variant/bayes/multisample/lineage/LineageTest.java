@@ -142,4 +142,45 @@ public class LineageTest extends TestCase {
     final AbstractMultisampleCaller.ComparisonResult comparisonResult = lineage.makeSamples(models, haploidDiploid);
     assertNull(comparisonResult);
   }
+
+  public void testBlockMatchesSinglePositions() {
+    final VariantParams vParams = VariantParams.builder().callLevel(VariantOutputLevel.INTERESTING).create();
+    final Lineage.LineageBuilder lb = new Lineage.LineageBuilder();
+    lb.params(vParams);
+    lb.deNovoPriorDefault(0.0001);
+    lb.add(0, 1);
+    lb.add(1, 2);
+    lb.add(2, 3);
+    lb.add(3, 4);
+    final Lineage lineage = lb.create();
+    final DescriptionCommon descriptionCommon = new DescriptionCommon("A", "B", "C");
+    final PossibilityArithmetic arithmetic = SimplePossibility.SINGLETON;
+    final HypothesesPrior<Description> h = new HypothesesPrior<>(descriptionCommon, arithmetic, new double[]{0.2, 0.5, 0.3}, true, 0);
+    final HypothesesPrior<Description> hypDiploid = new HypothesesPrior<>(descriptionCommon, arithmetic, new double[]{0.2, 0.5, 0.3}, false, 0);
+    final HaploidDiploidHypotheses<HypothesesPrior<Description>> haploidDiploid = new HaploidDiploidHypotheses<>(HypothesesNone.SINGLETON, h, hypDiploid);
+    final double[][][] posteriors = {
+      {{0.0005, 0.0005, 0.999}, {0.0005, 0.0005, 0.999}, {0.999, 0.0005, 0.0005}, {0.999, 0.0009, 0.0001}, {0.999, 0.0009, 0.0001}},
+      {{0.999, 0.0005, 0.0005}, {0.999, 0.0005, 0.0005}, {0.999, 0.0005, 0.0005}, {0.999, 0.0009, 0.0001}, {0.999, 0.0009, 0.0001}},
+    };
+    final List<List<ModelInterface<?>>> block = new ArrayList<>();
+    final List<HaploidDiploidHypotheses<HypothesesPrior<Description>>> hypotheses = new ArrayList<>();
+    for (final double[][] position : posteriors) {
+      final List<ModelInterface<?>> models = new ArrayList<>();
+      for (final double[] p : position) {
+        models.add(new MockModel<>(h.hypotheses(), new StatisticsSnp(h.description()), p));
+      }
+      block.add(models);
+      hypotheses.add(haploidDiploid);
+    }
+    final AbstractMultisampleCaller.ComparisonResult[] results = lineage.makeSamples(block, hypotheses);
+    assertEquals(2, results.length);
+    assertNull(results[1]);
+    final AbstractMultisampleCaller.ComparisonResult single = lineage.makeSamples(block.get(0), haploidDiploid);
+    assertNotNull(results[0]);
+    assertTrue(results[0].isInteresting());
+    for (int i = 0; i < single.getSamples().length; ++i) {
+      assertEquals("Sample: " + i, single.getSamples()[i].getName(), results[0].getSamples()[i].getName());
+      assertEquals("Sample: " + i, single.getSamples()[i].isDeNovo(), results[0].getSamples()[i].isDeNovo());
+    }
+  }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample.population;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.rtg.launcher.AbstractCli;
+import com.rtg.launcher.AbstractCliTest;
+import com.rtg.util.TestUtils;
+import com.rtg.util.io.TestDirectory;
+import com.rtg.util.test.FileHelper;
+
+/**
+ * Tests the corresponding class.
+ */
+public class AlleleCountsCompileCliTest extends AbstractCliTest {
+
+  @Override
+  protected AbstractCli getCli() {
+    return new AlleleCountsCompileCli();
+  }
+
+  public void testHelp() {
+    checkHelp("Compiles a population priors VCF",
+      "VCF file containing population allele counts",
+      "output allele counts store file name");
+  }
+
+  public void testErrors() {
+    TestUtils.containsAll(checkHandleFlagsErr(), "You must provide values for", "-i FILE", "-o FILE");
+  }
+
+  public void testOutputName() {
+    assertEquals("x" + AlleleCountsStore.SUFFIX, AlleleCountsCompileCli.outputFile(new File("x")).getPath());
+    assertEquals("y" + AlleleCountsStore.SUFFIX, AlleleCountsCompileCli.outputFile(new File("y" + AlleleCountsStore.SUFFIX)).getPath());
+  }
+
+  public void testValid() throws IOException {
+    try (TestDirectory dir = new TestDirectory()) {
+      final File vcf = FileHelper.stringToGzFile("##fileformat=VCFv4.1\n"
+        + "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tS1\n"
+        + "1\t5\t.\tA\tC\t100\tPASS\t.\tGT\t0/1\n", new File(dir, "pop.vcf.gz"));
+      final File output = new File(dir, "pop");
+      checkMainInitOk("-i", vcf.getPath(), "-o", output.getPath());
+      final File store = new File(dir, "pop" + AlleleCountsStore.SUFFIX);
+      assertTrue(store.exists());
+      try (AlleleCountsFileReader reader = AlleleCountsFileReader.openAlleleCountReader(store, null)) {
+        assertTrue(reader.next());
+        assertEquals(1, reader.getCurrent().count("A"));
+        assertEquals(1, reader.getCurrent().count("C"));
+        assertFalse(reader.next());
+      }
+    }
+  }
+}
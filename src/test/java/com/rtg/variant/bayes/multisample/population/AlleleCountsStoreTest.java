@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample.population;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.rtg.sam.SamRangeUtils;
+import com.rtg.tabix.TabixIndexer;
+import com.rtg.util.diagnostic.NoTalkbackSlimException;
+import com.rtg.util.intervals.RangeList;
+import com.rtg.util.intervals.RangeMeta;
+import com.rtg.util.intervals.ReferenceRanges;
+import com.rtg.util.intervals.RegionRestriction;
+import com.rtg.util.intervals.SimpleRangeMeta;
+import com.rtg.util.io.TestDirectory;
+import com.rtg.util.test.FileHelper;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class AlleleCountsStoreTest extends TestCase {
+
+  private static final String VCF = "##fileformat=VCFv4.1\n"
+    + "##INFO=<ID=AC,Number=.,Type=Integer,Description=\"Alternate Allele Count\">\n"
+    + "##INFO=<ID=AN,Number=1,Type=Integer,Description=\"Total Allele Count\">\n"
+    + "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n"
+    + "20\t60479\t.\tC\tT,A\t100\tPASS\tAN=2184;AC=4,2\n"
+    + "20\t60500\t.\tC\t<DEL>\t100\tPASS\tAN=2184;AC=4\n"
+    + "20\t60522\t.\tTCTC\tT\t100\tPASS\tAN=2184;AC=1000\n"
+    + "20\t70000\t.\tG\tA\t100\tPASS\tAN=10;AC=10\n"
+    + "21\t100\t.\tA\tC\t100\tPASS\tAN=20;AC=3\n";
+
+  private static List<String> read(final File f, final String region) throws IOException {
+    return read(f, region == null ? null : SamRangeUtils.createExplicitReferenceRange(new RegionRestriction(region)));
+  }
+
+  private static List<String> read(final File f, final ReferenceRanges<String> ranges) throws IOException {
+    final List<String> res = new ArrayList<>();
+    try (AlleleCountsFileReader reader = AlleleCountsFileReader.openAlleleCountReader(f, ranges)) {
+      while (reader.next()) {
+        final AlleleCounts ac = reader.getCurrent();
+        final Map<String, Integer> sorted = new TreeMap<>();
+        for (final String allele : ac.allelesSeen()) {
+          sorted.put(allele, ac.count(allele));
+        }
+        res.add(reader.getCurrentReference() + ":" + ac.position() + " " + ac.getReferenceAllele() + " " + sorted + " " + ac.isComplex() + " " + ac.maxLength());
+      }
+    }
+    return res;
+  }
+
+  public void testRoundTrip() throws IOException {
+    try (TestDirectory td = new TestDirectory()) {
+      final File vcf = new File(td, "pop.vcf.gz");
+      FileHelper.stringToGzFile(VCF, vcf);
+      new TabixIndexer(vcf, new File(td, "pop.vcf.gz.tbi")).saveVcfIndex();
+      final File store = new File(td, "pop" + AlleleCountsStore.SUFFIX);
+      assertTrue(AlleleCountsStore.isStore(store));
+      assertFalse(AlleleCountsStore.isStore(vcf));
+      assertEquals(4, AlleleCountsStore.compile(vcf, store));
+
+      final List<String> expected = read(vcf, null);
+      assertEquals(4, expected.size());
+      assertEquals(expected, read(store, null));
+
+      try (AlleleCountsStore s = new AlleleCountsStore(store, null)) {
+        assertEquals("{20=3, 21=1}", s.sequenceCounts().toString());
+      }
+    }
+  }
+
+  public void testRegions() throws IOException {
+    try (TestDirectory td = new TestDirectory()) {
+      final File vcf = new File(td, "pop.vcf.gz");
+      FileHelper.stringToGzFile(VCF, vcf);
+      new TabixIndexer(vcf, new File(td, "pop.vcf.gz.tbi")).saveVcfIndex();
+      final File store = new File(td, "pop" + AlleleCountsStore.SUFFIX);
+      AlleleCountsStore.compile(vcf, store);
+      for (final String region : new String[] {"20", "21", "20:60480-60525", "20:60523-70000", "22"}) {
+        assertEquals(region, read(vcf, region), read(store, region));
+      }
+    }
+  }
+
+  public void testBlocks() throws IOException {
+    final StringBuilder sb = new StringBuilder(VCF.substring(0, VCF.indexOf("20\t")));
+    for (final String seq : new String[] {"1", "2"}) {
+      for (int pos = 100; pos < 1000; pos += 20) {
+        if (pos == 300) {
+          // Long deletion overlapping several later blocks
+          sb.append(seq).append("\t").append(pos).append("\t.\tA");
+          for (int i = 0; i < 200; ++i) {
+            sb.append('C');
+          }
+          sb.append("\tA\t100\tPASS\tAN=20;AC=5\n");
+        }
+        sb.append(seq).append("\t").append(pos).append("\t.\tG\tT\t100\tPASS\tAN=20;AC=").append(pos % 7).append("\n");
+      }
+    }
+    try (TestDirectory td = new TestDirectory()) {
+      final File vcf = new File(td, "pop.vcf.gz");
+      FileHelper.stringToGzFile(sb.toString(), vcf);
+      new TabixIndexer(vcf, new File(td, "pop.vcf.gz.tbi")).saveVcfIndex();
+      final File store = new File(td, "pop" + AlleleCountsStore.SUFFIX);
+      assertEquals(92, AlleleCountsStore.compile(vcf, store, 3));
+      assertEquals(read(vcf, null), read(store, null));
+      for (final String region : new String[] {"1", "2", "1:450-460", "1:480-480", "2:95-150", "1:990-2000", "2:1-50"}) {
+        assertEquals(region, read(vcf, region), read(store, region));
+      }
+      assertEquals(2, read(store, "1:450-460").size());
+
+      final List<RangeMeta<String>> gaps = new ArrayList<>();
+      gaps.add(new SimpleRangeMeta<>(399, 420, "a"));
+      gaps.add(new SimpleRangeMeta<>(700, 900, "b"));
+      final ReferenceRanges<String> ranges = new ReferenceRanges<>(false);
+      ranges.put("1", new RangeList<>(gaps));
+      final List<String> expected = read(vcf, "1:400-420");
+      expected.addAll(read(vcf, "1:701-900"));
+      assertEquals(expected, read(store, ranges));
+    }
+  }
+
+  public void testNotAStore() throws IOException {
+    try (TestDirectory td = new TestDirectory()) {
+      final File f = FileHelper.stringToGzFile(VCF, new File(td, "bad" + AlleleCountsStore.SUFFIX));
+      try {
+        new AlleleCountsStore(f, null).close();
+        fail();
+      } catch (final NoTalkbackSlimException e) {
+        assertTrue(e.getMessage().contains("is not an allele counts store"));
+      }
+    }
+  }
+}
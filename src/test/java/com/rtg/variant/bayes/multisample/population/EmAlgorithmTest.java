@@ -30,8 +30,27 @@
 
 package com.rtg.variant.bayes.multisample.population;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import com.rtg.variant.bayes.Description;
+import com.rtg.variant.bayes.EvidenceInterface;
+import com.rtg.variant.bayes.MockEvidence;
 import com.rtg.variant.bayes.MockGenotypeMeasure;
+import com.rtg.variant.bayes.MockHypotheses;
+import com.rtg.variant.bayes.MockModel;
+import com.rtg.variant.bayes.ModelInterface;
+import com.rtg.variant.bayes.multisample.ChunkContext;
+import com.rtg.variant.bayes.multisample.HaploidDiploidHypotheses;
 import com.rtg.variant.bayes.multisample.HypothesisScore;
+import com.rtg.variant.bayes.multisample.HypothesisScores;
+import com.rtg.variant.bayes.multisample.PriorContainer;
+import com.rtg.variant.bayes.snp.DescriptionCommon;
+import com.rtg.variant.bayes.snp.HypothesesNone;
+import com.rtg.variant.bayes.snp.HypothesesPrior;
+import com.rtg.variant.bayes.snp.StatisticsSnp;
+import com.rtg.variant.util.arithmetic.PossibilityArithmetic;
+import com.rtg.variant.util.arithmetic.SimplePossibility;
 
 import junit.framework.TestCase;
 
@@ -66,4 +85,60 @@ public class EmAlgorithmTest extends TestCase {
     final String str = EmAlgorithm.callToString(11, calls);
     assertEquals("  0  1  2  3  4  5  6  7  8  9 |  10 11 12 13 14", str);
   }
+
+  public void testScore() {
+    final HypothesisScore[] calls = {
+      new HypothesisScore(new MockGenotypeMeasure(0, 0, 1.5, 0)),
+      null,
+      new HypothesisScore(new MockGenotypeMeasure(0, 1, 2.0, 0)),
+    };
+    assertEquals(3.5, EmAlgorithm.score(new HypothesisScores(calls, false, 0, null)), 1e-9);
+  }
+
+  private static List<ModelInterface<?>> models(final HypothesesPrior<Description> diploid, final Description descr) {
+    final List<ModelInterface<?>> models = new ArrayList<>();
+    for (int i = 0; i < 50; ++i) {
+      final MockModel<Description> model = new MockModel<>(diploid, new StatisticsSnp(diploid.description()), null);
+      models.add(model);
+      final double[] prob = i % 5 == 0 ? new double[] {0.1, 0.8, 0.1} : new double[] {0.8, 0.1, 0.1};
+      final EvidenceInterface di = new MockEvidence(descr, 0.0, prob, 1);
+      for (int j = 0; j < 10; ++j) {
+        model.increment(di);
+      }
+    }
+    return models;
+  }
+
+  private static String calls(final HypothesisScores scores) {
+    final StringBuilder sb = new StringBuilder();
+    for (final HypothesisScore score : scores.getScores()) {
+      sb.append(score.hypothesis()).append(' ');
+    }
+    return sb.toString();
+  }
+
+  public void testWarmStartAndEarlyExit() {
+    final PossibilityArithmetic arith = SimplePossibility.SINGLETON;
+    final DescriptionCommon descr = new DescriptionCommon("X", "Y", "Z");
+    final HypothesesPrior<Description> haploid = new MockHypotheses<>(descr, arith, true, AbstractEstimatorTest.uniform(3), 0);
+    final HypothesesPrior<Description> diploid = new MockHypotheses<>(descr, arith, false, AbstractEstimatorTest.uniform(6), 0);
+    final HaploidDiploidHypotheses<HypothesesPrior<Description>> hyps = new HaploidDiploidHypotheses<>(HypothesesNone.SINGLETON, haploid, diploid);
+    final List<ModelInterface<?>> models = models(diploid, descr);
+    final String cold = calls(new EmAlgorithm(new HwEstimator(), 50).getBestScores(models, new PriorContainer<>(hyps, null)));
+    final EmAlgorithm warm = new EmAlgorithm(new HwEstimator(), 50, true, EmAlgorithm.DEFAULT_TOLERANCE);
+    final ChunkContext context = new ChunkContext();
+    for (int i = 0; i < 3; ++i) {
+      assertEquals(cold, calls(warm.getBestScores(models, new PriorContainer<>(hyps, null), context)));
+      assertNotNull(context.getState());
+    }
+    // Without a chunk context there is nothing to start from, and nothing is retained
+    assertEquals(cold, calls(warm.getBestScores(models, new PriorContainer<>(hyps, null))));
+    final ChunkContext other = new ChunkContext();
+    final Object state = context.getState();
+    assertEquals(cold, calls(warm.getBestScores(models, new PriorContainer<>(hyps, null), other)));
+    assertSame(state, context.getState());
+    assertNotSame(state, other.getState());
+    assertTrue(warm.iterationHist().startsWith("EmAlgorithm iterations "));
+    assertEquals("EmAlgorithm iterations", warm.iterationHist());
+  }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.bayes.multisample.population;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class IterationHistogramTest extends TestCase {
+
+  public void testSingleThread() {
+    final IterationHistogram hist = new IterationHistogram("hist", 4);
+    assertEquals("hist", hist.toString());
+    hist.increment(1);
+    hist.increment(1);
+    hist.increment(2);
+    hist.increment(7);
+    hist.increment(-1);
+    assertEquals("[1, 2, 1, 1]", Arrays.toString(hist.counts()));
+    assertEquals("hist 1 2 1 1", hist.toString());
+  }
+
+  public void testReport() throws InterruptedException {
+    final IterationHistogram hist = new IterationHistogram("hist", 4);
+    hist.increment(1);
+    final Thread thread = new Thread(() -> hist.increment(2));
+    thread.start();
+    thread.join();
+    assertEquals("hist 0 1 1", hist.report());
+    assertEquals("hist", hist.toString());
+    hist.increment(3);
+    assertEquals("hist 0 0 0 1", hist.report());
+    assertEquals("hist", hist.report());
+  }
+
+  public void testTrailingZeros() {
+    final IterationHistogram hist = new IterationHistogram("hist", 10);
+    hist.increment(2);
+    assertEquals("hist 0 0 1", hist.toString());
+  }
+
+  public void testThreads() throws InterruptedException {
+    final IterationHistogram hist = new IterationHistogram("hist", 5);
+    final Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; ++t) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 1000; ++i) {
+          hist.increment(i % 5);
+        }
+      });
+      threads[t].start();
+    }
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals("[800, 800, 800, 800, 800]", Arrays.toString(hist.counts()));
+  }
+
+  public void testBadLength() {
+    try {
+      new IterationHistogram("hist", 0);
+      fail();
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
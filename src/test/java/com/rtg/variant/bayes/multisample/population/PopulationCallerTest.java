@@ -526,6 +526,61 @@ public class PopulationCallerTest extends TestCase {
 
   }
 
+  public void testBlockMatchesSinglePositions() {
+    final GenomePriorParams params = new GenomePriorParamsBuilder().create();
+    final VariantParams vParams = new VariantParamsBuilder()
+        .callLevel(VariantOutputLevel.ALL)
+        .genomePriors(params)
+        .maxEmIterations(6)
+        .create();
+    final Family family = new Family("0", "1", "2", "3");
+    for (int i = 0; i < 4; ++i) {
+      family.setSampleId(i, i);
+    }
+    final PopulationCaller pc = new PopulationCaller(vParams, new FamilyCallerFB(vParams, family));
+    assertTrue(pc.blockSize() > 1);
+
+    final String[][] values = {
+        {"CCCCCCCCCC", "CCCCCCCCCC", "CCCCCCCCCC", "CCCCCCCCCC"},
+        {"CCCCCGGGGG", "CCCCCCCCCC", "CCCCCGGGGG", "CCCCCCCCCC"},
+        {"AAAAAAAAAA", "TTTTTTTTTT", "AAAAATTTTT", "AAAAAAAAAA"},
+        {"GGGGGGGGGG", "GGGGGGGGGG", "GGGGGGGGGG", "GGGGGAAAAA"},
+    };
+    final byte[] ref = {2, 2, 1, 3};
+    final int[] positions = new int[values.length];
+    final List<List<ModelInterface<?>>> models = new ArrayList<>();
+    final List<HaploidDiploidHypotheses<HypothesesSnp>> hypotheses = new ArrayList<>();
+    for (int p = 0; p < values.length; ++p) {
+      positions[p] = p;
+      final HypothesesSnp haploid = new HypothesesSnp(LogApproximatePossibility.SINGLETON, params, true, ref[p] - 1);
+      final HypothesesSnp diploid = new HypothesesSnp(LogApproximatePossibility.SINGLETON, params, false, ref[p] - 1);
+      final List<ModelInterface<?>> positionModels = new ArrayList<>();
+      for (final String value : values[p]) {
+        final Model<Description> model = new Model<>(diploid, new StatisticsSnp(diploid.description()), new NoAlleleBalance());
+        increment(model, value, 0.01, 0.01);
+        positionModels.add(model);
+      }
+      freezeModels(positionModels);
+      models.add(positionModels);
+      hypotheses.add(new HaploidDiploidHypotheses<>(HypothesesNone.SINGLETON, haploid, diploid));
+    }
+    final Variant[] block = pc.makeCalls("foo", positions, ref, models, hypotheses);
+    assertEquals(values.length, block.length);
+    for (int p = 0; p < values.length; ++p) {
+      final Variant single = pc.makeCall("foo", p, p + 1, ref, models.get(p), hypotheses.get(p));
+      assertEquals(single.isInteresting(), block[p].isInteresting());
+      assertEquals(single.getNonIdentityPosterior(), block[p].getNonIdentityPosterior(), 1e-10);
+      for (int i = 0; i < single.getNumberOfSamples(); ++i) {
+        final VariantSample expected = single.getSample(i);
+        final VariantSample actual = block[p].getSample(i);
+        assertEquals(p + ":" + i, expected.getName(), actual.getName());
+        assertEquals(expected.getPosterior(), actual.getPosterior(), 1e-10);
+        assertEquals(expected.getNonIdentityPosterior(), actual.getNonIdentityPosterior(), 1e-10);
+        assertEquals(expected.isDeNovo(), actual.isDeNovo());
+      }
+    }
+  }
+
   public void testDisagreeingPPPFallbackEM() {
     // Brian saw a crash when running with EM iterations. The family caller had to fall back to PPP which caused a null pointer exception in FB when accessing the updated priors.
     // FamilyCaller was returning a HypothesisScore with null Bs
@@ -35,13 +35,16 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Arrays;
 import java.util.Properties;
 
 import com.rtg.launcher.AbstractNanoTest;
+import com.rtg.launcher.globals.CoreGlobalFlags;
 import com.rtg.launcher.MainResult;
 import com.rtg.reader.ReaderTestUtils;
 import com.rtg.tabix.TabixIndexer;
 import com.rtg.util.InvalidParamsException;
+import com.rtg.util.PortableRandom;
 import com.rtg.util.PropertiesUtils;
 import com.rtg.util.StringUtils;
 import com.rtg.util.TestUtils;
@@ -131,6 +134,150 @@ public class PopulationNanoTest extends AbstractNanoTest {
   }
 
 
+  private static final String[] POPULATION_SAMPLES = {"sm_a", "sm_b", "sm_c", "sm_d"};
+  private static final int POPULATION_LENGTH = 4000;
+  private static final int POPULATION_READ_LENGTH = 100;
+
+  // Unrelated samples sharing SNPs spread over several chunks, optionally with every fourth site a two base deletion
+  private static String populationSam(final String ref, final PortableRandom random, final boolean deletions) {
+    final int sites = (ref.length() - 100) / 60;
+    final int[] sitePos = new int[sites];
+    final char[] siteAlt = new char[sites];
+    final int[][] genotypes = new int[POPULATION_SAMPLES.length][sites];
+    for (int i = 0; i < sites; ++i) {
+      sitePos[i] = 50 + 60 * i + random.nextInt(20);
+      siteAlt[i] = deletions && i % 4 == 3 ? '-' : "ACGT".charAt(("ACGT".indexOf(ref.charAt(sitePos[i])) + 1 + random.nextInt(3)) % 4);
+      for (int s = 0; s < POPULATION_SAMPLES.length; ++s) {
+        genotypes[s][i] = random.nextInt(3); // number of alternate haplotypes
+      }
+    }
+    final StringBuilder sb = new StringBuilder();
+    sb.append("@HD\tVN:1.3\tSO:coordinate").append(StringUtils.LS);
+    sb.append("@SQ\tSN:seq\tLN:").append(ref.length()).append(StringUtils.LS);
+    for (final String sample : POPULATION_SAMPLES) {
+      sb.append("@RG\tID:rg_").append(sample).append("\tPL:ILLUMINA\tSM:").append(sample).append(StringUtils.LS);
+    }
+    final char[] qualChars = new char[POPULATION_READ_LENGTH];
+    Arrays.fill(qualChars, '5');
+    final String qual = new String(qualChars);
+    int id = 0;
+    for (int start = 0; start + POPULATION_READ_LENGTH <= ref.length(); start += 5) {
+      for (int s = 0; s < POPULATION_SAMPLES.length; ++s) {
+        for (int hap = 0; hap < 2; ++hap) {
+          final char[] read = ref.substring(start, start + POPULATION_READ_LENGTH).toCharArray();
+          for (int i = 0; i < sites; ++i) {
+            if (hap < genotypes[s][i] && sitePos[i] >= start && sitePos[i] < start + POPULATION_READ_LENGTH) {
+              read[sitePos[i] - start] = siteAlt[i];
+              if (siteAlt[i] == '-' && sitePos[i] + 1 < start + POPULATION_READ_LENGTH) {
+                read[sitePos[i] + 1 - start] = '-';
+              }
+            }
+          }
+          if (read[0] == '-') {
+            continue; // Keep reads in coordinate order by dropping those starting within a deletion
+          }
+          // Deleted bases become D operations, trimming any at the end of the read
+          int last = read.length;
+          while (read[last - 1] == '-') {
+            --last;
+          }
+          final StringBuilder bases = new StringBuilder();
+          final StringBuilder cigar = new StringBuilder();
+          int run = 0;
+          for (int k = 0; k < last; ++k) {
+            if (k > 0 && (read[k] == '-') != (read[k - 1] == '-')) {
+              cigar.append(run).append(read[k - 1] == '-' ? 'D' : 'M');
+              run = 0;
+            }
+            if (read[k] != '-') {
+              bases.append(read[k]);
+            }
+            ++run;
+          }
+          cigar.append(run).append('M');
+          sb.append("r").append(id++).append("\t0\tseq\t").append(start + 1).append("\t55\t").append(cigar).append("\t*\t0\t0\t")
+            .append(bases).append("\t").append(qual, 0, bases.length()).append("\tRG:Z:rg_").append(POPULATION_SAMPLES[s]).append(StringUtils.LS);
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  private static String callPopulation(final File dir, final File templateDir, final File ped, final String name, final String... inputArgs) {
+    final File out = new File(dir, name);
+    final String[] args = Utils.append(new String[] {
+      "-t", templateDir.getPath(),
+      "-p", ped.getPath(),
+      "-o", out.getPath(),
+      "-Z",
+      "--" + AbstractMultisampleCli.NO_CALIBRATION,
+      "--Xchunking", "1000",
+      "--XX" + CoreGlobalFlags.POPULATION_EM_WARM_START, "true",
+    }, inputArgs);
+    final MainResult r = MainResult.run(new PopulationCli(), args);
+    assertEquals(r.err(), 0, r.rc());
+    try {
+      return TestUtils.stripVcfHeader(FileUtils.fileToString(new File(out, "snps.vcf")));
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String populationReference(final PortableRandom random) {
+    final StringBuilder ref = new StringBuilder();
+    for (int i = 0; i < POPULATION_LENGTH; ++i) {
+      ref.append("ACGT".charAt(random.nextInt(4)));
+    }
+    return ref.toString();
+  }
+
+  private static File populationPed(final File dir) throws IOException {
+    final StringBuilder ped = new StringBuilder();
+    for (final String sample : POPULATION_SAMPLES) {
+      ped.append("0\t").append(sample).append("\t0\t0\t1\t0").append(StringUtils.LS);
+    }
+    return FileUtils.stringToFile(ped.toString(), new File(dir, "population.ped"));
+  }
+
+  public void testWarmStartThreadIndependent() throws Exception {
+    final PortableRandom random = new PortableRandom(42);
+    final String ref = populationReference(random);
+    try (TestDirectory dir = new TestDirectory("populationnano")) {
+      final File templateDir = new File(dir, "template");
+      ReaderTestUtils.getDNADir(">seq" + StringUtils.LS + ref + StringUtils.LS, templateDir);
+      final File pedFile = populationPed(dir);
+      final String sam = createIndexedSamFile(populationSam(ref, random, false), dir, "population").getPath();
+      final String single = callPopulation(dir, templateDir, pedFile, "single", sam, "-T", "1", "--Xthreading-env", "single");
+      assertTrue(single, single.split(StringUtils.LS).length > 20);
+      assertEquals(single, callPopulation(dir, templateDir, pedFile, "parallel", sam, "-T", "4"));
+      assertEquals(single, callPopulation(dir, templateDir, pedFile, "random", sam, "-T", "4", "--Xthreading-env", "random=17"));
+    }
+  }
+
+  public void testSampleModelsMatchAlignments() throws Exception {
+    final PortableRandom random = new PortableRandom(7);
+    final String ref = populationReference(random);
+    try (TestDirectory dir = new TestDirectory("populationnano")) {
+      final File templateDir = new File(dir, "template");
+      ReaderTestUtils.getDNADir(">seq" + StringUtils.LS + ref + StringUtils.LS, templateDir);
+      final File pedFile = populationPed(dir);
+      final String sam = createIndexedSamFile(populationSam(ref, random, true), dir, "population").getPath();
+      final String direct = callPopulation(dir, templateDir, pedFile, "direct", sam, "--Xsample-models-output");
+      assertTrue(direct, direct.contains("XRX"));
+      final String[] models = new String[POPULATION_SAMPLES.length];
+      for (int s = 0; s < models.length; ++s) {
+        models[s] = new File(new File(dir, "direct"), POPULATION_SAMPLES[s] + ".models").getPath();
+      }
+
+      // Complex regions are recalled from the alignments supplied with the sample models
+      assertEquals(direct, callPopulation(dir, templateDir, pedFile, "models", Utils.append(models, sam)));
+
+      // Without alignments, complex regions are left uncalled as when complex calling is disabled
+      final String noComplex = callPopulation(dir, templateDir, pedFile, "nocomplex", sam, "--Xno-complex-calls");
+      assertEquals(noComplex, callPopulation(dir, templateDir, pedFile, "modelsonly", models));
+    }
+  }
+
   /**
    * Evaluate a {@code NanoRegression} which uses the population caller.
    * public so it can be used from multi sample task to test indel triggering
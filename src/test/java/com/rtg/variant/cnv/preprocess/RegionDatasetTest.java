@@ -31,8 +31,13 @@
 package com.rtg.variant.cnv.preprocess;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
+import com.rtg.util.intervals.SequenceNameLocus;
+import com.rtg.util.intervals.SequenceNameLocusComparator;
+import com.rtg.util.intervals.SequenceNameLocusSimple;
+
 import junit.framework.TestCase;
 
 /**
@@ -98,4 +103,46 @@ public class RegionDatasetTest extends TestCase {
     assertEquals(1, f.getColumns().size());
     assertTrue(f.getColumns().get(0) instanceof IntColumn);
   }
+
+  public void testRetain() {
+    final RegionDataset d = new RegionDataset(new String[] {"label", "value"});
+    d.add("chr1", 0, 10, "a", "1");
+    d.add("chr1", 10, 20, "b", "2");
+    d.add("chr2", 0, 10, "c", "3");
+    d.add("chr2", 10, 20, "d", "4");
+    final NumericColumn values = d.asNumeric(1);
+    d.retain(row -> values.get(row) % 2 == 0);
+    assertEquals(2, d.size());
+    assertEquals(2, d.columns());
+    assertEquals("chr1", d.regions().get(0).getSequenceName());
+    assertEquals(10, d.regions().get(0).getStart());
+    assertEquals("chr2", d.regions().get(1).getSequenceName());
+    assertEquals(10, d.regions().get(1).getStart());
+    assertEquals("b", d.column(0).toString(0));
+    assertEquals("d", d.column(0).toString(1));
+    assertTrue(Arrays.equals(new double[] {2, 4}, d.asNumeric(1).getValues()));
+  }
+
+  public void testExpand() {
+    final RegionDataset d = new RegionDataset(new String[] {"label", "value"});
+    d.add("chr1", 10, 20, "b", "2");
+    d.add("chr2", 0, 10, "c", "3");
+    d.asNumeric(1);
+    final List<SequenceNameLocus> regions = Arrays.asList(new SequenceNameLocusSimple("chr1", 0, 10), new SequenceNameLocusSimple("chr1", 10, 20),
+      new SequenceNameLocusSimple("chr2", 0, 10), new SequenceNameLocusSimple("chr2", 10, 20));
+    d.expand(regions);
+    assertEquals(4, d.size());
+    for (int i = 0; i < d.size(); ++i) {
+      assertEquals(0, SequenceNameLocusComparator.SINGLETON.compare(regions.get(i), d.regions().get(i)));
+    }
+    assertEquals("", d.column(0).toString(0));
+    assertEquals("b", d.column(0).toString(1));
+    assertEquals("c", d.column(0).toString(2));
+    assertEquals("", d.column(0).toString(3));
+    final NumericColumn values = d.asNumeric(1);
+    assertTrue(Double.isNaN(values.get(0)));
+    assertEquals(2.0, values.get(1));
+    assertEquals(3.0, values.get(2));
+    assertTrue(Double.isNaN(values.get(3)));
+  }
 }
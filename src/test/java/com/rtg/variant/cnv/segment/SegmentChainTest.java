@@ -33,6 +33,8 @@ package com.rtg.variant.cnv.segment;
 import java.util.Arrays;
 import java.util.List;
 
+import com.rtg.util.PortableRandom;
+
 import junit.framework.TestCase;
 
 /**
@@ -82,4 +84,49 @@ public class SegmentChainTest extends TestCase {
     assertEquals(10, c.bins());
     assertEquals(1.0, c.mean(), 1e-8);
   }
+
+  static SegmentChain randomChain(final int bins, final String... names) {
+    final SegmentChain sc = new SegmentChain(new EnergySegmentScorer(0, 0));
+    final PortableRandom r = new PortableRandom(42);
+    int pos = 0;
+    for (final String name : names) {
+      for (int k = 0; k < bins; ++k, pos += 1000) {
+        sc.add(new Segment(name, pos, pos + 1000, (k / 100) % 3 + r.nextDouble(), k == 0 ? 0 : 1000, 1, 1));
+      }
+    }
+    return sc;
+  }
+
+  private static void checkTree(final Segment s) {
+    if (s.left() != null) {
+      assertEquals(s.bins(), s.left().bins() + s.right().bins());
+      assertEquals(s.getStart(), s.left().getStart());
+      assertEquals(s.getEnd(), s.right().getEnd());
+      assertTrue(s.deltaEnergy() >= s.left().deltaEnergy());
+      assertTrue(s.deltaEnergy() >= s.right().deltaEnergy());
+      checkTree(s.left());
+      checkTree(s.right());
+    }
+  }
+
+  public void testCollapseMany() {
+    final SegmentChain sc = randomChain(5000, "test");
+    sc.collapse();
+    assertEquals(1, sc.size());
+    assertEquals(5000, sc.get(0).bins());
+    checkTree(sc.get(0));
+  }
+
+  public void testCollapseSequenceBoundaries() {
+    final SegmentChain sc = randomChain(500, "a", "b", "c");
+    sc.collapse();
+    assertEquals(3, sc.size());
+    assertEquals("a", sc.get(0).getSequenceName());
+    assertEquals("b", sc.get(1).getSequenceName());
+    assertEquals("c", sc.get(2).getSequenceName());
+    for (final Segment s : sc) {
+      assertEquals(500, s.bins());
+      checkTree(s);
+    }
+  }
 }
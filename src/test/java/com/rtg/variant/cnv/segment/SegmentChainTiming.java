@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.cnv.segment;
+
+import java.io.PrintStream;
+
+import com.rtg.util.Utils;
+
+/**
+ * Time collapsing a segment chain of a whole genome's worth of bins.
+ */
+public final class SegmentChainTiming {
+
+  private SegmentChainTiming() { }
+
+  private static void time(final int bins, final PrintStream ps) {
+    final SegmentChain sc = SegmentChainTest.randomChain(bins, "chr1");
+    final long t0 = System.nanoTime();
+    sc.collapse();
+    final long t1 = System.nanoTime();
+    ps.println(bins + " bins " + Utils.realFormat((t1 - t0) / 1.0e9, 2) + "s");
+  }
+
+  /**
+   * @param args optional number of bins, defaults to 3 million (1kb bins over a 3Gb genome).
+   */
+  public static void main(String[] args) {
+    final int bins = args.length > 0 ? Integer.parseInt(args[0]) : 3000000;
+    for (int i = 0; i < 3; ++i) {
+      time(bins, System.err);
+    }
+  }
+}
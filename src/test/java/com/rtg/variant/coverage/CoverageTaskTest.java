@@ -49,13 +49,19 @@ import static com.rtg.sam.SharedSamConstants.SAM_M;
 import static com.rtg.util.StringUtils.LS;
 import static com.rtg.util.StringUtils.TAB;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.util.Collections;
 
 import com.rtg.launcher.AbstractCli;
 import com.rtg.launcher.AbstractCliTest;
 import com.rtg.launcher.CommonFlags;
 import com.rtg.launcher.MainResult;
+import com.rtg.launcher.OutputParams;
+import com.rtg.launcher.SequenceParams;
+import com.rtg.mode.SequenceMode;
 import com.rtg.reader.ReaderTestUtils;
+import com.rtg.sam.SamFilterParams;
 import com.rtg.tabix.IndexUtils;
 import com.rtg.tabix.TabixIndexer;
 import com.rtg.util.Environment;
@@ -455,4 +461,76 @@ public class CoverageTaskTest extends AbstractCliTest {
       mNano.check("covBedRegionNoTemplate.txt", FileUtils.fileToString(summary));
     }
   }
+
+  private static String runCoverage(File dir, File samFile, File template, boolean parallel, boolean tsv, int smoothing) throws Exception {
+    return runCoverage(dir, samFile, template, parallel, tsv, smoothing, false);
+  }
+
+  private static String runCoverage(File dir, File samFile, File template, boolean parallel, boolean tsv, int smoothing, boolean depthOnly) throws Exception {
+    final File output = new File(dir, "output");
+    final CoverageParams params = CoverageParams.builder()
+      .outputParams(new OutputParams(output, false))
+      .genome(SequenceParams.builder().directory(template).mode(SequenceMode.UNIDIRECTIONAL).create().readerParams())
+      .mapped(Collections.singletonList(samFile))
+      .filterParams(SamFilterParams.builder().excludeUnmapped(true).excludeUnplaced(true).create())
+      .smoothing(smoothing).tsvOutput(tsv).disableHtmlReport(true)
+      .chunkSize(7).parallelChunks(parallel).depthOnly(depthOnly).execThreads(3).ioThreads(1)
+      .create();
+    try {
+      FileUtils.ensureOutputDirectory(output);
+      final ByteArrayOutputStream summary = new ByteArrayOutputStream();
+      new CoverageTask(params, summary, new CoverageStatistics(output, true, 80)).run();
+      return StringUtils.grepMinusV(FileUtils.fileToString(params.outFile()), "^#") + summary.toString();
+    } finally {
+      params.close();
+    }
+  }
+
+  private static File matedTemplate(File dir) throws Exception {
+    final String tmpl = "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAANAAAAAAAAAANAAAAAAAAAAAAAAAAAAAAAAAAAA";
+    return ReaderTestUtils.getDNADir(">simulatedSequence1\n" + tmpl + "\n>simulatedSequence2\n" + tmpl + "\n", new File(dir, "template"));
+  }
+
+  private static File matedSam(File dir) throws Exception {
+    final File samFile = new File(dir, "sam.sam.gz");
+    IndexUtils.ensureBlockCompressed(FileHelper.resourceToFile("com/rtg/variant/resources/coverage_mated.sam.gz", samFile));
+    new TabixIndexer(samFile).saveSamIndex();
+    return samFile;
+  }
+
+  public void testParallelChunks() throws Exception {
+    Diagnostic.setLogStream();
+    try (final TestDirectory tmpDir = new TestDirectory()) {
+      final File samFile = matedSam(tmpDir);
+      final File template = matedTemplate(tmpDir);
+      int run = 0;
+      for (final boolean tsv : new boolean[] {false, true}) {
+        for (final int smoothing : new int[] {0, 2}) {
+          final String serial = runCoverage(new File(tmpDir, "run" + run++), samFile, template, false, tsv, smoothing);
+          final String parallel = runCoverage(new File(tmpDir, "run" + run++), samFile, template, true, tsv, smoothing);
+          assertTrue(serial.length() > 0);
+          assertEquals(serial, parallel);
+        }
+      }
+    }
+  }
+
+  public void testDepthOnly() throws Exception {
+    Diagnostic.setLogStream();
+    try (final TestDirectory tmpDir = new TestDirectory()) {
+      final File samFile = matedSam(tmpDir);
+      final File template = matedTemplate(tmpDir);
+      int run = 0;
+      for (final int smoothing : new int[] {0, 2}) {
+        // None of these alignments are ambiguous, so unweighted depth matches the normal coverage
+        final String expected = runCoverage(new File(tmpDir, "run" + run++), samFile, template, false, false, smoothing);
+        assertEquals(expected, runCoverage(new File(tmpDir, "run" + run++), samFile, template, false, false, smoothing, true));
+        assertEquals(expected, runCoverage(new File(tmpDir, "run" + run++), samFile, template, true, false, smoothing, true));
+      }
+    }
+  }
+
+  public void testDepthOnlyCigar() throws Exception {
+    checkBed(REF_SEQS, SAM_CIGAR1, new String[] {"-s", "0", "--Xdepth-only"}, "2", "", 0, true, false);
+  }
 }
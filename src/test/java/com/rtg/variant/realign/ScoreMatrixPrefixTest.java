@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.rtg.variant.realign;
+
+import java.util.Arrays;
+
+import com.rtg.util.PortableRandom;
+import com.rtg.util.integrity.Exam;
+import com.rtg.variant.util.arithmetic.LogPossibility;
+import com.rtg.variant.util.arithmetic.PossibilityArithmetic;
+import com.rtg.variant.util.arithmetic.SimplePossibility;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class ScoreMatrixPrefixTest extends TestCase {
+
+  private static final int START = 5;
+  private static final int MAX_SHIFT = 4;
+
+  private static byte[] random(final PortableRandom r, final int length) {
+    final byte[] res = new byte[length];
+    for (int i = 0; i < length; ++i) {
+      res[i] = (byte) (1 + r.nextInt(4));
+    }
+    return res;
+  }
+
+  private static Environment env(final byte[] template, final byte[] read) {
+    final double[] quality = new double[read.length];
+    Arrays.fill(quality, 0.01);
+    return new EnvironmentImplementation(MAX_SHIFT, template, START, read, quality);
+  }
+
+  private static double fresh(final PossibilityArithmetic arith, final Environment env) {
+    final ScoreMatrix sm = new ScoreMatrix(arith, new ScoreMatrixTest.MockRealignParams());
+    sm.setEnv(env);
+    return sm.totalScoreLn();
+  }
+
+  private void checkPrefixes(final PossibilityArithmetic arith) {
+    final PortableRandom r = new PortableRandom(42);
+    final byte[] read = random(r, 30);
+    final byte[] template = random(r, 50);
+    final ScoreMatrixPrefix sm = new ScoreMatrixPrefix(arith, new ScoreMatrixTest.MockRealignParams());
+    sm.setEnv(env(template, read), Integer.MIN_VALUE);
+    assertEquals(fresh(arith, env(template, read)), sm.totalScoreLn());
+    for (int p = 0; p < template.length; ++p) {
+      // Alter the template from position p onwards
+      final byte[] altered = Arrays.copyOf(template, template.length);
+      for (int i = p; i < altered.length; ++i) {
+        altered[i] = (byte) (1 + (altered[i] + i) % 4);
+      }
+      final Environment env = env(altered, read);
+      sm.setEnv(env, p - START);
+      Exam.globalIntegrity(sm);
+      assertEquals("p=" + p, fresh(arith, env), sm.totalScoreLn());
+      // And back again
+      sm.setEnv(env(template, read), p - START);
+      assertEquals(fresh(arith, env(template, read)), sm.totalScoreLn());
+    }
+  }
+
+  public void testSimple() {
+    checkPrefixes(SimplePossibility.SINGLETON);
+  }
+
+  public void testLog() {
+    checkPrefixes(LogPossibility.SINGLETON);
+  }
+
+  public void testDifferentRead() {
+    final PortableRandom r = new PortableRandom(3);
+    final byte[] template = random(r, 50);
+    final ScoreMatrixPrefix sm = new ScoreMatrixPrefix(SimplePossibility.SINGLETON, new ScoreMatrixTest.MockRealignParams());
+    sm.setEnv(env(template, random(r, 30)));
+    // Shorter read, so nothing can be retained regardless of the template index
+    final Environment env = env(template, random(r, 20));
+    sm.setEnv(env, template.length);
+    assertEquals(fresh(SimplePossibility.SINGLETON, env), sm.totalScoreLn());
+  }
+
+  public void testFastUnderflow() {
+    final PortableRandom r = new PortableRandom(7);
+    final byte[] read = random(r, 30);
+    final byte[] template = random(r, 50);
+    final AllPaths score = new ScoreFastUnderflow(new ScoreMatrixTest.MockRealignParams());
+    score.setEnv(env(template, read));
+    final byte[] altered = Arrays.copyOf(template, template.length);
+    altered[30] = (byte) (1 + altered[30] % 4);
+    final Environment env = env(altered, read);
+    score.setEnv(env, 30 - START);
+    assertEquals(fresh(SimplePossibility.SINGLETON, env), score.totalScoreLn());
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.rtg.variant.realign.treealign;
+
+import com.rtg.util.integrity.Exam;
+
+import junit.framework.TestCase;
+
+/**
+ */
+public class HypothesisTrieTest extends TestCase {
+
+  private static void check(final HypothesisTrie trie, final int[] order, final int[] shared) {
+    Exam.integrity(trie);
+    assertEquals(order.length, trie.size());
+    for (int k = 0; k < order.length; ++k) {
+      assertEquals(order[k], trie.hypothesis(k));
+      assertEquals(shared[k], trie.sharedPrefix(k));
+    }
+  }
+
+  public void testEmpty() {
+    check(new HypothesisTrie(new byte[0][]), new int[0], new int[0]);
+  }
+
+  public void testOrder() {
+    final byte[][] hyps = {
+      {1, 2, 3},
+      {1, 2},
+      {4},
+      {1, 2, 4},
+      {},
+      {1, 3},
+      {1, 2, 3},
+    };
+    check(new HypothesisTrie(hyps),
+      new int[] {4, 1, 0, 6, 3, 5, 2},
+      new int[] {0, 0, 2, 3, 2, 1, 0});
+  }
+}
@@ -81,6 +81,25 @@ public abstract class AbstractSamCountsTest extends TestCase {
     check10(sa);
   }
 
+  public void testCounts() {
+    final SamCounts sa = getCounts(0);
+    sa.reset(20, 10);
+    for (int i = 0; i < 8; ++i) {
+      for (int j = 0; j <= i % 3; ++j) {
+        sa.increment(i);
+      }
+    }
+    sa.flushTo(3);
+    final double[] counts = new double[14];
+    sa.counts(-2, counts.length, counts);
+    for (int k = 0; k < counts.length; ++k) {
+      assertEquals(sa.count(k - 2, 0), counts[k]);
+    }
+    assertEquals(0.0, counts[4]);
+    assertEquals(1.0, counts[5]);
+    assertEquals(3.0, counts[7]);
+  }
+
   public void testFlushTo() {
     checkFlush(10, 5, 5);
     checkFlush(10, 7, 5);
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.sv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.rtg.launcher.MainResult;
+import com.rtg.util.IORunnable;
+import com.rtg.util.StringUtils;
+import com.rtg.util.io.SimpleArchive;
+import com.rtg.util.intervals.RangeList;
+import com.rtg.util.intervals.ReferenceRanges;
+import com.rtg.util.io.FileUtils;
+import com.rtg.util.io.TestDirectory;
+import com.rtg.util.test.FileHelper;
+import com.rtg.variant.sv.discord.DiscordantToolCli;
+
+import htsjdk.samtools.SAMSequenceRecord;
+import junit.framework.TestCase;
+
+/**
+ * Tests the corresponding class.
+ */
+public class SequenceShardsTest extends TestCase {
+
+  public void testPartFile() {
+    final File file = new File("out", "discordant_pairs.vcf");
+    assertEquals(new File("out", "discordant_pairs.vcf.3.part"), SequenceShards.partFile(file, 3));
+  }
+
+  public void testSequenceRange() {
+    final ReferenceRanges<String> ranges = SequenceShards.sequenceRange(new SAMSequenceRecord("chr1", 1000));
+    assertNull(ranges.get("chr2"));
+    final List<RangeList.RangeView<String>> chr1 = ranges.get("chr1").getRangeList();
+    assertEquals(1, chr1.size());
+    assertEquals(0, chr1.get(0).getStart());
+    assertEquals(1000, chr1.get(0).getEnd());
+  }
+
+  public void testConcatenate() throws IOException {
+    try (TestDirectory dir = new TestDirectory("shards")) {
+      final File empty = new File(dir, "a.part");
+      final File first = new File(dir, "b.part");
+      final File second = new File(dir, "c.part");
+      final File noHeader = new File(dir, "d.part");
+      FileUtils.stringToFile("", empty);
+      FileUtils.stringToFile("#h1\n#h2\nchr1\t1\n#not a header\nchr1\t5\n", first);
+      FileUtils.stringToFile("#h1\n#h2\nchr2\t3\n", second);
+      FileUtils.stringToFile("chr3\t7", noHeader);
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      SequenceShards.concatenate(Arrays.asList(empty, first, second, noHeader), out);
+      assertEquals("#h1\n#h2\nchr1\t1\n#not a header\nchr1\t5\nchr2\t3\nchr3\t7", out.toString());
+      assertFalse(empty.exists());
+      assertFalse(first.exists());
+      assertFalse(second.exists());
+      assertFalse(noHeader.exists());
+    }
+  }
+
+  public void testRun() throws IOException {
+    final AtomicInteger count = new AtomicInteger();
+    final List<IORunnable> shards = new ArrayList<>();
+    for (int i = 0; i < 10; ++i) {
+      shards.add(count::incrementAndGet);
+    }
+    SequenceShards.run(shards, 3);
+    assertEquals(10, count.get());
+    shards.add(() -> {
+      throw new IOException("shard failed");
+    });
+    try {
+      SequenceShards.run(shards, 3);
+      fail();
+    } catch (final IOException e) {
+      assertEquals("shard failed", e.getMessage());
+    }
+  }
+
+  private static String[] args(File dir, String output, boolean parallel, String... extra) {
+    final List<String> args = new ArrayList<>();
+    args.add("-r");
+    args.add(new File(dir, "rgstats.tsv").getPath());
+    args.add("-t");
+    args.add(new File(dir, "template").getPath());
+    args.add("-o");
+    args.add(new File(dir, output).getPath());
+    args.addAll(Arrays.asList(extra));
+    if (parallel) {
+      args.add("--Xparallel-sequences");
+      args.add("-T");
+      args.add("2");
+    }
+    args.add(new File(dir, "mappings.sam.gz").getPath());
+    return args.toArray(new String[0]);
+  }
+
+  private static void prepare(File dir) throws IOException {
+    FileHelper.resourceToFile("com/rtg/variant/sv/resources/smallsvMappings.sam.gz", new File(dir, "mappings.sam.gz"));
+    FileHelper.resourceToFile("com/rtg/variant/sv/resources/smallsvMappings.sam.gz.tbi", new File(dir, "mappings.sam.gz.tbi"));
+    FileHelper.resourceToFile("com/rtg/variant/sv/resources/rgstats.txt", new File(dir, "rgstats.tsv"));
+    final File template = new File(dir, "template");
+    assertTrue(template.mkdir());
+    SimpleArchive.unpackArchive(FileHelper.resourceToFile("com/rtg/variant/sv/resources/smallsvTemplate.dwa", new File(dir, "template.dwa")), template);
+  }
+
+  private static String body(File dir, String output, String name) throws IOException {
+    return StringUtils.grep(FileHelper.gzFileToString(new File(new File(dir, output), name)), "^[^#]");
+  }
+
+  public void testSvParallelMatchesSerial() throws IOException {
+    try (TestDirectory dir = new TestDirectory("shards")) {
+      prepare(dir);
+      final String[] options = {"--Xheterozygous", "--simple-signals", "-s", "10", "--fine-step", "1"};
+      final MainResult serial = MainResult.run(new SvToolCli(), args(dir, "serial", false, options));
+      assertEquals(serial.err(), 0, serial.rc());
+      final MainResult parallel = MainResult.run(new SvToolCli(), args(dir, "parallel", true, options));
+      assertEquals(parallel.err(), 0, parallel.rc());
+      for (final String name : new String[] {"sv_bayesian.tsv.gz", "sv_interesting.bed.gz", "sv_simple.tsv.gz"}) {
+        final String expected = body(dir, "serial", name);
+        assertTrue(name, expected.contains("simulatedSequence1") && expected.contains("simulatedSequence2"));
+        assertEquals(name, expected, body(dir, "parallel", name));
+      }
+    }
+  }
+
+  public void testDiscordParallelMatchesSerial() throws IOException {
+    try (TestDirectory dir = new TestDirectory("shards")) {
+      prepare(dir);
+      final MainResult serial = MainResult.run(new DiscordantToolCli(), args(dir, "serial", false, "--bed"));
+      assertEquals(serial.err(), 0, serial.rc());
+      final MainResult parallel = MainResult.run(new DiscordantToolCli(), args(dir, "parallel", true, "--bed"));
+      assertEquals(parallel.err(), 0, parallel.rc());
+      for (final String name : new String[] {"discordant_pairs.vcf.gz", "discordant_pairs.bed.gz"}) {
+        assertEquals(name, body(dir, "serial", name), body(dir, "parallel", name));
+      }
+    }
+  }
+}
@@ -59,6 +59,25 @@ public class SignalDistributionLnTest extends TestCase {
     assertEquals("blah", sig.columnLabel());
   }
 
+  public void testValues() {
+    final SamCounts sc = new CumulativeSamCounts(50, null);
+    sc.reset(50, 50);
+    for (int i = 0; i < 50; ++i) {
+      for (int j = 0; j < (i * 7) % 5; ++j) {
+        sc.increment(i);
+      }
+    }
+    final double[] distr = {1.0, 1.5, 2.5, 3.0, 2.5, 1.5, 1.0, 0.5};
+    final Signal sig = new SignalDistributionLn(sc, new DistributionArray(-4, distr), "blah");
+    final double[] values = new double[12];
+    for (final int step : new int[] {1, 3, 7}) {
+      sig.values(2, step, 6, values);
+      for (int k = 0; k < 6; ++k) {
+        assertEquals(sig.value(2 + k * step), values[k]);
+      }
+    }
+  }
+
   //ensure that minimum signal occurs at the right place and is zero (exactly mimics distribution)
   public void testMin() {
     //distribution is a step 100 on left and 1 on right - actual signal has this distribution centered at 10
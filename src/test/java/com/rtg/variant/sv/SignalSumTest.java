@@ -64,6 +64,19 @@ public class SignalSumTest extends TestCase {
     }
   }
 
+  public void testValues() {
+    final SamCounts sa = new SamArray(10);
+    sa.increment(0);
+    sa.increment(4);
+    sa.increment(4);
+    final Signal sig = new SignalSum("blah", new SignalCount(sa, -3, 3, ""), new SignalDistributionLn(sa, new DistributionConstant(-2, 2, 2.0), ""));
+    final double[] values = new double[5];
+    sig.values(1, 2, 5, values);
+    for (int k = 0; k < values.length; ++k) {
+      assertEquals(sig.value(1 + 2 * k), values[k]);
+    }
+  }
+
   public void test0() {
     final Signal sig = new SignalSum("blah");
     assertEquals(0.0, sig.value(0));
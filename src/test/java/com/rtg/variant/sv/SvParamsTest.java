@@ -85,6 +85,7 @@ public class SvParamsTest extends TestCase {
       assertNotNull(def.filterParams());
       assertNull(def.readGroupLabels());
       assertNull(def.readGroupStatistics());
+      assertFalse(def.parallelSequences());
       assertTrue(def.blockCompressed());
       assertEquals(tempDir, def.directory());
       assertEquals(new File(tempDir, "blah.txt.gz"), def.outFile("blah.txt"));
@@ -106,6 +107,8 @@ public class SvParamsTest extends TestCase {
     assertEquals(builder, builder.filterParams(SamFilterParams.builder().create()));
     assertEquals(builder, builder.readGroupLabels(null));
     assertEquals(builder, builder.readGroupStatistics(null));
+    assertEquals(builder, builder.parallelSequences(true));
+    assertTrue(builder.create().parallelSequences());
   }
 
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.sv.discord;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.rtg.util.PortableRandom;
+import com.rtg.variant.sv.bndeval.BreakpointGeometry;
+import com.rtg.variant.sv.bndeval.Orientation;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the corresponding class.
+ */
+public class DiscordantReadSetIndexTest extends TestCase {
+
+  private static final int WIDTH = 10;
+
+  /**
+   * Generate constraints resembling a shattered chromosome, with mates scattered over many
+   * fragments of several other sequences. Constraints are sorted by their x position.
+   * @param n number of constraints
+   * @param fragments number of distinct breakpoints mates fall near
+   * @param random source of randomness
+   * @return the constraints
+   */
+  static List<BreakpointConstraint> chromothripsis(final int n, final int fragments, final PortableRandom random) {
+    final String[] names = {"chr1", "chr2", "chr3", "chr4"};
+    final int[] breakpoints = new int[fragments];
+    for (int i = 0; i < fragments; ++i) {
+      breakpoints[i] = random.nextInt(10000000);
+    }
+    final List<BreakpointConstraint> constraints = new ArrayList<>(n);
+    for (int i = 0; i < n; ++i) {
+      final int x = i * 2 + random.nextInt(WIDTH);
+      final int y = breakpoints[random.nextInt(fragments)] + random.nextInt(3 * WIDTH);
+      final String yName = names[random.nextInt(names.length)];
+      constraints.add(new BreakpointConstraint(new BreakpointGeometry(Orientation.UU, "chr1", yName, x, x + WIDTH, y, y + WIDTH, x + y + 2, x + y + WIDTH + 2), 41.0, 12.3));
+    }
+    constraints.sort((a, b) -> Integer.compare(a.getXLo(), b.getXLo()));
+    return constraints;
+  }
+
+  public void testMatchesExhaustiveSearch() {
+    final int maxGap = 100;
+    final DiscordantReadSetIndex index = new DiscordantReadSetIndex();
+    index.setBinWidth(WIDTH);
+    int merges = 0;
+    for (final BreakpointConstraint c : chromothripsis(5000, 50, new PortableRandom(42))) {
+      final List<DiscordantReadSet> expected = new ArrayList<>();
+      for (final DiscordantReadSet drs : index) {
+        if (drs.belongs(c)) {
+          expected.add(drs);
+        }
+      }
+      final int before = index.size();
+      final List<DiscordantReadSet> actual = index.removeOverlapping(c);
+      assertEquals(expected, actual);
+      assertEquals(before - expected.size(), index.size());
+      merges += actual.size();
+      final DiscordantReadSet merged = new DiscordantReadSet("chr1", maxGap, c);
+      for (final DiscordantReadSet drs : actual) {
+        merged.addAll(drs);
+      }
+      index.add(merged);
+
+      // Evict in the same way as DiscordantTool.flush
+      final Iterator<DiscordantReadSet> it = index.iterator();
+      while (it.hasNext() && it.next().flushPosition() < c.getXLo()) {
+        it.remove();
+      }
+    }
+    assertTrue(merges > 0);
+    index.clear();
+    assertEquals(0, index.size());
+  }
+
+  public void testWideReadSet() {
+    final DiscordantReadSetIndex index = new DiscordantReadSetIndex();
+    index.setBinWidth(1);
+    final BreakpointConstraint wide = new BreakpointConstraint(new BreakpointGeometry(Orientation.UU, "x", "y", 10, 30, 30, 50, 42, 72), 41.0, 12.3);
+    final DiscordantReadSet drs = new DiscordantReadSet("x", 100, wide);
+    index.add(drs);
+    final BreakpointConstraint c = new BreakpointConstraint(new BreakpointGeometry(Orientation.UU, "x", "y", 14, 24, 34, 44, 50, 60), 41.0, 12.3);
+    final List<DiscordantReadSet> overlap = index.removeOverlapping(c);
+    assertEquals(1, overlap.size());
+    assertTrue(overlap.get(0) == drs);
+    assertEquals(0, index.size());
+    assertTrue(index.removeOverlapping(c).isEmpty());
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2018. Real Time Genomics Limited.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.rtg.variant.sv.discord;
+
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.List;
+
+import com.rtg.util.PortableRandom;
+import com.rtg.util.Utils;
+
+/**
+ * Time discordant read set clustering over a synthetic chromothripsis dataset, where many read
+ * sets are active at once.
+ */
+public final class DiscordantReadSetIndexTiming {
+
+  private DiscordantReadSetIndexTiming() { }
+
+  private static void time(final List<BreakpointConstraint> constraints, final int maxGap, final int binWidth, final PrintStream ps) {
+    final DiscordantReadSetIndex index = new DiscordantReadSetIndex();
+    index.setBinWidth(binWidth);
+    long active = 0;
+    final long t0 = System.nanoTime();
+    for (final BreakpointConstraint c : constraints) {
+      DiscordantTool.processConstraint(c, index, "chr1", maxGap, null);
+      final Iterator<DiscordantReadSet> it = index.iterator();
+      while (it.hasNext() && it.next().flushPosition() < c.getXLo()) {
+        it.remove();
+      }
+      active += index.size();
+    }
+    final long t1 = System.nanoTime();
+    ps.println("bin width " + binWidth + " " + constraints.size() + " constraints, mean active read sets " + active / constraints.size() + " " + Utils.realFormat((t1 - t0) / 1.0e9, 2) + "s");
+  }
+
+  /**
+   * Compares the grid against a single cell, which examines every active read set as was done prior to indexing.
+   * @param args optional number of constraints, number of fragments and maximum gap
+   */
+  public static void main(String[] args) {
+    final int n = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    final int fragments = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+    final int maxGap = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+    final List<BreakpointConstraint> constraints = DiscordantReadSetIndexTest.chromothripsis(n, fragments, new PortableRandom(42));
+    for (int i = 0; i < 3; ++i) {
+      time(constraints, maxGap, maxGap, System.err);
+      time(constraints, maxGap, Integer.MAX_VALUE / 2, System.err);
+    }
+  }
+}